@@ -0,0 +1,208 @@
+package de.chrgroth.generictypesystem.benchmark;
+
+import java.util.Collections;
+import java.util.HashSet;
+
+import de.chrgroth.generictypesystem.GenericTypesystemService;
+import de.chrgroth.generictypesystem.context.GenericTypesystemContext;
+import de.chrgroth.generictypesystem.model.DefaultGenericAttributeType;
+import de.chrgroth.generictypesystem.model.GenericAttribute;
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericStructure;
+import de.chrgroth.generictypesystem.model.GenericType;
+import de.chrgroth.generictypesystem.model.GenericUnit;
+import de.chrgroth.generictypesystem.model.GenericUnits;
+import de.chrgroth.generictypesystem.model.GenericValue;
+import de.chrgroth.generictypesystem.model.UnitValue;
+import de.chrgroth.generictypesystem.persistence.PersistenceService;
+import de.chrgroth.generictypesystem.persistence.impl.InMemoryPersistenceService;
+import de.chrgroth.generictypesystem.persistence.query.impl.InMemoryItemsQueryService;
+import de.chrgroth.generictypesystem.persistence.values.impl.InMemoryValueProposalService;
+import de.chrgroth.generictypesystem.validation.impl.DefaultValidationService;
+import de.chrgroth.generictypesystem.validation.impl.DefaultValidationServiceEmptyHooks;
+
+/**
+ * Creates deterministic benchmark datasets. Attributes are named <i>a0</i> to <i>aN</i> and cycle through string, long and unit based double types. For nested
+ * datasets the second half of all attributes is moved into a structure attribute named {@value #STRUCTURE_ATTRIBUTE}.
+ *
+ * @author Christian Groth
+ */
+public final class BenchmarkData {
+
+    public static final String STRUCTURE_ATTRIBUTE = "nested";
+
+    public static final long UNITS_ID = 1l;
+    public static final long UNIT_BASE_ID = 1l;
+    public static final long UNIT_KILO_ID = 2l;
+
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int ATTRIBUTE_KINDS = 3;
+    private static final int STRING_CARDINALITY = 100;
+    private static final long LONG_RANGE = 1000003l;
+    private static final long PRIME = 7919l;
+    private static final double KILO = 0.001d;
+    private static final long DEPENDENCY_ATTRIBUTE_INDEX = 3;
+
+    private BenchmarkData() {
+
+    }
+
+    /**
+     * Creates a typesystem service backed by given in memory persistence and default validation.
+     *
+     * @param persistence
+     *            persistence to be used
+     * @return service
+     */
+    public static GenericTypesystemService service(PersistenceService persistence) {
+        return new GenericTypesystemService(new DefaultValidationService(unitsId -> persistence.units(null, unitsId), new DefaultValidationServiceEmptyHooks()), persistence);
+    }
+
+    /**
+     * Creates an empty in memory persistence service.
+     *
+     * @return persistence service
+     */
+    public static InMemoryPersistenceService persistence() {
+        return new InMemoryPersistenceService(new InMemoryItemsQueryService(DEFAULT_PAGE_SIZE), new InMemoryValueProposalService());
+    }
+
+    /**
+     * Creates the units used by all unit based double attributes.
+     *
+     * @return units
+     */
+    public static GenericUnits units() {
+        GenericUnits units = new GenericUnits(UNITS_ID, "weight", "weight units");
+        units.getUnits().add(new GenericUnit(UNIT_BASE_ID, "gram", "g", GenericUnits.FACTOR_BASE));
+        units.getUnits().add(new GenericUnit(UNIT_KILO_ID, "kilogram", "kg", KILO));
+        return units;
+    }
+
+    /**
+     * Creates a type with given number of attributes.
+     *
+     * @param id
+     *            type id
+     * @param attributes
+     *            number of attributes
+     * @param nested
+     *            true to move the second half of attributes into a nested structure
+     * @return type
+     */
+    public static GenericType type(long id, int attributes, boolean nested) {
+        GenericType type = new GenericType(id, "benchmark-" + attributes, "benchmark", null, null, null, null);
+        GenericStructure structure = type;
+        long attributeId = 1;
+        for (int i = 0; i < attributes; i++) {
+
+            // switch to nested structure for second half
+            if (nested && i == attributes / 2) {
+                structure = new GenericStructure();
+                type.getAttributes().add(new GenericAttribute(attributeId++, STRUCTURE_ATTRIBUTE, DefaultGenericAttributeType.STRUCTURE, null, false, false, structure, null,
+                        null, null, null, null, null, null, null, null));
+            }
+
+            // add attribute
+            GenericAttribute attribute = new GenericAttribute();
+            attribute.setId(attributeId++);
+            attribute.setName(name(i));
+            switch (i % ATTRIBUTE_KINDS) {
+                case 0:
+                    attribute.setType(DefaultGenericAttributeType.STRING);
+                    break;
+                case 1:
+                    attribute.setType(DefaultGenericAttributeType.LONG);
+                    break;
+                default:
+                    attribute.setType(DefaultGenericAttributeType.DOUBLE);
+                    attribute.setUnitsId(UNITS_ID);
+                    break;
+            }
+            structure.getAttributes().add(attribute);
+        }
+
+        // let first attribute depend on a later top level string attribute
+        if (attributes > DEPENDENCY_ATTRIBUTE_INDEX && (!nested || attributes / 2 > DEPENDENCY_ATTRIBUTE_INDEX)) {
+            GenericAttribute dependency = type.attribute(name((int) DEPENDENCY_ATTRIBUTE_INDEX));
+            type.attribute(name(0)).setValueProposalDependencies(new HashSet<>(Collections.singleton(dependency.getId())));
+        }
+
+        return type;
+    }
+
+    /**
+     * Returns the attribute paths for all attributes, indexed by attribute index.
+     *
+     * @param attributes
+     *            number of attributes
+     * @param nested
+     *            true if the second half of attributes is nested
+     * @return attribute paths
+     */
+    public static String[] paths(int attributes, boolean nested) {
+        String[] paths = new String[attributes];
+        for (int i = 0; i < attributes; i++) {
+            paths[i] = nested && i >= attributes / 2 ? STRUCTURE_ATTRIBUTE + "." + name(i) : name(i);
+        }
+        return paths;
+    }
+
+    /**
+     * Creates an item with deterministic values for all given attribute paths.
+     *
+     * @param type
+     *            type
+     * @param id
+     *            item id, may be null
+     * @param seed
+     *            seed for value computation
+     * @param paths
+     *            attribute paths as returned by {@link #paths(int, boolean)}
+     * @return item
+     */
+    public static GenericItem item(GenericType type, Long id, long seed, String[] paths) {
+        GenericItem item = new GenericItem(id, type.getId(), null, null, null);
+        for (int i = 0; i < paths.length; i++) {
+            long value = (seed * PRIME + i) % LONG_RANGE;
+            switch (i % ATTRIBUTE_KINDS) {
+                case 0:
+                    item.set(paths[i], "value-" + value % STRING_CARDINALITY);
+                    break;
+                case 1:
+                    item.set(paths[i], value);
+                    break;
+                default:
+                    item.set(paths[i], new UnitValue(UNITS_ID, UNIT_BASE_ID, new GenericValue<>(Double.class, value / (double) STRING_CARDINALITY)));
+                    break;
+            }
+        }
+        return item;
+    }
+
+    /**
+     * Stores units, type and the given number of items directly in persistence, bypassing validation.
+     *
+     * @param persistence
+     *            persistence
+     * @param context
+     *            context
+     * @param type
+     *            type
+     * @param paths
+     *            attribute paths as returned by {@link #paths(int, boolean)}
+     * @param items
+     *            number of items
+     */
+    public static void populate(PersistenceService persistence, GenericTypesystemContext context, GenericType type, String[] paths, int items) {
+        persistence.units(context, units());
+        persistence.type(context, type);
+        for (long id = 1; id <= items; id++) {
+            persistence.item(context, type.getId(), item(type, id, id, paths));
+        }
+    }
+
+    private static String name(int index) {
+        return "a" + index;
+    }
+}
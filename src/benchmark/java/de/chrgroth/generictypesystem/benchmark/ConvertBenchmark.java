@@ -0,0 +1,64 @@
+package de.chrgroth.generictypesystem.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.chrgroth.generictypesystem.GenericTypesystemService;
+import de.chrgroth.generictypesystem.context.GenericTypesystemContext;
+import de.chrgroth.generictypesystem.context.impl.NullGenericTypesystemContext;
+import de.chrgroth.generictypesystem.model.GenericValue;
+import de.chrgroth.generictypesystem.model.UnitValue;
+import de.chrgroth.generictypesystem.persistence.impl.InMemoryPersistenceService;
+import de.chrgroth.generictypesystem.validation.ValidationResult;
+
+/**
+ * Measures {@link GenericTypesystemService#convert(GenericTypesystemContext, UnitValue, long)} for integral and floating point values.
+ *
+ * @author Christian Groth
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class ConvertBenchmark {
+
+    private static final long LONG_VALUE = 123456l;
+    private static final double DOUBLE_VALUE = 1234.56d;
+
+    @Param({ "LONG", "DOUBLE" })
+    public String valueType;
+
+    private GenericTypesystemContext context;
+    private GenericTypesystemService service;
+    private UnitValue value;
+
+    @Setup
+    public void setup() {
+        context = new NullGenericTypesystemContext();
+        InMemoryPersistenceService persistence = BenchmarkData.persistence();
+        service = BenchmarkData.service(persistence);
+        persistence.units(context, BenchmarkData.units());
+
+        // prepare value
+        GenericValue<?> genericValue = "LONG".equals(valueType) ? new GenericValue<>(Long.class, LONG_VALUE) : new GenericValue<>(Double.class, DOUBLE_VALUE);
+        value = new UnitValue(BenchmarkData.UNITS_ID, BenchmarkData.UNIT_BASE_ID, genericValue);
+    }
+
+    @Benchmark
+    public ValidationResult<UnitValue> convert() {
+        return service.convert(context, value, BenchmarkData.UNIT_KILO_ID);
+    }
+}
@@ -0,0 +1,79 @@
+package de.chrgroth.generictypesystem.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.chrgroth.generictypesystem.GenericTypesystemService;
+import de.chrgroth.generictypesystem.context.GenericTypesystemContext;
+import de.chrgroth.generictypesystem.context.impl.NullGenericTypesystemContext;
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericType;
+import de.chrgroth.generictypesystem.persistence.impl.InMemoryPersistenceService;
+import de.chrgroth.generictypesystem.validation.ValidationResult;
+
+/**
+ * Measures {@link GenericTypesystemService#item(GenericTypesystemContext, long, GenericItem)}, i.e. item validation and saving, for types of different size.
+ * Saving cycles through a pool of already persisted items, so the store size stays constant during measurement.
+ *
+ * @author Christian Groth
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class ItemSaveBenchmark {
+
+    private static final long TYPE_ID = 1l;
+
+    @Param({ "10", "100", "1000" })
+    public int attributes;
+
+    @Param({ "false", "true" })
+    public boolean nested;
+
+    @Param({ "1000" })
+    public int items;
+
+    private GenericTypesystemContext context;
+    private GenericTypesystemService service;
+    private GenericItem[] pool;
+    private int next;
+
+    @Setup
+    public void setup() {
+        context = new NullGenericTypesystemContext();
+        InMemoryPersistenceService persistence = BenchmarkData.persistence();
+        service = BenchmarkData.service(persistence);
+
+        // populate
+        GenericType type = BenchmarkData.type(TYPE_ID, attributes, nested);
+        String[] paths = BenchmarkData.paths(attributes, nested);
+        BenchmarkData.populate(persistence, context, type, paths, items);
+
+        // prepare items to be saved
+        pool = new GenericItem[items];
+        for (int i = 0; i < items; i++) {
+            pool[i] = BenchmarkData.item(type, Long.valueOf(i + 1), i + items, paths);
+        }
+    }
+
+    @Benchmark
+    public ValidationResult<GenericItem> saveAndValidate() {
+        GenericItem item = pool[next];
+        next = (next + 1) % pool.length;
+        return service.item(context, TYPE_ID, item);
+    }
+}
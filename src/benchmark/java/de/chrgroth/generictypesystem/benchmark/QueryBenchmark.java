@@ -0,0 +1,98 @@
+package de.chrgroth.generictypesystem.benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.chrgroth.generictypesystem.GenericTypesystemService;
+import de.chrgroth.generictypesystem.context.GenericTypesystemContext;
+import de.chrgroth.generictypesystem.context.impl.NullGenericTypesystemContext;
+import de.chrgroth.generictypesystem.model.GenericType;
+import de.chrgroth.generictypesystem.persistence.impl.InMemoryPersistenceService;
+import de.chrgroth.generictypesystem.persistence.query.ItemPagingData;
+import de.chrgroth.generictypesystem.persistence.query.ItemQueryResult;
+import de.chrgroth.generictypesystem.persistence.query.ItemSortData;
+import de.chrgroth.generictypesystem.persistence.query.ItemsQueryData;
+
+/**
+ * Measures {@link GenericTypesystemService#query(GenericTypesystemContext, long, ItemsQueryData)} for a paged query sorted by a string and a long attribute.
+ *
+ * @author Christian Groth
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class QueryBenchmark {
+
+    private static final long TYPE_ID = 1l;
+    private static final int ATTRIBUTES = 10;
+    private static final long PAGE_SIZE = 20l;
+
+    @Param({ "1000", "100000", "1000000" })
+    public int items;
+
+    @Param({ "false", "true" })
+    public boolean nested;
+
+    private GenericTypesystemContext context;
+    private GenericTypesystemService service;
+    private String[] paths;
+
+    @Setup
+    public void setup() {
+        context = new NullGenericTypesystemContext();
+        InMemoryPersistenceService persistence = BenchmarkData.persistence();
+        service = BenchmarkData.service(persistence);
+
+        // populate
+        GenericType type = BenchmarkData.type(TYPE_ID, ATTRIBUTES, nested);
+        paths = BenchmarkData.paths(ATTRIBUTES, nested);
+        BenchmarkData.populate(persistence, context, type, paths, items);
+    }
+
+    @Benchmark
+    public ItemQueryResult firstPage() {
+        return service.query(context, TYPE_ID, query(1));
+    }
+
+    @Benchmark
+    public ItemQueryResult middlePage() {
+        return service.query(context, TYPE_ID, query(items / PAGE_SIZE / 2));
+    }
+
+    private ItemsQueryData query(long page) {
+        ItemsQueryData data = new ItemsQueryData();
+
+        // sort by last string attribute and first long attribute
+        data.setSorts(new ArrayList<>());
+        data.getSorts().add(sort(paths[ATTRIBUTES - 1], true));
+        data.getSorts().add(sort(paths[1], false));
+
+        // paging
+        data.setPaging(new ItemPagingData());
+        data.getPaging().setPage(page);
+        data.getPaging().setPageSize(PAGE_SIZE);
+        return data;
+    }
+
+    private ItemSortData sort(String path, boolean ascending) {
+        ItemSortData sort = new ItemSortData();
+        sort.setPath(path);
+        sort.setAscending(ascending);
+        return sort;
+    }
+}
@@ -0,0 +1,77 @@
+package de.chrgroth.generictypesystem.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.chrgroth.generictypesystem.GenericTypesystemService;
+import de.chrgroth.generictypesystem.context.GenericTypesystemContext;
+import de.chrgroth.generictypesystem.context.impl.NullGenericTypesystemContext;
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericType;
+import de.chrgroth.generictypesystem.persistence.impl.InMemoryPersistenceService;
+
+/**
+ * Measures {@link GenericTypesystemService#values(GenericTypesystemContext, long, GenericItem)} with and without a template item. The template item causes
+ * value proposal dependencies of attribute <i>a0</i> to be applied.
+ *
+ * @author Christian Groth
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class ValuesBenchmark {
+
+    private static final long TYPE_ID = 1l;
+    private static final int ATTRIBUTES = 10;
+
+    @Param({ "1000", "100000", "1000000" })
+    public int items;
+
+    @Param({ "false", "true" })
+    public boolean nested;
+
+    private GenericTypesystemContext context;
+    private GenericTypesystemService service;
+    private GenericItem template;
+
+    @Setup
+    public void setup() {
+        context = new NullGenericTypesystemContext();
+        InMemoryPersistenceService persistence = BenchmarkData.persistence();
+        service = BenchmarkData.service(persistence);
+
+        // populate
+        GenericType type = BenchmarkData.type(TYPE_ID, ATTRIBUTES, nested);
+        String[] paths = BenchmarkData.paths(ATTRIBUTES, nested);
+        BenchmarkData.populate(persistence, context, type, paths, items);
+
+        // template
+        template = BenchmarkData.item(type, null, 1, paths);
+    }
+
+    @Benchmark
+    public Map<String, List<?>> values() {
+        return service.values(context, TYPE_ID, null);
+    }
+
+    @Benchmark
+    public Map<String, List<?>> valuesWithTemplate() {
+        return service.values(context, TYPE_ID, template);
+    }
+}
@@ -1,19 +1,27 @@
 package de.chrgroth.generictypesystem;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.chrgroth.generictypesystem.context.GenericTypesystemContext;
+import de.chrgroth.generictypesystem.context.impl.NullGenericTypesystemContext;
 import de.chrgroth.generictypesystem.model.DefaultGenericAttributeType;
 import de.chrgroth.generictypesystem.model.GenericAttribute;
 import de.chrgroth.generictypesystem.model.GenericItem;
 import de.chrgroth.generictypesystem.model.GenericStructure;
 import de.chrgroth.generictypesystem.model.GenericType;
+import de.chrgroth.generictypesystem.model.GenericTypeSchema;
 import de.chrgroth.generictypesystem.model.GenericUnit;
 import de.chrgroth.generictypesystem.model.GenericUnits;
 import de.chrgroth.generictypesystem.model.GenericValue;
@@ -23,6 +31,8 @@ import de.chrgroth.generictypesystem.persistence.impl.InMemoryPersistenceService
 import de.chrgroth.generictypesystem.persistence.query.ItemQueryResult;
 import de.chrgroth.generictypesystem.persistence.query.ItemsQueryData;
 import de.chrgroth.generictypesystem.persistence.query.impl.InMemoryItemsQueryService;
+import de.chrgroth.generictypesystem.persistence.sequence.IdSequence;
+import de.chrgroth.generictypesystem.persistence.sequence.impl.AtomicIdSequence;
 import de.chrgroth.generictypesystem.persistence.values.impl.InMemoryValueProposalService;
 import de.chrgroth.generictypesystem.validation.ValidationResult;
 import de.chrgroth.generictypesystem.validation.ValidationService;
@@ -41,6 +51,7 @@ public class GenericTypesystemService {
     private static final Logger LOG = LoggerFactory.getLogger(GenericTypesystemService.class);
 
     private static final int DEFAULT_PAGE_SIZE = 10;
+    private static final GenericTypesystemContext UNRESTRICTED_CONTEXT = new NullGenericTypesystemContext();
 
     private final PersistenceService persistence;
     private final ValidationService validation;
@@ -54,8 +65,13 @@ public class GenericTypesystemService {
      *            persistence service , null will create a new instance of {@link InMemoryPersistenceService}
      */
     public GenericTypesystemService(ValidationService validation, PersistenceService persistence) {
-        this.persistence = persistence != null ? persistence : new InMemoryPersistenceService(new InMemoryItemsQueryService(DEFAULT_PAGE_SIZE), new InMemoryValueProposalService());
-        this.validation = validation != null ? validation : new DefaultValidationService(unitsId -> persistence.units(null, unitsId), new DefaultValidationServiceEmptyHooks());
+        this.persistence = persistence != null ? persistence
+                : new InMemoryPersistenceService(new InMemoryItemsQueryService(DEFAULT_PAGE_SIZE, this::unitsLookup), new InMemoryValueProposalService());
+        this.validation = validation != null ? validation : new DefaultValidationService(this::unitsLookup, new DefaultValidationServiceEmptyHooks());
+    }
+
+    private GenericUnits unitsLookup(Long unitsId) {
+        return unitsId != null ? persistence.units(null, unitsId) : null;
     }
 
     /**
@@ -84,11 +100,15 @@ public class GenericTypesystemService {
         // ensure all type attributes have an id
         if (units != null && units.getUnits() != null) {
             Set<GenericUnit> allUnits = units.getUnits();
+            IdSequence sequence = null;
             for (GenericUnit unit : allUnits) {
                 if (unit.getId() == null || unit.getId().longValue() < 1) {
 
-                    // get next unique id
-                    long nextUnitsUnitId = nextUnitsUnitId(allUnits);
+                    // get next unique id, max id is computed only once
+                    if (sequence == null) {
+                        sequence = unitsUnitIdSequence(allUnits);
+                    }
+                    long nextUnitsUnitId = sequence.next();
 
                     // set id
                     unit.setId(nextUnitsUnitId);
@@ -104,7 +124,9 @@ public class GenericTypesystemService {
 
         // save / update
         if (validationResult.isValid()) {
-            persistence.units(context, units);
+            if (persistence.units(context, units) && units.getId() != null) {
+                validation.unitsChanged(units.getId());
+            }
         } else if (LOG.isDebugEnabled()) {
             LOG.debug("skip persisting invalid units " + (units != null ? units.getId() : null));
         }
@@ -113,8 +135,8 @@ public class GenericTypesystemService {
         return validationResult;
     }
 
-    private long nextUnitsUnitId(Set<GenericUnit> allUnits) {
-        return allUnits.stream().filter(u -> u.getId() != null).mapToLong(u -> u.getId()).max().orElse(0) + 1;
+    private IdSequence unitsUnitIdSequence(Set<GenericUnit> allUnits) {
+        return new AtomicIdSequence(allUnits.stream().filter(u -> u.getId() != null).mapToLong(u -> u.getId()).max().orElse(0));
     }
 
     /**
@@ -282,11 +304,15 @@ public class GenericTypesystemService {
         // ensure all type attributes have an id
         if (type != null && type.getAttributes() != null) {
             List<GenericAttribute> allAttributes = type.attributes();
+            IdSequence sequence = null;
             for (GenericAttribute attribute : allAttributes) {
                 if (attribute.getId() == null || attribute.getId().longValue() < 1) {
 
-                    // get next unique id
-                    long nextTypeAttributeId = nextTypeAttributeId(allAttributes);
+                    // get next unique id, max id is computed only once
+                    if (sequence == null) {
+                        sequence = typeAttributeIdSequence(allAttributes);
+                    }
+                    long nextTypeAttributeId = sequence.next();
 
                     // set id
                     attribute.setId(nextTypeAttributeId);
@@ -295,6 +321,9 @@ public class GenericTypesystemService {
                     }
                 }
             }
+
+            // attributes might have changed
+            type.invalidateSchema();
         }
 
         // validate
@@ -311,8 +340,8 @@ public class GenericTypesystemService {
         return validationResult;
     }
 
-    private long nextTypeAttributeId(List<GenericAttribute> allAttributes) {
-        return allAttributes.stream().filter(a -> a.getId() != null).mapToLong(a -> a.getId()).max().orElse(0) + 1;
+    private IdSequence typeAttributeIdSequence(List<GenericAttribute> allAttributes) {
+        return new AtomicIdSequence(allAttributes.stream().filter(a -> a.getId() != null).mapToLong(a -> a.getId()).max().orElse(0));
     }
 
     /**
@@ -382,6 +411,21 @@ public class GenericTypesystemService {
         return persistence.query(context, typeId, data);
     }
 
+    /**
+     * Returns the item stream as defined by {@link PersistenceService#stream(GenericTypesystemContext, long, ItemsQueryData)}.
+     *
+     * @param context
+     *            current context
+     * @param typeId
+     *            type id
+     * @param data
+     *            query data, paging is ignored
+     * @return item stream
+     */
+    public Stream<GenericItem> stream(GenericTypesystemContext context, long typeId, ItemsQueryData data) {
+        return persistence.stream(context, typeId, data);
+    }
+
     /**
      * Returns the item as defined by {@link PersistenceService#item(GenericTypesystemContext, long, long)}.
      *
@@ -398,8 +442,9 @@ public class GenericTypesystemService {
     }
 
     /**
-     * Ensures {@link GenericItem#getTypeId()} is set to given type, validates the type and item and if the result is valid
-     * {@link PersistenceService#item(GenericTypesystemContext, long, GenericItem)} will be invoked.
+     * Ensures {@link GenericItem#getTypeId()} is set to given type, validates the type and item, ensures the items unique key is not used by another item and
+     * if the result is valid {@link PersistenceService#item(GenericTypesystemContext, long, GenericItem)} will be invoked. Items rejected by the persistence
+     * service are invalid, reported as unique key violation if the unique key was taken concurrently.
      *
      * @param context
      *            current context
@@ -414,6 +459,107 @@ public class GenericTypesystemService {
         // get type
         GenericType type = persistence.type(context, typeId);
 
+        // check accessibility
+        ValidationResult<GenericItem> validationResult = checkAccessible(context, typeId, type, item);
+        if (validationResult == null) {
+
+            // validate
+            validationResult = validation.validate(type, item);
+            checkUniqueKey(typeId, type, item, validationResult);
+        }
+
+        // save / update
+        if (validationResult.isValid()) {
+            if (!persistence.item(context, typeId, item)) {
+                rejected(typeId, type, item, validationResult);
+            }
+        } else if (LOG.isDebugEnabled()) {
+            LOG.debug("skip persisting invalid item " + typeId + "/" + (item != null ? item.getId() : null));
+        }
+
+        // done
+        return validationResult;
+    }
+
+    /**
+     * Batch variant of {@link #item(GenericTypesystemContext, long, GenericItem)}. The type is resolved only once, all accessible items are validated using
+     * {@link ValidationService#validateAll(GenericType, List)} and all valid items are passed to
+     * {@link PersistenceService#items(GenericTypesystemContext, long, List)} at once. Items using the same unique key as a preceding item of the batch are
+     * invalid, as well as items rejected by the persistence service.
+     *
+     * @param context
+     *            current context
+     * @param typeId
+     *            type id
+     * @param items
+     *            items to be saved
+     * @return validation results in iteration order of given items
+     */
+    public List<ValidationResult<GenericItem>> items(GenericTypesystemContext context, long typeId, Collection<GenericItem> items) {
+        List<ValidationResult<GenericItem>> validationResults = new ArrayList<>(items.size());
+
+        // get type
+        GenericType type = persistence.type(context, typeId);
+
+        // check accessibility
+        List<GenericItem> accessibleItems = new ArrayList<>(items.size());
+        for (GenericItem item : items) {
+            ValidationResult<GenericItem> validationResult = checkAccessible(context, typeId, type, item);
+            if (validationResult == null) {
+                accessibleItems.add(item);
+            }
+            validationResults.add(validationResult);
+        }
+
+        // validate all accessible items at once
+        Iterator<GenericItem> accessibleItemsIterator = accessibleItems.iterator();
+        Iterator<ValidationResult<GenericItem>> accessibleResults = validation.validateAll(type, accessibleItems).iterator();
+        boolean uniqueKey = type != null && type.schema().hasUniqueKey();
+        Map<Map<String, Object>, GenericItem> uniqueKeys = new HashMap<>();
+        List<GenericItem> validItems = new ArrayList<>(accessibleItems.size());
+        List<ValidationResult<GenericItem>> validResults = new ArrayList<>(accessibleItems.size());
+        for (int i = 0; i < validationResults.size(); i++) {
+            if (validationResults.get(i) != null) {
+                continue;
+            }
+            ValidationResult<GenericItem> validationResult = accessibleResults.next();
+            validationResults.set(i, validationResult);
+            GenericItem item = accessibleItemsIterator.next();
+
+            // ensure unique key is not used by any other item or any preceding item
+            checkUniqueKey(typeId, type, item, validationResult);
+            if (validationResult.isValid() && uniqueKey) {
+                GenericItem existing = uniqueKeys.putIfAbsent(GenericTypeSchema.normalizeUniqueKey(type.schema().computeUniqueKey(item)), item);
+                if (existing != null && existing != item) {
+                    validationResult.error("", DefaultValidationServiceMessageKey.ITEM_UNIQUE_KEY_VIOLATED);
+                }
+            }
+
+            // collect valid items
+            if (validationResult.isValid()) {
+                validItems.add(item);
+                validResults.add(validationResult);
+            } else if (LOG.isDebugEnabled()) {
+                LOG.debug("skip persisting invalid item " + typeId + "/" + (item != null ? item.getId() : null));
+            }
+        }
+
+        // save / update
+        if (!validItems.isEmpty()) {
+            List<Boolean> saved = persistence.items(context, typeId, validItems);
+            for (int i = 0; i < validResults.size() && saved != null && i < saved.size(); i++) {
+                if (Boolean.FALSE.equals(saved.get(i))) {
+                    rejected(typeId, type, validItems.get(i), validResults.get(i));
+                }
+            }
+        }
+
+        // done
+        return validationResults;
+    }
+
+    private ValidationResult<GenericItem> checkAccessible(GenericTypesystemContext context, long typeId, GenericType type, GenericItem item) {
+
         // check type accessibility
         if (!context.isTypeAccessible(type)) {
             final ValidationResult<GenericItem> validationResult = new ValidationResult<>(null);
@@ -433,18 +579,43 @@ public class GenericTypesystemService {
             item.setTypeId(typeId);
         }
 
-        // validate
-        ValidationResult<GenericItem> validationResult = validation.validate(type, item);
+        // accessible
+        return null;
+    }
 
-        // save / update
+    private void checkUniqueKey(long typeId, GenericType type, GenericItem item, ValidationResult<GenericItem> validationResult) {
+
+        // ensure unique key is not used by any other item, regardless of visibility
+        if (validationResult.isValid() && type != null && type.schema().hasUniqueKey()) {
+            GenericItem existing = persistence.findByUniqueKey(UNRESTRICTED_CONTEXT, typeId, type.schema().computeUniqueKey(item));
+            if (existing != null && !Objects.equals(existing.getId(), item.getId())) {
+                validationResult.error("", DefaultValidationServiceMessageKey.ITEM_UNIQUE_KEY_VIOLATED);
+            }
+        }
+    }
+
+    private void rejected(long typeId, GenericType type, GenericItem item, ValidationResult<GenericItem> validationResult) {
+
+        // unique key may have been taken concurrently, otherwise the persistence service rejected the item for other reasons
+        checkUniqueKey(typeId, type, item, validationResult);
         if (validationResult.isValid()) {
-            persistence.item(context, typeId, item);
-        } else if (LOG.isDebugEnabled()) {
-            LOG.debug("skip persisting invalid item " + typeId + "/" + (item != null ? item.getId() : null));
+            validationResult.error("", DefaultValidationServiceMessageKey.ITEM_NOT_PERSISTED);
         }
+    }
 
-        // done
-        return validationResult;
+    /**
+     * Returns the item for given unique key as defined by {@link PersistenceService#findByUniqueKey(GenericTypesystemContext, long, Map)}.
+     *
+     * @param context
+     *            current context
+     * @param typeId
+     *            type id
+     * @param uniqueKey
+     *            unique key
+     * @return item or null
+     */
+    public GenericItem findByUniqueKey(GenericTypesystemContext context, long typeId, Map<String, Object> uniqueKey) {
+        return persistence.findByUniqueKey(context, typeId, uniqueKey);
     }
 
     /**
@@ -462,6 +633,31 @@ public class GenericTypesystemService {
         return persistence.values(context, typeId, template);
     }
 
+    /**
+     * Returns the value proposals for a single attribute as defined by
+     * {@link PersistenceService#values(GenericTypesystemContext, long, String, GenericItem, String, int)}.
+     *
+     * @param context
+     *            current context
+     * @param typeId
+     *            type id
+     * @param path
+     *            attribute path
+     * @param template
+     *            optional template item
+     * @param prefix
+     *            optional value prefix, ignoring case
+     * @param limit
+     *            maximum number of value proposals, must be greater zero
+     * @return value proposals
+     */
+    public List<String> values(GenericTypesystemContext context, long typeId, String path, GenericItem template, String prefix, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be greater zero!!");
+        }
+        return persistence.values(context, typeId, path, template, prefix, limit);
+    }
+
     /**
      * Deletes the item as defined by {@link PersistenceService#removeItem(GenericTypesystemContext, long, long)}.
      *
@@ -500,6 +696,10 @@ public class GenericTypesystemService {
      * @return true if successful, false otherwise
      */
     public boolean removeUnits(GenericTypesystemContext context, long unitsId) {
-        return persistence.removeUnits(context, unitsId);
+        boolean removed = persistence.removeUnits(context, unitsId);
+        if (removed) {
+            validation.unitsChanged(unitsId);
+        }
+        return removed;
     }
 }
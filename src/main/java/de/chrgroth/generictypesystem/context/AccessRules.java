@@ -0,0 +1,30 @@
+package de.chrgroth.generictypesystem.context;
+
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericType;
+
+/**
+ * Describes how a {@link GenericTypesystemContext} decides type and item access, so persistence services may evaluate or cache access for many types and
+ * items at once instead of calling {@link GenericTypesystemContext#isTypeAccessible(GenericType)} and
+ * {@link GenericTypesystemContext#isItemAccessible(GenericType, GenericItem)} for each instance.
+ *
+ * @author Christian Groth
+ */
+public enum AccessRules {
+
+    /**
+     * All types or items are accessible.
+     */
+    ALL,
+
+    /**
+     * Access is decided by the default rules based on current user, visibility and owner only, as described in
+     * {@link GenericTypesystemContext#isTypeAccessible(GenericType)} and {@link GenericTypesystemContext#isItemAccessible(GenericType, GenericItem)}.
+     */
+    VISIBILITY,
+
+    /**
+     * Access is decided by custom rules, each type or item has to be checked.
+     */
+    CUSTOM;
+}
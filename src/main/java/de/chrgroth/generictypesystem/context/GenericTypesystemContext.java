@@ -52,4 +52,24 @@ public interface GenericTypesystemContext {
      * @return true if accessible, false otherwise
      */
     boolean isItemAccessible(GenericType type, GenericItem item);
+
+    /**
+     * Returns the rules used by {@link #isTypeAccessible(GenericType)}. Persistence services may use them to cache accessible types per current user.
+     * Implementations returning anything else than {@link AccessRules#CUSTOM} must decide type access exactly as described by the returned rules.
+     *
+     * @return type access rules, {@link AccessRules#CUSTOM} by default
+     */
+    default AccessRules typeAccessRules() {
+        return AccessRules.CUSTOM;
+    }
+
+    /**
+     * Returns the rules used by {@link #isItemAccessible(GenericType, GenericItem)}. Persistence services may use them to evaluate item access for many items
+     * at once. Implementations returning anything else than {@link AccessRules#CUSTOM} must decide item access exactly as described by the returned rules.
+     *
+     * @return item access rules, {@link AccessRules#CUSTOM} by default
+     */
+    default AccessRules itemAccessRules() {
+        return AccessRules.CUSTOM;
+    }
 }
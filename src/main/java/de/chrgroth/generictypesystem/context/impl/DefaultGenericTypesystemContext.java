@@ -3,18 +3,22 @@ package de.chrgroth.generictypesystem.context.impl;
 import java.util.Objects;
 
 import de.chrgroth.generictypesystem.context.GenericTypesystemContext;
+import de.chrgroth.generictypesystem.context.AccessRules;
 import de.chrgroth.generictypesystem.model.GenericItem;
 import de.chrgroth.generictypesystem.model.GenericType;
 import de.chrgroth.generictypesystem.model.Visibility;
 
 /**
- * Default context implementation.
+ * Default context implementation. Type and item access is decided by {@link AccessRules#VISIBILITY}, unless a subclass overrides
+ * {@link #isTypeAccessible(GenericType)} or {@link #isItemAccessible(GenericType, GenericItem)}.
  *
  * @author Christian Groth
  */
 public class DefaultGenericTypesystemContext implements GenericTypesystemContext {
 
     private Long currentUser;
+    private final boolean customTypeAccess;
+    private final boolean customItemAccess;
 
     public DefaultGenericTypesystemContext() {
         this(null);
@@ -22,6 +26,16 @@ public class DefaultGenericTypesystemContext implements GenericTypesystemContext
 
     public DefaultGenericTypesystemContext(Long currentUser) {
         this.currentUser = currentUser;
+        customTypeAccess = overrides(getClass(), "isTypeAccessible", GenericType.class);
+        customItemAccess = overrides(getClass(), "isItemAccessible", GenericType.class, GenericItem.class);
+    }
+
+    private static boolean overrides(Class<?> clazz, String method, Class<?>... parameterTypes) {
+        try {
+            return clazz.getMethod(method, parameterTypes).getDeclaringClass() != DefaultGenericTypesystemContext.class;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
     }
 
     @Override
@@ -77,4 +91,14 @@ public class DefaultGenericTypesystemContext implements GenericTypesystemContext
         // failed
         return false;
     }
+
+    @Override
+    public AccessRules typeAccessRules() {
+        return customTypeAccess ? AccessRules.CUSTOM : AccessRules.VISIBILITY;
+    }
+
+    @Override
+    public AccessRules itemAccessRules() {
+        return customItemAccess ? AccessRules.CUSTOM : AccessRules.VISIBILITY;
+    }
 }
@@ -1,6 +1,7 @@
 package de.chrgroth.generictypesystem.context.impl;
 
 import de.chrgroth.generictypesystem.context.GenericTypesystemContext;
+import de.chrgroth.generictypesystem.context.AccessRules;
 import de.chrgroth.generictypesystem.model.GenericItem;
 import de.chrgroth.generictypesystem.model.GenericType;
 
@@ -26,4 +27,14 @@ public class NullGenericTypesystemContext implements GenericTypesystemContext {
     public boolean isItemAccessible(GenericType type, GenericItem item) {
         return true;
     }
+
+    @Override
+    public AccessRules typeAccessRules() {
+        return AccessRules.ALL;
+    }
+
+    @Override
+    public AccessRules itemAccessRules() {
+        return AccessRules.ALL;
+    }
 }
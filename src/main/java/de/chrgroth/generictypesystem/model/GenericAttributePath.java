@@ -0,0 +1,167 @@
+package de.chrgroth.generictypesystem.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Pre-parsed attribute path in dot notation. The path is split into its segments once, so resolving values of an item walks the nested values directly,
+ * without any substrings created per access. Paths resolve values exactly like {@link GenericItem#get(String)}, {@link GenericItem#set(String, Object)} and
+ * {@link GenericItem#remove(String)}. Paths obtained by {@link GenericTypeSchema#path(String)} are bound to the attribute of the schema, the binding is not
+ * serialized. Paths are immutable.
+ *
+ * @author Christian Groth
+ */
+public final class GenericAttributePath implements Serializable {
+
+    private static final long serialVersionUID = 4625716380143254139L;
+
+    private final String path;
+    private final String[] segments;
+    private final transient GenericAttribute attribute;
+
+    public GenericAttributePath(String path) {
+        this(path, null);
+    }
+
+    GenericAttributePath(String path, GenericAttribute attribute) {
+        this.path = path;
+        segments = parse(path);
+        this.attribute = attribute;
+    }
+
+    private static String[] parse(String path) {
+        List<String> segments = new ArrayList<>();
+        String rest = path;
+        int dotIndex = rest != null ? rest.indexOf('.') : -1;
+        while (dotIndex > 0) {
+            segments.add(rest.substring(0, dotIndex));
+            rest = rest.substring(dotIndex + 1);
+            dotIndex = rest.indexOf('.');
+        }
+        segments.add(rest);
+
+        // blank paths and segments never resolve, leading dots are part of the name like for the item
+        if (segments.stream().anyMatch(StringUtils::isBlank)) {
+            return new String[0];
+        }
+        return segments.toArray(new String[segments.size()]);
+    }
+
+    /**
+     * Returns the value of the given item, see {@link GenericItem#get(String)}.
+     *
+     * @param item
+     *            item
+     * @return value or null
+     */
+    public Object get(GenericItem item) {
+        Map<String, Object> values = values(item, false);
+        if (values == null) {
+            return null;
+        }
+        Object value = values.get(segments[segments.length - 1]);
+        if (value instanceof String) {
+            value = ((String) value).trim();
+        }
+        return value;
+    }
+
+    /**
+     * Sets the value of the given item, creating nested items lazily, see {@link GenericItem#set(String, Object)}.
+     *
+     * @param item
+     *            item
+     * @param value
+     *            value
+     * @return the old value
+     */
+    public Object set(GenericItem item, Object value) {
+        Map<String, Object> values = values(item, true);
+        return values != null ? values.put(segments[segments.length - 1], value) : null;
+    }
+
+    /**
+     * Removes the value of the given item, see {@link GenericItem#remove(String)}.
+     *
+     * @param item
+     *            item
+     * @return the removed value
+     */
+    public Object remove(GenericItem item) {
+        Map<String, Object> values = values(item, false);
+        return values != null ? values.remove(segments[segments.length - 1]) : null;
+    }
+
+    private Map<String, Object> values(GenericItem item, boolean create) {
+        if (item == null || segments.length == 0) {
+            return null;
+        }
+
+        // walk nested items
+        GenericItem current = item;
+        for (int i = 0; i < segments.length - 1; i++) {
+            Object nested = current.getValues().get(segments[i]);
+            if (nested == null) {
+                if (!create) {
+                    return null;
+                }
+                nested = new GenericItem();
+                current.getValues().put(segments[i], nested);
+            } else if (!(nested instanceof GenericItem)) {
+                throw new IllegalArgumentException("corrupt value for " + segments[i] + ", generic item was expected: " + nested);
+            }
+            current = (GenericItem) nested;
+        }
+        return current.getValues();
+    }
+
+    /**
+     * Returns the path in dot notation.
+     *
+     * @return path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the attribute of the schema this path was obtained from.
+     *
+     * @return attribute or null if not bound or unknown to the schema
+     */
+    public GenericAttribute getAttribute() {
+        return attribute;
+    }
+
+    @Override
+    public int hashCode() {
+        return path == null ? 0 : path.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        GenericAttributePath other = (GenericAttributePath) obj;
+        if (path == null) {
+            return other.path == null;
+        }
+        return path.equals(other.path);
+    }
+
+    @Override
+    public String toString() {
+        return "GenericAttributePath [path=" + path + "]";
+    }
+}
@@ -22,6 +22,10 @@ import java.util.Map;
  * <dt>customProperties</dt>
  * <dd>A map holding optional custom properties to be used by concrete projects for simple type extension.</dd>
  * </dl>
+ * <p>
+ * A flattened {@link GenericTypeSchema} is cached per type. Persisting the type or setting new attributes invalidates it, attributes modified in place require
+ * a call to {@link #invalidateSchema()}.
+ * </p>
  *
  * @author Christian Groth
  */
@@ -38,6 +42,8 @@ public class GenericType extends GenericStructure {
 
     private Map<String, GenericValue<?>> customProperties;
 
+    private transient volatile GenericTypeSchema schema;
+
     public GenericType() {
         this(null, null, null, null, null, null, null);
     }
@@ -53,6 +59,33 @@ public class GenericType extends GenericStructure {
         customProperties = new HashMap<>();
     }
 
+    /**
+     * Returns the flattened schema of this type, building it if not yet cached.
+     *
+     * @return schema, never null
+     */
+    public GenericTypeSchema schema() {
+        GenericTypeSchema current = schema;
+        if (current == null) {
+            current = new GenericTypeSchema(this);
+            schema = current;
+        }
+        return current;
+    }
+
+    /**
+     * Drops the cached schema, it will be rebuilt on next access.
+     */
+    public void invalidateSchema() {
+        schema = null;
+    }
+
+    @Override
+    public void setAttributes(List<GenericAttribute> attributes) {
+        super.setAttributes(attributes);
+        invalidateSchema();
+    }
+
     public Long getId() {
         return id;
     }
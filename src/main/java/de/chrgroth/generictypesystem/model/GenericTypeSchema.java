@@ -0,0 +1,224 @@
+package de.chrgroth.generictypesystem.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Immutable, flattened view on the attributes of a structure. All lookups offered by {@link GenericStructure} are computed once, so resolving attributes by
+ * path or id is a simple hash lookup. A schema reflects the structure at the time it was built, see {@link GenericType#schema()} for caching and invalidation.
+ *
+ * @author Christian Groth
+ */
+public final class GenericTypeSchema {
+
+    private final Map<String, GenericAttribute> attributesByPath;
+    private final Map<String, GenericAttributePath> paths;
+    private final Map<Long, String> pathsById;
+    private final List<GenericAttribute> attributes;
+    private final List<GenericAttribute> uniqueAttributes;
+    private final Set<String> valueProposalPaths;
+    private final boolean containsLists;
+    private final boolean containsStructures;
+
+    public GenericTypeSchema(GenericStructure structure) {
+        Map<String, GenericAttribute> attributesByPath = new HashMap<>();
+        Map<Long, String> pathsById = new HashMap<>();
+        List<GenericAttribute> attributes = new ArrayList<>();
+        Set<String> valueProposalPaths = new HashSet<>();
+        List<GenericAttribute> uniqueAttributes = new ArrayList<>();
+
+        // flatten structure
+        boolean[] flags = new boolean[2];
+        if (structure != null && structure.getAttributes() != null) {
+            collect(structure, "", true, attributesByPath, pathsById, valueProposalPaths, flags);
+            collectAttributes(structure, attributes);
+            structure.getAttributes().stream().filter(a -> a.isUnique()).forEach(uniqueAttributes::add);
+        }
+
+        // done
+        this.attributesByPath = Collections.unmodifiableMap(attributesByPath);
+        Map<String, GenericAttributePath> paths = new HashMap<>();
+        attributesByPath.forEach((path, a) -> paths.put(path, new GenericAttributePath(path, a)));
+        this.paths = Collections.unmodifiableMap(paths);
+        this.pathsById = Collections.unmodifiableMap(pathsById);
+        this.attributes = Collections.unmodifiableList(attributes);
+        this.uniqueAttributes = Collections.unmodifiableList(uniqueAttributes);
+        this.valueProposalPaths = Collections.unmodifiableSet(valueProposalPaths);
+        containsLists = flags[0];
+        containsStructures = flags[1];
+    }
+
+    private static void collect(GenericStructure structure, String pathPrefix, boolean structurePath, Map<String, GenericAttribute> attributesByPath,
+            Map<Long, String> pathsById, Set<String> valueProposalPaths, boolean[] flags) {
+
+        // register all attributes on this level first, direct ids win over nested ones
+        for (GenericAttribute a : structure.getAttributes()) {
+            if (a.getName() == null) {
+                continue;
+            }
+            String path = pathPrefix + a.getName();
+            attributesByPath.putIfAbsent(path, a);
+            if (structurePath && a.getId() != null) {
+                pathsById.putIfAbsent(a.getId(), path);
+            }
+            if (structurePath && a.getType() != null && a.getType().isValueProposalDependenciesCapable()) {
+                valueProposalPaths.add(path);
+            }
+            flags[0] |= a.isList();
+            flags[1] |= a.isStructure();
+        }
+
+        // recurse into nested structures
+        for (GenericAttribute a : structure.getAttributes()) {
+            if (a.getName() != null && a.getStructure() != null && a.getStructure().getAttributes() != null) {
+                collect(a.getStructure(), pathPrefix + a.getName() + ".", structurePath && a.isStructure(), attributesByPath, pathsById, valueProposalPaths, flags);
+            }
+        }
+    }
+
+    private static void collectAttributes(GenericStructure structure, List<GenericAttribute> attributes) {
+        attributes.addAll(structure.getAttributes());
+        structure.getAttributes().stream().filter(a -> a.isStructure() && a.getStructure() != null && a.getStructure().getAttributes() != null)
+                .forEach(a -> collectAttributes(a.getStructure(), attributes));
+    }
+
+    /**
+     * Resolves the attribute for given path, see {@link GenericStructure#attribute(String)}.
+     *
+     * @param path
+     *            attribute path in dot notation
+     * @return attribute or null
+     */
+    public GenericAttribute attribute(String path) {
+        return StringUtils.isBlank(path) ? null : attributesByPath.get(path);
+    }
+
+    /**
+     * Returns the pre-parsed path for the given path, bound to its attribute. Paths of all attributes are parsed once, unknown paths are parsed on every call.
+     *
+     * @param path
+     *            attribute path in dot notation
+     * @return path, never null
+     */
+    public GenericAttributePath path(String path) {
+        GenericAttributePath attributePath = path != null ? paths.get(path) : null;
+        return attributePath != null ? attributePath : new GenericAttributePath(path);
+    }
+
+    /**
+     * Returns the path of the attribute with given id, see {@link GenericStructure#attributePath(Long)}.
+     *
+     * @param id
+     *            attribute id
+     * @return attribute path, or null
+     */
+    public String attributePath(Long id) {
+        return id != null ? pathsById.get(id) : null;
+    }
+
+    /**
+     * Returns all attributes, recursing into nested structures, see {@link GenericStructure#attributes()}.
+     *
+     * @return unmodifiable list of all attributes, never null
+     */
+    public List<GenericAttribute> attributes() {
+        return attributes;
+    }
+
+    /**
+     * Returns all unique key attributes.
+     *
+     * @return unmodifiable list of unique attributes, never null
+     */
+    public List<GenericAttribute> uniqueAttributes() {
+        return uniqueAttributes;
+    }
+
+    /**
+     * Checks if the attributes contain unique key attributes.
+     *
+     * @return true if unique key attributes are contained, false otherwise
+     */
+    public boolean hasUniqueKey() {
+        return !uniqueAttributes.isEmpty();
+    }
+
+    /**
+     * Computes the unique key for the given item, see {@link GenericStructure#computeUniqueKey(GenericItem)}.
+     *
+     * @param item
+     *            item to compute unique key for
+     * @return unique key, or null
+     */
+    public Map<String, Object> computeUniqueKey(GenericItem item) {
+        if (item == null || uniqueAttributes.isEmpty()) {
+            return null;
+        }
+
+        Map<String, Object> uniqueKey = new HashMap<>();
+        for (GenericAttribute a : uniqueAttributes) {
+            uniqueKey.put(a.getName(), item.get(a.getName()));
+        }
+        return uniqueKey;
+    }
+
+    /**
+     * Normalizes the numeric values of the given unique key, so keys differing in number types only are equal. Integral numbers are converted to longs, all
+     * other numbers to doubles. Unique keys must be normalized before being compared.
+     *
+     * @param uniqueKey
+     *            unique key, see {@link #computeUniqueKey(GenericItem)}
+     * @return normalized unique key, or null
+     */
+    public static Map<String, Object> normalizeUniqueKey(Map<String, Object> uniqueKey) {
+        if (uniqueKey == null) {
+            return null;
+        }
+
+        Map<String, Object> normalized = new HashMap<>(uniqueKey.size() * 2);
+        uniqueKey.forEach((k, v) -> {
+            if (v instanceof Integer || v instanceof Short || v instanceof Byte) {
+                normalized.put(k, Long.valueOf(((Number) v).longValue()));
+            } else if (v instanceof Number && !(v instanceof Long)) {
+                normalized.put(k, Double.valueOf(((Number) v).doubleValue()));
+            } else {
+                normalized.put(k, v);
+            }
+        });
+        return normalized;
+    }
+
+    /**
+     * Returns the paths of all attributes value proposals can be computed for, recursing into nested structures.
+     *
+     * @return unmodifiable set of paths, never null
+     */
+    public Set<String> valueProposalPaths() {
+        return valueProposalPaths;
+    }
+
+    /**
+     * Checks if any attribute, including nested ones, is a list.
+     *
+     * @return true if a list attribute exists, false otherwise
+     */
+    public boolean containsLists() {
+        return containsLists;
+    }
+
+    /**
+     * Checks if any attribute, including nested ones, is a structure.
+     *
+     * @return true if a structure attribute exists, false otherwise
+     */
+    public boolean containsStructures() {
+        return containsStructures;
+    }
+}
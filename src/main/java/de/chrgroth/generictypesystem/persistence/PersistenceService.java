@@ -1,13 +1,17 @@
 package de.chrgroth.generictypesystem.persistence;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import de.chrgroth.generictypesystem.context.GenericTypesystemContext;
 import de.chrgroth.generictypesystem.model.GenericAttribute;
 import de.chrgroth.generictypesystem.model.GenericItem;
 import de.chrgroth.generictypesystem.model.GenericType;
+import de.chrgroth.generictypesystem.model.GenericTypeSchema;
 import de.chrgroth.generictypesystem.model.GenericUnits;
 import de.chrgroth.generictypesystem.persistence.query.ItemQueryResult;
 import de.chrgroth.generictypesystem.persistence.query.ItemsQueryData;
@@ -61,7 +65,7 @@ public interface PersistenceService {
     Set<String> typeGroups(GenericTypesystemContext context);
 
     /**
-     * Returns all known and accessible types.
+     * Returns all known and accessible types. The returned set may be cached and unmodifiable.
      *
      * @param context
      *            current context
@@ -115,6 +119,29 @@ public interface PersistenceService {
      */
     ItemQueryResult query(GenericTypesystemContext context, long typeId, ItemsQueryData data);
 
+    /**
+     * Returns all accessible items matching the filter of the given query data as stream, sorted by the given sorts. Paging is ignored, use
+     * {@link Stream#skip(long)} and {@link Stream#limit(long)} instead. Streams are consumed lazily, so implementations should avoid materializing all items
+     * and release any resources held in {@link Stream#close()}, hence callers should close streams, e.g. using try-with-resources. The default implementation
+     * delegates to {@link #query(GenericTypesystemContext, long, ItemsQueryData)} without paging.
+     *
+     * @param context
+     *            current context
+     * @param typeId
+     *            type id
+     * @param data
+     *            query data
+     * @return item stream, never null
+     */
+    default Stream<GenericItem> stream(GenericTypesystemContext context, long typeId, ItemsQueryData data) {
+        ItemsQueryData unpaged = new ItemsQueryData();
+        if (data != null) {
+            unpaged.setFilter(data.getFilter());
+            unpaged.setSorts(data.getSorts());
+        }
+        return query(context, typeId, unpaged).getItems().stream();
+    }
+
     /**
      * Returns all value proposals wrapped in a map with key representing the attribute path and value the list of value proposals. If the given template item
      * is not null, only items matching the values for defined {@link GenericAttribute#getValueProposalDependencies()} will be processed.
@@ -129,6 +156,34 @@ public interface PersistenceService {
      */
     Map<String, List<?>> values(GenericTypesystemContext context, long typeId, GenericItem template);
 
+    /**
+     * Returns the first value proposals for a single attribute path starting with the given prefix, ignoring case, in the order defined by
+     * {@link #values(GenericTypesystemContext, long, GenericItem)}. Intended for typeahead lookups, so implementations should avoid computing value
+     * proposals for all paths. The default implementation computes all value proposals and reduces them afterwards.
+     *
+     * @param context
+     *            current context
+     * @param typeId
+     *            type id
+     * @param path
+     *            attribute path
+     * @param template
+     *            optional template item
+     * @param prefix
+     *            optional value prefix
+     * @param limit
+     *            maximum number of value proposals
+     * @return value proposals, never null
+     */
+    default List<String> values(GenericTypesystemContext context, long typeId, String path, GenericItem template, String prefix, int limit) {
+        List<?> values = values(context, typeId, template).get(path);
+        if (values == null) {
+            return Collections.emptyList();
+        }
+        return values.stream().map(Object::toString).filter(v -> prefix == null || v.regionMatches(true, 0, prefix, 0, prefix.length())).limit(Math.max(limit, 0))
+                .collect(Collectors.toList());
+    }
+
     /**
      * Returns the item with given type id and item id. If type or item are not accessible null will be returned instead.
      *
@@ -143,7 +198,39 @@ public interface PersistenceService {
     GenericItem item(GenericTypesystemContext context, long typeId, long id);
 
     /**
-     * Saves the given item or updates it if an item with same id is already known. If the type or item is not accessible the operation will be ignored.
+     * Returns the item with given unique key, see {@link GenericType#computeUniqueKey(GenericItem)}. If type or item are not accessible null will be returned
+     * instead. Unique keys are compared normalized, see {@link GenericTypeSchema#normalizeUniqueKey(Map)}. The default implementation scans all accessible items,
+     * implementations should override it to look up the item in an index.
+     *
+     * @param context
+     *            current context
+     * @param typeId
+     *            type id
+     * @param uniqueKey
+     *            unique key
+     * @return known item or null
+     */
+    default GenericItem findByUniqueKey(GenericTypesystemContext context, long typeId, Map<String, Object> uniqueKey) {
+
+        // null guard
+        GenericType type = type(context, typeId);
+        if (type == null || uniqueKey == null) {
+            return null;
+        }
+
+        // scan all items
+        Set<GenericItem> items = items(context, typeId);
+        if (items == null) {
+            return null;
+        }
+        GenericTypeSchema schema = type.schema();
+        Map<String, Object> normalized = GenericTypeSchema.normalizeUniqueKey(uniqueKey);
+        return items.stream().filter(i -> normalized.equals(GenericTypeSchema.normalizeUniqueKey(schema.computeUniqueKey(i)))).findFirst().orElse(null);
+    }
+
+    /**
+     * Saves the given item or updates it if an item with same id is already known. If the type or item is not accessible or the items unique key is already
+     * used by another item the operation will be ignored.
      *
      * @param context
      *            current context
@@ -155,6 +242,23 @@ public interface PersistenceService {
      */
     boolean item(GenericTypesystemContext context, long typeId, GenericItem item);
 
+    /**
+     * Saves or updates all given items, see {@link #item(GenericTypesystemContext, long, GenericItem)}. Items are handled in the given order, so an item using
+     * the same unique key as a preceding item of the same batch will be ignored. The default implementation saves one item after another, implementations
+     * should override it to resolve the type and reserve ids only once and write all items at once.
+     *
+     * @param context
+     *            current context
+     * @param typeId
+     *            type id the items belong to
+     * @param items
+     *            items to be saved
+     * @return success flag per item in the given order
+     */
+    default List<Boolean> items(GenericTypesystemContext context, long typeId, List<GenericItem> items) {
+        return items.stream().map(i -> item(context, typeId, i)).collect(Collectors.toList());
+    }
+
     /**
      * Removes the item for given type id and item id. If the type or item is not accessible the operation will be ignored.
      *
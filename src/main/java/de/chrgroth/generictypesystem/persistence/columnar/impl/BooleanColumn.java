@@ -0,0 +1,38 @@
+package de.chrgroth.generictypesystem.persistence.columnar.impl;
+
+import java.util.BitSet;
+
+/**
+ * Column storing {@link Boolean} values in a bitset.
+ *
+ * @author Christian Groth
+ */
+final class BooleanColumn extends Column {
+
+    private final BitSet values = new BitSet();
+
+    @Override
+    protected boolean accepts(Object value) {
+        return value instanceof Boolean;
+    }
+
+    @Override
+    protected void store(int row, Object value) {
+        values.set(row, (Boolean) value);
+    }
+
+    @Override
+    protected Object load(int row) {
+        return values.get(row);
+    }
+
+    @Override
+    protected void release(int row) {
+        values.clear(row);
+    }
+
+    @Override
+    protected int compareTyped(int first, int second) {
+        return Boolean.compare(values.get(first), values.get(second));
+    }
+}
@@ -0,0 +1,182 @@
+package de.chrgroth.generictypesystem.persistence.columnar.impl;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import de.chrgroth.generictypesystem.persistence.query.impl.CascadingAttributeComparator;
+
+/**
+ * Values of a single attribute path for all rows of a {@link ColumnarItems} instance. Values matching the column type are stored in typed, contiguous arrays,
+ * null values and values not matching the column type are kept in a sparse map. Absent values are tracked separately, so items are restored exactly.
+ *
+ * @author Christian Groth
+ */
+abstract class Column {
+
+    private final BitSet present;
+    private final BitSet typed;
+    private Map<Integer, Object> others;
+
+    Column() {
+        present = new BitSet();
+        typed = new BitSet();
+    }
+
+    /**
+     * Sets the value of given row, replacing any previous value.
+     *
+     * @param row
+     *            row
+     * @param value
+     *            value, may be null
+     */
+    void set(int row, Object value) {
+        clear(row);
+        present.set(row);
+        if (value != null && accepts(value)) {
+            typed.set(row);
+            store(row, value);
+        } else {
+            if (others == null) {
+                others = new HashMap<>();
+            }
+            others.put(row, value);
+        }
+    }
+
+    /**
+     * Removes the value of given row.
+     *
+     * @param row
+     *            row
+     */
+    void clear(int row) {
+        if (!present.get(row)) {
+            return;
+        }
+        present.clear(row);
+        if (typed.get(row)) {
+            typed.clear(row);
+            release(row);
+        } else {
+            others.remove(row);
+            if (others.isEmpty()) {
+                others = null;
+            }
+        }
+    }
+
+    /**
+     * Checks if the given row has a value, which may be null.
+     *
+     * @param row
+     *            row
+     * @return true if a value is present
+     */
+    boolean has(int row) {
+        return present.get(row);
+    }
+
+    /**
+     * Returns the value of given row.
+     *
+     * @param row
+     *            row
+     * @return value or null if absent
+     */
+    Object get(int row) {
+        if (typed.get(row)) {
+            return load(row);
+        }
+        return others != null ? others.get(row) : null;
+    }
+
+    /**
+     * Checks if no row has a value.
+     *
+     * @return true if empty
+     */
+    boolean isEmpty() {
+        return present.isEmpty();
+    }
+
+    /**
+     * Compares the values of both rows in ascending order like {@link CascadingAttributeComparator}. Absent and null values are greater than all other values,
+     * typed values are compared without boxing.
+     *
+     * @param first
+     *            first row
+     * @param second
+     *            second row
+     * @return comparison result
+     */
+    int compare(int first, int second) {
+        if (typed.get(first) && typed.get(second)) {
+            return compareTyped(first, second);
+        }
+        return CascadingAttributeComparator.compareValues(comparable(first), comparable(second));
+    }
+
+    /**
+     * Returns the value of given row as seen by {@link de.chrgroth.generictypesystem.model.GenericItem#get(String)}, strings are trimmed.
+     *
+     * @param row
+     *            row
+     * @return value or null
+     */
+    Object comparable(int row) {
+        Object value = get(row);
+        return value instanceof String ? ((String) value).trim() : value;
+    }
+
+    /**
+     * Checks if the given non null value is stored typed.
+     *
+     * @param value
+     *            value
+     * @return true if value matches the column type
+     */
+    protected abstract boolean accepts(Object value);
+
+    protected abstract void store(int row, Object value);
+
+    protected abstract Object load(int row);
+
+    /**
+     * Releases the typed value of given row. Does nothing by default.
+     *
+     * @param row
+     *            row
+     */
+    protected void release(int row) {
+    }
+
+    /**
+     * Compares the typed values of both rows in ascending order.
+     *
+     * @param first
+     *            first row
+     * @param second
+     *            second row
+     * @return comparison result
+     */
+    protected abstract int compareTyped(int first, int second);
+
+    static long[] ensureCapacity(long[] values, int row) {
+        return row < values.length ? values : Arrays.copyOf(values, Math.max(row + 1, values.length * 2));
+    }
+
+    static double[] ensureCapacity(double[] values, int row) {
+        return row < values.length ? values : Arrays.copyOf(values, Math.max(row + 1, values.length * 2));
+    }
+
+    static int[] ensureCapacity(int[] values, int row) {
+        return row < values.length ? values : Arrays.copyOf(values, Math.max(row + 1, values.length * 2));
+    }
+
+    static Object[] ensureCapacity(Object[] values, int row) {
+        return row < values.length ? values : Arrays.copyOf(values, Math.max(row + 1, values.length * 2));
+    }
+}
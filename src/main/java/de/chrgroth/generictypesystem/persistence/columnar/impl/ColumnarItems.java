@@ -0,0 +1,277 @@
+package de.chrgroth.generictypesystem.persistence.columnar.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.chrgroth.generictypesystem.model.DefaultGenericAttributeType;
+import de.chrgroth.generictypesystem.model.GenericAttribute;
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericTypeSchema;
+import de.chrgroth.generictypesystem.model.Visibility;
+import de.chrgroth.generictypesystem.persistence.query.ItemSortData;
+
+/**
+ * Columnar storage of all items of a single type. Items are decomposed into rows, each attribute path in dot notation is stored in its own column typed by the
+ * attribute type of the schema: longs and doubles in primitive arrays, booleans in bitsets and strings dictionary encoded. Other values, like dates, lists and
+ * unit values, or values not matching the attribute type are stored by reference. Rows of removed items are reused.
+ * <p>
+ * Items are not stored as such, {@link #get(long)} and {@link #items()} materialize new item instances on every call. Changes to these instances are not
+ * reflected until the item is stored again. Nested items are restored from their values, nested items without any value are lost. Sorting is done on the
+ * columns directly, see {@link #sort(List)}. Instances are not thread safe.
+ * </p>
+ *
+ * @author Christian Groth
+ */
+public class ColumnarItems {
+
+    private final Map<Long, Integer> rows;
+    private final Deque<Integer> freeRows;
+    private final LongColumn typeIds;
+    private final LongColumn owners;
+    private final Map<String, Column> columns;
+    private GenericTypeSchema schema;
+    private long[] ids;
+    private boolean[] used;
+    private byte[] visibilities;
+    private int rowCount;
+
+    public ColumnarItems(GenericTypeSchema schema) {
+        if (schema == null) {
+            throw new IllegalArgumentException("schema must be given!!");
+        }
+        this.schema = schema;
+        rows = new HashMap<>();
+        freeRows = new ArrayDeque<>();
+        typeIds = new LongColumn();
+        owners = new LongColumn();
+        columns = new LinkedHashMap<>();
+        ids = new long[0];
+        used = new boolean[0];
+        visibilities = new byte[0];
+    }
+
+    /**
+     * Sets the schema used to type columns of attribute paths stored for the first time. Existing columns are kept, values not matching their type are
+     * stored by reference.
+     *
+     * @param schema
+     *            current schema
+     */
+    public void setSchema(GenericTypeSchema schema) {
+        if (schema == null) {
+            throw new IllegalArgumentException("schema must be given!!");
+        }
+        this.schema = schema;
+    }
+
+    /**
+     * Returns the number of stored items.
+     *
+     * @return number of items
+     */
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * Returns the attribute paths of all columns.
+     *
+     * @return unmodifiable paths
+     */
+    public Set<String> paths() {
+        return Collections.unmodifiableSet(columns.keySet());
+    }
+
+    /**
+     * Adds or replaces the given item.
+     *
+     * @param item
+     *            item, must have an id
+     */
+    public void put(GenericItem item) {
+        if (item == null || item.getId() == null) {
+            throw new IllegalArgumentException("item with id must be given!!");
+        }
+
+        // resolve row, reusing rows of removed items
+        Integer row = rows.get(item.getId());
+        if (row == null) {
+            row = freeRows.poll();
+            if (row == null) {
+                row = rowCount++;
+            }
+            ensureCapacity(row);
+            rows.put(item.getId(), row);
+            ids[row] = item.getId();
+            used[row] = true;
+        }
+
+        // item data
+        typeIds.set(row, item.getTypeId());
+        owners.set(row, item.getOwner());
+        visibilities[row] = (byte) (item.getVisibility() != null ? item.getVisibility().ordinal() : -1);
+
+        // values, flattened to attribute paths
+        Map<String, Object> values = item.getValues() != null ? item.get() : Collections.emptyMap();
+        Iterator<Map.Entry<String, Column>> iterator = columns.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Column> column = iterator.next();
+            if (!values.containsKey(column.getKey())) {
+                column.getValue().clear(row);
+                if (column.getValue().isEmpty()) {
+                    iterator.remove();
+                }
+            }
+        }
+        for (Map.Entry<String, Object> value : values.entrySet()) {
+            columns.computeIfAbsent(value.getKey(), this::newColumn).set(row, value.getValue());
+        }
+    }
+
+    private void ensureCapacity(int row) {
+        if (row >= ids.length) {
+            int capacity = Math.max(row + 1, ids.length * 2);
+            ids = Arrays.copyOf(ids, capacity);
+            used = Arrays.copyOf(used, capacity);
+            visibilities = Arrays.copyOf(visibilities, capacity);
+        }
+    }
+
+    private Column newColumn(String path) {
+        GenericAttribute attribute = schema.attribute(path);
+        if (attribute == null || attribute.isUnitBased() || !(attribute.getType() instanceof DefaultGenericAttributeType)) {
+            return new ObjectColumn();
+        }
+        switch ((DefaultGenericAttributeType) attribute.getType()) {
+            case LONG:
+                return new LongColumn();
+            case DOUBLE:
+                return new DoubleColumn();
+            case BOOLEAN:
+                return new BooleanColumn();
+            case STRING:
+            case ENUM:
+                return new StringColumn();
+            default:
+                return new ObjectColumn();
+        }
+    }
+
+    Column column(String path) {
+        return columns.get(path);
+    }
+
+    /**
+     * Removes the item with given id.
+     *
+     * @param id
+     *            item id
+     * @return true if the item was removed, false if unknown
+     */
+    public boolean remove(long id) {
+        Integer row = rows.remove(id);
+        if (row == null) {
+            return false;
+        }
+
+        // clear row
+        typeIds.clear(row);
+        owners.clear(row);
+        Iterator<Column> iterator = columns.values().iterator();
+        while (iterator.hasNext()) {
+            Column column = iterator.next();
+            column.clear(row);
+            if (column.isEmpty()) {
+                iterator.remove();
+            }
+        }
+        used[row] = false;
+        freeRows.push(row);
+        return true;
+    }
+
+    /**
+     * Materializes the item with given id.
+     *
+     * @param id
+     *            item id
+     * @return new item instance or null if unknown
+     */
+    public GenericItem get(long id) {
+        Integer row = rows.get(id);
+        return row != null ? view(row) : null;
+    }
+
+    /**
+     * Materializes all items in storage order.
+     *
+     * @return new item instances
+     */
+    public List<GenericItem> items() {
+        List<GenericItem> items = new ArrayList<>(rows.size());
+        for (int row = 0; row < rowCount; row++) {
+            if (used[row]) {
+                items.add(view(row));
+            }
+        }
+        return items;
+    }
+
+    private GenericItem view(int row) {
+        byte visibility = visibilities[row];
+        GenericItem item = new GenericItem(ids[row], (Long) typeIds.get(row), null, (Long) owners.get(row), visibility >= 0 ? Visibility.values()[visibility]
+                : null);
+        for (Map.Entry<String, Column> column : columns.entrySet()) {
+            if (column.getValue().has(row)) {
+                item.set(column.getKey(), column.getValue().get(row));
+            }
+        }
+        return item;
+    }
+
+    /**
+     * Returns the ids of all items sorted like {@link de.chrgroth.generictypesystem.persistence.query.impl.CascadingAttributeComparator} would sort the
+     * materialized items. Values are compared on the columns directly, without materializing items or boxing typed values.
+     *
+     * @param sorts
+     *            sorts
+     * @return sorted item ids
+     */
+    public long[] sort(List<ItemSortData> sorts) {
+
+        // columns to compare, paths without values are equal for all items
+        List<Column> sortColumns = new ArrayList<>();
+        List<Boolean> ascending = new ArrayList<>();
+        if (sorts != null) {
+            for (ItemSortData sort : sorts) {
+                Column column = sort != null && sort.getPath() != null ? columns.get(sort.getPath()) : null;
+                if (column != null) {
+                    sortColumns.add(column);
+                    ascending.add(sort.isAscending());
+                }
+            }
+        }
+
+        // sort rows, falling back to descending ids
+        List<Integer> sorted = new ArrayList<>(rows.values());
+        sorted.sort((first, second) -> {
+            for (int i = 0; i < sortColumns.size(); i++) {
+                int compare = ascending.get(i) ? sortColumns.get(i).compare(first, second) : sortColumns.get(i).compare(second, first);
+                if (compare != 0) {
+                    return compare;
+                }
+            }
+            return Long.compare(ids[second], ids[first]);
+        });
+        return sorted.stream().mapToLong(row -> ids[row]).toArray();
+    }
+}
@@ -0,0 +1,32 @@
+package de.chrgroth.generictypesystem.persistence.columnar.impl;
+
+/**
+ * Column storing {@link Double} values in a primitive array.
+ *
+ * @author Christian Groth
+ */
+final class DoubleColumn extends Column {
+
+    private double[] values = new double[0];
+
+    @Override
+    protected boolean accepts(Object value) {
+        return value instanceof Double;
+    }
+
+    @Override
+    protected void store(int row, Object value) {
+        values = ensureCapacity(values, row);
+        values[row] = (Double) value;
+    }
+
+    @Override
+    protected Object load(int row) {
+        return values[row];
+    }
+
+    @Override
+    protected int compareTyped(int first, int second) {
+        return Double.compare(values[first], values[second]);
+    }
+}
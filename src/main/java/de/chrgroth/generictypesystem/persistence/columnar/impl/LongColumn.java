@@ -0,0 +1,32 @@
+package de.chrgroth.generictypesystem.persistence.columnar.impl;
+
+/**
+ * Column storing {@link Long} values in a primitive array.
+ *
+ * @author Christian Groth
+ */
+final class LongColumn extends Column {
+
+    private long[] values = new long[0];
+
+    @Override
+    protected boolean accepts(Object value) {
+        return value instanceof Long;
+    }
+
+    @Override
+    protected void store(int row, Object value) {
+        values = ensureCapacity(values, row);
+        values[row] = (Long) value;
+    }
+
+    @Override
+    protected Object load(int row) {
+        return values[row];
+    }
+
+    @Override
+    protected int compareTyped(int first, int second) {
+        return Long.compare(values[first], values[second]);
+    }
+}
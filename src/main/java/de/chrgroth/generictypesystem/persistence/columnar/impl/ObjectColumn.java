@@ -0,0 +1,39 @@
+package de.chrgroth.generictypesystem.persistence.columnar.impl;
+
+import de.chrgroth.generictypesystem.persistence.query.impl.CascadingAttributeComparator;
+
+/**
+ * Column storing arbitrary values by reference, used for dates, lists, unit values and attribute paths unknown to the schema.
+ *
+ * @author Christian Groth
+ */
+final class ObjectColumn extends Column {
+
+    private Object[] values = new Object[0];
+
+    @Override
+    protected boolean accepts(Object value) {
+        return true;
+    }
+
+    @Override
+    protected void store(int row, Object value) {
+        values = ensureCapacity(values, row);
+        values[row] = value;
+    }
+
+    @Override
+    protected Object load(int row) {
+        return values[row];
+    }
+
+    @Override
+    protected void release(int row) {
+        values[row] = null;
+    }
+
+    @Override
+    protected int compareTyped(int first, int second) {
+        return CascadingAttributeComparator.compareValues(comparable(first), comparable(second));
+    }
+}
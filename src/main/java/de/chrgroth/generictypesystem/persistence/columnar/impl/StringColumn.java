@@ -0,0 +1,101 @@
+package de.chrgroth.generictypesystem.persistence.columnar.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column storing {@link String} values dictionary encoded. Each distinct value is stored once, rows hold an int code. Codes of values no longer referenced
+ * are reused. For sorting, ranks of all distinct values are computed once and compared instead of the strings.
+ *
+ * @author Christian Groth
+ */
+final class StringColumn extends Column {
+
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> codesByValue = new HashMap<>();
+    private final Deque<Integer> freeCodes = new ArrayDeque<>();
+    private int[] references = new int[0];
+    private int[] codes = new int[0];
+    private int[] ranks;
+
+    @Override
+    protected boolean accepts(Object value) {
+        return value instanceof String;
+    }
+
+    @Override
+    protected void store(int row, Object value) {
+        String string = (String) value;
+        Integer code = codesByValue.get(string);
+        if (code == null) {
+            code = freeCodes.poll();
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(string);
+            } else {
+                dictionary.set(code, string);
+            }
+            codesByValue.put(string, code);
+            references = ensureCapacity(references, code);
+            ranks = null;
+        }
+        references[code]++;
+        codes = ensureCapacity(codes, row);
+        codes[row] = code;
+    }
+
+    @Override
+    protected Object load(int row) {
+        return dictionary.get(codes[row]);
+    }
+
+    @Override
+    protected void release(int row) {
+        int code = codes[row];
+        references[code]--;
+        if (references[code] == 0) {
+            codesByValue.remove(dictionary.get(code));
+            dictionary.set(code, null);
+            freeCodes.push(code);
+            ranks = null;
+        }
+    }
+
+    /**
+     * Returns the number of distinct values.
+     *
+     * @return number of distinct values
+     */
+    int distinct() {
+        return codesByValue.size();
+    }
+
+    @Override
+    protected int compareTyped(int first, int second) {
+        int[] currentRanks = ranks();
+        return Integer.compare(currentRanks[codes[first]], currentRanks[codes[second]]);
+    }
+
+    private int[] ranks() {
+        if (ranks == null) {
+
+            // sort codes by trimmed values, equal values share a rank
+            List<Integer> sorted = new ArrayList<>(codesByValue.values());
+            sorted.sort((a, b) -> dictionary.get(a).trim().compareTo(dictionary.get(b).trim()));
+            int[] computed = new int[dictionary.size()];
+            int rank = 0;
+            for (int i = 0; i < sorted.size(); i++) {
+                if (i > 0 && !dictionary.get(sorted.get(i)).trim().equals(dictionary.get(sorted.get(i - 1)).trim())) {
+                    rank++;
+                }
+                computed[sorted.get(i)] = rank;
+            }
+            ranks = computed;
+        }
+        return ranks;
+    }
+}
@@ -0,0 +1,630 @@
+package de.chrgroth.generictypesystem.persistence.file.impl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.chrgroth.generictypesystem.model.DefaultGenericAttributeType;
+import de.chrgroth.generictypesystem.model.GenericAttribute;
+import de.chrgroth.generictypesystem.model.GenericAttributeType;
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericStructure;
+import de.chrgroth.generictypesystem.model.GenericType;
+import de.chrgroth.generictypesystem.model.GenericUnit;
+import de.chrgroth.generictypesystem.model.GenericUnits;
+import de.chrgroth.generictypesystem.model.GenericValue;
+import de.chrgroth.generictypesystem.model.UnitValue;
+import de.chrgroth.generictypesystem.model.Visibility;
+
+/**
+ * Compact binary encoding of units, types and items. Values are written with a leading type tag, supported values are strings, numbers, booleans, dates,
+ * nested items, lists, unit values and generic values. Attribute types must be {@link DefaultGenericAttributeType}s, other values and attribute types can't be
+ * encoded.
+ * <p>
+ * Items may also be encoded driven by the schema of their type, see {@link #writeItem(DataOutput, GenericStructure, GenericItem)}. Values are written in
+ * attribute order without names, values matching their attribute type are written without type tag.
+ * </p>
+ *
+ * @author Christian Groth
+ */
+public final class BinaryCodec {
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte LONG = 2;
+    private static final byte INTEGER = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte FLOAT = 5;
+    private static final byte BOOLEAN = 6;
+    private static final byte DATE = 7;
+    private static final byte TIME = 8;
+    private static final byte DATETIME = 9;
+    private static final byte ITEM = 10;
+    private static final byte LIST = 11;
+    private static final byte UNIT_VALUE = 12;
+    private static final byte GENERIC_VALUE = 13;
+
+    private static final byte ABSENT = 0;
+    private static final byte PRESENT_NULL = 1;
+    private static final byte TYPED = 2;
+    private static final byte TAGGED = 3;
+
+    private BinaryCodec() {
+    }
+
+    public static void writeUnits(DataOutput out, GenericUnits units) throws IOException {
+        writeLong(out, units.getId());
+        writeString(out, units.getName());
+        writeString(out, units.getDescription());
+        Set<GenericUnit> unitSet = units.getUnits();
+        out.writeInt(unitSet != null ? unitSet.size() : -1);
+        if (unitSet != null) {
+            for (GenericUnit unit : unitSet) {
+                writeLong(out, unit.getId());
+                writeString(out, unit.getName());
+                writeString(out, unit.getSymbol());
+                out.writeDouble(unit.getFactor());
+            }
+        }
+    }
+
+    public static GenericUnits readUnits(DataInput in) throws IOException {
+        GenericUnits units = new GenericUnits(readLong(in), readString(in), readString(in));
+        int count = in.readInt();
+        if (count < 0) {
+            units.setUnits(null);
+        }
+        for (int i = 0; i < count; i++) {
+            units.getUnits().add(new GenericUnit(readLong(in), readString(in), readString(in), in.readDouble()));
+        }
+        return units;
+    }
+
+    public static void writeType(DataOutput out, GenericType type) throws IOException {
+        writeLong(out, type.getId());
+        writeString(out, type.getName());
+        writeString(out, type.getGroup());
+        writeLong(out, type.getOwner());
+        writeVisibility(out, type.getVisibility());
+        writeLong(out, type.getPageSize());
+        writeAttributes(out, type.getAttributes());
+        writeProperties(out, type.getCustomProperties());
+    }
+
+    public static GenericType readType(DataInput in) throws IOException {
+        Long id = readLong(in);
+        String name = readString(in);
+        String group = readString(in);
+        Long owner = readLong(in);
+        Visibility visibility = readVisibility(in);
+        GenericType type = new GenericType(id, name, group, null, owner, visibility, readLong(in));
+        type.setAttributes(readAttributes(in));
+        type.setCustomProperties(readProperties(in));
+        return type;
+    }
+
+    private static void writeAttributes(DataOutput out, List<GenericAttribute> attributes) throws IOException {
+        out.writeInt(attributes != null ? attributes.size() : -1);
+        if (attributes == null) {
+            return;
+        }
+        for (GenericAttribute attribute : attributes) {
+            writeLong(out, attribute.getId());
+            writeString(out, attribute.getName());
+            writeAttributeType(out, attribute.getType());
+            writeAttributeType(out, attribute.getValueType());
+            out.writeBoolean(attribute.isUnique());
+            out.writeBoolean(attribute.isMandatory());
+            out.writeBoolean(attribute.getStructure() != null);
+            if (attribute.getStructure() != null) {
+                writeAttributes(out, attribute.getStructure().getAttributes());
+            }
+            writeValue(out, attribute.getMin());
+            writeValue(out, attribute.getMax());
+            writeValue(out, attribute.getStep());
+            writeString(out, attribute.getPattern());
+            writeValue(out, attribute.getDefaultValue());
+            writeString(out, attribute.getDefaultValueCallback());
+            Set<Long> dependencies = attribute.getValueProposalDependencies();
+            out.writeInt(dependencies != null ? dependencies.size() : -1);
+            if (dependencies != null) {
+                for (Long dependency : dependencies) {
+                    writeLong(out, dependency);
+                }
+            }
+            writeLong(out, attribute.getUnitsId());
+            Set<String> enumValues = attribute.getEnumValues();
+            out.writeInt(enumValues != null ? enumValues.size() : -1);
+            if (enumValues != null) {
+                for (String enumValue : enumValues) {
+                    writeString(out, enumValue);
+                }
+            }
+            writeProperties(out, attribute.getCustomProperties());
+        }
+    }
+
+    private static List<GenericAttribute> readAttributes(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            return null;
+        }
+        List<GenericAttribute> attributes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Long id = readLong(in);
+            String name = readString(in);
+            GenericAttributeType type = readAttributeType(in);
+            GenericAttributeType valueType = readAttributeType(in);
+            boolean unique = in.readBoolean();
+            boolean mandatory = in.readBoolean();
+            GenericStructure structure = in.readBoolean() ? new GenericStructure(readAttributes(in)) : null;
+            Double min = (Double) readValue(in);
+            Double max = (Double) readValue(in);
+            Double step = (Double) readValue(in);
+            String pattern = readString(in);
+            GenericValue<?> defaultValue = (GenericValue<?>) readValue(in);
+            String defaultValueCallback = readString(in);
+            Set<Long> dependencies = null;
+            int dependencyCount = in.readInt();
+            if (dependencyCount >= 0) {
+                dependencies = new HashSet<>();
+                for (int d = 0; d < dependencyCount; d++) {
+                    dependencies.add(readLong(in));
+                }
+            }
+            Long unitsId = readLong(in);
+            Set<String> enumValues = null;
+            int enumCount = in.readInt();
+            if (enumCount >= 0) {
+                enumValues = new HashSet<>();
+                for (int e = 0; e < enumCount; e++) {
+                    enumValues.add(readString(in));
+                }
+            }
+            GenericAttribute attribute = new GenericAttribute(id, name, type, valueType, unique, mandatory, structure, min, max, step, pattern, defaultValue,
+                    defaultValueCallback, dependencies, unitsId, enumValues);
+            attribute.setCustomProperties(readProperties(in));
+            attributes.add(attribute);
+        }
+        return attributes;
+    }
+
+    private static void writeAttributeType(DataOutput out, GenericAttributeType type) throws IOException {
+        if (type != null && !(type instanceof DefaultGenericAttributeType)) {
+            throw new IOException("unsupported attribute type " + type);
+        }
+        writeString(out, type != null ? ((DefaultGenericAttributeType) type).name() : null);
+    }
+
+    private static GenericAttributeType readAttributeType(DataInput in) throws IOException {
+        String name = readString(in);
+        try {
+            return name != null ? DefaultGenericAttributeType.valueOf(name) : null;
+        } catch (IllegalArgumentException e) {
+            throw new IOException("unknown attribute type " + name, e);
+        }
+    }
+
+    private static void writeProperties(DataOutput out, Map<String, GenericValue<?>> properties) throws IOException {
+        out.writeInt(properties != null ? properties.size() : -1);
+        if (properties != null) {
+            for (Map.Entry<String, GenericValue<?>> property : properties.entrySet()) {
+                writeString(out, property.getKey());
+                writeValue(out, property.getValue());
+            }
+        }
+    }
+
+    private static Map<String, GenericValue<?>> readProperties(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            return null;
+        }
+        Map<String, GenericValue<?>> properties = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            properties.put(readString(in), (GenericValue<?>) readValue(in));
+        }
+        return properties;
+    }
+
+    public static void writeItem(DataOutput out, GenericItem item) throws IOException {
+        writeLong(out, item.getId());
+        writeLong(out, item.getTypeId());
+        writeLong(out, item.getOwner());
+        writeVisibility(out, item.getVisibility());
+        Map<String, Object> values = item.getValues();
+        out.writeInt(values != null ? values.size() : -1);
+        if (values != null) {
+            for (Map.Entry<String, Object> value : values.entrySet()) {
+                writeString(out, value.getKey());
+                writeValue(out, value.getValue());
+            }
+        }
+    }
+
+    public static GenericItem readItem(DataInput in) throws IOException {
+        GenericItem item = new GenericItem(readLong(in), readLong(in), null, readLong(in), readVisibility(in));
+        int count = in.readInt();
+        if (count < 0) {
+            item.setValues(null);
+        }
+        for (int i = 0; i < count; i++) {
+            item.getValues().put(readString(in), readValue(in));
+        }
+        return item;
+    }
+
+    /**
+     * Writes the given item driven by the given schema. For each attribute of the structure a marker is written, followed by the value. Values matching the
+     * attribute type exactly are written without type tag, nested structures recursively, all other values using {@link #writeValue(DataOutput, Object)}.
+     * Values not defined by the schema are appended with their names.
+     *
+     * @param out
+     *            output
+     * @param structure
+     *            type or nested structure of the item
+     * @param item
+     *            item
+     * @throws IOException
+     *             if writing fails or a value is not supported
+     */
+    public static void writeItem(DataOutput out, GenericStructure structure, GenericItem item) throws IOException {
+        writeLong(out, item.getId());
+        writeLong(out, item.getTypeId());
+        writeLong(out, item.getOwner());
+        writeVisibility(out, item.getVisibility());
+        Map<String, Object> values = item.getValues();
+        out.writeBoolean(values != null);
+        if (values == null) {
+            return;
+        }
+
+        // schema values
+        List<GenericAttribute> attributes = structure.getAttributes() != null ? structure.getAttributes() : new ArrayList<>();
+        int schemaValues = 0;
+        for (GenericAttribute attribute : attributes) {
+            if (!values.containsKey(attribute.getName())) {
+                out.writeByte(ABSENT);
+                continue;
+            }
+            schemaValues++;
+            Object value = values.get(attribute.getName());
+            if (value == null) {
+                out.writeByte(PRESENT_NULL);
+            } else if (isTyped(attribute, value)) {
+                out.writeByte(TYPED);
+                writeTyped(out, attribute, value);
+            } else {
+                out.writeByte(TAGGED);
+                writeValue(out, value);
+            }
+        }
+
+        // other values
+        out.writeInt(values.size() - schemaValues);
+        if (values.size() > schemaValues) {
+            Set<String> names = new HashSet<>();
+            attributes.forEach(a -> names.add(a.getName()));
+            for (Map.Entry<String, Object> value : values.entrySet()) {
+                if (!names.contains(value.getKey())) {
+                    writeString(out, value.getKey());
+                    writeValue(out, value.getValue());
+                }
+            }
+        }
+    }
+
+    private static boolean isTyped(GenericAttribute attribute, Object value) {
+        if (!(attribute.getType() instanceof DefaultGenericAttributeType)) {
+            return false;
+        }
+        switch ((DefaultGenericAttributeType) attribute.getType()) {
+            case STRING:
+            case ENUM:
+                return value instanceof String;
+            case LONG:
+                return value instanceof Long;
+            case DOUBLE:
+                return value instanceof Double;
+            case BOOLEAN:
+                return value instanceof Boolean;
+            case DATE:
+                return value instanceof LocalDate;
+            case TIME:
+                return value instanceof LocalTime;
+            case DATETIME:
+                return value instanceof LocalDateTime;
+            case STRUCTURE:
+                return value instanceof GenericItem && attribute.getStructure() != null;
+            default:
+                return false;
+        }
+    }
+
+    private static void writeTyped(DataOutput out, GenericAttribute attribute, Object value) throws IOException {
+        switch ((DefaultGenericAttributeType) attribute.getType()) {
+            case LONG:
+                out.writeLong((Long) value);
+                break;
+            case DOUBLE:
+                out.writeDouble((Double) value);
+                break;
+            case BOOLEAN:
+                out.writeBoolean((Boolean) value);
+                break;
+            case DATE:
+                out.writeLong(((LocalDate) value).toEpochDay());
+                break;
+            case TIME:
+                out.writeLong(((LocalTime) value).toNanoOfDay());
+                break;
+            case DATETIME:
+                out.writeLong(((LocalDateTime) value).toLocalDate().toEpochDay());
+                out.writeLong(((LocalDateTime) value).toLocalTime().toNanoOfDay());
+                break;
+            case STRUCTURE:
+                writeItem(out, attribute.getStructure(), (GenericItem) value);
+                break;
+            default:
+                writeString(out, (String) value);
+        }
+    }
+
+    /**
+     * Reads an item written by {@link #writeItem(DataOutput, GenericStructure, GenericItem)} using the same schema.
+     *
+     * @param in
+     *            input
+     * @param structure
+     *            type or nested structure of the item
+     * @return item
+     * @throws IOException
+     *             if reading fails or the data is invalid
+     */
+    public static GenericItem readItem(DataInput in, GenericStructure structure) throws IOException {
+        GenericItem item = new GenericItem(readLong(in), readLong(in), null, readLong(in), readVisibility(in));
+        if (!in.readBoolean()) {
+            item.setValues(null);
+            return item;
+        }
+
+        // schema values
+        Map<String, Object> values = item.getValues();
+        if (structure.getAttributes() != null) {
+            for (GenericAttribute attribute : structure.getAttributes()) {
+                byte marker = in.readByte();
+                switch (marker) {
+                    case ABSENT:
+                        break;
+                    case PRESENT_NULL:
+                        values.put(attribute.getName(), null);
+                        break;
+                    case TYPED:
+                        values.put(attribute.getName(), readTyped(in, attribute));
+                        break;
+                    case TAGGED:
+                        values.put(attribute.getName(), readValue(in));
+                        break;
+                    default:
+                        throw new IOException("unknown value marker " + marker);
+                }
+            }
+        }
+
+        // other values
+        int others = in.readInt();
+        for (int i = 0; i < others; i++) {
+            values.put(readString(in), readValue(in));
+        }
+        return item;
+    }
+
+    private static Object readTyped(DataInput in, GenericAttribute attribute) throws IOException {
+        if (!(attribute.getType() instanceof DefaultGenericAttributeType)) {
+            throw new IOException("unsupported attribute type " + attribute.getType());
+        }
+        try {
+            switch ((DefaultGenericAttributeType) attribute.getType()) {
+                case LONG:
+                    return in.readLong();
+                case DOUBLE:
+                    return in.readDouble();
+                case BOOLEAN:
+                    return in.readBoolean();
+                case DATE:
+                    return LocalDate.ofEpochDay(in.readLong());
+                case TIME:
+                    return LocalTime.ofNanoOfDay(in.readLong());
+                case DATETIME:
+                    return LocalDateTime.of(LocalDate.ofEpochDay(in.readLong()), LocalTime.ofNanoOfDay(in.readLong()));
+                case STRUCTURE:
+                    return readItem(in, attribute.getStructure());
+                default:
+                    return readString(in);
+            }
+        } catch (DateTimeException e) {
+            throw new IOException("invalid value for " + attribute.getName(), e);
+        }
+    }
+
+    /**
+     * Writes the given value with a leading type tag.
+     *
+     * @param out
+     *            output
+     * @param value
+     *            value, may be null
+     * @throws IOException
+     *             if writing fails or the value is not supported
+     */
+    public static void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof LocalDate) {
+            out.writeByte(DATE);
+            writeString(out, value.toString());
+        } else if (value instanceof LocalTime) {
+            out.writeByte(TIME);
+            writeString(out, value.toString());
+        } else if (value instanceof LocalDateTime) {
+            out.writeByte(DATETIME);
+            writeString(out, value.toString());
+        } else if (value instanceof GenericItem) {
+            out.writeByte(ITEM);
+            writeItem(out, (GenericItem) value);
+        } else if (value instanceof List) {
+            out.writeByte(LIST);
+            List<?> list = (List<?>) value;
+            out.writeInt(list.size());
+            for (Object element : list) {
+                writeValue(out, element);
+            }
+        } else if (value instanceof UnitValue) {
+            out.writeByte(UNIT_VALUE);
+            UnitValue unitValue = (UnitValue) value;
+            writeLong(out, unitValue.getUnitsId());
+            writeLong(out, unitValue.getUnitId());
+            writeValue(out, unitValue.getValue());
+        } else if (value instanceof GenericValue) {
+            out.writeByte(GENERIC_VALUE);
+            GenericValue<?> genericValue = (GenericValue<?>) value;
+            writeString(out, genericValue.getType() != null ? genericValue.getType().getName() : null);
+            writeValue(out, genericValue.getValue());
+        } else {
+            throw new IOException("unsupported value type " + value.getClass().getName());
+        }
+    }
+
+    /**
+     * Reads a value written by {@link #writeValue(DataOutput, Object)}.
+     *
+     * @param in
+     *            input
+     * @return value, may be null
+     * @throws IOException
+     *             if reading fails or the data is invalid
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public static Object readValue(DataInput in) throws IOException {
+        byte tag = in.readByte();
+        try {
+            switch (tag) {
+                case NULL:
+                    return null;
+                case STRING:
+                    return readString(in);
+                case LONG:
+                    return in.readLong();
+                case INTEGER:
+                    return in.readInt();
+                case DOUBLE:
+                    return in.readDouble();
+                case FLOAT:
+                    return in.readFloat();
+                case BOOLEAN:
+                    return in.readBoolean();
+                case DATE:
+                    return LocalDate.parse(readString(in));
+                case TIME:
+                    return LocalTime.parse(readString(in));
+                case DATETIME:
+                    return LocalDateTime.parse(readString(in));
+                case ITEM:
+                    return readItem(in);
+                case LIST:
+                    int size = in.readInt();
+                    List<Object> list = new ArrayList<>(Math.max(size, 0));
+                    for (int i = 0; i < size; i++) {
+                        list.add(readValue(in));
+                    }
+                    return list;
+                case UNIT_VALUE:
+                    return new UnitValue(readLong(in), readLong(in), (GenericValue<?>) readValue(in));
+                case GENERIC_VALUE:
+                    String className = readString(in);
+                    Class type = className != null ? Class.forName(className) : null;
+                    return new GenericValue(type, readValue(in));
+                default:
+                    throw new IOException("unknown value type " + tag);
+            }
+        } catch (DateTimeParseException | ClassNotFoundException | ClassCastException e) {
+            throw new IOException("invalid value of type " + tag, e);
+        }
+    }
+
+    private static void writeVisibility(DataOutput out, Visibility visibility) throws IOException {
+        out.writeByte(visibility != null ? visibility.ordinal() : -1);
+    }
+
+    private static Visibility readVisibility(DataInput in) throws IOException {
+        byte ordinal = in.readByte();
+        if (ordinal < 0) {
+            return null;
+        }
+        if (ordinal >= Visibility.values().length) {
+            throw new IOException("unknown visibility " + ordinal);
+        }
+        return Visibility.values()[ordinal];
+    }
+
+    private static void writeLong(DataOutput out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readLong(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,90 @@
+package de.chrgroth.generictypesystem.persistence.file.impl;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericType;
+
+/**
+ * Items of a single type within a {@link MappedSnapshot}. Item ids are sorted and kept as primitive array, items are decoded from the mapped file on access
+ * using the type as stored in the snapshot. Each access decodes a new item instance. The items are thread safe.
+ *
+ * @author Christian Groth
+ */
+public class MappedItems {
+
+    private final GenericType type;
+    private final ByteBuffer data;
+    private final long[] ids;
+    private final int[] offsets;
+
+    MappedItems(GenericType type, ByteBuffer data, long[] ids, int[] offsets) {
+        this.type = type;
+        this.data = data;
+        this.ids = ids;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Returns the type of the items as stored in the snapshot.
+     *
+     * @return type
+     */
+    public GenericType getType() {
+        return type;
+    }
+
+    /**
+     * Returns the number of items.
+     *
+     * @return number of items
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Returns the id of the item at given index.
+     *
+     * @param index
+     *            item index
+     * @return item id
+     */
+    public long id(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Returns the index of the item with given id.
+     *
+     * @param id
+     *            item id
+     * @return item index, or a negative value if the item is unknown
+     */
+    public int indexOf(long id) {
+        return Arrays.binarySearch(ids, id);
+    }
+
+    /**
+     * Decodes the item at given index.
+     *
+     * @param index
+     *            item index
+     * @return new item instance
+     * @throws UncheckedIOException
+     *             if the item can't be decoded
+     */
+    public GenericItem get(int index) {
+        ByteBuffer buffer = data.duplicate();
+        buffer.position(offsets[index]);
+        try {
+            return BinaryCodec.readItem(new DataInputStream(new ByteBufferInputStream(buffer)), type);
+        } catch (IOException e) {
+            throw new UncheckedIOException("unable to decode item " + ids[index] + " of type " + type.getId(), e);
+        }
+    }
+}
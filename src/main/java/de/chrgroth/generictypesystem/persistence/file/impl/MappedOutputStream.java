@@ -0,0 +1,75 @@
+package de.chrgroth.generictypesystem.persistence.file.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Writes sequentially to a file through memory mapped windows of fixed size. The file grows window by window, callers have to truncate it to
+ * {@link #position()} after closing the stream.
+ *
+ * @author Christian Groth
+ */
+final class MappedOutputStream extends OutputStream {
+
+    private final FileChannel channel;
+    private final int window;
+    private MappedByteBuffer buffer;
+    private long base;
+
+    MappedOutputStream(FileChannel channel, int window) {
+        this.channel = channel;
+        this.window = window;
+    }
+
+    /**
+     * Returns the file position of the next byte written.
+     *
+     * @return file position
+     */
+    long position() {
+        return base + (buffer != null ? buffer.position() : 0);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureRemaining();
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            ensureRemaining();
+            int chunk = Math.min(remaining, buffer.remaining());
+            buffer.put(b, offset, chunk);
+            offset += chunk;
+            remaining -= chunk;
+        }
+    }
+
+    private void ensureRemaining() throws IOException {
+        if (buffer != null && buffer.hasRemaining()) {
+            return;
+        }
+
+        // continue with next window
+        long next = position();
+        if (buffer != null) {
+            buffer.force();
+        }
+        buffer = channel.map(MapMode.READ_WRITE, next, window);
+        base = next;
+    }
+
+    @Override
+    public void flush() {
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+}
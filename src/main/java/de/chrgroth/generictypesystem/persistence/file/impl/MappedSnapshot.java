@@ -0,0 +1,252 @@
+package de.chrgroth.generictypesystem.persistence.file.impl;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericType;
+import de.chrgroth.generictypesystem.model.GenericUnits;
+
+/**
+ * Binary snapshot of units, types and items, written and read through memory mapped files.
+ * <p>
+ * Items are stored per type, encoded driven by the schema of the type, see
+ * {@link BinaryCodec#writeItem(java.io.DataOutput, de.chrgroth.generictypesystem.model.GenericStructure, GenericItem)}. Items are followed by a
+ * metadata section containing id sequences, units, types and a table of item ids and offsets per type. Reading a snapshot only decodes the metadata, tables
+ * are copied in bulk, items are decoded on access by {@link MappedItems}. So reading is bounded by I/O rather than object construction.
+ * </p>
+ *
+ * @author Christian Groth
+ */
+public final class MappedSnapshot {
+
+    private static final int MAGIC = 0x47545353;
+    private static final byte VERSION = 2;
+    private static final int HEADER_BYTES = 13;
+    private static final int WINDOW_BYTES = 16 * 1024 * 1024;
+
+    private final Map<String, Long> ids;
+    private final List<GenericUnits> units;
+    private final List<MappedItems> items;
+
+    private MappedSnapshot(Map<String, Long> ids, List<GenericUnits> units, List<MappedItems> items) {
+        this.ids = ids;
+        this.units = units;
+        this.items = items;
+    }
+
+    /**
+     * Writes a snapshot to the given file, an existing file is replaced. Items are stored ordered by id, all items must have an id.
+     *
+     * @param file
+     *            snapshot file
+     * @param ids
+     *            named id values to be stored, like used ids per sequence
+     * @param units
+     *            units
+     * @param items
+     *            types and their items
+     * @throws IOException
+     *             if writing fails, an item has no id or a value is not supported
+     */
+    public static void write(Path file, Map<String, Long> ids, Collection<GenericUnits> units, Map<GenericType, ? extends Collection<GenericItem>> items)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedOutputStream mapped = new MappedOutputStream(channel, WINDOW_BYTES);
+            DataOutputStream out = new DataOutputStream(mapped);
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(0);
+
+            // item data per type
+            List<TypeSection> sections = new ArrayList<>(items.size());
+            for (Map.Entry<GenericType, ? extends Collection<GenericItem>> type : items.entrySet()) {
+                sections.add(writeItems(mapped, out, type.getKey(), type.getValue()));
+            }
+
+            // metadata
+            long metadata = mapped.position();
+            out.writeInt(ids.size());
+            for (Map.Entry<String, Long> id : ids.entrySet()) {
+                BinaryCodec.writeString(out, id.getKey());
+                out.writeLong(id.getValue());
+            }
+            out.writeInt(units.size());
+            for (GenericUnits u : units) {
+                BinaryCodec.writeUnits(out, u);
+            }
+            out.writeInt(sections.size());
+            for (TypeSection section : sections) {
+                BinaryCodec.writeType(out, section.type);
+                out.writeInt(section.ids.length);
+                out.writeLong(section.offset);
+                out.writeLong(section.length);
+                for (long id : section.ids) {
+                    out.writeLong(id);
+                }
+                for (int offset : section.offsets) {
+                    out.writeInt(offset);
+                }
+            }
+            out.flush();
+
+            // cut off remaining window and publish metadata position
+            channel.truncate(mapped.position());
+            MappedByteBuffer position = channel.map(MapMode.READ_WRITE, HEADER_BYTES - Long.BYTES, Long.BYTES);
+            position.putLong(metadata);
+            position.force();
+            channel.force(true);
+        }
+    }
+
+    private static TypeSection writeItems(MappedOutputStream mapped, DataOutputStream out, GenericType type, Collection<GenericItem> typeItems)
+            throws IOException {
+        List<GenericItem> sorted = new ArrayList<>(typeItems);
+        for (GenericItem item : sorted) {
+            if (item.getId() == null) {
+                throw new IOException("unable to write item without id of type " + type.getId());
+            }
+        }
+        Collections.sort(sorted, Comparator.comparing(GenericItem::getId));
+
+        // encode items, remembering offsets relative to section start
+        TypeSection section = new TypeSection(type, sorted.size(), mapped.position());
+        for (int i = 0; i < sorted.size(); i++) {
+            long offset = mapped.position() - section.offset;
+            if (offset > Integer.MAX_VALUE) {
+                throw new IOException("items of type " + type.getId() + " exceed maximum snapshot section size");
+            }
+            section.ids[i] = sorted.get(i).getId();
+            section.offsets[i] = (int) offset;
+            BinaryCodec.writeItem(out, type, sorted.get(i));
+        }
+        section.length = mapped.position() - section.offset;
+        if (section.length > Integer.MAX_VALUE) {
+            throw new IOException("items of type " + type.getId() + " exceed maximum snapshot section size");
+        }
+        return section;
+    }
+
+    /**
+     * Reads the given snapshot. Units, types and item tables are read immediately, items are decoded on access. The snapshot stays valid if the file is
+     * deleted afterwards.
+     *
+     * @param file
+     *            snapshot file
+     * @return snapshot
+     * @throws IOException
+     *             if reading fails or the file is no valid snapshot
+     */
+    public static MappedSnapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException("invalid snapshot " + file);
+            }
+            ByteBuffer header = channel.map(MapMode.READ_ONLY, 0, HEADER_BYTES);
+            int magic = header.getInt();
+            byte version = header.get();
+            long metadata = header.getLong();
+            if (magic != MAGIC || version != VERSION || metadata < HEADER_BYTES || metadata > size || size - metadata > Integer.MAX_VALUE) {
+                throw new IOException("invalid snapshot " + file);
+            }
+
+            // metadata, sharing buffer position with the data input
+            ByteBuffer buffer = channel.map(MapMode.READ_ONLY, metadata, size - metadata);
+            DataInputStream in = new DataInputStream(new ByteBufferInputStream(buffer));
+            int idsCount = in.readInt();
+            Map<String, Long> ids = new HashMap<>();
+            for (int i = 0; i < idsCount; i++) {
+                ids.put(BinaryCodec.readString(in), in.readLong());
+            }
+            int unitsCount = in.readInt();
+            List<GenericUnits> units = new ArrayList<>(unitsCount);
+            for (int i = 0; i < unitsCount; i++) {
+                units.add(BinaryCodec.readUnits(in));
+            }
+
+            // types and item tables, items are kept mapped
+            int typesCount = in.readInt();
+            List<MappedItems> items = new ArrayList<>(typesCount);
+            for (int i = 0; i < typesCount; i++) {
+                GenericType type = BinaryCodec.readType(in);
+                int count = in.readInt();
+                long offset = in.readLong();
+                long length = in.readLong();
+                long tables = count * (long) (Long.BYTES + Integer.BYTES);
+                if (count < 0 || offset < HEADER_BYTES || length < 0 || offset + length > metadata || buffer.remaining() < tables) {
+                    throw new IOException("invalid snapshot " + file);
+                }
+                long[] itemIds = new long[count];
+                buffer.asLongBuffer().get(itemIds);
+                buffer.position(buffer.position() + count * Long.BYTES);
+                int[] offsets = new int[count];
+                buffer.asIntBuffer().get(offsets);
+                buffer.position(buffer.position() + count * Integer.BYTES);
+                items.add(new MappedItems(type, channel.map(MapMode.READ_ONLY, offset, length), itemIds, offsets));
+            }
+            return new MappedSnapshot(ids, units, items);
+        }
+    }
+
+    /**
+     * Returns the named id values stored.
+     *
+     * @return ids by name
+     */
+    public Map<String, Long> getIds() {
+        return Collections.unmodifiableMap(ids);
+    }
+
+    /**
+     * Returns all units stored.
+     *
+     * @return units
+     */
+    public List<GenericUnits> getUnits() {
+        return Collections.unmodifiableList(units);
+    }
+
+    /**
+     * Returns the items of all types stored, in order they were written.
+     *
+     * @return items per type
+     */
+    public List<MappedItems> getItems() {
+        return Collections.unmodifiableList(items);
+    }
+
+    /**
+     * Item data of a single type while writing.
+     */
+    private static final class TypeSection {
+
+        private final GenericType type;
+        private final long[] ids;
+        private final int[] offsets;
+        private final long offset;
+        private long length;
+
+        private TypeSection(GenericType type, int count, long offset) {
+            this.type = type;
+            ids = new long[count];
+            offsets = new int[count];
+            this.offset = offset;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package de.chrgroth.generictypesystem.persistence.file.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append only log of records. Each record is framed by its length and a CRC32 checksum, so torn writes at the end of the log are detected on replay.
+ * <p>
+ * Records are appended to an in memory buffer and get a sequence number. {@link #sync(long)} makes all records up to the given sequence durable. Only one
+ * thread writes and forces the file at a time, records appended by other threads meanwhile are written and forced together by the next syncing thread. So
+ * concurrent writers share a single fsync instead of paying one per record (group commit). The log is thread safe.
+ * </p>
+ * <p>
+ * If writing or forcing fails, the file is truncated back to the last durable record and all records not yet durable stay pending, so they are written again
+ * by the next sync. The log never contains gaps or torn records followed by valid ones.
+ * </p>
+ *
+ * @author Christian Groth
+ */
+public class WriteAheadLog implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final int HEADER_BYTES = 8;
+
+    /**
+     * Reads a single record.
+     */
+    @FunctionalInterface
+    public interface RecordReader {
+
+        /**
+         * Reads the given record.
+         *
+         * @param in
+         *            record data
+         * @throws IOException
+         *             if the record is invalid
+         */
+        void read(DataInput in) throws IOException;
+    }
+
+    /**
+     * Writes a single record.
+     */
+    @FunctionalInterface
+    public interface RecordWriter {
+
+        /**
+         * Writes the record.
+         *
+         * @param out
+         *            record data
+         * @throws IOException
+         *             if writing fails
+         */
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Opens the channel of a log file.
+     */
+    @FunctionalInterface
+    interface ChannelOpener {
+
+        /**
+         * Opens the given file for appending.
+         *
+         * @param file
+         *            log file
+         * @return channel
+         * @throws IOException
+         *             if opening fails
+         */
+        FileChannel open(Path file) throws IOException;
+    }
+
+    private final Object appendLock;
+    private final Object syncLock;
+    private final ChannelOpener opener;
+    private FileChannel channel;
+    private long durableSize;
+    private ByteArrayOutputStream pending;
+    private long size;
+    private long appended;
+    private volatile long durable;
+
+    public WriteAheadLog(Path file) throws IOException {
+        this(file, f -> FileChannel.open(f, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+    }
+
+    WriteAheadLog(Path file, ChannelOpener opener) throws IOException {
+        appendLock = new Object();
+        syncLock = new Object();
+        this.opener = opener;
+        pending = new ByteArrayOutputStream();
+        open(file);
+    }
+
+    private void open(Path file) throws IOException {
+        channel = opener.open(file);
+        durableSize = channel.size();
+        size = durableSize + pending.size();
+    }
+
+    /**
+     * Appends the given record. The record is not durable until {@link #sync(long)} was called with the returned sequence or a later one.
+     *
+     * @param record
+     *            record data
+     * @return sequence of the record
+     */
+    public long append(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        synchronized (appendLock) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(record.length);
+            header.putInt((int) crc.getValue());
+            pending.write(header.array(), 0, HEADER_BYTES);
+            pending.write(record, 0, record.length);
+            size += HEADER_BYTES + record.length;
+            return ++appended;
+        }
+    }
+
+    /**
+     * Makes all records up to the given sequence durable. Returns immediately if they already are, otherwise writes and forces all pending records.
+     *
+     * @param sequence
+     *            record sequence
+     * @throws IOException
+     *             if writing fails
+     */
+    public void sync(long sequence) throws IOException {
+        if (durable >= sequence) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (durable >= sequence) {
+                return;
+            }
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+
+        // copy all pending records, they are kept until durable
+        byte[] batch;
+        long upTo;
+        synchronized (appendLock) {
+            batch = pending.toByteArray();
+            upTo = appended;
+        }
+
+        // write and force at once, dropping partially written records on failure
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(batch);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            try {
+                channel.truncate(durableSize);
+            } catch (IOException truncateException) {
+                e.addSuppressed(truncateException);
+            }
+            throw e;
+        }
+
+        // release durable records
+        synchronized (appendLock) {
+            byte[] all = pending.toByteArray();
+            pending = new ByteArrayOutputStream();
+            pending.write(all, batch.length, all.length - batch.length);
+        }
+        durableSize += batch.length;
+        durable = upTo;
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("synced " + batch.length + " bytes up to record " + upTo);
+        }
+    }
+
+    /**
+     * Returns the sequence of the last appended record.
+     *
+     * @return last sequence
+     */
+    public long appended() {
+        synchronized (appendLock) {
+            return appended;
+        }
+    }
+
+    /**
+     * Returns the size of the current log file, including pending records.
+     *
+     * @return size in bytes
+     */
+    public long size() {
+        synchronized (appendLock) {
+            return size;
+        }
+    }
+
+    /**
+     * Makes all records durable and continues with the given file. Sequences continue as well. Callers must ensure no records are appended concurrently, if
+     * records have to be split exactly between both files.
+     *
+     * @param file
+     *            new log file
+     * @throws IOException
+     *             if writing fails
+     */
+    public void rotate(Path file) throws IOException {
+        synchronized (syncLock) {
+            flush();
+            channel.close();
+            synchronized (appendLock) {
+                open(file);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            if (channel.isOpen()) {
+                flush();
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Reads all valid records of the given log file. Reading stops at the first incomplete or corrupt record, which is expected at the end of the log after a
+     * crash.
+     *
+     * @param file
+     *            log file
+     * @param reader
+     *            record reader
+     * @return length of all valid records in bytes
+     * @throws IOException
+     *             if reading the file or a record fails
+     */
+    public static long read(Path file, RecordReader reader) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = in.size();
+            long position = 0;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (position + HEADER_BYTES <= fileSize) {
+
+                // header
+                header.clear();
+                readFully(in, header, position);
+                header.flip();
+                int length = header.getInt();
+                int checksum = header.getInt();
+                if (length < 0 || position + HEADER_BYTES + length > fileSize) {
+                    break;
+                }
+
+                // verify record
+                ByteBuffer record = ByteBuffer.allocate(length);
+                readFully(in, record, position + HEADER_BYTES);
+                CRC32 crc = new CRC32();
+                crc.update(record.array());
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                reader.read(new DataInputStream(new ByteArrayInputStream(record.array())));
+                position += HEADER_BYTES + length;
+            }
+            if (position < fileSize) {
+                LOG.warn("ignoring " + (fileSize - position) + " bytes of incomplete or corrupt records at the end of " + file);
+            }
+            return position;
+        }
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int read = in.read(buffer, offset);
+            if (read < 0) {
+                throw new IOException("unexpected end of file");
+            }
+            offset += read;
+        }
+    }
+
+    /**
+     * Creates a record using the given writer.
+     *
+     * @param writer
+     *            record writer
+     * @return record data
+     * @throws IOException
+     *             if writing fails
+     */
+    public static byte[] record(RecordWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(out);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -1,30 +1,71 @@
 package de.chrgroth.generictypesystem.persistence.impl;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.chrgroth.generictypesystem.context.GenericTypesystemContext;
+import de.chrgroth.generictypesystem.context.AccessRules;
+import de.chrgroth.generictypesystem.model.DefaultGenericAttributeType;
+import de.chrgroth.generictypesystem.model.GenericAttribute;
 import de.chrgroth.generictypesystem.model.GenericItem;
 import de.chrgroth.generictypesystem.model.GenericType;
+import de.chrgroth.generictypesystem.model.GenericTypeSchema;
 import de.chrgroth.generictypesystem.model.GenericUnits;
 import de.chrgroth.generictypesystem.persistence.PersistenceService;
+import de.chrgroth.generictypesystem.persistence.query.ItemFilterData;
 import de.chrgroth.generictypesystem.persistence.query.ItemPagingData;
 import de.chrgroth.generictypesystem.persistence.query.ItemQueryResult;
+import de.chrgroth.generictypesystem.persistence.query.ItemSortData;
 import de.chrgroth.generictypesystem.persistence.query.ItemsQueryData;
+import de.chrgroth.generictypesystem.persistence.query.impl.CascadingAttributeComparator;
 import de.chrgroth.generictypesystem.persistence.query.impl.InMemoryItemsQueryService;
+import de.chrgroth.generictypesystem.persistence.query.impl.SortedItems;
 import de.chrgroth.generictypesystem.persistence.values.impl.InMemoryValueProposalService;
+import de.chrgroth.generictypesystem.persistence.values.impl.ValueProposalIndex;
 
 /**
  * Abstract persistence service implementing common functionality. Uses {@link InMemoryItemsQueryService} and {@link InMemoryValueProposalService}. Enhance this
  * class and implement abstract protected methods to connect to your persistence layer.
+ * <p>
+ * Sorted indexes on attribute paths may be registered per type using {@link #addIndex(long, String)}. Indexes are maintained on every item save and remove
+ * operation, queries and streams with an indexed path as first sort walk the index instead of sorting all items. For types with unique key attributes a hash index from
+ * unique key to item id is maintained to enforce uniqueness and to lookup items by unique key.
+ * </p>
+ * <p>
+ * Value proposals are served from a {@link ValueProposalIndex} per type, built lazily on first request and maintained on every item save and remove
+ * operation. Items modified in place are reflected after they have been saved.
+ * </p>
+ * <p>
+ * For contexts using {@link AccessRules#VISIBILITY} the accessible items of a type are resolved from a {@link VisibilityIndex} per type, built lazily on
+ * first request and maintained on every item save and remove operation. Contexts using custom rules are checked per item.
+ * </p>
+ * <p>
+ * Accessible types are cached per current user for contexts not using custom type access rules. The cache is invalidated on every type save and remove
+ * operation, types modified in place are reflected after they have been saved.
+ * </p>
+ * <p>
+ * Values of string and enum attributes are trimmed and replaced by their canonical instance of a {@link StringDictionary} per type and attribute path when
+ * items are saved, so equal values are stored only once.
+ * </p>
  *
  * @author Christian Groth
  */
@@ -32,8 +73,17 @@ public abstract class AbstractPersistenceService implements PersistenceService {
 
     private static final Logger LOG = LoggerFactory.getLogger(AbstractPersistenceService.class);
 
+    private static final Object ALL_TYPES_KEY = new Object();
+    private static final Object NULL_USER_KEY = new Object();
+
     private final InMemoryItemsQueryService query;
     private final InMemoryValueProposalService values;
+    private final ConcurrentMap<Long, Map<String, SortedAttributeIndex>> indexes;
+    private final ConcurrentMap<Long, UniqueKeyIndex> uniqueKeyIndexes;
+    private final ConcurrentMap<Long, ValueProposalIndex> valueProposalIndexes;
+    private final ConcurrentMap<Long, VisibilityIndex> visibilityIndexes;
+    private final ConcurrentMap<Long, ConcurrentMap<String, StringDictionary>> dictionaries;
+    private volatile ConcurrentMap<Object, Set<GenericType>> accessibleTypes;
 
     public AbstractPersistenceService(InMemoryItemsQueryService query, InMemoryValueProposalService values) {
 
@@ -43,6 +93,70 @@ public abstract class AbstractPersistenceService implements PersistenceService {
         }
         this.query = query;
         this.values = values;
+
+        // indexes
+        indexes = new ConcurrentHashMap<>();
+        uniqueKeyIndexes = new ConcurrentHashMap<>();
+        valueProposalIndexes = new ConcurrentHashMap<>();
+        visibilityIndexes = new ConcurrentHashMap<>();
+        dictionaries = new ConcurrentHashMap<>();
+        accessibleTypes = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Registers a sorted index on the given attribute path for all items of the given type. Existing items are indexed immediately.
+     *
+     * @param typeId
+     *            type id
+     * @param path
+     *            attribute path
+     */
+    public void addIndex(long typeId, String path) {
+        if (StringUtils.isBlank(path)) {
+            throw new IllegalArgumentException("index path must be given!!");
+        }
+
+        // register first, so concurrently saved items are not missed, but block all access until populated
+        SortedAttributeIndex index = new SortedAttributeIndex(path);
+        index.beginBuild();
+        try {
+            indexes.computeIfAbsent(typeId, id -> new ConcurrentHashMap<>()).put(path, index);
+            Collection<GenericItem> typeItems = items(typeId);
+            if (typeItems != null) {
+                typeItems.forEach(index::update);
+            }
+        } finally {
+            index.endBuild();
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("added index " + typeId + "/" + path);
+        }
+    }
+
+    /**
+     * Removes the sorted index on the given attribute path for the given type.
+     *
+     * @param typeId
+     *            type id
+     * @param path
+     *            attribute path
+     * @return true if an index was removed, false otherwise
+     */
+    public boolean removeIndex(long typeId, String path) {
+        Map<String, SortedAttributeIndex> typeIndexes = indexes.get(typeId);
+        return typeIndexes != null && path != null && typeIndexes.remove(path) != null;
+    }
+
+    /**
+     * Returns all indexed attribute paths for the given type.
+     *
+     * @param typeId
+     *            type id
+     * @return indexed paths
+     */
+    public Set<String> indexes(long typeId) {
+        Map<String, SortedAttributeIndex> typeIndexes = indexes.get(typeId);
+        return typeIndexes != null ? new HashSet<>(typeIndexes.keySet()) : Collections.emptySet();
     }
 
     @Override
@@ -52,7 +166,7 @@ public abstract class AbstractPersistenceService implements PersistenceService {
 
     @Override
     public GenericUnits units(GenericTypesystemContext context, long unitsId) {
-        return units(context).stream().filter(u -> Objects.equals(u.getId(), unitsId)).findFirst().orElse(null);
+        return units(unitsId);
     }
 
     @Override
@@ -84,12 +198,28 @@ public abstract class AbstractPersistenceService implements PersistenceService {
 
     @Override
     public Set<GenericType> types(GenericTypesystemContext context) {
-        return types().stream().filter(context::isTypeAccessible).collect(Collectors.toSet());
+
+        // custom rules can't be cached
+        AccessRules rules = context.typeAccessRules();
+        if (rules == AccessRules.CUSTOM) {
+            return types().stream().filter(context::isTypeAccessible).collect(Collectors.toSet());
+        }
+
+        // cached per current user
+        Object key = rules == AccessRules.ALL ? ALL_TYPES_KEY : context.currentUser() != null ? context.currentUser() : NULL_USER_KEY;
+        return accessibleTypes.computeIfAbsent(key, k -> Collections.unmodifiableSet(types().stream().filter(context::isTypeAccessible).collect(Collectors.toSet())));
+    }
+
+    private void invalidateAccessibleTypes() {
+
+        // replace instead of clear, so concurrently computed sets are dropped as well
+        accessibleTypes = new ConcurrentHashMap<>();
     }
 
     @Override
     public GenericType type(GenericTypesystemContext context, long typeId) {
-        return types(context).stream().filter(t -> t.getId() != null && t.getId().longValue() == typeId).findFirst().orElse(null);
+        GenericType type = type(typeId);
+        return type != null && context.isTypeAccessible(type) ? type : null;
     }
 
     @Override
@@ -117,6 +247,12 @@ public abstract class AbstractPersistenceService implements PersistenceService {
                 LOG.debug("updated type " + type);
             }
         }
+
+        // attributes and visibility might have changed
+        invalidateAccessibleTypes();
+        type.invalidateSchema();
+        uniqueKeyIndexes.remove(type.getId());
+        valueProposalIndexes.remove(type.getId());
         return true;
     }
 
@@ -130,14 +266,60 @@ public abstract class AbstractPersistenceService implements PersistenceService {
             return Collections.emptySet();
         }
 
+        // return filtered items
+        return accessibleItems(context, typeId, type).collect(Collectors.toSet());
+    }
+
+    /**
+     * Streams all items of the given type accessible in given context. Items are resolved from the visibility index for {@link AccessRules#VISIBILITY},
+     * otherwise all items are checked lazily.
+     */
+    private Stream<GenericItem> accessibleItems(GenericTypesystemContext context, long typeId, GenericType type) {
+
         // be null safe
         Collection<GenericItem> typeItems = items(typeId);
         if (typeItems == null) {
-            return Collections.emptySet();
+            return Stream.empty();
         }
 
-        // return filtered types
-        return typeItems.stream().filter(i -> context.isItemAccessible(type, i)).collect(Collectors.toSet());
+        // no restrictions at all, or type owner
+        AccessRules rules = context.itemAccessRules();
+        boolean visibility = rules == AccessRules.VISIBILITY && type != null;
+        if (rules == AccessRules.ALL || visibility && Objects.equals(type.getOwner(), context.currentUser())) {
+            return typeItems.stream();
+        }
+
+        // resolve accessible ids only, items are checked again as they may have changed since they were indexed
+        if (visibility) {
+            List<Long> ids = visibilityIndex(typeId).accessible(context.currentUser());
+            return ids.stream().map(id -> item(typeId, id)).filter(i -> i != null && context.isItemAccessible(type, i));
+        }
+
+        // check each item
+        return typeItems.stream().filter(i -> context.isItemAccessible(type, i));
+    }
+
+    private VisibilityIndex visibilityIndex(long typeId) {
+
+        // register first, so concurrently saved items are not missed, but block all access until populated
+        VisibilityIndex index = visibilityIndexes.get(typeId);
+        if (index == null) {
+            VisibilityIndex created = new VisibilityIndex();
+            created.beginBuild();
+            try {
+                index = visibilityIndexes.putIfAbsent(typeId, created);
+                if (index == null) {
+                    index = created;
+                    Collection<GenericItem> typeItems = items(typeId);
+                    if (typeItems != null) {
+                        typeItems.forEach(created::update);
+                    }
+                }
+            } finally {
+                created.endBuild();
+            }
+        }
+        return index;
     }
 
     @Override
@@ -147,7 +329,7 @@ public abstract class AbstractPersistenceService implements PersistenceService {
         GenericType type = type(context, typeId);
         if (!context.isTypeAccessible(type)) {
             LOG.error("unable to query items for inaccessible type " + type + ": " + context.currentUser());
-            new ItemQueryResult(Collections.emptyList(), false);
+            return new ItemQueryResult(Collections.emptyList(), false);
         }
 
         // check for paging data
@@ -160,10 +342,120 @@ public abstract class AbstractPersistenceService implements PersistenceService {
             }
         }
 
+        // walk index if possible
+        SortedItems sortedItems = sortedItems(context, type, data != null ? data.getSorts() : null);
+        if (sortedItems != null) {
+            return query.query(sortedItems, data.getFilter(), data.getPaging());
+        }
+
         // delegate
         return query.query(items(context, typeId), data != null ? data.getFilter() : null, data != null ? data.getSorts() : null, data != null ? data.getPaging() : null);
     }
 
+    @Override
+    public Stream<GenericItem> stream(GenericTypesystemContext context, long typeId, ItemsQueryData data) {
+
+        // check type access
+        GenericType type = type(context, typeId);
+        if (!context.isTypeAccessible(type)) {
+            LOG.error("unable to stream items for inaccessible type " + type + ": " + context.currentUser());
+            return Stream.empty();
+        }
+        ItemFilterData filter = data != null ? data.getFilter() : null;
+        List<ItemSortData> sorts = data != null ? data.getSorts() : null;
+
+        // walk index lazily if possible, bucket by bucket
+        SortedAttributeIndex index = sortIndex(type, sorts);
+        if (index != null) {
+            final Comparator<GenericItem> bucketComparator = sorts.size() > 1 ? new CascadingAttributeComparator(sorts) : null;
+            Stream<List<Long>> buckets = StreamSupport.stream(Spliterators.spliteratorUnknownSize(index.buckets(sorts.get(0).isAscending()), Spliterator.ORDERED),
+                    false);
+            return query.stream(buckets.flatMap(bucket -> bucketItems(context, type, bucket, bucketComparator).stream()), filter, null);
+        }
+
+        // delegate
+        return query.stream(accessibleItems(context, typeId, type), filter, sorts);
+    }
+
+    /**
+     * Returns all accessible items in the order defined by given sorts, if an usable index exists for the first sort. Items sharing the same indexed value are
+     * sorted using the remaining sorts.
+     *
+     * @param context
+     *            current context
+     * @param type
+     *            type
+     * @param sorts
+     *            sorts
+     * @return sorted items or null if no index can be used
+     */
+    protected SortedItems sortedItems(GenericTypesystemContext context, GenericType type, List<ItemSortData> sorts) {
+        SortedAttributeIndex index = sortIndex(type, sorts);
+        if (index == null) {
+            return null;
+        }
+
+        // walk index buckets, seeking to the value of the position if any
+        final ItemSortData sort = sorts.get(0);
+        final Comparator<GenericItem> bucketComparator = sorts.size() > 1 ? new CascadingAttributeComparator(sorts) : null;
+        return new SortedItems() {
+
+            @Override
+            public void walk(Predicate<GenericItem> visitor) {
+                index.walk(sort.isAscending(), bucket -> visit(bucket, visitor));
+            }
+
+            @Override
+            public List<ItemSortData> sorts() {
+                return sorts;
+            }
+
+            @Override
+            public void walk(GenericItem position, Predicate<GenericItem> visitor) {
+                index.walkFrom(sort.isAscending(), position.get(sort.getPath()), bucket -> visit(bucket, visitor));
+            }
+
+            private boolean visit(Collection<Long> bucket, Predicate<GenericItem> visitor) {
+                for (GenericItem item : bucketItems(context, type, bucket, bucketComparator)) {
+                    if (!visitor.test(item)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        };
+    }
+
+    private SortedAttributeIndex sortIndex(GenericType type, List<ItemSortData> sorts) {
+        if (type == null || type.getId() == null || sorts == null || sorts.isEmpty() || sorts.get(0) == null) {
+            return null;
+        }
+
+        // lookup index
+        ItemSortData sort = sorts.get(0);
+        Map<String, SortedAttributeIndex> typeIndexes = indexes.get(type.getId());
+        SortedAttributeIndex index = typeIndexes != null && sort.getPath() != null ? typeIndexes.get(sort.getPath()) : null;
+        return index != null && index.isUsable() ? index : null;
+    }
+
+    private List<GenericItem> bucketItems(GenericTypesystemContext context, GenericType type, Collection<Long> bucket, Comparator<GenericItem> bucketComparator) {
+
+        // resolve accessible items
+        List<GenericItem> bucketItems = new ArrayList<>(bucket.size());
+        for (Long id : bucket) {
+            GenericItem item = item(type.getId(), id);
+            if (item != null && context.isItemAccessible(type, item)) {
+                bucketItems.add(item);
+            }
+        }
+
+        // sort by remaining sorts
+        if (bucketComparator != null && bucketItems.size() > 1) {
+            bucketItems.sort(bucketComparator);
+        }
+        return bucketItems;
+    }
+
     @Override
     public Map<String, List<?>> values(GenericTypesystemContext context, long typeId, GenericItem template) {
 
@@ -174,19 +466,107 @@ public abstract class AbstractPersistenceService implements PersistenceService {
             return Collections.emptyMap();
         }
 
-        // collect all items
-        Set<GenericItem> items = items(context, typeId);
-        if (items == null || items.isEmpty()) {
+        // ensure items
+        ValueProposalIndex index = valueProposalIndex(type);
+        if (index == null || index.isEmpty()) {
             return Collections.emptyMap();
         }
 
-        // delegate
-        return values.values(type, items, template);
+        // delegate, resolving accessible items only
+        return values.values(type, index, id -> {
+            GenericItem item = item(typeId, id);
+            return item != null && context.isItemAccessible(type, item) ? item : null;
+        }, template);
+    }
+
+    @Override
+    public List<String> values(GenericTypesystemContext context, long typeId, String path, GenericItem template, String prefix, int limit) {
+
+        // ensure type
+        GenericType type = type(context, typeId);
+        if (!context.isTypeAccessible(type)) {
+            LOG.error("unable to calculate item values for inaccessible type " + type + ": " + context.currentUser());
+            return Collections.emptyList();
+        }
+
+        // delegate, resolving accessible items only
+        return values.values(type, valueProposalIndex(type), id -> {
+            GenericItem item = item(typeId, id);
+            return item != null && context.isItemAccessible(type, item) ? item : null;
+        }, path, template, prefix, limit);
+    }
+
+    private ValueProposalIndex valueProposalIndex(GenericType type) {
+        if (type == null || type.getId() == null) {
+            return null;
+        }
+
+        // register first, so concurrently saved items are not missed, but block all access until populated
+        ValueProposalIndex index = valueProposalIndexes.get(type.getId());
+        if (index == null) {
+            ValueProposalIndex created = new ValueProposalIndex(type.schema());
+            created.beginBuild();
+            try {
+                index = valueProposalIndexes.putIfAbsent(type.getId(), created);
+                if (index == null) {
+                    index = created;
+                    Collection<GenericItem> typeItems = items(type.getId());
+                    if (typeItems != null) {
+                        typeItems.forEach(created::update);
+                    }
+                }
+            } finally {
+                created.endBuild();
+            }
+        }
+        return index;
     }
 
     @Override
     public GenericItem item(GenericTypesystemContext context, long typeId, long id) {
-        return items(context, typeId).stream().filter(i -> i.getId() != null && i.getId().longValue() == id).findFirst().orElse(null);
+
+        // check type access
+        GenericType type = type(context, typeId);
+        if (!context.isTypeAccessible(type)) {
+            return null;
+        }
+
+        // direct lookup
+        GenericItem item = item(typeId, id);
+        return item != null && context.isItemAccessible(type, item) ? item : null;
+    }
+
+    @Override
+    public GenericItem findByUniqueKey(GenericTypesystemContext context, long typeId, Map<String, Object> uniqueKey) {
+
+        // check type access
+        GenericType type = type(context, typeId);
+        UniqueKeyIndex index = uniqueKeyIndex(type);
+        if (index == null || uniqueKey == null) {
+            return null;
+        }
+
+        // lookup
+        Long id = index.find(uniqueKey);
+        GenericItem item = id != null ? item(typeId, id) : null;
+        return item != null && context.isItemAccessible(type, item) ? item : null;
+    }
+
+    private UniqueKeyIndex uniqueKeyIndex(GenericType type) {
+        if (type == null || type.getId() == null || !type.schema().hasUniqueKey()) {
+            return null;
+        }
+
+        // build lazily
+        return uniqueKeyIndexes.computeIfAbsent(type.getId(), typeId -> {
+            UniqueKeyIndex index = new UniqueKeyIndex();
+            Collection<GenericItem> typeItems = items(typeId);
+            if (typeItems != null) {
+                GenericTypeSchema schema = type.schema();
+                typeItems.forEach(i -> index.update(i.getId(), schema.computeUniqueKey(i)));
+            }
+            return index;
+        });
     }
 
     @Override
@@ -194,40 +574,181 @@ public abstract class AbstractPersistenceService implements PersistenceService {
         if (item == null) {
             return false;
         }
+        return items(context, typeId, Collections.singletonList(item)).get(0);
+    }
+
+    @Override
+    public List<Boolean> items(GenericTypesystemContext context, long typeId, List<GenericItem> items) {
+        List<Boolean> results = new ArrayList<>(Collections.nCopies(items.size(), Boolean.FALSE));
 
         // ensure type exists
         GenericType type = type(context, typeId);
         if (type == null) {
-            LOG.error("unable to save/update item for non existing type with id " + typeId);
-            return false;
+            LOG.error("unable to save/update items for non existing type with id " + typeId);
+            return results;
         }
 
         // check if type accessible
         if (!context.isTypeAccessible(type)) {
-            LOG.error("unable to save/update item for inaccessible type " + type + ": " + context.currentUser());
-            return false;
+            LOG.error("unable to save/update items for inaccessible type " + type + ": " + context.currentUser());
+            return results;
         }
 
-        // check if item accessible
-        if (!context.isItemAccessible(type, item)) {
-            LOG.error("unable to save/update inaccessible item " + item + ": " + context.currentUser());
-            return false;
+        // check if items accessible
+        List<Integer> candidates = new ArrayList<>(items.size());
+        int newItems = 0;
+        for (int i = 0; i < items.size(); i++) {
+            GenericItem item = items.get(i);
+            if (item == null) {
+                continue;
+            }
+            if (!context.isItemAccessible(type, item)) {
+                LOG.error("unable to save/update inaccessible item " + item + ": " + context.currentUser());
+                continue;
+            }
+            candidates.add(i);
+            if (item.getId() == null) {
+                newItems++;
+            }
+        }
+        if (candidates.isEmpty()) {
+            return results;
         }
 
-        // add or update
-        if (item.getId() == null) {
-            item.setId(nextItemId(typeId));
-            addItem(typeId, item);
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("added item " + item);
-            }
+        // add or update, atomically checking the unique keys if any
+        GenericTypeSchema schema = type.schema();
+        UniqueKeyIndex uniqueKeyIndex = uniqueKeyIndex(type);
+        if (uniqueKeyIndex == null) {
+            save(typeId, schema, items, candidates, newItems, null, results);
         } else {
-            updateItem(typeId, item);
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("updated item " + item);
+            synchronized (uniqueKeyIndex) {
+                save(typeId, schema, items, candidates, newItems, uniqueKeyIndex, results);
             }
         }
-        return true;
+
+        // update indexes
+        Map<String, SortedAttributeIndex> typeIndexes = indexes.get(typeId);
+        ValueProposalIndex valueProposalIndex = valueProposalIndexes.get(typeId);
+        VisibilityIndex visibilityIndex = visibilityIndexes.get(typeId);
+        for (int i : candidates) {
+            if (results.get(i)) {
+                if (typeIndexes != null) {
+                    typeIndexes.values().forEach(index -> index.update(items.get(i)));
+                }
+                if (valueProposalIndex != null) {
+                    valueProposalIndex.update(items.get(i));
+                }
+                if (visibilityIndex != null) {
+                    visibilityIndex.update(items.get(i));
+                }
+            }
+        }
+        return results;
+    }
+
+    private void canonicalize(long typeId, GenericTypeSchema schema, Map<String, Object> itemValues, String prefix) {
+        if (itemValues == null) {
+            return;
+        }
+        for (Map.Entry<String, Object> value : itemValues.entrySet()) {
+            if (value.getValue() instanceof GenericItem) {
+                canonicalize(typeId, schema, ((GenericItem) value.getValue()).getValues(), prefix + value.getKey() + ".");
+            } else if (value.getValue() instanceof String) {
+
+                // string and enum attributes only
+                String path = prefix + value.getKey();
+                GenericAttribute attribute = schema.attribute(path);
+                if (attribute != null && (attribute.getType() == DefaultGenericAttributeType.STRING || attribute.getType() == DefaultGenericAttributeType.ENUM)) {
+                    value.setValue(dictionary(typeId, path).canonical((String) value.getValue()));
+                }
+            }
+        }
+    }
+
+    private StringDictionary dictionary(long typeId, String path) {
+        return dictionaries.computeIfAbsent(typeId, id -> new ConcurrentHashMap<>()).computeIfAbsent(path, p -> new StringDictionary());
+    }
+
+    private void save(long typeId, GenericTypeSchema schema, List<GenericItem> items, List<Integer> candidates, int newItems, UniqueKeyIndex uniqueKeyIndex,
+            List<Boolean> results) {
+        long[] ids = null;
+        boolean idsReserved = false;
+        int nextId = 0;
+        List<GenericItem> added = new ArrayList<>(newItems);
+        GenericItem adding = null;
+        boolean stored = false;
+        try {
+            for (int i : candidates) {
+                GenericItem item = items.get(i);
+
+                // check unique key
+                Map<String, Object> uniqueKey = null;
+                if (uniqueKeyIndex != null) {
+                    uniqueKey = schema.computeUniqueKey(item);
+                    if (!uniqueKeyIndex.isAvailable(uniqueKey, item.getId())) {
+                        LOG.error("unable to save/update item " + item + " with already used unique key " + uniqueKey);
+                        continue;
+                    }
+                }
+
+                // store equal strings once, rejected items are left untouched
+                canonicalize(typeId, schema, item.getValues(), "");
+
+                // add or update, new items are added in bulk if ids can be reserved in a single block
+                if (item.getId() == null) {
+                    if (!idsReserved) {
+                        ids = nextItemIds(typeId, newItems);
+                        idsReserved = true;
+                    }
+                    if (ids != null) {
+                        item.setId(ids[nextId++]);
+                        added.add(item);
+                    } else {
+                        adding = item;
+                        item.setId(nextItemId(typeId));
+                        addItem(typeId, item);
+                        adding = null;
+                    }
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("added item " + item);
+                    }
+                } else {
+                    updateItem(typeId, item);
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("updated item " + item);
+                    }
+                }
+                if (uniqueKeyIndex != null) {
+                    uniqueKeyIndex.update(item.getId(), uniqueKey);
+                }
+                results.set(i, Boolean.TRUE);
+            }
+
+            // bulk add
+            if (!added.isEmpty()) {
+                addItems(typeId, added);
+            }
+            stored = true;
+        } finally {
+            if (!stored) {
+                release(added, adding, uniqueKeyIndex);
+            }
+        }
+    }
+
+    /**
+     * Releases unique keys and ids of new items not stored due to a failed write.
+     */
+    private static void release(List<GenericItem> added, GenericItem adding, UniqueKeyIndex uniqueKeyIndex) {
+        for (GenericItem item : added) {
+            if (uniqueKeyIndex != null) {
+                uniqueKeyIndex.remove(item.getId());
+            }
+            item.setId(null);
+        }
+        if (adding != null) {
+            adding.setId(null);
+        }
     }
 
     @Override
@@ -249,6 +770,22 @@ public abstract class AbstractPersistenceService implements PersistenceService {
 
         // just remove
         removeItem(typeId, id);
+        Map<String, SortedAttributeIndex> typeIndexes = indexes.get(typeId);
+        if (typeIndexes != null) {
+            typeIndexes.values().forEach(i -> i.remove(id));
+        }
+        UniqueKeyIndex uniqueKeyIndex = uniqueKeyIndexes.get(typeId);
+        if (uniqueKeyIndex != null) {
+            uniqueKeyIndex.remove(id);
+        }
+        ValueProposalIndex valueProposalIndex = valueProposalIndexes.get(typeId);
+        if (valueProposalIndex != null) {
+            valueProposalIndex.remove(id);
+        }
+        VisibilityIndex visibilityIndex = visibilityIndexes.get(typeId);
+        if (visibilityIndex != null) {
+            visibilityIndex.remove(id);
+        }
 
         // always success, no error handling
         if (LOG.isDebugEnabled()) {
@@ -269,7 +806,13 @@ public abstract class AbstractPersistenceService implements PersistenceService {
 
         // just remove
         removeType(typeId);
+        invalidateAccessibleTypes();
         removeAllItems(typeId);
+        indexes.remove(typeId);
+        uniqueKeyIndexes.remove(typeId);
+        valueProposalIndexes.remove(typeId);
+        visibilityIndexes.remove(typeId);
+        dictionaries.remove(typeId);
 
         // always success, no error handling
         if (LOG.isDebugEnabled()) {
@@ -293,6 +836,8 @@ public abstract class AbstractPersistenceService implements PersistenceService {
 
     protected abstract Set<GenericUnits> units();
 
+    protected abstract GenericUnits units(long id);
+
     protected abstract long nextUnitsId();
 
     protected abstract void addUnits(GenericUnits units);
@@ -303,6 +848,8 @@ public abstract class AbstractPersistenceService implements PersistenceService {
 
     protected abstract Collection<GenericType> types();
 
+    protected abstract GenericType type(long id);
+
     protected abstract long nextTypeId();
 
     protected abstract void addType(GenericType type);
@@ -313,10 +860,40 @@ public abstract class AbstractPersistenceService implements PersistenceService {
 
     protected abstract Collection<GenericItem> items(long typeId);
 
+    protected abstract GenericItem item(long typeId, long id);
+
     protected abstract long nextItemId(long typeId);
 
     protected abstract void addItem(long typeId, GenericItem item);
 
+    /**
+     * Reserves ids for the given number of new items, none of the ids may be returned by {@link #nextItemId(long)} or this method again. Returns null by
+     * default, so new items are added one after another, each with an id from {@link #nextItemId(long)} requested right before the item is added. Override to
+     * reserve ids at once and add new items in bulk by {@link #addItems(long, List)}.
+     *
+     * @param typeId
+     *            type id
+     * @param count
+     *            number of ids
+     * @return item ids or null if ids can't be reserved at once
+     */
+    protected long[] nextItemIds(long typeId, int count) {
+        return null;
+    }
+
+    /**
+     * Adds all given new items, ids are already reserved by {@link #nextItemIds(long, int)}. Calls {@link #addItem(long, GenericItem)} for each item by
+     * default, override to write all items at once.
+     *
+     * @param typeId
+     *            type id
+     * @param items
+     *            new items
+     */
+    protected void addItems(long typeId, List<GenericItem> items) {
+        items.forEach(i -> addItem(typeId, i));
+    }
+
     protected abstract void updateItem(long typeId, GenericItem item);
 
     protected abstract boolean removeItem(long typeId, long id);
@@ -0,0 +1,251 @@
+package de.chrgroth.generictypesystem.persistence.impl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import de.chrgroth.generictypesystem.context.GenericTypesystemContext;
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericType;
+import de.chrgroth.generictypesystem.model.GenericTypeSchema;
+import de.chrgroth.generictypesystem.model.GenericUnits;
+import de.chrgroth.generictypesystem.persistence.columnar.impl.ColumnarItems;
+import de.chrgroth.generictypesystem.persistence.query.ItemSortData;
+import de.chrgroth.generictypesystem.persistence.query.impl.CascadingAttributeComparator;
+import de.chrgroth.generictypesystem.persistence.query.impl.InMemoryItemsQueryService;
+import de.chrgroth.generictypesystem.persistence.query.impl.SortedItems;
+import de.chrgroth.generictypesystem.persistence.sequence.IdSequence;
+import de.chrgroth.generictypesystem.persistence.sequence.IdSequences;
+import de.chrgroth.generictypesystem.persistence.sequence.impl.AtomicIdSequence;
+import de.chrgroth.generictypesystem.persistence.values.impl.InMemoryValueProposalService;
+
+/**
+ * Variant of {@link InMemoryPersistenceService} storing items of each type in {@link ColumnarItems}, one typed column per attribute path instead of a value
+ * map per item. This reduces memory for many items considerably, at the cost of materializing new item instances on each access. Items modified in place are
+ * not changed until they are saved. Queries sorted by attributes without a sorted index are sorted on the columns. Like {@link InMemoryPersistenceService}
+ * this service is not thread safe.
+ *
+ * @author Christian Groth
+ */
+public class ColumnarPersistenceService extends AbstractPersistenceService {
+
+    private final IdSequences sequences;
+    private final Map<Long, GenericUnits> units;
+    private final Map<Long, GenericType> types;
+    private final Map<Long, ColumnarItems> items;
+
+    public ColumnarPersistenceService(InMemoryItemsQueryService query, InMemoryValueProposalService values) {
+        this(query, values, name -> new AtomicIdSequence());
+    }
+
+    /**
+     * Creates a new service using the given factory to create id sequences.
+     *
+     * @param query
+     *            query service
+     * @param values
+     *            value proposal service
+     * @param sequences
+     *            id sequence factory, gets the sequence name as defined by {@link IdSequences}
+     */
+    public ColumnarPersistenceService(InMemoryItemsQueryService query, InMemoryValueProposalService values, Function<String, IdSequence> sequences) {
+        super(query, values);
+        this.sequences = new IdSequences(sequences);
+
+        // storage
+        units = new HashMap<>();
+        types = new HashMap<>();
+        items = new HashMap<>();
+    }
+
+    @Override
+    protected Set<GenericUnits> units() {
+        return new HashSet<>(units.values());
+    }
+
+    @Override
+    protected GenericUnits units(long id) {
+        return units.get(id);
+    }
+
+    @Override
+    protected long nextUnitsId() {
+        return sequences.units().next();
+    }
+
+    @Override
+    protected void addUnits(GenericUnits units) {
+        updateUnits(units);
+    }
+
+    @Override
+    protected void updateUnits(GenericUnits units) {
+        sequences.units().update(units.getId());
+        this.units.put(units.getId(), units);
+    }
+
+    @Override
+    protected boolean removeUnits(long id) {
+        return units.remove(id) != null;
+    }
+
+    @Override
+    protected Collection<GenericType> types() {
+        return Collections.unmodifiableCollection(types.values());
+    }
+
+    @Override
+    protected GenericType type(long id) {
+        return types.get(id);
+    }
+
+    @Override
+    protected long nextTypeId() {
+        return sequences.types().next();
+    }
+
+    @Override
+    protected void addType(GenericType type) {
+        updateType(type);
+    }
+
+    @Override
+    protected void updateType(GenericType type) {
+        sequences.types().update(type.getId());
+        types.put(type.getId(), type);
+
+        // type new columns by current schema
+        ColumnarItems typeItems = items.get(type.getId());
+        if (typeItems != null) {
+            typeItems.setSchema(type.schema());
+        }
+    }
+
+    @Override
+    protected boolean removeType(long id) {
+        return types.remove(id) != null;
+    }
+
+    @Override
+    protected Collection<GenericItem> items(long typeId) {
+        final ColumnarItems typeItems = items.get(typeId);
+        return typeItems != null ? typeItems.items() : Collections.emptySet();
+    }
+
+    @Override
+    protected GenericItem item(long typeId, long id) {
+        final ColumnarItems typeItems = items.get(typeId);
+        return typeItems != null ? typeItems.get(id) : null;
+    }
+
+    @Override
+    protected long nextItemId(long typeId) {
+        return sequences.items(typeId).next();
+    }
+
+    @Override
+    protected void addItem(long typeId, GenericItem item) {
+        updateItem(typeId, item);
+    }
+
+    @Override
+    protected long[] nextItemIds(long typeId, int count) {
+        return sequences.items(typeId).next(count);
+    }
+
+    @Override
+    protected void addItems(long typeId, List<GenericItem> items) {
+        ColumnarItems typeItems = ensureItemsCollection(typeId);
+        items.forEach(typeItems::put);
+    }
+
+    @Override
+    protected void updateItem(long typeId, GenericItem item) {
+        sequences.items(typeId).update(item.getId());
+        ensureItemsCollection(typeId).put(item);
+    }
+
+    private ColumnarItems ensureItemsCollection(long typeId) {
+        ColumnarItems typeItems = items.get(typeId);
+        if (typeItems == null) {
+            GenericType type = types.get(typeId);
+            typeItems = new ColumnarItems(type != null ? type.schema() : new GenericTypeSchema(null));
+            items.put(typeId, typeItems);
+        }
+        return typeItems;
+    }
+
+    @Override
+    protected boolean removeItem(long typeId, long id) {
+        final ColumnarItems typeItems = items.get(typeId);
+        return typeItems != null && typeItems.remove(id);
+    }
+
+    @Override
+    protected void removeAllItems(long typeId) {
+        items.remove(typeId);
+        sequences.removeItems(typeId);
+    }
+
+    /**
+     * Sorts on the columns if no sorted index can be used. Only the sorted ids are kept, accessible items are materialized while walking.
+     */
+    @Override
+    protected SortedItems sortedItems(GenericTypesystemContext context, GenericType type, List<ItemSortData> sorts) {
+        SortedItems indexed = super.sortedItems(context, type, sorts);
+        if (indexed != null || type == null || type.getId() == null || sorts == null || sorts.isEmpty()) {
+            return indexed;
+        }
+        ColumnarItems typeItems = items.get(type.getId());
+        if (typeItems == null) {
+            return null;
+        }
+
+        // walk sorted ids, seeking to the position by binary search
+        final long[] ids = typeItems.sort(sorts);
+        return new SortedItems() {
+
+            @Override
+            public void walk(Predicate<GenericItem> visitor) {
+                walk(0, visitor);
+            }
+
+            @Override
+            public List<ItemSortData> sorts() {
+                return sorts;
+            }
+
+            @Override
+            public void walk(GenericItem position, Predicate<GenericItem> visitor) {
+                CascadingAttributeComparator comparator = new CascadingAttributeComparator(sorts);
+                int low = 0;
+                int high = ids.length;
+                while (low < high) {
+                    int middle = (low + high) >>> 1;
+                    GenericItem item = typeItems.get(ids[middle]);
+                    if (comparator.compare(item, position) < 0) {
+                        low = middle + 1;
+                    } else {
+                        high = middle;
+                    }
+                }
+                walk(low, visitor);
+            }
+
+            private void walk(int start, Predicate<GenericItem> visitor) {
+                for (int i = start; i < ids.length; i++) {
+                    GenericItem item = typeItems.get(ids[i]);
+                    if (item != null && context.isItemAccessible(type, item) && !visitor.test(item)) {
+                        return;
+                    }
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,243 @@
+package de.chrgroth.generictypesystem.persistence.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericType;
+import de.chrgroth.generictypesystem.model.GenericUnits;
+import de.chrgroth.generictypesystem.persistence.query.impl.InMemoryItemsQueryService;
+import de.chrgroth.generictypesystem.persistence.sequence.IdSequence;
+import de.chrgroth.generictypesystem.persistence.sequence.IdSequences;
+import de.chrgroth.generictypesystem.persistence.sequence.impl.AtomicIdSequence;
+import de.chrgroth.generictypesystem.persistence.values.impl.InMemoryValueProposalService;
+
+/**
+ * Thread safe variant of {@link InMemoryPersistenceService}. Units and types are stored in concurrent maps, items are striped per type, each stripe guarded by
+ * it's own read write lock. Reads on the same type run in parallel, writes only block readers and writers of the same type. Item collections are returned as
+ * snapshot copies, so queries and value proposals always work on a consistent state. Ids are generated using {@link IdSequences}, by default backed by atomic
+ * counters.
+ *
+ * @author Christian Groth
+ */
+public class ConcurrentInMemoryPersistenceService extends AbstractPersistenceService {
+
+    private final IdSequences sequences;
+    private final ConcurrentMap<Long, GenericUnits> units;
+    private final ConcurrentMap<Long, GenericType> types;
+    private final ConcurrentMap<Long, ItemsStripe> items;
+
+    public ConcurrentInMemoryPersistenceService(InMemoryItemsQueryService query, InMemoryValueProposalService values) {
+        this(query, values, name -> new AtomicIdSequence());
+    }
+
+    /**
+     * Creates a new service using the given factory to create id sequences.
+     *
+     * @param query
+     *            query service
+     * @param values
+     *            value proposal service
+     * @param sequences
+     *            id sequence factory, gets the sequence name as defined by {@link IdSequences}
+     */
+    public ConcurrentInMemoryPersistenceService(InMemoryItemsQueryService query, InMemoryValueProposalService values, Function<String, IdSequence> sequences) {
+        super(query, values);
+        this.sequences = new IdSequences(sequences);
+
+        // storage
+        units = new ConcurrentHashMap<>();
+        types = new ConcurrentHashMap<>();
+        items = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the id sequences used by this service.
+     *
+     * @return id sequences
+     */
+    protected IdSequences sequences() {
+        return sequences;
+    }
+
+    @Override
+    protected Set<GenericUnits> units() {
+        return new HashSet<>(units.values());
+    }
+
+    @Override
+    protected GenericUnits units(long id) {
+        return units.get(id);
+    }
+
+    @Override
+    protected long nextUnitsId() {
+        return sequences.units().next();
+    }
+
+    @Override
+    protected void addUnits(GenericUnits units) {
+        updateUnits(units);
+    }
+
+    @Override
+    protected void updateUnits(GenericUnits units) {
+        sequences.units().update(units.getId());
+        this.units.put(units.getId(), units);
+    }
+
+    @Override
+    protected boolean removeUnits(long id) {
+        return units.remove(id) != null;
+    }
+
+    @Override
+    protected Collection<GenericType> types() {
+        return Collections.unmodifiableCollection(types.values());
+    }
+
+    @Override
+    protected GenericType type(long id) {
+        return types.get(id);
+    }
+
+    @Override
+    protected long nextTypeId() {
+        return sequences.types().next();
+    }
+
+    @Override
+    protected void addType(GenericType type) {
+        updateType(type);
+    }
+
+    @Override
+    protected void updateType(GenericType type) {
+        sequences.types().update(type.getId());
+        types.put(type.getId(), type);
+    }
+
+    @Override
+    protected boolean removeType(long id) {
+        return types.remove(id) != null;
+    }
+
+    @Override
+    protected Collection<GenericItem> items(long typeId) {
+        final ItemsStripe stripe = items.get(typeId);
+        return stripe != null ? stripe.snapshot() : Collections.emptySet();
+    }
+
+    @Override
+    protected GenericItem item(long typeId, long id) {
+        final ItemsStripe stripe = items.get(typeId);
+        return stripe != null ? stripe.get(id) : null;
+    }
+
+    @Override
+    protected long nextItemId(long typeId) {
+        return sequences.items(typeId).next();
+    }
+
+    @Override
+    protected void addItem(long typeId, GenericItem item) {
+        updateItem(typeId, item);
+    }
+
+    @Override
+    protected long[] nextItemIds(long typeId, int count) {
+        return sequences.items(typeId).next(count);
+    }
+
+    @Override
+    protected void addItems(long typeId, List<GenericItem> items) {
+        ensureItemsStripe(typeId).putAll(items);
+    }
+
+    @Override
+    protected void updateItem(long typeId, GenericItem item) {
+        sequences.items(typeId).update(item.getId());
+        ensureItemsStripe(typeId).put(item);
+    }
+
+    private ItemsStripe ensureItemsStripe(long typeId) {
+        return items.computeIfAbsent(typeId, id -> new ItemsStripe());
+    }
+
+    @Override
+    protected boolean removeItem(long typeId, long id) {
+        final ItemsStripe stripe = items.get(typeId);
+        return stripe != null && stripe.remove(id);
+    }
+
+    @Override
+    protected void removeAllItems(long typeId) {
+        items.remove(typeId);
+        sequences.removeItems(typeId);
+    }
+
+    /**
+     * Holds all items of a single type together with the lock guarding them.
+     */
+    private static final class ItemsStripe {
+
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<Long, GenericItem> items = new HashMap<>();
+
+        private Collection<GenericItem> snapshot() {
+            lock.readLock().lock();
+            try {
+                return new ArrayList<>(items.values());
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private GenericItem get(long id) {
+            lock.readLock().lock();
+            try {
+                return items.get(id);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void put(GenericItem item) {
+            lock.writeLock().lock();
+            try {
+                items.put(item.getId(), item);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void putAll(List<GenericItem> newItems) {
+            lock.writeLock().lock();
+            try {
+                newItems.forEach(i -> items.put(i.getId(), i));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private boolean remove(long id) {
+            lock.writeLock().lock();
+            try {
+                return items.remove(id) != null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
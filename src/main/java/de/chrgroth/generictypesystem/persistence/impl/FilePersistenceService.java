@@ -0,0 +1,646 @@
+package de.chrgroth.generictypesystem.persistence.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.chrgroth.generictypesystem.context.GenericTypesystemContext;
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericType;
+import de.chrgroth.generictypesystem.model.GenericUnits;
+import de.chrgroth.generictypesystem.persistence.file.impl.BinaryCodec;
+import de.chrgroth.generictypesystem.persistence.file.impl.MappedItems;
+import de.chrgroth.generictypesystem.persistence.file.impl.MappedSnapshot;
+import de.chrgroth.generictypesystem.persistence.file.impl.WriteAheadLog;
+import de.chrgroth.generictypesystem.persistence.file.impl.WriteAheadLog.RecordWriter;
+import de.chrgroth.generictypesystem.persistence.query.impl.InMemoryItemsQueryService;
+import de.chrgroth.generictypesystem.persistence.sequence.IdSequence;
+import de.chrgroth.generictypesystem.persistence.sequence.IdSequences;
+import de.chrgroth.generictypesystem.persistence.sequence.impl.AtomicIdSequence;
+import de.chrgroth.generictypesystem.persistence.values.impl.InMemoryValueProposalService;
+
+/**
+ * Durable variant of {@link ConcurrentInMemoryPersistenceService}. All data is kept in memory, every units, type and item mutation is appended to a
+ * {@link WriteAheadLog} in the given directory before it is applied. Public mutating operations return after their records are durable, concurrent operations
+ * share a single fsync (group commit) and batch item saves are forced once. If syncing fails an {@link UncheckedIOException} is thrown, the mutation is already
+ * applied in memory and its records are written again by the next sync.
+ * <p>
+ * On startup the latest {@link MappedSnapshot} is mapped and all later logs are replayed, incomplete records at the end of a log are dropped. Items of the
+ * snapshot are decoded on first access, either individually or all items of a type if all of them are needed. As soon as the current log exceeds the
+ * compaction threshold, a snapshot of the whole state is written in the background and older logs and snapshots are deleted. Values of all items must be
+ * supported by {@link BinaryCodec}. Items modified in place without saving them may be included in snapshots.
+ * </p>
+ *
+ * @author Christian Groth
+ */
+public class FilePersistenceService extends ConcurrentInMemoryPersistenceService implements Closeable {
+
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 64L * 1024L * 1024L;
+
+    private static final Logger LOG = LoggerFactory.getLogger(FilePersistenceService.class);
+
+    private static final Pattern SNAPSHOT_FILE = Pattern.compile("snapshot-(\\d+)\\.bin");
+    private static final Pattern LOG_FILE = Pattern.compile("log-(\\d+)\\.wal");
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final byte UNITS = 1;
+    private static final byte REMOVE_UNITS = 2;
+    private static final byte TYPE = 3;
+    private static final byte REMOVE_TYPE = 4;
+    private static final byte ITEM = 5;
+    private static final byte ITEMS = 6;
+    private static final byte REMOVE_ITEM = 7;
+    private static final byte REMOVE_ALL_ITEMS = 8;
+
+    private final Path directory;
+    private final long compactionThreshold;
+    private final Lock mutationLock;
+    private final Object compactionLock;
+    private final AtomicBoolean compacting;
+    private final ExecutorService compactor;
+    private final ConcurrentMap<String, Long> usedIds;
+    private final ConcurrentMap<Long, LazyItems> lazyItems;
+    private final WriteAheadLog log;
+    private long generation;
+
+    public FilePersistenceService(InMemoryItemsQueryService query, InMemoryValueProposalService values, Path directory) throws IOException {
+        this(query, values, name -> new AtomicIdSequence(), directory, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * Creates a new service storing all data in the given directory. Existing data is recovered immediately.
+     *
+     * @param query
+     *            query service
+     * @param values
+     *            value proposal service
+     * @param sequences
+     *            id sequence factory, gets the sequence name as defined by {@link IdSequences}
+     * @param directory
+     *            data directory, created if missing
+     * @param compactionThreshold
+     *            log size in bytes triggering a background snapshot
+     * @throws IOException
+     *             if recovery fails
+     */
+    public FilePersistenceService(InMemoryItemsQueryService query, InMemoryValueProposalService values, Function<String, IdSequence> sequences, Path directory,
+            long compactionThreshold) throws IOException {
+        super(query, values, sequences);
+        if (directory == null) {
+            throw new IllegalArgumentException("directory must be given!!");
+        }
+        if (compactionThreshold < 1) {
+            throw new IllegalArgumentException("compaction threshold must be greater zero!!");
+        }
+        this.directory = directory;
+        this.compactionThreshold = compactionThreshold;
+        mutationLock = new ReentrantLock();
+        compactionLock = new Object();
+        compacting = new AtomicBoolean();
+        compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "generic-typesystem-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        usedIds = new ConcurrentHashMap<>();
+        lazyItems = new ConcurrentHashMap<>();
+
+        // recover and continue with a new log
+        Files.createDirectories(directory);
+        generation = recover();
+        log = new WriteAheadLog(logFile(generation));
+    }
+
+    private long recover() throws IOException {
+        NavigableMap<Long, Path> snapshots = files(SNAPSHOT_FILE);
+        NavigableMap<Long, Path> logs = files(LOG_FILE);
+
+        // latest snapshot
+        long snapshot = snapshots.isEmpty() ? 0 : snapshots.lastKey();
+        if (!snapshots.isEmpty()) {
+            readSnapshot(snapshots.lastEntry().getValue());
+        }
+        long latest = snapshot;
+
+        // replay later logs in order, dropping incomplete records
+        for (Map.Entry<Long, Path> logFile : logs.entrySet()) {
+            if (logFile.getKey() >= snapshot) {
+                long valid = WriteAheadLog.read(logFile.getValue(), this::replay);
+                if (valid < Files.size(logFile.getValue())) {
+                    try (FileChannel channel = FileChannel.open(logFile.getValue(), StandardOpenOption.WRITE)) {
+                        channel.truncate(valid);
+                    }
+                }
+            }
+            latest = Math.max(latest, logFile.getKey());
+        }
+        deleteObsolete(snapshot);
+
+        // restore sequences, ids of removed items must not be reused
+        usedIds.forEach((sequence, id) -> sequence(sequence).update(id));
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("recovered " + directory + " up to generation " + latest);
+        }
+        return latest + 1;
+    }
+
+    private NavigableMap<Long, Path> files(Pattern pattern) throws IOException {
+        NavigableMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                String name = String.valueOf(file.getFileName());
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                Matcher matcher = pattern.matcher(name);
+                if (matcher.matches()) {
+                    files.put(Long.parseLong(matcher.group(1)), file);
+                }
+            }
+        }
+        return files;
+    }
+
+    private Path snapshotFile(long fileGeneration) {
+        return directory.resolve("snapshot-" + fileGeneration + ".bin");
+    }
+
+    private Path logFile(long fileGeneration) {
+        return directory.resolve("log-" + fileGeneration + ".wal");
+    }
+
+    private void replay(DataInput in) throws IOException {
+        byte operation = in.readByte();
+        switch (operation) {
+            case UNITS:
+                GenericUnits units = BinaryCodec.readUnits(in);
+                super.updateUnits(units);
+                used(IdSequences.UNITS, units.getId());
+                break;
+            case REMOVE_UNITS:
+                super.removeUnits(in.readLong());
+                break;
+            case TYPE:
+                GenericType type = BinaryCodec.readType(in);
+                super.updateType(type);
+                used(IdSequences.TYPES, type.getId());
+                break;
+            case REMOVE_TYPE:
+                super.removeType(in.readLong());
+                break;
+            case ITEM:
+                long typeId = in.readLong();
+                GenericItem item = BinaryCodec.readItem(in);
+                materialize(typeId, item.getId());
+                super.updateItem(typeId, item);
+                used(IdSequences.ITEMS_PREFIX + typeId, item.getId());
+                break;
+            case ITEMS:
+                long itemsTypeId = in.readLong();
+                int count = in.readInt();
+                List<GenericItem> items = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    items.add(BinaryCodec.readItem(in));
+                }
+                items.forEach(i -> materialize(itemsTypeId, i.getId()));
+                super.addItems(itemsTypeId, items);
+                items.forEach(i -> used(IdSequences.ITEMS_PREFIX + itemsTypeId, i.getId()));
+                break;
+            case REMOVE_ITEM:
+                long removedItemTypeId = in.readLong();
+                long removedId = in.readLong();
+                materialize(removedItemTypeId, removedId);
+                super.removeItem(removedItemTypeId, removedId);
+                break;
+            case REMOVE_ALL_ITEMS:
+                long removedTypeId = in.readLong();
+                discard(removedTypeId);
+                super.removeAllItems(removedTypeId);
+                usedIds.remove(IdSequences.ITEMS_PREFIX + removedTypeId);
+                break;
+            default:
+                throw new IOException("unknown log record " + operation);
+        }
+    }
+
+    private void used(String sequence, Long id) {
+        if (id != null) {
+            usedIds.merge(sequence, id, Math::max);
+        }
+    }
+
+    @Override
+    public boolean units(GenericTypesystemContext context, GenericUnits units) {
+        boolean result = super.units(context, units);
+        sync();
+        return result;
+    }
+
+    @Override
+    public boolean type(GenericTypesystemContext context, GenericType type) {
+        boolean result = super.type(context, type);
+        sync();
+        return result;
+    }
+
+    @Override
+    public List<Boolean> items(GenericTypesystemContext context, long typeId, List<GenericItem> items) {
+        List<Boolean> results = super.items(context, typeId, items);
+        sync();
+        return results;
+    }
+
+    @Override
+    public boolean removeItem(GenericTypesystemContext context, long typeId, long id) {
+        boolean result = super.removeItem(context, typeId, id);
+        sync();
+        return result;
+    }
+
+    @Override
+    public boolean removeType(GenericTypesystemContext context, long typeId) {
+        boolean result = super.removeType(context, typeId);
+        sync();
+        return result;
+    }
+
+    @Override
+    public boolean removeUnits(GenericTypesystemContext context, long unitsId) {
+        boolean result = super.removeUnits(context, unitsId);
+        sync();
+        return result;
+    }
+
+    @Override
+    protected Collection<GenericItem> items(long typeId) {
+        materialize(typeId, null);
+        return super.items(typeId);
+    }
+
+    @Override
+    protected GenericItem item(long typeId, long id) {
+        materialize(typeId, id);
+        return super.item(typeId, id);
+    }
+
+    @Override
+    protected void updateUnits(GenericUnits units) {
+        write(out -> {
+            out.writeByte(UNITS);
+            BinaryCodec.writeUnits(out, units);
+        }, () -> {
+            super.updateUnits(units);
+            used(IdSequences.UNITS, units.getId());
+            return null;
+        });
+    }
+
+    @Override
+    protected boolean removeUnits(long id) {
+        return write(out -> {
+            out.writeByte(REMOVE_UNITS);
+            out.writeLong(id);
+        }, () -> super.removeUnits(id));
+    }
+
+    @Override
+    protected void updateType(GenericType type) {
+        write(out -> {
+            out.writeByte(TYPE);
+            BinaryCodec.writeType(out, type);
+        }, () -> {
+            super.updateType(type);
+            used(IdSequences.TYPES, type.getId());
+            return null;
+        });
+    }
+
+    @Override
+    protected boolean removeType(long id) {
+        return write(out -> {
+            out.writeByte(REMOVE_TYPE);
+            out.writeLong(id);
+        }, () -> super.removeType(id));
+    }
+
+    @Override
+    protected void addItems(long typeId, List<GenericItem> items) {
+        write(out -> {
+            out.writeByte(ITEMS);
+            out.writeLong(typeId);
+            out.writeInt(items.size());
+            for (GenericItem item : items) {
+                BinaryCodec.writeItem(out, item);
+            }
+        }, () -> {
+            items.forEach(i -> materialize(typeId, i.getId()));
+            super.addItems(typeId, items);
+            items.forEach(i -> used(IdSequences.ITEMS_PREFIX + typeId, i.getId()));
+            return null;
+        });
+    }
+
+    @Override
+    protected void updateItem(long typeId, GenericItem item) {
+        write(out -> {
+            out.writeByte(ITEM);
+            out.writeLong(typeId);
+            BinaryCodec.writeItem(out, item);
+        }, () -> {
+            materialize(typeId, item.getId());
+            super.updateItem(typeId, item);
+            used(IdSequences.ITEMS_PREFIX + typeId, item.getId());
+            return null;
+        });
+    }
+
+    @Override
+    protected boolean removeItem(long typeId, long id) {
+        return write(out -> {
+            out.writeByte(REMOVE_ITEM);
+            out.writeLong(typeId);
+            out.writeLong(id);
+        }, () -> {
+            materialize(typeId, id);
+            return super.removeItem(typeId, id);
+        });
+    }
+
+    @Override
+    protected void removeAllItems(long typeId) {
+        write(out -> {
+            out.writeByte(REMOVE_ALL_ITEMS);
+            out.writeLong(typeId);
+        }, () -> {
+            discard(typeId);
+            super.removeAllItems(typeId);
+            usedIds.remove(IdSequences.ITEMS_PREFIX + typeId);
+            return null;
+        });
+    }
+
+    /**
+     * Appends the given record and applies the mutation, both under the mutation lock so the log order matches the order mutations are applied in.
+     */
+    private <T> T write(RecordWriter writer, Supplier<T> mutation) {
+
+        // encode outside of lock
+        byte[] record;
+        try {
+            record = WriteAheadLog.record(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("unable to encode log record", e);
+        }
+
+        // append and apply
+        mutationLock.lock();
+        try {
+            log.append(record);
+            return mutation.get();
+        } finally {
+            mutationLock.unlock();
+        }
+    }
+
+    /**
+     * Waits until all appended records are durable and triggers a background compaction if the log exceeds the threshold.
+     */
+    private void sync() {
+        try {
+            log.sync(log.appended());
+        } catch (IOException e) {
+            throw new UncheckedIOException("unable to sync log", e);
+        }
+
+        // compact in background
+        if (log.size() >= compactionThreshold && compacting.compareAndSet(false, true)) {
+            compactor.execute(() -> {
+                try {
+                    compact();
+                } catch (IOException | RuntimeException e) {
+                    LOG.error("unable to compact " + directory, e);
+                } finally {
+                    compacting.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Writes a snapshot of the current state and deletes all older logs and snapshots. The log is rotated first, so mutations are blocked only while
+     * capturing the state, not while writing the snapshot.
+     *
+     * @throws IOException
+     *             if writing the snapshot fails
+     */
+    public void compact() throws IOException {
+        synchronized (compactionLock) {
+
+            // rotate log and capture state atomically, types are copied as they may be modified in place
+            long snapshotGeneration;
+            List<GenericUnits> snapshotUnits;
+            Map<GenericType, Collection<GenericItem>> snapshotItems = new LinkedHashMap<>();
+            Map<String, Long> snapshotIds;
+            mutationLock.lock();
+            try {
+                snapshotGeneration = ++generation;
+                log.rotate(logFile(snapshotGeneration));
+                snapshotUnits = new ArrayList<>(units());
+                for (GenericType type : types()) {
+                    snapshotItems.put(copy(type), items(type.getId()));
+                }
+                snapshotIds = new HashMap<>(usedIds);
+            } finally {
+                mutationLock.unlock();
+            }
+
+            // write and cleanup
+            writeSnapshot(snapshotFile(snapshotGeneration), snapshotUnits, snapshotItems, snapshotIds);
+            deleteObsolete(snapshotGeneration);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("compacted " + directory + " into snapshot " + snapshotGeneration);
+            }
+        }
+    }
+
+    /**
+     * Copies the given type, so items and metadata of a snapshot are written using the same type definition, even if the type is modified in place
+     * meanwhile.
+     */
+    private static GenericType copy(GenericType type) throws IOException {
+        byte[] encoded = WriteAheadLog.record(out -> BinaryCodec.writeType(out, type));
+        return BinaryCodec.readType(new DataInputStream(new ByteArrayInputStream(encoded)));
+    }
+
+    private void writeSnapshot(Path file, List<GenericUnits> snapshotUnits, Map<GenericType, Collection<GenericItem>> snapshotItems, Map<String, Long> snapshotIds)
+            throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+        MappedSnapshot.write(temp, snapshotIds, snapshotUnits, snapshotItems);
+
+        // publish atomically
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void readSnapshot(Path file) throws IOException {
+        MappedSnapshot snapshot = MappedSnapshot.read(file);
+        snapshot.getIds().forEach(this::used);
+        snapshot.getUnits().forEach(super::updateUnits);
+
+        // items are materialized on first access
+        for (MappedItems items : snapshot.getItems()) {
+            super.updateType(items.getType());
+            if (items.size() > 0) {
+                lazyItems.put(items.getType().getId(), new LazyItems(items));
+            }
+        }
+    }
+
+    /**
+     * Moves the item with given id, or all items if no id is given, from the snapshot into memory, if not done yet. Items are decoded and stored while
+     * holding the lock of the lazy items, so concurrent accesses either materialize the item or find it in memory afterwards.
+     */
+    private void materialize(long typeId, Long id) {
+        LazyItems lazy = lazyItems.get(typeId);
+        if (lazy == null) {
+            return;
+        }
+        synchronized (lazy) {
+            List<GenericItem> materialized = id != null ? lazy.take(id) : lazy.takeAll();
+            if (!materialized.isEmpty()) {
+                super.addItems(typeId, materialized);
+            }
+            if (lazy.isEmpty()) {
+                lazyItems.remove(typeId, lazy);
+            }
+        }
+    }
+
+    private void discard(long typeId) {
+        LazyItems lazy = lazyItems.remove(typeId);
+        if (lazy != null) {
+            synchronized (lazy) {
+                lazy.discardAll();
+            }
+        }
+    }
+
+    private IdSequence sequence(String name) {
+        if (IdSequences.UNITS.equals(name)) {
+            return sequences().units();
+        }
+        if (IdSequences.TYPES.equals(name)) {
+            return sequences().types();
+        }
+        return sequences().items(Long.parseLong(name.substring(IdSequences.ITEMS_PREFIX.length())));
+    }
+
+    private void deleteObsolete(long keepGeneration) throws IOException {
+        for (Map.Entry<Long, Path> snapshot : files(SNAPSHOT_FILE).entrySet()) {
+            if (snapshot.getKey() < keepGeneration) {
+                Files.deleteIfExists(snapshot.getValue());
+            }
+        }
+        for (Map.Entry<Long, Path> logFile : files(LOG_FILE).entrySet()) {
+            if (logFile.getKey() < keepGeneration) {
+                Files.deleteIfExists(logFile.getValue());
+            }
+        }
+    }
+
+    /**
+     * Waits for a running compaction and closes the log. The service must not be used afterwards.
+     *
+     * @throws IOException
+     *             if closing the log fails
+     */
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+    }
+
+    /**
+     * Items of a single type not yet moved from the snapshot into memory. Callers must hold the lock of the instance.
+     */
+    private static final class LazyItems {
+
+        private final MappedItems items;
+        private final BitSet taken;
+
+        private LazyItems(MappedItems items) {
+            this.items = items;
+            taken = new BitSet(items.size());
+        }
+
+        private List<GenericItem> take(long id) {
+            int index = items.indexOf(id);
+            if (index < 0 || taken.get(index)) {
+                return Collections.emptyList();
+            }
+            taken.set(index);
+            return Collections.singletonList(items.get(index));
+        }
+
+        private List<GenericItem> takeAll() {
+            List<GenericItem> result = new ArrayList<>(items.size() - taken.cardinality());
+            for (int index = taken.nextClearBit(0); index < items.size(); index = taken.nextClearBit(index + 1)) {
+                result.add(items.get(index));
+            }
+            discardAll();
+            return result;
+        }
+
+        private void discardAll() {
+            taken.set(0, items.size());
+        }
+
+        private boolean isEmpty() {
+            return taken.cardinality() == items.size();
+        }
+    }
+}
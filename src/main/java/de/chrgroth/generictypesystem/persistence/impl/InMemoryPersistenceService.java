@@ -4,115 +4,162 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 import de.chrgroth.generictypesystem.model.GenericItem;
 import de.chrgroth.generictypesystem.model.GenericType;
 import de.chrgroth.generictypesystem.model.GenericUnits;
 import de.chrgroth.generictypesystem.persistence.query.impl.InMemoryItemsQueryService;
+import de.chrgroth.generictypesystem.persistence.sequence.IdSequence;
+import de.chrgroth.generictypesystem.persistence.sequence.IdSequences;
+import de.chrgroth.generictypesystem.persistence.sequence.impl.AtomicIdSequence;
 import de.chrgroth.generictypesystem.persistence.values.impl.InMemoryValueProposalService;
 
 /**
- * Very simple in memory persistence service storing all types ad items in internal transient collections.
+ * Very simple in memory persistence service storing all types ad items in internal transient collections. All data is indexed by id, so direct lookups do not
+ * depend on the number of stored objects. Ids are generated using {@link IdSequences}, by default backed by atomic counters.
  *
  * @author Christian Groth
  */
 public class InMemoryPersistenceService extends AbstractPersistenceService {
 
-    private final Set<GenericUnits> units;
-    private final Set<GenericType> types;
-    private final Map<Long, Set<GenericItem>> items;
+    private final IdSequences sequences;
+    private final Map<Long, GenericUnits> units;
+    private final Map<Long, GenericType> types;
+    private final Map<Long, Map<Long, GenericItem>> items;
 
     public InMemoryPersistenceService(InMemoryItemsQueryService query, InMemoryValueProposalService values) {
+        this(query, values, name -> new AtomicIdSequence());
+    }
+
+    /**
+     * Creates a new service using the given factory to create id sequences.
+     *
+     * @param query
+     *            query service
+     * @param values
+     *            value proposal service
+     * @param sequences
+     *            id sequence factory, gets the sequence name as defined by {@link IdSequences}
+     */
+    public InMemoryPersistenceService(InMemoryItemsQueryService query, InMemoryValueProposalService values, Function<String, IdSequence> sequences) {
         super(query, values);
+        this.sequences = new IdSequences(sequences);
 
         // storage
-        units = new HashSet<>();
-        types = new HashSet<>();
+        units = new HashMap<>();
+        types = new HashMap<>();
         items = new HashMap<>();
     }
 
     @Override
     protected Set<GenericUnits> units() {
-        return new HashSet<>(units);
+        return new HashSet<>(units.values());
+    }
+
+    @Override
+    protected GenericUnits units(long id) {
+        return units.get(id);
     }
 
     @Override
     protected long nextUnitsId() {
-        return units.stream().mapToLong(u -> u.getId()).max().orElse(0) + 1;
+        return sequences.units().next();
     }
 
     @Override
     protected void addUnits(GenericUnits units) {
-        this.units.add(units);
+        updateUnits(units);
     }
 
     @Override
     protected void updateUnits(GenericUnits units) {
-        this.units.remove(units);
-        this.units.add(units);
+        sequences.units().update(units.getId());
+        this.units.put(units.getId(), units);
     }
 
     @Override
     protected boolean removeUnits(long id) {
-        return units.removeIf(u -> u.getId() != null && u.getId().longValue() == id);
+        return units.remove(id) != null;
     }
 
     @Override
     protected Collection<GenericType> types() {
-        return new HashSet<>(types);
+        return Collections.unmodifiableCollection(types.values());
+    }
+
+    @Override
+    protected GenericType type(long id) {
+        return types.get(id);
     }
 
     @Override
     protected long nextTypeId() {
-        return types.stream().mapToLong(t -> t.getId()).max().orElse(0) + 1;
+        return sequences.types().next();
     }
 
     @Override
     protected void addType(GenericType type) {
-        types.add(type);
+        updateType(type);
     }
 
     @Override
     protected void updateType(GenericType type) {
-        types.remove(type);
-        types.add(type);
+        sequences.types().update(type.getId());
+        types.put(type.getId(), type);
     }
 
     @Override
     protected boolean removeType(long id) {
-        return types.removeIf(t -> t.getId() != null && t.getId().longValue() == id);
+        return types.remove(id) != null;
     }
 
     @Override
     protected Collection<GenericItem> items(long typeId) {
-        final Set<GenericItem> typeItems = items.get(typeId);
-        return new HashSet<>(typeItems != null ? typeItems : Collections.emptySet());
+        final Map<Long, GenericItem> typeItems = items.get(typeId);
+        return typeItems != null ? Collections.unmodifiableCollection(typeItems.values()) : Collections.emptySet();
+    }
+
+    @Override
+    protected GenericItem item(long typeId, long id) {
+        final Map<Long, GenericItem> typeItems = items.get(typeId);
+        return typeItems != null ? typeItems.get(id) : null;
     }
 
     @Override
     protected long nextItemId(long typeId) {
-        final Set<GenericItem> typeItems = items.get(typeId);
-        return typeItems != null ? typeItems.stream().mapToLong(i -> i.getId()).max().orElse(0) + 1 : 1;
+        return sequences.items(typeId).next();
     }
 
     @Override
     protected void addItem(long typeId, GenericItem item) {
-        ensureItemsCollection(typeId).add(item);
+        updateItem(typeId, item);
+    }
+
+    @Override
+    protected long[] nextItemIds(long typeId, int count) {
+        return sequences.items(typeId).next(count);
+    }
+
+    @Override
+    protected void addItems(long typeId, List<GenericItem> items) {
+        Map<Long, GenericItem> typeItems = ensureItemsCollection(typeId);
+        items.forEach(i -> typeItems.put(i.getId(), i));
     }
 
     @Override
     protected void updateItem(long typeId, GenericItem item) {
-        final Set<GenericItem> typeItems = ensureItemsCollection(typeId);
-        typeItems.remove(item);
-        typeItems.add(item);
+        sequences.items(typeId).update(item.getId());
+        ensureItemsCollection(typeId).put(item.getId(), item);
     }
 
-    private Set<GenericItem> ensureItemsCollection(long typeId) {
-        Set<GenericItem> typeItems = items.get(typeId);
+    private Map<Long, GenericItem> ensureItemsCollection(long typeId) {
+        Map<Long, GenericItem> typeItems = items.get(typeId);
         if (typeItems == null) {
-            typeItems = new HashSet<>();
+            typeItems = new HashMap<>();
             items.put(typeId, typeItems);
         }
         return typeItems;
@@ -120,12 +167,13 @@ public class InMemoryPersistenceService extends AbstractPersistenceService {
 
     @Override
     protected boolean removeItem(long typeId, long id) {
-        final Set<GenericItem> typeItems = items.get(typeId);
-        return typeItems != null && typeItems.removeIf(t -> t.getId() != null && t.getId().longValue() == id);
+        final Map<Long, GenericItem> typeItems = items.get(typeId);
+        return typeItems != null && typeItems.remove(id) != null;
     }
 
     @Override
     protected void removeAllItems(long typeId) {
         items.remove(typeId);
+        sequences.removeItems(typeId);
     }
 }
@@ -0,0 +1,322 @@
+package de.chrgroth.generictypesystem.persistence.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.persistence.query.impl.CascadingAttributeComparator;
+
+/**
+ * Sorted secondary index on a single attribute path of all items of a type. Item ids are grouped by their attribute value, buckets are ordered by value and
+ * ids within a bucket are ordered descending. This matches the ordering of {@link CascadingAttributeComparator} for a single sort on the indexed path: null
+ * values come last for ascending and first for descending order, equal values fall back to id descending.
+ * <p>
+ * Integral numbers are indexed as Long, all other numbers as Double. Values not implementing {@link Comparable} can't be indexed, as long as such values exist
+ * the index is not {@link #isUsable()}. The index is thread safe. An index may be published before it is populated, reads and updates are blocked meanwhile,
+ * see {@link #beginBuild()}.
+ * </p>
+ *
+ * @author Christian Groth
+ */
+public class SortedAttributeIndex {
+
+    private static final Object NULL_KEY = new Object();
+    private static final Object UNSORTABLE_KEY = new Object();
+
+    private final String path;
+    private final ReadWriteLock lock;
+    private final NavigableMap<Object, NavigableSet<Long>> buckets;
+    private final NavigableSet<Long> nullBucket;
+    private final Map<Long, Object> keys;
+    private int unsortable;
+
+    public SortedAttributeIndex(String path) {
+        this.path = path;
+        lock = new ReentrantReadWriteLock();
+        buckets = new TreeMap<>(SortedAttributeIndex::compareKeys);
+        nullBucket = new TreeSet<>(Comparator.reverseOrder());
+        keys = new HashMap<>();
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Blocks all reads and updates of other threads until {@link #endBuild()} is called by the current thread, so the index can be published before all
+     * existing items have been added.
+     */
+    void beginBuild() {
+        lock.writeLock().lock();
+    }
+
+    /**
+     * Releases the lock acquired by {@link #beginBuild()}.
+     */
+    void endBuild() {
+        lock.writeLock().unlock();
+    }
+
+    /**
+     * Adds or updates the given item. A previously indexed value of the item is removed first, so items may be updated in place.
+     *
+     * @param item
+     *            item to be indexed
+     */
+    public void update(GenericItem item) {
+        Long id = item.getId();
+        Object key = key(item.get(path));
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+            keys.put(id, key);
+            if (key == NULL_KEY) {
+                nullBucket.add(id);
+            } else if (key == UNSORTABLE_KEY) {
+                unsortable++;
+            } else {
+                buckets.computeIfAbsent(key, k -> new TreeSet<>(Comparator.reverseOrder())).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the item with given id from the index.
+     *
+     * @param id
+     *            item id
+     */
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeInternal(Long id) {
+        Object key = keys.remove(id);
+        if (key == null) {
+            return;
+        }
+        if (key == NULL_KEY) {
+            nullBucket.remove(id);
+        } else if (key == UNSORTABLE_KEY) {
+            unsortable--;
+        } else {
+            NavigableSet<Long> bucket = buckets.get(key);
+            bucket.remove(id);
+            if (bucket.isEmpty()) {
+                buckets.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Checks if all indexed values are sortable.
+     *
+     * @return true if index can be walked, false otherwise
+     */
+    public boolean isUsable() {
+        lock.readLock().lock();
+        try {
+            return unsortable == 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Walks all buckets in sorted order while holding the read lock. Each bucket contains the ids of all items with an equal value, ordered descending. Walking
+     * stops as soon as the visitor returns false. Visitors must not modify the index.
+     *
+     * @param ascending
+     *            sort order
+     * @param visitor
+     *            bucket visitor
+     */
+    public void walk(boolean ascending, Predicate<NavigableSet<Long>> visitor) {
+        walk(ascending, null, visitor);
+    }
+
+    /**
+     * Walks all buckets in sorted order like {@link #walk(boolean, Predicate)}, but starts with the bucket of the given value. All preceding buckets are
+     * skipped without being visited.
+     *
+     * @param ascending
+     *            sort order
+     * @param value
+     *            value to start at, may be null
+     * @param visitor
+     *            bucket visitor
+     */
+    public void walkFrom(boolean ascending, Object value, Predicate<NavigableSet<Long>> visitor) {
+        Object from = key(value);
+        walk(ascending, from != UNSORTABLE_KEY ? from : null, visitor);
+    }
+
+    private void walk(boolean ascending, Object from, Predicate<NavigableSet<Long>> visitor) {
+        lock.readLock().lock();
+        try {
+
+            // nulls first for descending order
+            boolean fromStart = from == null || from == NULL_KEY;
+            if (!ascending && fromStart && !nullBucket.isEmpty() && !visitor.test(Collections.unmodifiableNavigableSet(nullBucket))) {
+                return;
+            }
+
+            // walk values, ascending walks starting at null values skip all values
+            if (!ascending || from != NULL_KEY) {
+                NavigableMap<Object, NavigableSet<Long>> values = buckets;
+                if (!fromStart) {
+                    values = ascending ? buckets.tailMap(from, true) : buckets.headMap(from, true);
+                }
+                for (NavigableSet<Long> bucket : (ascending ? values : values.descendingMap()).values()) {
+                    if (!visitor.test(Collections.unmodifiableNavigableSet(bucket))) {
+                        return;
+                    }
+                }
+            }
+
+            // nulls last for ascending order
+            if (ascending && !nullBucket.isEmpty()) {
+                visitor.test(Collections.unmodifiableNavigableSet(nullBucket));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns an iterator over all buckets in the same order as {@link #walk(boolean, Predicate)}. In contrast to walking, the read lock is only held while
+     * advancing to the next bucket, which is returned as a copy. The iterator is weakly consistent: changes made while iterating may or may not be reflected,
+     * but each bucket is returned at most once.
+     *
+     * @param ascending
+     *            sort order
+     * @return bucket iterator
+     */
+    public Iterator<List<Long>> buckets(boolean ascending) {
+        return new BucketIterator(ascending);
+    }
+
+    private static Object key(Object value) {
+        if (value == null) {
+            return NULL_KEY;
+        } else if (value instanceof Long || value instanceof Double) {
+            return value;
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return Long.valueOf(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            return Double.valueOf(((Number) value).doubleValue());
+        } else if (!(value instanceof Comparable)) {
+            return UNSORTABLE_KEY;
+        }
+        return value;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static int compareKeys(Object first, Object second) {
+        if (first.getClass().equals(second.getClass())) {
+            return ((Comparable) first).compareTo(second);
+        } else if (first instanceof Number && second instanceof Number) {
+            return Double.compare(((Number) first).doubleValue(), ((Number) second).doubleValue());
+        }
+
+        // mixed types, at least keep a stable order
+        return first.getClass().getName().compareTo(second.getClass().getName());
+    }
+
+    /**
+     * Lazy bucket iterator, remembering the last visited key to continue with the next higher or lower one.
+     */
+    private final class BucketIterator implements Iterator<List<Long>> {
+
+        private final boolean ascending;
+        private boolean leadingNulls;
+        private boolean trailingNulls;
+        private boolean valuesDone;
+        private Object lastKey;
+        private List<Long> next;
+
+        private BucketIterator(boolean ascending) {
+            this.ascending = ascending;
+            leadingNulls = !ascending;
+            trailingNulls = ascending;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                lock.readLock().lock();
+                try {
+                    next = advance();
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public List<Long> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            List<Long> bucket = next;
+            next = null;
+            return bucket;
+        }
+
+        private List<Long> advance() {
+
+            // nulls first for descending order
+            if (leadingNulls) {
+                leadingNulls = false;
+                if (!nullBucket.isEmpty()) {
+                    return new ArrayList<>(nullBucket);
+                }
+            }
+
+            // continue after last visited value
+            if (!valuesDone) {
+                Map.Entry<Object, NavigableSet<Long>> entry;
+                if (lastKey == null) {
+                    entry = ascending ? buckets.firstEntry() : buckets.lastEntry();
+                } else {
+                    entry = ascending ? buckets.higherEntry(lastKey) : buckets.lowerEntry(lastKey);
+                }
+                if (entry != null) {
+                    lastKey = entry.getKey();
+                    return new ArrayList<>(entry.getValue());
+                }
+                valuesDone = true;
+            }
+
+            // nulls last for ascending order
+            if (trailingNulls) {
+                trailingNulls = false;
+                if (!nullBucket.isEmpty()) {
+                    return new ArrayList<>(nullBucket);
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package de.chrgroth.generictypesystem.persistence.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Dictionary of distinct string values, e.g. of a single attribute path of a type. Each value gets a dense int code and a canonical instance, so equal values
+ * are stored once. The number of values is limited, values exceeding the capacity get no code, so high cardinality paths don't grow the dictionary without
+ * bounds. Codes are never released. The dictionary is thread safe.
+ *
+ * @author Christian Groth
+ */
+public class StringDictionary {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final int INITIAL_SIZE = 16;
+
+    private final int capacity;
+    private final ConcurrentMap<String, Integer> codes;
+    private volatile String[] values;
+    private int size;
+
+    public StringDictionary() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public StringDictionary(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be greater zero!!");
+        }
+        this.capacity = capacity;
+        codes = new ConcurrentHashMap<>();
+        values = new String[Math.min(capacity, INITIAL_SIZE)];
+    }
+
+    /**
+     * Returns the code of the given value, assigning a new code if the value is unknown and the capacity is not exhausted.
+     *
+     * @param value
+     *            value
+     * @return code or -1 if the value is null or the dictionary is full
+     */
+    public int code(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+
+        // assign new code, value is stored before the code is published
+        synchronized (this) {
+            code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            if (size >= capacity) {
+                return -1;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(capacity, size * 2));
+            }
+            values[size] = value;
+            codes.put(value, size);
+            return size++;
+        }
+    }
+
+    /**
+     * Returns the value of the given code.
+     *
+     * @param code
+     *            code
+     * @return canonical value or null if the code is unknown
+     */
+    public String value(int code) {
+        String[] current = values;
+        return code >= 0 && code < current.length ? current[code] : null;
+    }
+
+    /**
+     * Returns the canonical instance of the trimmed value. If the dictionary is full and the value is unknown, the trimmed value is returned.
+     *
+     * @param value
+     *            value
+     * @return canonical trimmed value or null
+     */
+    public String canonical(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        int code = code(trimmed);
+        return code >= 0 ? value(code) : trimmed;
+    }
+
+    /**
+     * Returns the number of values.
+     *
+     * @return number of values
+     */
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,83 @@
+package de.chrgroth.generictypesystem.persistence.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import de.chrgroth.generictypesystem.model.GenericStructure;
+import de.chrgroth.generictypesystem.model.GenericTypeSchema;
+
+/**
+ * Hash index from unique key, as computed by {@link GenericStructure#computeUniqueKey(de.chrgroth.generictypesystem.model.GenericItem)}, to item id for all
+ * items of a type. Keys are normalized by {@link GenericTypeSchema#normalizeUniqueKey(Map)}, so keys match regardless of the concrete number type. A reverse
+ * mapping from id to key allows items to be updated in place. The index is thread safe, callers may synchronize on the index to combine a check and an
+ * update atomically.
+ *
+ * @author Christian Groth
+ */
+public class UniqueKeyIndex {
+
+    private final Map<Map<String, Object>, Long> ids;
+    private final Map<Long, Map<String, Object>> keys;
+
+    public UniqueKeyIndex() {
+        ids = new HashMap<>();
+        keys = new HashMap<>();
+    }
+
+    /**
+     * Returns the id of the item with given unique key.
+     *
+     * @param uniqueKey
+     *            unique key
+     * @return item id or null
+     */
+    public synchronized Long find(Map<String, Object> uniqueKey) {
+        return uniqueKey != null ? ids.get(GenericTypeSchema.normalizeUniqueKey(uniqueKey)) : null;
+    }
+
+    /**
+     * Checks if the given unique key may be used by the item with given id.
+     *
+     * @param uniqueKey
+     *            unique key
+     * @param id
+     *            item id, may be null for new items
+     * @return true if the key is not used by any other item, false otherwise
+     */
+    public synchronized boolean isAvailable(Map<String, Object> uniqueKey, Long id) {
+        Long existingId = find(uniqueKey);
+        return existingId == null || Objects.equals(existingId, id);
+    }
+
+    /**
+     * Adds or updates the unique key of the item with given id. If the key is already used by another item the existing mapping is kept.
+     *
+     * @param id
+     *            item id
+     * @param uniqueKey
+     *            unique key
+     */
+    public synchronized void update(long id, Map<String, Object> uniqueKey) {
+        remove(id);
+        if (uniqueKey == null) {
+            return;
+        }
+        Map<String, Object> normalized = GenericTypeSchema.normalizeUniqueKey(uniqueKey);
+        keys.put(id, normalized);
+        ids.putIfAbsent(normalized, id);
+    }
+
+    /**
+     * Removes the item with given id.
+     *
+     * @param id
+     *            item id
+     */
+    public synchronized void remove(long id) {
+        Map<String, Object> key = keys.remove(id);
+        if (key != null) {
+            ids.remove(key, id);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package de.chrgroth.generictypesystem.persistence.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import de.chrgroth.generictypesystem.context.AccessRules;
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.Visibility;
+
+/**
+ * Visibility index of all items of a type, used to evaluate {@link AccessRules#VISIBILITY} for all items at once. A bitmap of all items without or with
+ * public visibility is tracked, as well as a bitmap of private items per item owner. The items accessible for a user not owning the type are the union of the
+ * public bitmap and the private bitmap of the user. Bitmaps are based on dense item ordinals, ordinals of removed items are reused.
+ * <p>
+ * Items modified in place are reflected after they have been updated. The index is thread safe. An index may be published before it is populated, reads and
+ * updates are blocked meanwhile, see {@link #beginBuild()}.
+ * </p>
+ *
+ * @author Christian Groth
+ */
+public class VisibilityIndex {
+
+    private final ReadWriteLock lock;
+    private final BitSet publicItems;
+    private final Map<Long, BitSet> privateItems;
+    private final Map<Long, Entry> entries;
+    private final List<Long> ids;
+    private final Deque<Integer> freeOrdinals;
+
+    public VisibilityIndex() {
+        lock = new ReentrantReadWriteLock();
+        publicItems = new BitSet();
+        privateItems = new HashMap<>();
+        entries = new HashMap<>();
+        ids = new ArrayList<>();
+        freeOrdinals = new ArrayDeque<>();
+    }
+
+    /**
+     * Blocks all reads and updates of other threads until {@link #endBuild()} is called by the current thread, so the index can be published before all
+     * existing items have been added.
+     */
+    void beginBuild() {
+        lock.writeLock().lock();
+    }
+
+    /**
+     * Releases the lock acquired by {@link #beginBuild()}.
+     */
+    void endBuild() {
+        lock.writeLock().unlock();
+    }
+
+    /**
+     * Adds or updates the given item.
+     *
+     * @param item
+     *            item to be indexed
+     */
+    public void update(GenericItem item) {
+        Long id = item.getId();
+        boolean isPrivate = item.getVisibility() == Visibility.PRIVATE;
+        Long owner = item.getOwner();
+
+        lock.writeLock().lock();
+        try {
+
+            // replace, reusing the ordinal of the item
+            Entry entry = removeInternal(id, false);
+            int ordinal = entry != null ? entry.ordinal : nextOrdinal(id);
+            entries.put(id, new Entry(ordinal, isPrivate, owner));
+            if (isPrivate) {
+                privateItems.computeIfAbsent(owner, o -> new BitSet()).set(ordinal);
+            } else {
+                publicItems.set(ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int nextOrdinal(Long id) {
+        Integer ordinal = freeOrdinals.poll();
+        if (ordinal == null) {
+            ids.add(id);
+            return ids.size() - 1;
+        }
+        ids.set(ordinal, id);
+        return ordinal;
+    }
+
+    /**
+     * Removes the item with given id from the index.
+     *
+     * @param id
+     *            item id
+     */
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id, true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Entry removeInternal(Long id, boolean releaseOrdinal) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isPrivate) {
+            BitSet bitmap = privateItems.get(entry.owner);
+            bitmap.clear(entry.ordinal);
+            if (bitmap.isEmpty()) {
+                privateItems.remove(entry.owner);
+            }
+        } else {
+            publicItems.clear(entry.ordinal);
+        }
+        if (releaseOrdinal) {
+            ids.set(entry.ordinal, null);
+            freeOrdinals.push(entry.ordinal);
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the number of indexed items.
+     *
+     * @return number of items
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of all items accessible for the given user, if the user does not own the type. These are all items without or with public visibility
+     * and all private items owned by the user.
+     *
+     * @param user
+     *            current user, may be null
+     * @return accessible item ids, never null
+     */
+    public List<Long> accessible(Long user) {
+        lock.readLock().lock();
+        try {
+
+            // union of public and users private items
+            BitSet accessible = (BitSet) publicItems.clone();
+            BitSet userItems = privateItems.get(user);
+            if (userItems != null) {
+                accessible.or(userItems);
+            }
+
+            // resolve ids
+            List<Long> result = new ArrayList<>(accessible.cardinality());
+            for (int o = accessible.nextSetBit(0); o >= 0; o = accessible.nextSetBit(o + 1)) {
+                result.add(ids.get(o));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Visibility and ordinal of a single item.
+     */
+    private static final class Entry {
+
+        private final int ordinal;
+        private final boolean isPrivate;
+        private final Long owner;
+
+        private Entry(int ordinal, boolean isPrivate, Long owner) {
+            this.ordinal = ordinal;
+            this.isPrivate = isPrivate;
+            this.owner = owner;
+        }
+    }
+}
@@ -1,12 +1,180 @@
 package de.chrgroth.generictypesystem.persistence.query;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.UnitValue;
 
 /**
- * Simple POJO holding all filter operations for querying {@link GenericItem} instances.
+ * Simple POJO holding all filter operations for querying {@link GenericItem} instances. A filter is either an attribute filter checking the value at
+ * {@link #getPath()} or a logical filter combining {@link #getFilters()}, depending on the {@link ItemFilterOperator}. A filter without an operator matches all
+ * items.
+ * <p>
+ * Attribute values of type {@link UnitValue} are compared using their value in base unit. Numeric filter values are interpreted in base unit, unless
+ * {@link #getUnitId()} is given.
+ * </p>
  *
  * @author Christian Groth
  */
 public class ItemFilterData {
 
+    private ItemFilterOperator operator;
+    private String path;
+    private Object value;
+    private List<Object> values;
+    private Object min;
+    private Object max;
+    private Long unitId;
+    private boolean ignoreCase;
+    private List<ItemFilterData> filters;
+
+    public ItemFilterData() {
+        this(null, null);
+    }
+
+    public ItemFilterData(ItemFilterOperator operator, String path) {
+        this.operator = operator;
+        this.path = path;
+        values = new ArrayList<>();
+        filters = new ArrayList<>();
+    }
+
+    public static ItemFilterData equalTo(String path, Object value) {
+        ItemFilterData filter = new ItemFilterData(ItemFilterOperator.EQUALS, path);
+        filter.setValue(value);
+        return filter;
+    }
+
+    public static ItemFilterData range(String path, Object min, Object max) {
+        ItemFilterData filter = new ItemFilterData(ItemFilterOperator.RANGE, path);
+        filter.setMin(min);
+        filter.setMax(max);
+        return filter;
+    }
+
+    public static ItemFilterData in(String path, Object... values) {
+        ItemFilterData filter = new ItemFilterData(ItemFilterOperator.IN, path);
+        filter.getValues().addAll(Arrays.asList(values));
+        return filter;
+    }
+
+    public static ItemFilterData prefix(String path, String value, boolean ignoreCase) {
+        ItemFilterData filter = new ItemFilterData(ItemFilterOperator.PREFIX, path);
+        filter.setValue(value);
+        filter.setIgnoreCase(ignoreCase);
+        return filter;
+    }
+
+    public static ItemFilterData contains(String path, String value, boolean ignoreCase) {
+        ItemFilterData filter = new ItemFilterData(ItemFilterOperator.CONTAINS, path);
+        filter.setValue(value);
+        filter.setIgnoreCase(ignoreCase);
+        return filter;
+    }
+
+    public static ItemFilterData isNull(String path) {
+        return new ItemFilterData(ItemFilterOperator.NULL, path);
+    }
+
+    public static ItemFilterData notNull(String path) {
+        return new ItemFilterData(ItemFilterOperator.NOT_NULL, path);
+    }
+
+    public static ItemFilterData and(ItemFilterData... filters) {
+        return logical(ItemFilterOperator.AND, filters);
+    }
+
+    public static ItemFilterData or(ItemFilterData... filters) {
+        return logical(ItemFilterOperator.OR, filters);
+    }
+
+    public static ItemFilterData not(ItemFilterData filter) {
+        return logical(ItemFilterOperator.NOT, filter);
+    }
+
+    private static ItemFilterData logical(ItemFilterOperator operator, ItemFilterData... filters) {
+        ItemFilterData filter = new ItemFilterData(operator, null);
+        filter.getFilters().addAll(Arrays.asList(filters));
+        return filter;
+    }
+
+    public ItemFilterOperator getOperator() {
+        return operator;
+    }
+
+    public void setOperator(ItemFilterOperator operator) {
+        this.operator = operator;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public void setValue(Object value) {
+        this.value = value;
+    }
+
+    public List<Object> getValues() {
+        return values;
+    }
+
+    public void setValues(List<Object> values) {
+        this.values = values;
+    }
+
+    public Object getMin() {
+        return min;
+    }
+
+    public void setMin(Object min) {
+        this.min = min;
+    }
+
+    public Object getMax() {
+        return max;
+    }
+
+    public void setMax(Object max) {
+        this.max = max;
+    }
+
+    public Long getUnitId() {
+        return unitId;
+    }
+
+    public void setUnitId(Long unitId) {
+        this.unitId = unitId;
+    }
+
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    public void setIgnoreCase(boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+    }
+
+    public List<ItemFilterData> getFilters() {
+        return filters;
+    }
+
+    public void setFilters(List<ItemFilterData> filters) {
+        this.filters = filters;
+    }
+
+    @Override
+    public String toString() {
+        return "ItemFilterData [operator=" + operator + ", path=" + path + ", value=" + value + ", values=" + values + ", min=" + min + ", max=" + max + ", unitId="
+                + unitId + ", ignoreCase=" + ignoreCase + ", filters=" + filters + "]";
+    }
 }
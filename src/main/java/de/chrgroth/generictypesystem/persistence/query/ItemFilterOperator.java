@@ -0,0 +1,74 @@
+package de.chrgroth.generictypesystem.persistence.query;
+
+/**
+ * All operators supported by {@link ItemFilterData}.
+ *
+ * @author Christian Groth
+ */
+public enum ItemFilterOperator {
+
+    /**
+     * Attribute value equals {@link ItemFilterData#getValue()}. Numbers are compared by value regardless of their concrete type.
+     */
+    EQUALS(false),
+
+    /**
+     * Attribute value is between {@link ItemFilterData#getMin()} and {@link ItemFilterData#getMax()}, both inclusive. A missing bound is treated as open.
+     */
+    RANGE(false),
+
+    /**
+     * Attribute value equals one of {@link ItemFilterData#getValues()}.
+     */
+    IN(false),
+
+    /**
+     * String attribute value starts with {@link ItemFilterData#getValue()}.
+     */
+    PREFIX(false),
+
+    /**
+     * String attribute value contains {@link ItemFilterData#getValue()}.
+     */
+    CONTAINS(false),
+
+    /**
+     * Attribute value is not set.
+     */
+    NULL(false),
+
+    /**
+     * Attribute value is set.
+     */
+    NOT_NULL(false),
+
+    /**
+     * All of {@link ItemFilterData#getFilters()} match, no filters match all items.
+     */
+    AND(true),
+
+    /**
+     * At least one of {@link ItemFilterData#getFilters()} matches, no filters match no items.
+     */
+    OR(true),
+
+    /**
+     * The single filter contained in {@link ItemFilterData#getFilters()} does not match.
+     */
+    NOT(true);
+
+    private final boolean logical;
+
+    ItemFilterOperator(boolean logical) {
+        this.logical = logical;
+    }
+
+    /**
+     * Checks if the operator combines nested filters instead of checking an attribute value.
+     *
+     * @return true if logical operator, false otherwise
+     */
+    public boolean isLogical() {
+        return logical;
+    }
+}
@@ -3,7 +3,9 @@ package de.chrgroth.generictypesystem.persistence.query;
 import de.chrgroth.generictypesystem.model.GenericItem;
 
 /**
- * Simple POJO holding all paging operations for querying {@link GenericItem} instances.
+ * Simple POJO holding all paging operations for querying {@link GenericItem} instances. Pages are either addressed by page number or by a continuation
+ * token taken from {@link ItemQueryResult#getContinuation()} of the previous page. If a continuation token is given the page number is ignored and the page
+ * starts right after the last item of the previous page, the query must use the same sorts as the previous one.
  *
  * @author Christian Groth
  */
@@ -11,6 +13,7 @@ public class ItemPagingData {
 
     private long page;
     private Long pageSize;
+    private String continuation;
 
     public long getPage() {
         return page;
@@ -27,4 +30,12 @@ public class ItemPagingData {
     public void setPageSize(Long pageSize) {
         this.pageSize = pageSize;
     }
+
+    public String getContinuation() {
+        return continuation;
+    }
+
+    public void setContinuation(String continuation) {
+        this.continuation = continuation;
+    }
 }
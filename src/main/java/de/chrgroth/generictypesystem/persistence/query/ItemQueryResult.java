@@ -6,19 +6,26 @@ import java.util.List;
 import de.chrgroth.generictypesystem.model.GenericItem;
 
 /**
- * Simple POJO holding the results for querying {@link GenericItem} instances.
+ * Simple POJO holding the results for querying {@link GenericItem} instances. Paged results with more items available carry an opaque continuation token to
+ * query the next page, see {@link ItemPagingData#setContinuation(String)}.
  *
  * @author Christian Groth
  */
 public class ItemQueryResult {
     private final List<GenericItem> items = new ArrayList<>();
     private final boolean moreAvailable;
+    private final String continuation;
 
     public ItemQueryResult(List<GenericItem> items, boolean moreAvailable) {
+        this(items, moreAvailable, null);
+    }
+
+    public ItemQueryResult(List<GenericItem> items, boolean moreAvailable, String continuation) {
         if (items != null) {
             this.items.addAll(items);
         }
         this.moreAvailable = moreAvailable;
+        this.continuation = continuation;
     }
 
     public List<GenericItem> getItems() {
@@ -28,4 +35,8 @@ public class ItemQueryResult {
     public boolean isMoreAvailable() {
         return moreAvailable;
     }
+
+    public String getContinuation() {
+        return continuation;
+    }
 }
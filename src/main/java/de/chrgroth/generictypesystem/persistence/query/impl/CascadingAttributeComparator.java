@@ -7,12 +7,13 @@ import java.util.List;
 
 import org.apache.commons.lang3.ObjectUtils;
 
+import de.chrgroth.generictypesystem.model.GenericAttributePath;
 import de.chrgroth.generictypesystem.model.GenericItem;
 import de.chrgroth.generictypesystem.persistence.query.ItemSortData;
 
 /**
  * Sorts {@link GenericItem} instances by a given list of {@link ItemSortData} instances. As long as the result is equal the next sort data will be used. If all
- * sort data leads to an equality a fallback comparison based on the items ids is made.
+ * sort data leads to an equality a fallback comparison based on the items ids is made. Sort paths are parsed once, see {@link GenericAttributePath}.
  *
  * @author Christian Groth
  */
@@ -21,6 +22,7 @@ public class CascadingAttributeComparator implements Serializable, Comparator<Ge
     private static final long serialVersionUID = -1988541741809268872L;
 
     private final List<ItemSortData> sorts = new ArrayList<>();
+    private final List<GenericAttributePath> paths = new ArrayList<>();
 
     /**
      * Creates a new comparator instance with teh given sort data.
@@ -31,6 +33,7 @@ public class CascadingAttributeComparator implements Serializable, Comparator<Ge
     public CascadingAttributeComparator(List<ItemSortData> sorts) {
         if (sorts != null) {
             this.sorts.addAll(sorts);
+            sorts.forEach(s -> paths.add(new GenericAttributePath(s.getPath())));
         }
     }
 
@@ -38,48 +41,14 @@ public class CascadingAttributeComparator implements Serializable, Comparator<Ge
     public int compare(GenericItem o1, GenericItem o2) {
 
         // sort by parameters
-        for (ItemSortData sort : sorts) {
-            @SuppressWarnings({ "rawtypes" })
-            Comparable firstObject = (Comparable) o1.get(sort.getPath());
-            @SuppressWarnings({ "rawtypes" })
-            Comparable secondObject = (Comparable) o2.get(sort.getPath());
+        for (int i = 0; i < sorts.size(); i++) {
+            ItemSortData sort = sorts.get(i);
+            GenericAttributePath path = paths.get(i);
+            Object firstObject = path.get(o1);
+            Object secondObject = path.get(o2);
 
             // swap for non ascending compare
-            if (!sort.isAscending()) {
-                @SuppressWarnings("rawtypes")
-                Comparable swapObject = firstObject;
-                firstObject = secondObject;
-                secondObject = swapObject;
-            }
-
-            // ensure same types for ambigious cases
-            if (firstObject != null && secondObject != null && !firstObject.getClass().equals(secondObject.getClass())) {
-
-                // check types
-                final boolean haveOneLong = isType(Long.class, firstObject) || isType(Long.class, secondObject);
-                final boolean haveOneInteger = isType(Integer.class, firstObject) || isType(Integer.class, secondObject);
-                final boolean haveOneDouble = isType(Double.class, firstObject) || isType(Double.class, secondObject);
-                final boolean haveOneFloat = isType(Float.class, firstObject) || isType(Float.class, secondObject);
-
-                // try to repair
-                if (haveOneLong && haveOneInteger) {
-                    if (isType(Integer.class, firstObject)) {
-                        firstObject = Long.valueOf(((Integer) firstObject).longValue());
-                    } else {
-                        secondObject = Long.valueOf(((Integer) secondObject).longValue());
-                    }
-                } else if (haveOneDouble && haveOneFloat) {
-                    if (isType(Float.class, firstObject)) {
-                        firstObject = Double.valueOf(((Float) firstObject).doubleValue());
-                    } else {
-                        secondObject = Double.valueOf(((Float) secondObject).doubleValue());
-                    }
-                }
-            }
-
-            // compare
-            @SuppressWarnings("unchecked")
-            int compare = ObjectUtils.compare(firstObject, secondObject, true);
+            int compare = sort.isAscending() ? compareValues(firstObject, secondObject) : compareValues(secondObject, firstObject);
             if (compare != 0) {
 
                 // done
@@ -91,7 +60,64 @@ public class CascadingAttributeComparator implements Serializable, Comparator<Ge
         return ObjectUtils.compare(o2.getId(), o1.getId());
     }
 
-    private boolean isType(Class<?> type, Object object) {
+    /**
+     * Sorts the given list like {@link java.util.Collections#sort(List, Comparator)} using this comparator would, but resolves all sort values only once per
+     * item and compares normalized primitive keys instead, see {@link SortKeys}. Falls back to sorting with this comparator if values can't be normalized.
+     *
+     * @param items
+     *            items to be sorted
+     */
+    public void sort(List<GenericItem> items) {
+        if (!SortKeys.sort(items, sorts, paths)) {
+            items.sort(this);
+        }
+    }
+
+    /**
+     * Compares two attribute values in ascending order, null values are greater than all other values. Integers are compared as longs with longs and floats
+     * as doubles with doubles.
+     *
+     * @param first
+     *            first value, must be comparable or null
+     * @param second
+     *            second value, must be comparable or null
+     * @return comparison result
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public static int compareValues(Object first, Object second) {
+        Comparable firstObject = (Comparable) first;
+        Comparable secondObject = (Comparable) second;
+
+        // ensure same types for ambigious cases
+        if (firstObject != null && secondObject != null && !firstObject.getClass().equals(secondObject.getClass())) {
+
+            // check types
+            final boolean haveOneLong = isType(Long.class, firstObject) || isType(Long.class, secondObject);
+            final boolean haveOneInteger = isType(Integer.class, firstObject) || isType(Integer.class, secondObject);
+            final boolean haveOneDouble = isType(Double.class, firstObject) || isType(Double.class, secondObject);
+            final boolean haveOneFloat = isType(Float.class, firstObject) || isType(Float.class, secondObject);
+
+            // try to repair
+            if (haveOneLong && haveOneInteger) {
+                if (isType(Integer.class, firstObject)) {
+                    firstObject = Long.valueOf(((Integer) firstObject).longValue());
+                } else {
+                    secondObject = Long.valueOf(((Integer) secondObject).longValue());
+                }
+            } else if (haveOneDouble && haveOneFloat) {
+                if (isType(Float.class, firstObject)) {
+                    firstObject = Double.valueOf(((Float) firstObject).doubleValue());
+                } else {
+                    secondObject = Double.valueOf(((Float) secondObject).doubleValue());
+                }
+            }
+        }
+
+        // compare
+        return ObjectUtils.compare(firstObject, secondObject, true);
+    }
+
+    private static boolean isType(Class<?> type, Object object) {
         return type != null && type == object.getClass();
     }
 }
@@ -0,0 +1,216 @@
+package de.chrgroth.generictypesystem.persistence.query.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.persistence.query.ItemSortData;
+
+/**
+ * Encodes the position of an item within a sorted query result as opaque continuation token. The token contains the sorts it was created for, the items
+ * values for all sort paths and the item id, which is the final tie-break of {@link CascadingAttributeComparator}. Decoding a token yields a position item
+ * holding exactly these values, so it can be compared to other items using the same comparator.
+ * <p>
+ * Supported values are strings, numbers, booleans and dates. Items holding other values on a sort path can't be encoded.
+ * </p>
+ *
+ * @author Christian Groth
+ */
+final class ContinuationToken {
+
+    private static final byte VERSION = 1;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte LONG = 2;
+    private static final byte INTEGER = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte FLOAT = 5;
+    private static final byte BOOLEAN = 6;
+    private static final byte DATE = 7;
+    private static final byte TIME = 8;
+    private static final byte DATETIME = 9;
+
+    private ContinuationToken() {
+    }
+
+    /**
+     * Encodes the position of the given item.
+     *
+     * @param item
+     *            item
+     * @param sorts
+     *            sorts of the query, or null
+     * @return token, or null if the item can't be encoded
+     */
+    static String encode(GenericItem item, List<ItemSortData> sorts) {
+        if (item == null || item.getId() == null) {
+            return null;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+
+            // sort values
+            int count = sorts != null ? sorts.size() : 0;
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                ItemSortData sort = sorts.get(i);
+                writeString(out, sort.getPath());
+                out.writeBoolean(sort.isAscending());
+                if (!writeValue(out, item.get(sort.getPath()))) {
+                    return null;
+                }
+            }
+
+            // id tie-break
+            out.writeLong(item.getId());
+        } catch (IOException e) {
+            return null;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * Decodes the given token into a position item.
+     *
+     * @param token
+     *            token
+     * @param sorts
+     *            sorts of the query, must be equal to the sorts the token was created for
+     * @return position item, or null if the token is invalid or was created for other sorts
+     */
+    static GenericItem decode(String token, List<ItemSortData> sorts) {
+        if (token == null) {
+            return null;
+        }
+
+        GenericItem position = new GenericItem();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            if (in.readByte() != VERSION) {
+                return null;
+            }
+
+            // sort values, sorts must match
+            int count = sorts != null ? sorts.size() : 0;
+            if (in.readInt() != count) {
+                return null;
+            }
+            for (int i = 0; i < count; i++) {
+                ItemSortData sort = sorts.get(i);
+                String path = readString(in);
+                if (path == null || !path.equals(sort.getPath()) || in.readBoolean() != sort.isAscending()) {
+                    return null;
+                }
+                position.set(path, readValue(in));
+            }
+
+            // id tie-break
+            position.setId(in.readLong());
+            if (in.available() > 0) {
+                return null;
+            }
+        } catch (IOException | IllegalArgumentException | DateTimeParseException e) {
+            return null;
+        }
+        return position;
+    }
+
+    private static boolean writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof LocalDate) {
+            out.writeByte(DATE);
+            writeString(out, value.toString());
+        } else if (value instanceof LocalTime) {
+            out.writeByte(TIME);
+            writeString(out, value.toString());
+        } else if (value instanceof LocalDateTime) {
+            out.writeByte(DATETIME);
+            writeString(out, value.toString());
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case LONG:
+                return in.readLong();
+            case INTEGER:
+                return in.readInt();
+            case DOUBLE:
+                return in.readDouble();
+            case FLOAT:
+                return in.readFloat();
+            case BOOLEAN:
+                return in.readBoolean();
+            case DATE:
+                return LocalDate.parse(readString(in));
+            case TIME:
+                return LocalTime.parse(readString(in));
+            case DATETIME:
+                return LocalDateTime.parse(readString(in));
+            default:
+                throw new IOException("unknown value type " + type);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.available()) {
+            throw new IOException("invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
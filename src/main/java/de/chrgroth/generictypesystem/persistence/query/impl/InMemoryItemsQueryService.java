@@ -1,21 +1,32 @@
 package de.chrgroth.generictypesystem.persistence.query.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericUnits;
 import de.chrgroth.generictypesystem.persistence.query.ItemFilterData;
 import de.chrgroth.generictypesystem.persistence.query.ItemPagingData;
 import de.chrgroth.generictypesystem.persistence.query.ItemQueryResult;
 import de.chrgroth.generictypesystem.persistence.query.ItemSortData;
 
 /**
- * A naive filter, sort and paging implementation independent from persistence layer.
+ * A naive filter, sort and paging implementation independent from persistence layer. Filters are compiled using {@link ItemFilterCompiler} and applied before
+ * sorting, so only matching items are sorted and paged. If paging is requested, only the items up to the requested page are kept in a bounded heap
+ * instead of sorting all items. Pages addressed by continuation token only keep the items of the requested page, independent from how deep the page is.
+ * Sorting all items resolves the sort values once per item, see {@link CascadingAttributeComparator#sort(List)}.
  *
  * @author Christian Groth
  */
@@ -24,12 +35,26 @@ public class InMemoryItemsQueryService {
     private static final Logger LOG = LoggerFactory.getLogger(InMemoryItemsQueryService.class);
 
     private final long defaultPageSize;
+    private final ItemFilterCompiler filterCompiler;
 
     public InMemoryItemsQueryService(long defaultPageSize) {
+        this(defaultPageSize, null);
+    }
+
+    /**
+     * Creates a new query service.
+     *
+     * @param defaultPageSize
+     *            page size used if paging data has no valid page size
+     * @param unitsLookup
+     *            lookup for units by id used to filter unit based values, if null unit based values are filtered without conversion
+     */
+    public InMemoryItemsQueryService(long defaultPageSize, Function<Long, GenericUnits> unitsLookup) {
         if (defaultPageSize < 1) {
             throw new IllegalArgumentException("default page size must be greater zero!!");
         }
         this.defaultPageSize = defaultPageSize;
+        filterCompiler = new ItemFilterCompiler(unitsLookup);
     }
 
     /**
@@ -52,25 +77,178 @@ public class InMemoryItemsQueryService {
             return new ItemQueryResult(Collections.emptyList(), false);
         }
 
-        // add all
-        List<GenericItem> items = new ArrayList<>(allItems);
-
         // filter
-        if (filter != null) {
+        Predicate<GenericItem> predicate = filter != null && filter.getOperator() != null ? filterCompiler.compile(filter) : null;
+        CascadingAttributeComparator comparator = new CascadingAttributeComparator(sorts);
 
-            // TODO implement filtering
-            LOG.warn("filtering not implemented yet!!");
+        // no paging - sort all items, nothing more available
+        if (paging == null) {
+            List<GenericItem> items = filter(allItems, predicate);
+            comparator.sort(items);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("sorted items " + items);
+            }
+            return new ItemQueryResult(items, false);
+        }
+
+        // continue after the position of the continuation token
+        PageBounds bounds = new PageBounds(paging, sorts);
+        if (bounds.invalid) {
+            return new ItemQueryResult(Collections.emptyList(), false);
+        }
+        if (bounds.position != null) {
+            Predicate<GenericItem> filterPredicate = predicate;
+            predicate = i -> comparator.compare(i, bounds.position) > 0 && (filterPredicate == null || filterPredicate.test(i));
         }
 
-        // sorting
-        Collections.sort(items, new CascadingAttributeComparator(sorts));
+        // sort, one more than the last index is needed to detect if more items are available
+        List<GenericItem> items;
+        if (bounds.lastIdx < allItems.size()) {
+            items = top(allItems, predicate, comparator, (int) bounds.lastIdx + 1);
+        } else {
+            items = filter(allItems, predicate);
+            comparator.sort(items);
+        }
         if (LOG.isDebugEnabled()) {
             LOG.debug("sorted items " + items);
         }
 
-        // paging
-        boolean moreAvailable;
-        if (paging != null) {
+        // slice
+        return bounds.slice(items);
+    }
+
+    /**
+     * Executes the given filter and paging operation based on already sorted items. Items are only visited until the requested page is complete, no sorting
+     * is done at all. Pages addressed by continuation token are walked starting at the tokens position, see {@link SortedItems#sorts()}.
+     *
+     * @param sortedItems
+     *            sorted items to be processed
+     * @param filter
+     *            filter operations, or null
+     * @param paging
+     *            paging operation, or null
+     * @return result, never null
+     */
+    public ItemQueryResult query(SortedItems sortedItems, ItemFilterData filter, ItemPagingData paging) {
+
+        // get items
+        if (sortedItems == null) {
+            return new ItemQueryResult(Collections.emptyList(), false);
+        }
+        List<ItemSortData> sorts = sortedItems.sorts();
+        PageBounds bounds = paging != null ? new PageBounds(paging, sorts) : null;
+        if (bounds != null && bounds.invalid) {
+            return new ItemQueryResult(Collections.emptyList(), false);
+        }
+
+        // collect matching items, one more than the last index is needed to detect if more items are available
+        Predicate<GenericItem> predicate = filter != null && filter.getOperator() != null ? filterCompiler.compile(filter) : null;
+        List<GenericItem> items = new ArrayList<>();
+        Predicate<GenericItem> visitor = i -> {
+            if (predicate == null || predicate.test(i)) {
+                items.add(i);
+            }
+            return bounds == null || items.size() <= bounds.lastIdx;
+        };
+        if (bounds != null && bounds.position != null) {
+            Comparator<GenericItem> comparator = new CascadingAttributeComparator(sorts);
+            sortedItems.walk(bounds.position, i -> comparator.compare(i, bounds.position) <= 0 || visitor.test(i));
+        } else {
+            sortedItems.walk(visitor);
+        }
+
+        // slice
+        return bounds != null ? bounds.slice(items) : new ItemQueryResult(items, false);
+    }
+
+    /**
+     * Applies the given filter and sorts lazily to the given item stream. Without sorts items are passed in their given order, so arbitrary many items can
+     * be processed with bounded memory. Sorting needs to buffer all matching items, pass already sorted items without sorts instead. Paging is not supported,
+     * use {@link Stream#skip(long)} and {@link Stream#limit(long)}.
+     *
+     * @param items
+     *            items to be processed
+     * @param filter
+     *            filter operations, or null
+     * @param sorts
+     *            sorting operation, or null
+     * @return item stream, never null
+     */
+    public Stream<GenericItem> stream(Stream<GenericItem> items, ItemFilterData filter, List<ItemSortData> sorts) {
+
+        // get items
+        if (items == null) {
+            return Stream.empty();
+        }
+
+        // filter
+        Stream<GenericItem> stream = items;
+        if (filter != null && filter.getOperator() != null) {
+            stream = stream.filter(filterCompiler.compile(filter));
+        }
+
+        // sort
+        if (sorts != null && !sorts.isEmpty()) {
+            stream = stream.sorted(new CascadingAttributeComparator(sorts));
+        }
+        return stream;
+    }
+
+    private List<GenericItem> filter(Set<GenericItem> allItems, Predicate<GenericItem> predicate) {
+        if (predicate == null) {
+            return new ArrayList<>(allItems);
+        }
+
+        // filter
+        List<GenericItem> items = allItems.stream().filter(predicate).collect(Collectors.toCollection(ArrayList::new));
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("filtered " + items.size() + " of " + allItems.size() + " items");
+        }
+        return items;
+    }
+
+    /**
+     * Collects the first limit items in sorted order using a bounded heap, so only limit items are held in memory and sorting takes O(n log limit).
+     */
+    private List<GenericItem> top(Set<GenericItem> allItems, Predicate<GenericItem> predicate, Comparator<GenericItem> comparator, int limit) {
+
+        // keep the smallest items, heap head is the largest kept item
+        PriorityQueue<GenericItem> heap = new PriorityQueue<>(limit + 1, comparator.reversed());
+        for (GenericItem item : allItems) {
+            if (predicate != null && !predicate.test(item)) {
+                continue;
+            }
+            if (heap.size() < limit) {
+                heap.add(item);
+            } else if (comparator.compare(item, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(item);
+            }
+        }
+
+        // drain largest first
+        GenericItem[] sorted = new GenericItem[heap.size()];
+        for (int i = sorted.length - 1; i >= 0; i--) {
+            sorted[i] = heap.poll();
+        }
+        return new ArrayList<>(Arrays.asList(sorted));
+    }
+
+    /**
+     * Validated paging parameters with computed index bounds.
+     */
+    private final class PageBounds {
+
+        private final long page;
+        private final long pageSize;
+        private final long firstIdx;
+        private final long lastIdx;
+        private final List<ItemSortData> sorts;
+        private final GenericItem position;
+        private final boolean invalid;
+
+        private PageBounds(ItemPagingData paging, List<ItemSortData> sorts) {
+            this.sorts = sorts;
 
             // validate paging parameters
             long page = paging.getPage();
@@ -83,41 +261,45 @@ public class InMemoryItemsQueryService {
                 LOG.error("illegal page size: " + pageSize + "!! Falling back to configured default: " + defaultPageSize + ".");
                 pageSize = defaultPageSize;
             }
+            this.pageSize = pageSize.longValue();
 
-            // compute beginning
-            long firstIdx = 0;
-            if (page > 0) {
-                firstIdx = pageSize.longValue() * (page - 1);
+            // decode continuation token, pages start right after its position
+            if (paging.getContinuation() != null) {
+                position = ContinuationToken.decode(paging.getContinuation(), sorts);
+                invalid = position == null;
+                if (invalid) {
+                    LOG.error("invalid continuation token: " + paging.getContinuation() + "!!");
+                }
+                page = 0;
+            } else {
+                position = null;
+                invalid = false;
             }
+            this.page = page;
+
+            // compute beginning
+            firstIdx = page > 0 ? this.pageSize * (page - 1) : 0;
 
             // compute end
-            long lastIdx = firstIdx + pageSize.longValue();
+            lastIdx = firstIdx + this.pageSize;
+        }
 
-            // slice
+        private ItemQueryResult slice(List<GenericItem> items) {
             if (LOG.isDebugEnabled()) {
                 LOG.debug("slicing items to [" + firstIdx + "," + lastIdx + ")");
             }
-            if (items.size() >= firstIdx + 1) {
 
-                // compute if more than the actual page is available
-                moreAvailable = items.size() > lastIdx;
-
-                // slive to actual page
-                items = items.subList((int) firstIdx, items.size() > lastIdx ? (int) lastIdx : items.size());
-            } else {
-
-                // return empty result
+            // return empty result
+            if (items.size() < firstIdx + 1) {
                 LOG.error("query page is out of bounds: " + page + "x" + pageSize + "!!");
-                moreAvailable = false;
-                items.clear();
+                return new ItemQueryResult(new ArrayList<>(), false);
             }
-        } else {
 
-            // no paging - all items served, nothing more available
-            moreAvailable = false;
+            // compute if more than the actual page is available and slice to actual page
+            boolean moreAvailable = items.size() > lastIdx;
+            List<GenericItem> pageItems = items.subList((int) firstIdx, moreAvailable ? (int) lastIdx : items.size());
+            String continuation = moreAvailable && !pageItems.isEmpty() ? ContinuationToken.encode(pageItems.get(pageItems.size() - 1), sorts) : null;
+            return new ItemQueryResult(pageItems, moreAvailable, continuation);
         }
-
-        // done
-        return new ItemQueryResult(items, moreAvailable);
     }
 }
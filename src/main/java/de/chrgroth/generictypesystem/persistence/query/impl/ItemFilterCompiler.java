@@ -0,0 +1,285 @@
+package de.chrgroth.generictypesystem.persistence.query.impl;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.apache.commons.lang3.StringUtils;
+
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericUnit;
+import de.chrgroth.generictypesystem.model.GenericUnits;
+import de.chrgroth.generictypesystem.model.UnitValue;
+import de.chrgroth.generictypesystem.persistence.query.ItemFilterData;
+import de.chrgroth.generictypesystem.persistence.query.ItemFilterOperator;
+
+/**
+ * Compiles {@link ItemFilterData} instances into predicates. All attribute paths are split and all filter values are normalized once during compilation, so
+ * evaluating the predicate only walks the item values and compares. Numbers are compared by value, {@link UnitValue} instances are converted to the unit
+ * requested by the filter, or the base unit if none was requested, using the given units lookup.
+ * <p>
+ * Compiled predicates cache resolved unit conversion factors and are not thread safe, they are meant to be used for a single query only.
+ * </p>
+ *
+ * @author Christian Groth
+ */
+public class ItemFilterCompiler {
+
+    private final Function<Long, GenericUnits> unitsLookup;
+
+    /**
+     * Creates a new compiler.
+     *
+     * @param unitsLookup
+     *            lookup for units by id, if null unit based values are compared without conversion
+     */
+    public ItemFilterCompiler(Function<Long, GenericUnits> unitsLookup) {
+        this.unitsLookup = unitsLookup;
+    }
+
+    /**
+     * Compiles the given filter into a predicate.
+     *
+     * @param filter
+     *            filter, null or a filter without operator matches all items
+     * @return predicate, never null
+     * @throws IllegalArgumentException
+     *             if the filter is not well formed
+     */
+    public Predicate<GenericItem> compile(ItemFilterData filter) {
+        if (filter == null || filter.getOperator() == null) {
+            return i -> true;
+        }
+
+        // logical operators
+        ItemFilterOperator operator = filter.getOperator();
+        if (operator.isLogical()) {
+            return compileLogical(operator, filter.getFilters());
+        }
+
+        // attribute operators
+        if (StringUtils.isBlank(filter.getPath())) {
+            throw new IllegalArgumentException("filter path must be given for " + operator + "!!");
+        }
+        final ValueAccess access = new ValueAccess(filter.getPath(), filter.getUnitId(), unitsLookup);
+        switch (operator) {
+            case EQUALS:
+                return compileEquals(access, filter.getValue(), filter.isIgnoreCase());
+            case RANGE:
+                return compileRange(access, filter.getMin(), filter.getMax());
+            case IN:
+                return compileIn(access, filter.getValues(), filter.isIgnoreCase());
+            case PREFIX:
+            case CONTAINS:
+                return compileText(access, operator, filter.getValue(), filter.isIgnoreCase());
+            case NULL:
+                return i -> access.get(i) == null;
+            case NOT_NULL:
+                return i -> access.get(i) != null;
+            default:
+                throw new IllegalArgumentException("unsupported filter operator " + operator + "!!");
+        }
+    }
+
+    private Predicate<GenericItem> compileLogical(ItemFilterOperator operator, List<ItemFilterData> filters) {
+        int size = filters != null ? filters.size() : 0;
+
+        // not
+        if (operator == ItemFilterOperator.NOT) {
+            if (size != 1) {
+                throw new IllegalArgumentException("NOT filter requires exactly one nested filter, found " + size + "!!");
+            }
+            return compile(filters.get(0)).negate();
+        }
+
+        // and / or
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        final Predicate<GenericItem>[] compiled = new Predicate[size];
+        for (int i = 0; i < size; i++) {
+            compiled[i] = compile(filters.get(i));
+        }
+        if (operator == ItemFilterOperator.AND) {
+            return i -> {
+                for (Predicate<GenericItem> predicate : compiled) {
+                    if (!predicate.test(i)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        } else {
+            return i -> {
+                for (Predicate<GenericItem> predicate : compiled) {
+                    if (predicate.test(i)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+    }
+
+    private Predicate<GenericItem> compileEquals(ValueAccess access, Object value, boolean ignoreCase) {
+        final Object expected = normalize(value, ignoreCase);
+        if (expected == null) {
+            return i -> access.get(i) == null;
+        }
+        return i -> expected.equals(normalize(access.get(i), ignoreCase));
+    }
+
+    private Predicate<GenericItem> compileIn(ValueAccess access, List<Object> values, boolean ignoreCase) {
+        final Set<Object> expected = new HashSet<>();
+        if (values != null) {
+            values.forEach(v -> expected.add(normalize(v, ignoreCase)));
+        }
+        return i -> expected.contains(normalize(access.get(i), ignoreCase));
+    }
+
+    private Predicate<GenericItem> compileRange(ValueAccess access, Object min, Object max) {
+        final Object normalizedMin = normalize(min, false);
+        final Object normalizedMax = normalize(max, false);
+        return i -> {
+            Object value = normalize(access.get(i), false);
+            if (value == null) {
+                return false;
+            }
+
+            // incomparable values never match
+            return (normalizedMin == null || isComparable(normalizedMin, value) && compare(normalizedMin, value) <= 0)
+                    && (normalizedMax == null || isComparable(value, normalizedMax) && compare(value, normalizedMax) <= 0);
+        };
+    }
+
+    private Predicate<GenericItem> compileText(ValueAccess access, ItemFilterOperator operator, Object value, boolean ignoreCase) {
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException(operator + " filter requires a string value: " + value + "!!");
+        }
+        final String expected = (String) normalize(value, ignoreCase);
+        final boolean prefix = operator == ItemFilterOperator.PREFIX;
+        return i -> {
+            Object actual = access.get(i);
+            if (!(actual instanceof String)) {
+                return false;
+            }
+            String text = (String) normalize(actual, ignoreCase);
+            return prefix ? text.startsWith(expected) : text.contains(expected);
+        };
+    }
+
+    /**
+     * Normalizes values for comparison: integral numbers become longs, decimal numbers become doubles unless they represent an integral value, strings are
+     * trimmed and optionally lower cased.
+     */
+    private static Object normalize(Object value, boolean ignoreCase) {
+        if (value instanceof String) {
+            String text = ((String) value).trim();
+            return ignoreCase ? text.toLowerCase(Locale.ROOT) : text;
+        } else if (value instanceof Long) {
+            return value;
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return Long.valueOf(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            double decimal = ((Number) value).doubleValue();
+            long integral = (long) decimal;
+            if (integral == decimal) {
+                return Long.valueOf(integral);
+            }
+            return Double.valueOf(decimal);
+        }
+        return value;
+    }
+
+    private static boolean isComparable(Object first, Object second) {
+        return first instanceof Number && second instanceof Number || first instanceof Comparable && first.getClass().equals(second.getClass());
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static int compare(Object first, Object second) {
+        if (first instanceof Long && second instanceof Long) {
+            return Long.compare((Long) first, (Long) second);
+        } else if (first instanceof Number && second instanceof Number) {
+            return Double.compare(((Number) first).doubleValue(), ((Number) second).doubleValue());
+        } else if (first instanceof Comparable && first.getClass().equals(second.getClass())) {
+            return ((Comparable) first).compareTo(second);
+        }
+        throw new IllegalArgumentException("unable to compare " + first + " with " + second + "!!");
+    }
+
+    /**
+     * Resolves the value for a pre split attribute path. Unit based values are converted to the target unit.
+     */
+    private static final class ValueAccess {
+
+        private static final MathContext MATH_CONTEXT = MathContext.DECIMAL64;
+
+        private final String[] segments;
+        private final Long targetUnitId;
+        private final Function<Long, GenericUnits> unitsLookup;
+        private final Map<Long, Map<Long, BigDecimal>> ratios;
+
+        private ValueAccess(String path, Long targetUnitId, Function<Long, GenericUnits> unitsLookup) {
+            segments = StringUtils.split(path, '.');
+            this.targetUnitId = targetUnitId;
+            this.unitsLookup = unitsLookup;
+            ratios = new HashMap<>();
+        }
+
+        private Object get(GenericItem item) {
+
+            // walk path
+            Object value = item;
+            for (String segment : segments) {
+                if (!(value instanceof GenericItem)) {
+                    return null;
+                }
+                value = ((GenericItem) value).get(segment);
+            }
+
+            // unwrap unit values
+            if (value instanceof UnitValue) {
+                return unitValue((UnitValue) value);
+            }
+            return value;
+        }
+
+        private Object unitValue(UnitValue unitValue) {
+            if (unitValue.getValue() == null || !(unitValue.getValue().getValue() instanceof Number)) {
+                return null;
+            }
+            Number number = (Number) unitValue.getValue().getValue();
+
+            // convert to target unit
+            BigDecimal ratio = ratio(unitValue.getUnitsId(), unitValue.getUnitId());
+            return ratio != null ? BigDecimal.valueOf(number.doubleValue()).multiply(ratio, MATH_CONTEXT).doubleValue() : number;
+        }
+
+        private BigDecimal ratio(Long unitsId, Long unitId) {
+            if (unitsLookup == null || unitsId == null || unitId == null) {
+                return null;
+            }
+            return ratios.computeIfAbsent(unitsId, id -> new HashMap<>()).computeIfAbsent(unitId, id -> {
+
+                // resolve source and target unit
+                GenericUnits units = unitsLookup.apply(unitsId);
+                if (units == null) {
+                    return null;
+                }
+                GenericUnit source = units.unit(unitId);
+                GenericUnit target = targetUnitId != null ? units.unit(targetUnitId) : units.baseUnit();
+                if (source == null || target == null) {
+                    return null;
+                }
+
+                // value in target unit = value / source factor * target factor
+                return BigDecimal.valueOf(target.getFactor()).divide(BigDecimal.valueOf(source.getFactor()), MATH_CONTEXT);
+            });
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package de.chrgroth.generictypesystem.persistence.query.impl;
+
+import java.util.Arrays;
+import java.util.List;
+
+import de.chrgroth.generictypesystem.model.GenericAttributePath;
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.persistence.query.ItemSortData;
+
+/**
+ * Normalized sort keys of a list of items, sorting them like {@link CascadingAttributeComparator} does (Schwartzian transform). Sort values are resolved
+ * once per item and sort path and normalized to a single long per path: integers and longs are used as is, floats and doubles by their ordered bit pattern
+ * and all other values by their rank among all distinct values of the path. Descending sorts are inverted and null values are mapped to the greatest or
+ * lowest long up front, the item id is added as final descending key with nulls last. All keys are stored in a single array, so sorting compares primitives
+ * only.
+ *
+ * @author Christian Groth
+ */
+final class SortKeys {
+
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private final int width;
+    private final long[] keys;
+
+    private SortKeys(int size, int width) {
+        this.width = width;
+        keys = new long[size * width];
+    }
+
+    /**
+     * Sorts the given items by the given sorts.
+     *
+     * @param items
+     *            items to be sorted
+     * @param sorts
+     *            sort data
+     * @param paths
+     *            parsed paths of the sort data
+     * @return true if sorted, false if the values can't be normalized and the items need to be sorted by comparator
+     */
+    static boolean sort(List<GenericItem> items, List<ItemSortData> sorts, List<GenericAttributePath> paths) {
+        int size = items.size();
+        if (size < 2) {
+            return true;
+        }
+
+        // extract keys once per item
+        SortKeys sortKeys = new SortKeys(size, sorts.size() + 1);
+        Object[] values = new Object[size];
+        for (int column = 0; column < sorts.size(); column++) {
+            GenericAttributePath path = paths.get(column);
+            for (int i = 0; i < size; i++) {
+                values[i] = path.get(items.get(i));
+            }
+            boolean ascending = sorts.get(column).isAscending();
+            if (!sortKeys.column(column, values, ascending, ascending)) {
+                return false;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            values[i] = items.get(i).getId();
+        }
+        if (!sortKeys.column(sorts.size(), values, false, true)) {
+            return false;
+        }
+
+        // sort positions by keys and map back to items
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        sortKeys.sort(order, new int[size], 0, size);
+        GenericItem[] sorted = new GenericItem[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = items.get(order[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            items.set(i, sorted[i]);
+        }
+        return true;
+    }
+
+    private boolean column(int column, Object[] values, boolean ascending, boolean nullsLast) {
+        long[] normalized = normalize(values);
+
+        // invert for descending order, null keys must not collide with values
+        long nullKey = nullsLast ? Long.MAX_VALUE : Long.MIN_VALUE;
+        for (int i = 0; i < values.length; i++) {
+            long key;
+            if (values[i] == null) {
+                key = nullKey;
+            } else {
+                key = ascending ? normalized[i] : ~normalized[i];
+                if (key == nullKey) {
+                    return false;
+                }
+            }
+            keys[i * width + column] = key;
+        }
+        return true;
+    }
+
+    private static long[] normalize(Object[] values) {
+
+        // check types
+        boolean integral = true;
+        boolean floating = true;
+        for (Object value : values) {
+            if (value != null) {
+                integral &= value instanceof Long || value instanceof Integer;
+                floating &= value instanceof Double || value instanceof Float;
+            }
+        }
+
+        // primitive values
+        long[] normalized = new long[values.length];
+        if (integral || floating) {
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    normalized[i] = integral ? ((Number) values[i]).longValue() : ordered(((Number) values[i]).doubleValue());
+                }
+            }
+            return normalized;
+        }
+
+        // rank all other values
+        Integer[] positions = new Integer[values.length];
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                positions[count++] = i;
+            }
+        }
+        Arrays.sort(positions, 0, count, (first, second) -> CascadingAttributeComparator.compareValues(values[first], values[second]));
+        long rank = 0;
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && CascadingAttributeComparator.compareValues(values[positions[i - 1]], values[positions[i]]) != 0) {
+                rank++;
+            }
+            normalized[positions[i]] = rank;
+        }
+        return normalized;
+    }
+
+    /**
+     * Maps a double to a long with the same order as {@link Double#compare(double, double)}.
+     */
+    private static long ordered(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return bits ^ ((bits >> (Long.SIZE - 1)) & Long.MAX_VALUE);
+    }
+
+    private int compare(int first, int second) {
+        int firstOffset = first * width;
+        int secondOffset = second * width;
+        for (int column = 0; column < width; column++) {
+            int compare = Long.compare(keys[firstOffset + column], keys[secondOffset + column]);
+            if (compare != 0) {
+                return compare;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Stable merge sort of the given positions, small ranges are sorted by insertion.
+     */
+    private void sort(int[] order, int[] buffer, int from, int to) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                int position = order[i];
+                int j = i - 1;
+                while (j >= from && compare(order[j], position) > 0) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = position;
+            }
+            return;
+        }
+
+        // sort halves and merge
+        int middle = (from + to) >>> 1;
+        sort(order, buffer, from, middle);
+        sort(order, buffer, middle, to);
+        if (compare(order[middle - 1], order[middle]) <= 0) {
+            return;
+        }
+        System.arraycopy(order, from, buffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || left < middle && compare(buffer[left], buffer[right]) <= 0) {
+                order[i] = buffer[left++];
+            } else {
+                order[i] = buffer[right++];
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package de.chrgroth.generictypesystem.persistence.query.impl;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.persistence.query.ItemSortData;
+
+/**
+ * Source of already sorted items, e.g. backed by a sorted index. Items are pushed to a visitor instead of being returned, so sources may hold locks while
+ * walking.
+ *
+ * @author Christian Groth
+ */
+@FunctionalInterface
+public interface SortedItems {
+
+    /**
+     * Passes all accessible items in sorted order to the given visitor until it returns false.
+     *
+     * @param visitor
+     *            item visitor
+     */
+    void walk(Predicate<GenericItem> visitor);
+
+    /**
+     * Returns the sorts the items are ordered by. Needed to continue paging after a given position, by default the sort order is unknown.
+     *
+     * @return sorts or null if unknown
+     */
+    default List<ItemSortData> sorts() {
+        return null;
+    }
+
+    /**
+     * Passes all accessible items in sorted order to the given visitor until it returns false, starting at or before the given position. Sources able to seek
+     * should override this method, by default all items are walked from the beginning. Visitors have to skip items up to the position on their own.
+     *
+     * @param position
+     *            position to start at, see {@link ContinuationToken}
+     * @param visitor
+     *            item visitor
+     */
+    default void walk(GenericItem position, Predicate<GenericItem> visitor) {
+        walk(visitor);
+    }
+}
@@ -0,0 +1,43 @@
+package de.chrgroth.generictypesystem.persistence.sequence;
+
+/**
+ * Generates unique ids for persisted objects. Implementations must be thread safe.
+ *
+ * @author Christian Groth
+ */
+public interface IdSequence {
+
+    /**
+     * Returns the next unused id.
+     *
+     * @return next id
+     */
+    long next();
+
+    /**
+     * Returns the given number of unused ids at once. Ids are ascending but not necessarily contiguous. The default implementation calls {@link #next()}
+     * repeatedly.
+     *
+     * @param count
+     *            number of ids
+     * @return next ids
+     */
+    default long[] next(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count must not be negative: " + count + "!!");
+        }
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = next();
+        }
+        return ids;
+    }
+
+    /**
+     * Notifies the sequence about an id used outside of {@link #next()}, e.g. an explicitly given id. All following ids will be greater than the given id.
+     *
+     * @param usedId
+     *            used id
+     */
+    void update(long usedId);
+}
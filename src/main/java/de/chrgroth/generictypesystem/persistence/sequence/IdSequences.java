@@ -0,0 +1,55 @@
+package de.chrgroth.generictypesystem.persistence.sequence;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Holds all id sequences needed by a persistence service: one for units, one for types and one per type for items. All sequences are created lazily using the
+ * given factory, which receives the sequence name.
+ *
+ * @author Christian Groth
+ */
+public class IdSequences {
+
+    public static final String UNITS = "units";
+    public static final String TYPES = "types";
+    public static final String ITEMS_PREFIX = "items-";
+
+    private final Function<String, IdSequence> factory;
+    private final IdSequence units;
+    private final IdSequence types;
+    private final ConcurrentMap<Long, IdSequence> items;
+
+    public IdSequences(Function<String, IdSequence> factory) {
+        if (factory == null) {
+            throw new IllegalArgumentException("sequence factory must be given!!");
+        }
+        this.factory = factory;
+        units = factory.apply(UNITS);
+        types = factory.apply(TYPES);
+        items = new ConcurrentHashMap<>();
+    }
+
+    public IdSequence units() {
+        return units;
+    }
+
+    public IdSequence types() {
+        return types;
+    }
+
+    public IdSequence items(long typeId) {
+        return items.computeIfAbsent(typeId, id -> factory.apply(ITEMS_PREFIX + id));
+    }
+
+    /**
+     * Drops the item sequence for given type id, used once a type was removed.
+     *
+     * @param typeId
+     *            type id
+     */
+    public void removeItems(long typeId) {
+        items.remove(typeId);
+    }
+}
@@ -0,0 +1,54 @@
+package de.chrgroth.generictypesystem.persistence.sequence.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.chrgroth.generictypesystem.persistence.sequence.IdSequence;
+
+/**
+ * Transient id sequence backed by an {@link AtomicLong}.
+ *
+ * @author Christian Groth
+ */
+public class AtomicIdSequence implements IdSequence {
+
+    private final AtomicLong current;
+
+    public AtomicIdSequence() {
+        this(0);
+    }
+
+    /**
+     * Creates a new sequence continuing after the given id.
+     *
+     * @param lastId
+     *            last used id, the first id returned will be lastId + 1
+     */
+    public AtomicIdSequence(long lastId) {
+        current = new AtomicLong(lastId);
+    }
+
+    @Override
+    public long next() {
+        return current.incrementAndGet();
+    }
+
+    @Override
+    public long[] next(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count must not be negative: " + count + "!!");
+        }
+
+        // reserve all ids with a single update
+        long first = current.addAndGet(count) - count + 1;
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = first + i;
+        }
+        return ids;
+    }
+
+    @Override
+    public void update(long usedId) {
+        current.accumulateAndGet(usedId, Math::max);
+    }
+}
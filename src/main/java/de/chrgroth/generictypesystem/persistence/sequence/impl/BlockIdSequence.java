@@ -0,0 +1,64 @@
+package de.chrgroth.generictypesystem.persistence.sequence.impl;
+
+import de.chrgroth.generictypesystem.persistence.sequence.IdSequence;
+
+/**
+ * Hi-lo id sequence handing out ids from blocks reserved by an {@link IdBlockAllocator}. Only one allocator call is needed per block, so persistent backends
+ * need to store the reserved high value only once per block instead of once per id. Ids not handed out before a restart are lost.
+ *
+ * @author Christian Groth
+ */
+public class BlockIdSequence implements IdSequence {
+
+    private final IdBlockAllocator allocator;
+    private final int blockSize;
+
+    private long next;
+    private long end;
+
+    public BlockIdSequence(IdBlockAllocator allocator, int blockSize) {
+        if (allocator == null || blockSize < 1) {
+            throw new IllegalArgumentException("allocator and positive block size must be given!!");
+        }
+        this.allocator = allocator;
+        this.blockSize = blockSize;
+        next = 1;
+        end = 1;
+    }
+
+    @Override
+    public synchronized long next() {
+        if (next >= end) {
+            allocate(next);
+        }
+        return next++;
+    }
+
+    @Override
+    public synchronized long[] next(int count) {
+        return IdSequence.super.next(count);
+    }
+
+    @Override
+    public synchronized void update(long usedId) {
+        if (usedId < next) {
+            return;
+        }
+
+        // skip used id, reserve new block if outside of current block
+        if (usedId + 1 >= end) {
+            allocate(usedId + 1);
+        } else {
+            next = usedId + 1;
+        }
+    }
+
+    private void allocate(long lowerBound) {
+        long start = allocator.allocate(lowerBound, blockSize);
+        if (start < lowerBound) {
+            throw new IllegalStateException("allocated block " + start + " is below lower bound " + lowerBound);
+        }
+        next = start;
+        end = start + blockSize;
+    }
+}
@@ -0,0 +1,22 @@
+package de.chrgroth.generictypesystem.persistence.sequence.impl;
+
+/**
+ * Reserves blocks of ids for a {@link BlockIdSequence}, typically by updating a persistent high value.
+ *
+ * @author Christian Groth
+ */
+@FunctionalInterface
+public interface IdBlockAllocator {
+
+    /**
+     * Reserves a block of ids. The returned start id must be at least the given lower bound and the range [start, start + size) must never be handed out
+     * again.
+     *
+     * @param lowerBound
+     *            minimum start id
+     * @param size
+     *            block size
+     * @return first id of the reserved block
+     */
+    long allocate(long lowerBound, int size);
+}
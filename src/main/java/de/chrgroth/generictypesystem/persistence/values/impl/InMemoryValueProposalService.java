@@ -1,13 +1,12 @@
 package de.chrgroth.generictypesystem.persistence.values.impl;
 
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -17,13 +16,15 @@ import org.slf4j.LoggerFactory;
 
 import de.chrgroth.generictypesystem.context.GenericTypesystemContext;
 import de.chrgroth.generictypesystem.model.GenericAttribute;
+import de.chrgroth.generictypesystem.model.GenericAttributePath;
 import de.chrgroth.generictypesystem.model.GenericItem;
-import de.chrgroth.generictypesystem.model.GenericStructure;
 import de.chrgroth.generictypesystem.model.GenericType;
+import de.chrgroth.generictypesystem.model.GenericTypeSchema;
 import de.chrgroth.generictypesystem.persistence.PersistenceService;
 
 /**
- * A naive value proposal implementation independent from persistence layer.
+ * A naive value proposal implementation independent from persistence layer. Value proposals are either computed by scanning all given items or served from a
+ * {@link ValueProposalIndex} maintained by the persistence layer.
  *
  * @author Christian Groth
  */
@@ -51,8 +52,8 @@ public class InMemoryValueProposalService {
         }
 
         // collect all paths
-        Set<String> paths = new HashSet<>();
-        paths.addAll(collectValuePaths(type, ""));
+        GenericTypeSchema schema = type.schema();
+        Set<String> paths = schema.valueProposalPaths();
         if (paths.isEmpty()) {
             return Collections.emptyMap();
         }
@@ -62,71 +63,110 @@ public class InMemoryValueProposalService {
             LOG.debug("computing valueproposals for " + type + " based on " + items.size() + " items and paths " + paths);
         }
         Map<String, List<?>> valueProposals = new HashMap<>();
-        paths.forEach(p -> valueProposals.put(p, values(type, items, p, template)));
+        paths.forEach(p -> valueProposals.put(p, values(schema, items, p, template)));
 
         // done
         return valueProposals;
     }
 
-    private Collection<String> collectValuePaths(GenericStructure structure, String pathPrefix) {
-        Collection<String> paths = new HashSet<>();
+    /**
+     * Computes all value proposals for given type and optional template item using the given index, see
+     * {@link #values(GenericType, Set, GenericItem)}. Instead of scanning all items only the distinct values are visited, items are resolved until the first
+     * accessible item matching the template is found per value. Values of attributes with value proposal dependencies are read from the items holding all
+     * template values only, found by intersecting the indexes dependency bitmaps.
+     *
+     * @param type
+     *            type definition
+     * @param index
+     *            value proposal index of the type
+     * @param items
+     *            lookup for items by id, returning null for inaccessible items
+     * @param template
+     *            optional template item for value proposals
+     * @return all value proposals, never null
+     */
+    public Map<String, List<?>> values(GenericType type, ValueProposalIndex index, Function<Long, GenericItem> items, GenericItem template) {
 
-        // recurse into all structures
-        structure.getAttributes().stream().filter(a -> a.isStructure()).forEach(a -> paths.addAll(collectValuePaths(a.getStructure(), buildAttributePath(pathPrefix, a))));
+        // null guard
+        if (type == null || index == null || index.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        // collect all paths
+        GenericTypeSchema schema = type.schema();
+        Set<String> paths = schema.valueProposalPaths();
+        if (paths.isEmpty()) {
+            return Collections.emptyMap();
+        }
 
-        // add all string attributes
-        structure.getAttributes().stream().filter(a -> a.getType().isValueProposalDependenciesCapable()).forEach(a -> paths.add(buildAttributePath(pathPrefix, a)));
+        // collect value proposals
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("computing indexed valueproposals for " + type + " and paths " + paths);
+        }
+        Map<String, List<?>> valueProposals = new HashMap<>();
+        for (String path : paths) {
+            Map<String, Object> dependencies = dependencies(schema, path, template);
+            valueProposals.put(path, index.values(path, dependencies, id -> {
+                GenericItem item = items.apply(id);
+                return item != null && matches(schema, item, dependencies);
+            }));
+        }
 
         // done
-        return paths;
+        return valueProposals;
     }
 
-    private String buildAttributePath(String pathPrefix, GenericAttribute a) {
+    /**
+     * Computes the first value proposals for a single attribute path, starting with the given prefix ignoring case, using the given index. See
+     * {@link #values(GenericType, ValueProposalIndex, Function, GenericItem)} for details.
+     *
+     * @param type
+     *            type definition
+     * @param index
+     *            value proposal index of the type
+     * @param items
+     *            lookup for items by id, returning null for inaccessible items
+     * @param path
+     *            attribute path
+     * @param template
+     *            optional template item for value proposals
+     * @param prefix
+     *            optional value prefix
+     * @param limit
+     *            maximum number of value proposals
+     * @return value proposals, never null
+     */
+    public List<String> values(GenericType type, ValueProposalIndex index, Function<Long, GenericItem> items, String path, GenericItem template, String prefix,
+            int limit) {
 
-        // add prefix
-        StringBuilder sb = new StringBuilder();
-        sb.append(pathPrefix);
-        if (StringUtils.isNotBlank(pathPrefix)) {
-            sb.append(".");
+        // null guard
+        if (type == null || index == null || !type.schema().valueProposalPaths().contains(path)) {
+            return Collections.emptyList();
         }
 
-        // add name
-        sb.append(a.getName());
-
-        // done
-        return sb.toString();
+        // delegate
+        GenericTypeSchema schema = type.schema();
+        Map<String, Object> dependencies = dependencies(schema, path, template);
+        return index.values(path, dependencies, prefix, limit, id -> {
+            GenericItem item = items.apply(id);
+            return item != null && matches(schema, item, dependencies);
+        });
     }
 
-    private List<?> values(GenericType type, Set<GenericItem> items, String attributePath, GenericItem template) {
-
-        // check for value proposal dependencies and reduce items to the ones with matching values
-        GenericAttribute attribute = type.attribute(attributePath);
-        if (template != null && attribute.getValueProposalDependencies() != null && !attribute.getValueProposalDependencies().isEmpty()) {
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("reducing to matching items dependeing on template item for " + attributePath);
-            }
+    private List<?> values(GenericTypeSchema schema, Set<GenericItem> items, String attributePath, GenericItem template) {
 
-            // filter items by dependent attributes and their template values
-            Stream<GenericItem> itemsStream = items.stream();
-            for (Long dependencyId : attribute.getValueProposalDependencies()) {
-                String dependecyAttributePath = type.attributePath(dependencyId);
-                if (StringUtils.isNotBlank(dependecyAttributePath)) {
-                    Object templateValue = template.get(dependecyAttributePath);
-                    if (templateValue != null && StringUtils.isNotBlank(templateValue.toString())) {
-                        itemsStream = itemsStream.filter(i -> Objects.equals(i.get(dependecyAttributePath), templateValue));
-                    }
-                }
-            }
-
-            // filter
-            items = itemsStream.collect(Collectors.toSet());
+        // reduce items to the ones with matching values for value proposal dependencies
+        Map<String, Object> dependencies = dependencies(schema, attributePath, template);
+        if (!dependencies.isEmpty()) {
+            items = items.stream().filter(i -> matches(schema, i, dependencies)).collect(Collectors.toSet());
             if (LOG.isDebugEnabled()) {
                 LOG.debug("reduced to " + items.size() + " items for " + attributePath);
             }
         }
 
         // filter all null and empty values
-        Stream<Object> valuesStream = items.stream().map(i -> i.get(attributePath));
+        GenericAttributePath path = schema.path(attributePath);
+        Stream<Object> valuesStream = items.stream().map(path::get);
         Stream<String> nonEmptyValuesStream = valuesStream.filter(Objects::nonNull).map(s -> s.toString().trim()).filter(s -> s.length() > 0);
 
         // create list of ordered distinct values
@@ -138,4 +178,38 @@ public class InMemoryValueProposalService {
         // done
         return values;
     }
+
+    private Map<String, Object> dependencies(GenericTypeSchema schema, String attributePath, GenericItem template) {
+
+        // check for value proposal dependencies
+        GenericAttribute attribute = schema.attribute(attributePath);
+        if (template == null || attribute.getValueProposalDependencies() == null || attribute.getValueProposalDependencies().isEmpty()) {
+            return Collections.emptyMap();
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("reducing to matching items dependeing on template item for " + attributePath);
+        }
+
+        // collect dependent attributes and their template values
+        Map<String, Object> dependencies = new HashMap<>();
+        for (Long dependencyId : attribute.getValueProposalDependencies()) {
+            String dependecyAttributePath = schema.attributePath(dependencyId);
+            if (StringUtils.isNotBlank(dependecyAttributePath)) {
+                Object templateValue = schema.path(dependecyAttributePath).get(template);
+                if (templateValue != null && StringUtils.isNotBlank(templateValue.toString())) {
+                    dependencies.put(dependecyAttributePath, templateValue);
+                }
+            }
+        }
+        return dependencies;
+    }
+
+    private boolean matches(GenericTypeSchema schema, GenericItem item, Map<String, Object> dependencies) {
+        for (Map.Entry<String, Object> dependency : dependencies.entrySet()) {
+            if (!Objects.equals(schema.path(dependency.getKey()).get(item), dependency.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -0,0 +1,367 @@
+package de.chrgroth.generictypesystem.persistence.values.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+import org.apache.commons.lang3.StringUtils;
+
+import de.chrgroth.generictypesystem.model.GenericAttribute;
+import de.chrgroth.generictypesystem.model.GenericAttributePath;
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericTypeSchema;
+
+/**
+ * Index of all distinct values per value proposal path of a single type. Values are trimmed, empty values are ignored. For each value a bitmap of all items
+ * holding it is tracked, so values vanish as soon as the last item holding them is updated or removed. The bitmaps are also needed to check if at least one
+ * item holding a value is accessible and matches the value proposal dependencies.
+ * <p>
+ * For all paths used as value proposal dependency a bitmap of items is tracked per raw value as well. Value proposals depending on template values are
+ * computed by intersecting the bitmaps of all template values and reading the distinct values of the matching items only. Bitmaps are based on dense item
+ * ordinals, ordinals of removed items are reused.
+ * </p>
+ * <p>
+ * Values are ordered ignoring case, values differing in case only are ordered lower case first. The index is thread safe. An index may be published before it
+ * is populated, reads and updates are blocked meanwhile, see {@link #beginBuild()}.
+ * </p>
+ *
+ * @author Christian Groth
+ */
+public class ValueProposalIndex {
+
+    private static final Comparator<String> ORDER = String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.reverseOrder());
+
+    private final Set<String> paths;
+    private final Set<String> dependencyPaths;
+    private final List<GenericAttributePath> parsedPaths;
+    private final List<GenericAttributePath> parsedDependencyPaths;
+    private final ReadWriteLock lock;
+    private final Map<String, NavigableMap<String, BitSet>> values;
+    private final Map<String, Map<Object, BitSet>> dependencyValues;
+    private final Map<Long, Entry> entries;
+    private final List<Long> ids;
+    private final Deque<Integer> freeOrdinals;
+
+    public ValueProposalIndex(GenericTypeSchema schema) {
+        paths = Collections.unmodifiableSet(new HashSet<>(schema.valueProposalPaths()));
+        Set<String> dependencyPaths = new HashSet<>();
+        for (String path : paths) {
+            GenericAttribute attribute = schema.attribute(path);
+            if (attribute.getValueProposalDependencies() != null) {
+                attribute.getValueProposalDependencies().stream().map(schema::attributePath).filter(StringUtils::isNotBlank).forEach(dependencyPaths::add);
+            }
+        }
+        this.dependencyPaths = Collections.unmodifiableSet(dependencyPaths);
+        parsedPaths = new ArrayList<>();
+        paths.forEach(p -> parsedPaths.add(schema.path(p)));
+        parsedDependencyPaths = new ArrayList<>();
+        dependencyPaths.forEach(p -> parsedDependencyPaths.add(schema.path(p)));
+        lock = new ReentrantReadWriteLock();
+        values = new HashMap<>();
+        paths.forEach(p -> values.put(p, new TreeMap<>(ORDER)));
+        dependencyValues = new HashMap<>();
+        dependencyPaths.forEach(p -> dependencyValues.put(p, new HashMap<>()));
+        entries = new HashMap<>();
+        ids = new ArrayList<>();
+        freeOrdinals = new ArrayDeque<>();
+    }
+
+    /**
+     * Blocks all reads and updates of other threads until {@link #endBuild()} is called by the current thread, so the index can be published before all
+     * existing items have been added.
+     */
+    public void beginBuild() {
+        lock.writeLock().lock();
+    }
+
+    /**
+     * Releases the lock acquired by {@link #beginBuild()}.
+     */
+    public void endBuild() {
+        lock.writeLock().unlock();
+    }
+
+    public Set<String> getPaths() {
+        return paths;
+    }
+
+    public Set<String> getDependencyPaths() {
+        return dependencyPaths;
+    }
+
+    /**
+     * Adds or updates the given item. Previously indexed values of the item are removed first, so items may be updated in place.
+     *
+     * @param item
+     *            item to be indexed
+     */
+    public void update(GenericItem item) {
+        Long id = item.getId();
+
+        // compute values outside of lock
+        Map<String, String> newValues = new HashMap<>();
+        for (GenericAttributePath path : parsedPaths) {
+            Object value = path.get(item);
+            String trimmed = value != null ? value.toString().trim() : null;
+            if (trimmed != null && !trimmed.isEmpty()) {
+                newValues.put(path.getPath(), trimmed);
+            }
+        }
+        Map<String, Object> newDependencyValues = new HashMap<>();
+        for (GenericAttributePath path : parsedDependencyPaths) {
+            Object value = path.get(item);
+            if (value != null) {
+                newDependencyValues.put(path.getPath(), value);
+            }
+        }
+
+        // replace, reusing the ordinal of the item
+        lock.writeLock().lock();
+        try {
+            Entry entry = removeInternal(id, false);
+            int ordinal = entry != null ? entry.ordinal : nextOrdinal(id);
+            entries.put(id, new Entry(ordinal, newValues, newDependencyValues));
+            newValues.forEach((path, value) -> values.get(path).computeIfAbsent(value, v -> new BitSet()).set(ordinal));
+            newDependencyValues.forEach((path, value) -> dependencyValues.get(path).computeIfAbsent(value, v -> new BitSet()).set(ordinal));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int nextOrdinal(Long id) {
+        Integer ordinal = freeOrdinals.poll();
+        if (ordinal == null) {
+            ids.add(id);
+            return ids.size() - 1;
+        }
+        ids.set(ordinal, id);
+        return ordinal;
+    }
+
+    /**
+     * Removes the item with given id from the index.
+     *
+     * @param id
+     *            item id
+     */
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id, true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Entry removeInternal(Long id, boolean releaseOrdinal) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return null;
+        }
+        entry.values.forEach((path, value) -> clear(values.get(path), value, entry.ordinal));
+        entry.dependencyValues.forEach((path, value) -> clear(dependencyValues.get(path), value, entry.ordinal));
+        if (releaseOrdinal) {
+            ids.set(entry.ordinal, null);
+            freeOrdinals.push(entry.ordinal);
+        }
+        return entry;
+    }
+
+    private static <K> void clear(Map<K, BitSet> bitmaps, K key, int ordinal) {
+        BitSet bitmap = bitmaps.get(key);
+        bitmap.clear(ordinal);
+        if (bitmap.isEmpty()) {
+            bitmaps.remove(key);
+        }
+    }
+
+    /**
+     * Checks if no item is indexed at all.
+     *
+     * @return true if empty, false otherwise
+     */
+    public boolean isEmpty() {
+        lock.readLock().lock();
+        try {
+            return entries.isEmpty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns all distinct values of the given path, held by at least one item matching the given predicate. The predicate is tested with item ids until the
+     * first match per value, so the costs are proportional to the number of distinct values as long as most items match.
+     *
+     * @param path
+     *            value proposal path
+     * @param matcher
+     *            item id predicate
+     * @return ordered distinct values, never null
+     */
+    public List<String> values(String path, Predicate<Long> matcher) {
+        return values(path, Collections.emptyMap(), matcher);
+    }
+
+    /**
+     * Returns all distinct values of the given path, held by at least one item holding all given dependency values and matching the given predicate. Items
+     * are reduced by intersecting the bitmaps of all dependency values on indexed dependency paths first. Dependency values on other paths are ignored, the
+     * predicate has to check them.
+     *
+     * @param path
+     *            value proposal path
+     * @param dependencies
+     *            dependency values by path, items must hold equal values
+     * @param matcher
+     *            item id predicate
+     * @return ordered distinct values, never null
+     */
+    public List<String> values(String path, Map<String, Object> dependencies, Predicate<Long> matcher) {
+        lock.readLock().lock();
+        try {
+            NavigableMap<String, BitSet> pathValues = values.get(path);
+            if (pathValues == null) {
+                return Collections.emptyList();
+            }
+
+            // visit distinct values, first matching item per value
+            BitSet matching = intersect(dependencies);
+            if (matching == null) {
+                List<String> result = new ArrayList<>();
+                pathValues.forEach((value, bitmap) -> {
+                    if (matches(bitmap, null, matcher)) {
+                        result.add(value);
+                    }
+                });
+                return result;
+            }
+
+            // visit matching items, skipping already found values
+            Set<String> result = new TreeSet<>(ORDER);
+            for (int o = matching.nextSetBit(0); o >= 0; o = matching.nextSetBit(o + 1)) {
+                Long id = ids.get(o);
+                String value = entries.get(id).values.get(path);
+                if (value != null && !result.contains(value) && matcher.test(id)) {
+                    result.add(value);
+                }
+            }
+            return new ArrayList<>(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the first distinct values of the given path starting with the given prefix ignoring case, see
+     * {@link #values(String, Map, Predicate)}. Values are visited in order starting at the prefix until the limit is reached, so the costs are
+     * proportional to the number of visited values instead of all values.
+     *
+     * @param path
+     *            value proposal path
+     * @param dependencies
+     *            dependency values by path, items must hold equal values
+     * @param prefix
+     *            value prefix, ignoring case, or null for all values
+     * @param limit
+     *            maximum number of values
+     * @param matcher
+     *            item id predicate
+     * @return ordered distinct values, never null
+     */
+    public List<String> values(String path, Map<String, Object> dependencies, String prefix, int limit, Predicate<Long> matcher) {
+        lock.readLock().lock();
+        try {
+            NavigableMap<String, BitSet> pathValues = values.get(path);
+            BitSet matching = intersect(dependencies);
+            if (pathValues == null || limit < 1 || matching != null && matching.isEmpty()) {
+                return Collections.emptyList();
+            }
+
+            // lower case sorts first among values equal ignoring case
+            boolean hasPrefix = prefix != null && !prefix.isEmpty();
+            NavigableMap<String, BitSet> candidates = hasPrefix ? pathValues.tailMap(prefix.toLowerCase(Locale.ROOT), true) : pathValues;
+
+            // collect until limit or prefix no longer matches
+            List<String> result = new ArrayList<>();
+            for (Map.Entry<String, BitSet> candidate : candidates.entrySet()) {
+                if (hasPrefix && !candidate.getKey().regionMatches(true, 0, prefix, 0, prefix.length())) {
+                    break;
+                }
+                if (matches(candidate.getValue(), matching, matcher)) {
+                    result.add(candidate.getKey());
+                    if (result.size() >= limit) {
+                        break;
+                    }
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Intersects the bitmaps of all given dependency values on indexed paths.
+     *
+     * @return matching items, or null if no indexed dependency path is given
+     */
+    private BitSet intersect(Map<String, Object> dependencies) {
+        BitSet matching = null;
+        for (Map.Entry<String, Object> dependency : dependencies.entrySet()) {
+            Map<Object, BitSet> bitmaps = dependencyValues.get(dependency.getKey());
+            if (bitmaps == null) {
+                continue;
+            }
+            BitSet bitmap = bitmaps.get(dependency.getValue());
+            if (bitmap == null) {
+                return new BitSet();
+            }
+            if (matching == null) {
+                matching = (BitSet) bitmap.clone();
+            } else {
+                matching.and(bitmap);
+            }
+        }
+        return matching;
+    }
+
+    private boolean matches(BitSet bitmap, BitSet matching, Predicate<Long> matcher) {
+        for (int o = bitmap.nextSetBit(0); o >= 0; o = bitmap.nextSetBit(o + 1)) {
+            if ((matching == null || matching.get(o)) && matcher.test(ids.get(o))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Indexed values and ordinal of a single item.
+     */
+    private static final class Entry {
+
+        private final int ordinal;
+        private final Map<String, String> values;
+        private final Map<String, Object> dependencyValues;
+
+        private Entry(int ordinal, Map<String, String> values, Map<String, Object> dependencyValues) {
+            this.ordinal = ordinal;
+            this.values = values;
+            this.dependencyValues = dependencyValues;
+        }
+    }
+}
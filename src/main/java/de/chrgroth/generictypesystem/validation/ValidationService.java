@@ -1,5 +1,8 @@
 package de.chrgroth.generictypesystem.validation;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 import de.chrgroth.generictypesystem.model.GenericItem;
 import de.chrgroth.generictypesystem.model.GenericType;
 import de.chrgroth.generictypesystem.model.GenericUnits;
@@ -41,4 +44,29 @@ public interface ValidationService {
      * @return validation results
      */
     ValidationResult<GenericItem> validate(GenericType type, GenericItem item);
+
+    /**
+     * Validates all given items with belonging {@link GenericType}, see {@link #validate(GenericType, GenericItem)}. Implementations may validate items in
+     * parallel, the default implementation validates one item after another.
+     *
+     * @param type
+     *            the type belonging to all given items
+     * @param items
+     *            the items to be validated
+     * @return validation results in order of given items
+     */
+    default List<ValidationResult<GenericItem>> validateAll(GenericType type, List<GenericItem> items) {
+        return items.stream().map(i -> validate(type, i)).collect(Collectors.toList());
+    }
+
+    /**
+     * Notifies the service that the given {@link GenericUnits} were changed or removed. Implementations caching anything derived from units must drop it, the
+     * default implementation does nothing.
+     *
+     * @param unitsId
+     *            id of the changed units
+     */
+    default void unitsChanged(long unitsId) {
+        // nothing cached by default
+    }
 }
@@ -1,9 +1,16 @@
 package de.chrgroth.generictypesystem.validation.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -18,16 +25,26 @@ import de.chrgroth.generictypesystem.model.GenericAttribute;
 import de.chrgroth.generictypesystem.model.GenericItem;
 import de.chrgroth.generictypesystem.model.GenericStructure;
 import de.chrgroth.generictypesystem.model.GenericType;
+import de.chrgroth.generictypesystem.model.GenericTypeSchema;
 import de.chrgroth.generictypesystem.model.GenericUnit;
 import de.chrgroth.generictypesystem.model.GenericUnits;
 import de.chrgroth.generictypesystem.model.GenericValue;
 import de.chrgroth.generictypesystem.model.UnitValue;
 import de.chrgroth.generictypesystem.validation.ValidationResult;
 import de.chrgroth.generictypesystem.validation.ValidationService;
+import de.chrgroth.generictypesystem.validation.impl.ItemValidationPlan.AttributeRules;
 
 /**
  * The default validation service for all type and item validations. You may pass an instance of {@link DefaultValidationServiceHooks} to customize or enhance
  * the validation logic rather than implementing a new validation service by yourself.
+ * <p>
+ * Item validation uses a plan per type schema, see {@link GenericType#schema()}. The type itself, including all type hooks, is validated only when the plan is
+ * built, plans are rebuilt when the schema is invalidated or any units changed, see {@link #unitsChanged(long)}.
+ * </p>
+ * <p>
+ * {@link #validateAll(GenericType, List)} splits the items into chunks validated in parallel on a {@link ForkJoinPool}, as long as the hooks are thread safe, see
+ * {@link DefaultValidationServiceHooks#isThreadSafe()}.
+ * </p>
  *
  * @author Christian Groth
  */
@@ -35,13 +52,35 @@ public class DefaultValidationService implements ValidationService {
 
     private static final Logger LOG = LoggerFactory.getLogger(DefaultValidationService.class);
 
+    private static final int PARALLEL_CHUNK_SIZE = 256;
+
     private final Function<Long, GenericUnits> unitsLookup;
     private final DefaultValidationServiceHooks hooks;
+    private final Map<GenericTypeSchema, ItemValidationPlan> plans;
+    private final AtomicLong unitsVersion;
+    private final ForkJoinPool pool;
 
     public DefaultValidationService(Function<Long, GenericUnits> unitsLookup, DefaultValidationServiceHooks hooks) {
+        this(unitsLookup, hooks, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new validation service using the given pool for bulk item validation.
+     *
+     * @param unitsLookup
+     *            lookup for units by id
+     * @param hooks
+     *            optional hooks
+     * @param pool
+     *            pool for parallel item validation, null to always validate sequentially
+     */
+    public DefaultValidationService(Function<Long, GenericUnits> unitsLookup, DefaultValidationServiceHooks hooks, ForkJoinPool pool) {
         Objects.requireNonNull(unitsLookup);
         this.unitsLookup = unitsLookup;
         this.hooks = hooks != null ? hooks : new DefaultValidationServiceEmptyHooks();
+        plans = Collections.synchronizedMap(new WeakHashMap<>());
+        unitsVersion = new AtomicLong();
+        this.pool = pool;
     }
 
     @Override
@@ -536,18 +575,19 @@ public class DefaultValidationService implements ValidationService {
         }
 
         // abort on invalid type
-        ValidationResult<GenericType> typeValidationResult = validate(type);
-        if (!typeValidationResult.isValid()) {
+        GenericTypeSchema schema = type.schema();
+        ItemValidationPlan plan = plan(type, schema);
+        if (!plan.isTypeValid()) {
             result.error("", DefaultValidationServiceMessageKey.ITEM_TYPE_INVALID);
             return result;
         }
 
         // validate item level
-        validateItemLevel(result, type, item, "");
+        validateItemLevel(result, plan, type, item, "");
 
         // check all values
         item.get().entrySet().forEach(e -> {
-            if (type.attribute(e.getKey()) == null) {
+            if (schema.attribute(e.getKey()) == null) {
                 result.error(e.getKey(), DefaultValidationServiceMessageKey.ITEM_ATTRIBUTE_UNDEFINED);
             }
         });
@@ -559,19 +599,84 @@ public class DefaultValidationService implements ValidationService {
         return result;
     }
 
-    private void validateItemLevel(ValidationResult<GenericItem> result, GenericStructure structure, GenericItem item, String path) {
+    @Override
+    public List<ValidationResult<GenericItem>> validateAll(GenericType type, List<GenericItem> items) {
+
+        // validate sequentially for small batches or if not allowed to run in parallel
+        if (pool == null || items.size() <= PARALLEL_CHUNK_SIZE || !hooks.isThreadSafe()) {
+            return ValidationService.super.validateAll(type, items);
+        }
+
+        // ensure plan is built only once
+        if (type != null) {
+            plan(type, type.schema());
+        }
+
+        // validate in parallel
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("validating " + items.size() + " items in parallel");
+        }
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        ValidationResult<GenericItem>[] results = new ValidationResult[items.size()];
+        pool.invoke(ForkJoinTask.adapt(() -> {
+
+            // split into chunks, idle workers steal pending chunks
+            List<ForkJoinTask<?>> chunks = new ArrayList<>();
+            for (int from = 0; from < items.size(); from += PARALLEL_CHUNK_SIZE) {
+                final int start = from;
+                final int end = Math.min(from + PARALLEL_CHUNK_SIZE, items.size());
+                chunks.add(ForkJoinTask.adapt(() -> {
+                    for (int i = start; i < end; i++) {
+                        results[i] = validate(type, items.get(i));
+                    }
+                }));
+            }
+            ForkJoinTask.invokeAll(chunks);
+        }));
+        return Arrays.asList(results);
+    }
+
+    @Override
+    public void unitsChanged(long unitsId) {
+
+        // all plans are rebuilt lazily, units changes are rare compared to item validations
+        unitsVersion.incrementAndGet();
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("units " + unitsId + " changed, invalidating item validation plans");
+        }
+    }
+
+    /**
+     * Returns the item validation plan for given type, the type is validated only if no current plan exists for its schema.
+     */
+    private ItemValidationPlan plan(GenericType type, GenericTypeSchema schema) {
+        long currentUnitsVersion = unitsVersion.get();
+        ItemValidationPlan plan = plans.get(schema);
+        if (plan == null || !plan.isCurrent(currentUnitsVersion)) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("building item validation plan for type " + type.getId());
+            }
+            plan = new ItemValidationPlan(schema, validate(type).isValid(), unitsLookup, currentUnitsVersion);
+            plans.put(schema, plan);
+        }
+        return plan;
+    }
+
+    private void validateItemLevel(ValidationResult<GenericItem> result, ItemValidationPlan plan, GenericStructure structure, GenericItem item, String path) {
 
         // check all attributes on this level
-        structure.getAttributes().forEach(a -> validateItemAttribute(result, structure, a, item, path));
+        structure.getAttributes().forEach(a -> validateItemAttribute(result, plan, structure, a, item, path));
 
         // call item level hook
         hooks.itemLevelValidation(result, structure, item, path);
     }
 
-    private void validateItemAttribute(ValidationResult<GenericItem> result, GenericStructure structure, GenericAttribute a, GenericItem item, String path) {
+    private void validateItemAttribute(ValidationResult<GenericItem> result, ItemValidationPlan plan, GenericStructure structure, GenericAttribute a, GenericItem item,
+            String path) {
 
         // check mandatory value
-        Object value = item.get(a.getName());
+        AttributeRules rules = plan.rules(a);
+        Object value = rules.path().get(item);
 
         // check if value is unit based
         boolean isUnitValue = value instanceof UnitValue;
@@ -605,7 +710,7 @@ public class DefaultValidationService implements ValidationService {
             UnitValue unitValue = (UnitValue) value;
 
             // check units and unit are registered for attribute
-            if (!a.isUnitBased() || !Objects.equals(a.getUnitsId(), unitValue.getUnitsId()) || unitsLookup.apply(a.getUnitsId()).unit(unitValue.getUnitId()) == null) {
+            if (!a.isUnitBased() || !Objects.equals(a.getUnitsId(), unitValue.getUnitsId()) || !plan.isUnitDefined(a.getUnitsId(), unitValue.getUnitId())) {
                 result.error(path + a.getName(), DefaultValidationServiceMessageKey.ITEM_VALUE_UNIT_INVALID);
             }
         }
@@ -628,7 +733,7 @@ public class DefaultValidationService implements ValidationService {
 
         // recurse for nested structures
         if (a.isStructure()) {
-            validateItemLevel(result, a.getStructure(), (GenericItem) checkValue, path + a.getName() + ".");
+            validateItemLevel(result, plan, a.getStructure(), (GenericItem) checkValue, path + a.getName() + ".");
         } else {
 
             // handle list attributes
@@ -637,7 +742,7 @@ public class DefaultValidationService implements ValidationService {
             } else if (valueAssignableToType) {
 
                 // handle simple attributes
-                validateItemAttributeValue(result, structure, a, item, checkValue, path);
+                validateItemAttributeValue(result, rules, structure, a, item, checkValue, path);
             }
         }
     }
@@ -663,16 +768,17 @@ public class DefaultValidationService implements ValidationService {
         hooks.itemListAttributeValueValidation(result, structure, a, item, value, path);
     }
 
-    private void validateItemAttributeValue(ValidationResult<GenericItem> result, GenericStructure structure, GenericAttribute a, GenericItem item, Object value, String path) {
+    private void validateItemAttributeValue(ValidationResult<GenericItem> result, AttributeRules rules, GenericStructure structure, GenericAttribute a, GenericItem item,
+            Object value, String path) {
 
         // string validation
         if (a.getType().isText()) {
-            validateItemAttributeStringValue(result, a, value.toString(), path);
+            validateItemAttributeStringValue(result, rules, a, value.toString(), path);
         }
 
         // enum validation
         if (a.getType().isEnum()) {
-            validateItemAttributeEnumValue(result, a, value.toString(), path);
+            validateItemAttributeEnumValue(result, rules, a, value.toString(), path);
         }
 
         // numeric validation
@@ -687,54 +793,54 @@ public class DefaultValidationService implements ValidationService {
             } else if (value instanceof Double) {
                 dValue = (Double) value;
             }
-            validateItemAttributeDoubleValue(result, a, dValue, path);
+            validateItemAttributeDoubleValue(result, rules, a, dValue, path);
         }
 
         // call item simple attribute value hook
         hooks.itemSimpleAttributeValueValidation(result, structure, a, item, value, path);
     }
 
-    private void validateItemAttributeStringValue(ValidationResult<GenericItem> result, GenericAttribute a, String value, String path) {
+    private void validateItemAttributeStringValue(ValidationResult<GenericItem> result, AttributeRules rules, GenericAttribute a, String value, String path) {
 
         // validate min
         int length = value.length();
-        if (a.getMin() != null && a.getMin() > length) {
+        if (rules.isMinUndercut(length)) {
             result.error(path + a.getName(), DefaultValidationServiceMessageKey.ITEM_VALUE_MIN_UNDERCUT, a.getMin());
         }
 
         // validate max
-        if (a.getMax() != null && a.getMax() < length) {
+        if (rules.isMaxExceeded(length)) {
             result.error(path + a.getName(), DefaultValidationServiceMessageKey.ITEM_VALUE_MAX_EXCEEDED, a.getMax());
         }
 
         // validate pattern
-        if (StringUtils.isNotBlank(a.getPattern())) {
-            Pattern pattern = Pattern.compile(a.getPattern());
-            Matcher matcher = pattern.matcher(value);
-            if (!matcher.matches()) {
-                result.error(path + a.getName(), DefaultValidationServiceMessageKey.ITEM_VALUE_PATTERN_VIOLATED, a.getPattern());
-            }
+        if (rules.isPatternViolated(value)) {
+            result.error(path + a.getName(), DefaultValidationServiceMessageKey.ITEM_VALUE_PATTERN_VIOLATED, a.getPattern());
         }
     }
 
-    private void validateItemAttributeEnumValue(ValidationResult<GenericItem> result, GenericAttribute a, String value, String path) {
+    private void validateItemAttributeEnumValue(ValidationResult<GenericItem> result, AttributeRules rules, GenericAttribute a, String value, String path) {
 
         // check if value is an allowed enum value
-        Set<String> enumValues = a.getEnumValues();
-        if (enumValues != null && !enumValues.contains(value)) {
+        if (rules.isEnumValueInvalid(value)) {
             result.error(path + a.getName(), DefaultValidationServiceMessageKey.ITEM_VALUE_ENUM_INVALID);
         }
     }
 
-    private void validateItemAttributeDoubleValue(ValidationResult<GenericItem> result, GenericAttribute a, Double value, String path) {
+    private void validateItemAttributeDoubleValue(ValidationResult<GenericItem> result, AttributeRules rules, GenericAttribute a, Double value, String path) {
+
+        // null guard
+        if (value == null) {
+            return;
+        }
 
         // validate min
-        if (a.getMin() != null && a.getMin() > value) {
+        if (rules.isMinUndercut(value)) {
             result.error(path + a.getName(), DefaultValidationServiceMessageKey.ITEM_VALUE_MIN_UNDERCUT, a.getMin());
         }
 
         // validate max
-        if (a.getMax() != null && a.getMax() < value) {
+        if (rules.isMaxExceeded(value)) {
             result.error(path + a.getName(), DefaultValidationServiceMessageKey.ITEM_VALUE_MAX_EXCEEDED, a.getMax());
         }
     }
@@ -11,12 +11,20 @@ import de.chrgroth.generictypesystem.model.GenericUnits;
 import de.chrgroth.generictypesystem.validation.ValidationResult;
 
 /**
- * Default and empty hooks implementation for {@link DefaultValidationService}.
+ * Default and empty hooks implementation for {@link DefaultValidationService}. The empty hooks are thread safe, subclasses are not unless they override
+ * {@link #isThreadSafe()}.
  *
  * @author Christian Groth
  */
 public class DefaultValidationServiceEmptyHooks implements DefaultValidationServiceHooks {
 
+    @Override
+    public boolean isThreadSafe() {
+
+        // subclasses must opt in explicitly
+        return getClass() == DefaultValidationServiceEmptyHooks.class;
+    }
+
     @Override
     public void unitsValidation(ValidationResult<GenericUnits> result, GenericUnits units) {
 
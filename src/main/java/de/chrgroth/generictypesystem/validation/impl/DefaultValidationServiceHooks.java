@@ -17,6 +17,16 @@ import de.chrgroth.generictypesystem.validation.ValidationResult;
  */
 public interface DefaultValidationServiceHooks {
 
+    /**
+     * Declares if the hooks may be called concurrently from multiple threads. Bulk item validation runs in parallel only for thread safe hooks, otherwise all
+     * items are validated sequentially on the calling thread.
+     *
+     * @return true if hooks are thread safe, false otherwise
+     */
+    default boolean isThreadSafe() {
+        return false;
+    }
+
     /**
      * Called to validate the given units.
      *
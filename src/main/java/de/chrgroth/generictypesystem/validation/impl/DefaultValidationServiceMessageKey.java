@@ -104,5 +104,9 @@ public enum DefaultValidationServiceMessageKey implements ValidationMessageKey {
 
     ITEM_VALUE_ENUM_INVALID,
 
-    ITEM_ATTRIBUTE_UNDEFINED;
+    ITEM_ATTRIBUTE_UNDEFINED,
+
+    ITEM_UNIQUE_KEY_VIOLATED,
+
+    ITEM_NOT_PERSISTED;
 }
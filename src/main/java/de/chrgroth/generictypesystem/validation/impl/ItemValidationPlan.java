@@ -0,0 +1,144 @@
+package de.chrgroth.generictypesystem.validation.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.commons.lang3.StringUtils;
+
+import de.chrgroth.generictypesystem.model.GenericAttribute;
+import de.chrgroth.generictypesystem.model.GenericAttributePath;
+import de.chrgroth.generictypesystem.model.GenericTypeSchema;
+import de.chrgroth.generictypesystem.model.GenericUnits;
+
+/**
+ * Immutable plan for validating items of a single type schema. The plan holds the outcome of the type validation and all per attribute checks resolved
+ * upfront: parsed value paths, compiled patterns, min and max values, enum values and the unit ids of all referenced units. A plan is bound to the schema it was built for and
+ * to the units version at build time, it must be rebuilt as soon as any units changed, see {@link #isCurrent(long)}.
+ *
+ * @author Christian Groth
+ */
+final class ItemValidationPlan {
+
+    private final boolean typeValid;
+    private final Map<GenericAttribute, AttributeRules> rules;
+    private final long unitsVersion;
+    private final Map<Long, Set<Long>> unitIds;
+
+    ItemValidationPlan(GenericTypeSchema schema, boolean typeValid, Function<Long, GenericUnits> unitsLookup, long unitsVersion) {
+        this.typeValid = typeValid;
+        this.unitsVersion = unitsVersion;
+        rules = new IdentityHashMap<>();
+        unitIds = new HashMap<>();
+        for (GenericAttribute a : schema.attributes()) {
+            if (typeValid) {
+                rules.put(a, new AttributeRules(a));
+            }
+
+            // resolve units
+            if (a.getUnitsId() != null && !unitIds.containsKey(a.getUnitsId())) {
+                GenericUnits units = unitsLookup.apply(a.getUnitsId());
+                Set<Long> ids = new HashSet<>();
+                if (units != null && units.getUnits() != null) {
+                    units.getUnits().forEach(u -> ids.add(u.getId()));
+                }
+                unitIds.put(a.getUnitsId(), ids);
+            }
+        }
+    }
+
+    /**
+     * Checks if the plan was built for the given units version.
+     *
+     * @param currentUnitsVersion
+     *            current units version
+     * @return true if the plan may be used, false if it must be rebuilt
+     */
+    boolean isCurrent(long currentUnitsVersion) {
+        return unitsVersion == currentUnitsVersion;
+    }
+
+    boolean isTypeValid() {
+        return typeValid;
+    }
+
+    boolean isUnitDefined(Long unitsId, Long unitId) {
+        Set<Long> ids = unitIds.get(unitsId);
+        return ids != null && ids.contains(unitId);
+    }
+
+    AttributeRules rules(GenericAttribute a) {
+        AttributeRules attributeRules = rules.get(a);
+
+        // attributes not known to the schema are resolved dynamically
+        return attributeRules != null ? attributeRules : new AttributeRules(a);
+    }
+
+    /**
+     * Resolved item value checks of a single attribute.
+     */
+    static final class AttributeRules {
+
+        private final GenericAttributePath path;
+        private final boolean hasMin;
+        private final double min;
+        private final boolean hasMax;
+        private final double max;
+        private final Pattern pattern;
+        private final String invalidPattern;
+        private final Set<String> enumValues;
+
+        private AttributeRules(GenericAttribute a) {
+            path = new GenericAttributePath(a.getName());
+            hasMin = a.getMin() != null;
+            min = hasMin ? a.getMin() : 0.0d;
+            hasMax = a.getMax() != null;
+            max = hasMax ? a.getMax() : 0.0d;
+            pattern = compile(a.getPattern());
+            invalidPattern = pattern == null && StringUtils.isNotBlank(a.getPattern()) ? a.getPattern() : null;
+            enumValues = a.getEnumValues() != null ? Collections.unmodifiableSet(new HashSet<>(a.getEnumValues())) : null;
+        }
+
+        GenericAttributePath path() {
+            return path;
+        }
+
+        boolean isMinUndercut(double value) {
+            return hasMin && min > value;
+        }
+
+        boolean isMaxExceeded(double value) {
+            return hasMax && max < value;
+        }
+
+        boolean isPatternViolated(String value) {
+            if (invalidPattern != null) {
+
+                // fails with the syntax error when the pattern is actually needed
+                return !Pattern.compile(invalidPattern).matcher(value).matches();
+            }
+            return pattern != null && !pattern.matcher(value).matches();
+        }
+
+        boolean isEnumValueInvalid(String value) {
+            return enumValues != null && !enumValues.contains(value);
+        }
+
+        private static Pattern compile(String pattern) {
+            if (StringUtils.isBlank(pattern)) {
+                return null;
+            }
+            try {
+                return Pattern.compile(pattern);
+            } catch (PatternSyntaxException e) {
+                return null;
+            }
+        }
+    }
+}
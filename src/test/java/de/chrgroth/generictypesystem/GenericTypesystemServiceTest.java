@@ -1,5 +1,8 @@
 package de.chrgroth.generictypesystem;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -10,6 +13,7 @@ import org.mockito.MockitoAnnotations;
 import de.chrgroth.generictypesystem.context.GenericTypesystemContext;
 import de.chrgroth.generictypesystem.context.impl.DefaultGenericTypesystemContext;
 import de.chrgroth.generictypesystem.context.impl.NullGenericTypesystemContext;
+import de.chrgroth.generictypesystem.model.DefaultGenericAttributeType;
 import de.chrgroth.generictypesystem.model.GenericAttribute;
 import de.chrgroth.generictypesystem.model.GenericItem;
 import de.chrgroth.generictypesystem.model.GenericStructure;
@@ -95,7 +99,7 @@ public class GenericTypesystemServiceTest {
     public void unitsUnitIdsMissing() {
 
         // create type
-        GenericUnits units = new GenericUnits();
+        GenericUnits units = new GenericUnits(1l, "time", null);
         units.getUnits().add(new GenericUnit(0l, "seconds", "s", GenericUnits.FACTOR_BASE));
         units.getUnits().add(new GenericUnit(null, "minutes", "m", 60));
         units.getUnits().add(new GenericUnit(null, "hours", "h", 60 * 60));
@@ -105,12 +109,14 @@ public class GenericTypesystemServiceTest {
         ValidationResult<GenericUnits> validationResult = Mockito.mock(ValidationResult.class);
         Mockito.when(validation.validate(Mockito.any(GenericUnits.class))).thenReturn(validationResult);
         Mockito.when(validationResult.isValid()).thenReturn(Boolean.TRUE);
+        Mockito.when(persistence.units(Mockito.any(), Mockito.any())).thenReturn(true);
 
         // call service
         service.units(context, units);
         long unitsWithoutId = units.getUnits().stream().filter(u -> u.getId() == null).count();
         Assert.assertEquals(0, unitsWithoutId);
         Mockito.verify(persistence, Mockito.times(1)).units(Mockito.any(), Mockito.any());
+        Mockito.verify(validation, Mockito.times(1)).unitsChanged(1l);
     }
 
     @Test
@@ -365,6 +371,12 @@ public class GenericTypesystemServiceTest {
         Mockito.verify(persistence, Mockito.times(1)).query(Mockito.any(), Mockito.eq(2l), Mockito.isNull());
     }
 
+    @Test
+    public void stream() {
+        service.stream(context, 2l, null);
+        Mockito.verify(persistence, Mockito.times(1)).stream(Mockito.any(), Mockito.eq(2l), Mockito.isNull());
+    }
+
     @Test
     public void item() {
         service.item(context, 2l, 3l);
@@ -412,17 +424,143 @@ public class GenericTypesystemServiceTest {
         Mockito.when(validationResult.isValid()).thenReturn(Boolean.TRUE);
 
         GenericItem item = new GenericItem();
+        Mockito.when(persistence.item(context, type.getId(), item)).thenReturn(true);
         service.item(context, type.getId(), item);
         Assert.assertEquals(666l, item.getTypeId().longValue());
         Mockito.verify(persistence, Mockito.times(1)).item(Mockito.any(), Mockito.eq(type.getId()), Mockito.eq(item));
     }
 
+    @Test
+    public void itemUniqueKeyViolated() {
+
+        // type with unique attribute
+        GenericType type = new GenericType();
+        type.setId(666l);
+        type.getAttributes().add(new GenericAttribute(1l, "key", DefaultGenericAttributeType.STRING, null, true, true, null, null, null, null, null, null, null, null, null, null));
+        Mockito.when(persistence.type(context, 666l)).thenReturn(type);
+        Mockito.when(validation.validate(Mockito.any(), Mockito.any())).thenAnswer(i -> new ValidationResult<>(i.<GenericItem> getArgument(1)));
+
+        // unique key used by other item
+        GenericItem existing = new GenericItem(1l, type.getId(), null, null, null);
+        existing.set("key", "value");
+        Mockito.when(persistence.findByUniqueKey(Mockito.any(), Mockito.eq(type.getId()), Mockito.eq(type.computeUniqueKey(existing)))).thenReturn(existing);
+
+        // new item is rejected
+        GenericItem item = new GenericItem();
+        item.set("key", "value");
+        ValidationResult<GenericItem> result = service.item(context, type.getId(), item);
+        ValidationResultUtils.assertValidationResult(result, item, new ValidationError("", DefaultValidationServiceMessageKey.ITEM_UNIQUE_KEY_VIOLATED));
+        Mockito.verify(persistence, Mockito.times(0)).item(Mockito.any(), Mockito.anyLong(), Mockito.nullable(GenericItem.class));
+
+        // updating the existing item is fine
+        Mockito.when(persistence.item(context, type.getId(), existing)).thenReturn(true);
+        Assert.assertTrue(service.item(context, type.getId(), existing).isValid());
+        Mockito.verify(persistence, Mockito.times(1)).item(Mockito.any(), Mockito.eq(type.getId()), Mockito.eq(existing));
+
+        // rejected by persistence, key taken concurrently
+        GenericItem concurrent = new GenericItem();
+        concurrent.set("key", "other");
+        Mockito.when(persistence.findByUniqueKey(Mockito.any(), Mockito.eq(type.getId()), Mockito.eq(type.computeUniqueKey(concurrent)))).thenReturn(null, existing);
+        result = service.item(context, type.getId(), concurrent);
+        ValidationResultUtils.assertValidationResult(result, concurrent, new ValidationError("", DefaultValidationServiceMessageKey.ITEM_UNIQUE_KEY_VIOLATED));
+
+        // rejected by persistence for other reasons
+        GenericItem rejected = new GenericItem();
+        rejected.set("key", "another");
+        result = service.item(context, type.getId(), rejected);
+        ValidationResultUtils.assertValidationResult(result, rejected, new ValidationError("", DefaultValidationServiceMessageKey.ITEM_NOT_PERSISTED));
+    }
+
+    @Test
+    public void itemsBatch() {
+
+        // type with unique attribute
+        GenericType type = new GenericType();
+        type.setId(666l);
+        type.getAttributes().add(new GenericAttribute(1l, "key", DefaultGenericAttributeType.STRING, null, true, true, null, null, null, null, null, null, null, null, null, null));
+        Mockito.when(persistence.type(context, 666l)).thenReturn(type);
+        Mockito.when(validation.validate(Mockito.any(), Mockito.any())).thenAnswer(i -> {
+            ValidationResult<GenericItem> result = new ValidationResult<>(i.<GenericItem> getArgument(1));
+            if (i.<GenericItem> getArgument(1).get("key") == null) {
+                result.error("key", DefaultValidationServiceMessageKey.ITEM_VALUE_MANDATORY);
+            }
+            return result;
+        });
+        Mockito.when(validation.validateAll(Mockito.any(), Mockito.any())).thenCallRealMethod();
+
+        // batch with invalid item and duplicate unique key
+        GenericItem first = new GenericItem();
+        first.set("key", "one");
+        GenericItem invalid = new GenericItem();
+        GenericItem duplicate = new GenericItem();
+        duplicate.set("key", "one");
+        GenericItem second = new GenericItem();
+        second.set("key", "two");
+        Mockito.when(persistence.items(context, type.getId(), Arrays.asList(first, second))).thenReturn(Arrays.asList(true, true));
+        List<ValidationResult<GenericItem>> results = service.items(context, type.getId(), Arrays.asList(first, invalid, duplicate, second));
+
+        // only valid items are saved in a single call
+        Assert.assertEquals(4, results.size());
+        ValidationResultUtils.assertValidationResult(results.get(0), first);
+        ValidationResultUtils.assertValidationResult(results.get(1), invalid, new ValidationError("key", DefaultValidationServiceMessageKey.ITEM_VALUE_MANDATORY));
+        ValidationResultUtils.assertValidationResult(results.get(2), duplicate, new ValidationError("", DefaultValidationServiceMessageKey.ITEM_UNIQUE_KEY_VIOLATED));
+        ValidationResultUtils.assertValidationResult(results.get(3), second);
+        Assert.assertEquals(type.getId(), first.getTypeId());
+        Mockito.verify(persistence, Mockito.times(1)).type(context, type.getId());
+        Mockito.verify(persistence, Mockito.times(1)).items(context, type.getId(), Arrays.asList(first, second));
+        Mockito.verify(persistence, Mockito.never()).item(Mockito.any(), Mockito.anyLong(), Mockito.nullable(GenericItem.class));
+    }
+
+    @Test
+    public void itemsBatchNormalizedUniqueKey() {
+
+        // type with numeric unique attribute
+        GenericType type = new GenericType();
+        type.setId(666l);
+        type.getAttributes().add(new GenericAttribute(1l, "code", DefaultGenericAttributeType.LONG, null, true, true, null, null, null, null, null, null, null, null, null, null));
+        Mockito.when(persistence.type(context, 666l)).thenReturn(type);
+        Mockito.when(validation.validate(Mockito.any(), Mockito.any())).thenAnswer(i -> new ValidationResult<>(i.<GenericItem> getArgument(1)));
+        Mockito.when(validation.validateAll(Mockito.any(), Mockito.any())).thenCallRealMethod();
+
+        // same key with different number types, third rejected by persistence
+        GenericItem first = new GenericItem();
+        first.set("code", 1);
+        GenericItem duplicate = new GenericItem();
+        duplicate.set("code", 1l);
+        GenericItem rejected = new GenericItem();
+        rejected.set("code", 2l);
+        Mockito.when(persistence.items(context, type.getId(), Arrays.asList(first, rejected))).thenReturn(Arrays.asList(true, false));
+        List<ValidationResult<GenericItem>> results = service.items(context, type.getId(), Arrays.asList(first, duplicate, rejected));
+
+        // check results
+        ValidationResultUtils.assertValidationResult(results.get(0), first);
+        ValidationResultUtils.assertValidationResult(results.get(1), duplicate, new ValidationError("", DefaultValidationServiceMessageKey.ITEM_UNIQUE_KEY_VIOLATED));
+        ValidationResultUtils.assertValidationResult(results.get(2), rejected, new ValidationError("", DefaultValidationServiceMessageKey.ITEM_NOT_PERSISTED));
+    }
+
+    @Test
+    public void findByUniqueKey() {
+        service.findByUniqueKey(context, 2l, null);
+        Mockito.verify(persistence, Mockito.times(1)).findByUniqueKey(context, 2l, null);
+    }
+
     @Test
     public void values() {
         service.values(context, 0l, null);
         Mockito.verify(persistence, Mockito.times(1)).values(context, 0l, null);
     }
 
+    @Test
+    public void valuesByPrefix() {
+        service.values(context, 0l, "path", null, "pre", 10);
+        Mockito.verify(persistence, Mockito.times(1)).values(context, 0l, "path", null, "pre", 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void valuesByPrefixInvalidLimit() {
+        service.values(context, 0l, "path", null, "pre", 0);
+    }
+
     @Test
     public void removeItem() {
         service.removeItem(context, 0l, 0l);
@@ -439,5 +577,11 @@ public class GenericTypesystemServiceTest {
     public void removeUnits() {
         service.removeUnits(context, 0l);
         Mockito.verify(persistence, Mockito.times(1)).removeUnits(context, 0l);
+        Mockito.verify(validation, Mockito.times(0)).unitsChanged(Mockito.anyLong());
+
+        // plans invalidated only if removed
+        Mockito.when(persistence.removeUnits(context, 0l)).thenReturn(true);
+        service.removeUnits(context, 0l);
+        Mockito.verify(validation, Mockito.times(1)).unitsChanged(0l);
     }
 }
@@ -3,6 +3,10 @@ package de.chrgroth.generictypesystem.context.impl;
 import org.junit.Assert;
 import org.junit.Test;
 
+import de.chrgroth.generictypesystem.context.AccessRules;
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericType;
+
 public class DefaultGenericTypesystemContextTest {
 
     @Test
@@ -33,4 +37,35 @@ public class DefaultGenericTypesystemContextTest {
     public void nullTypeNullItemAccessible() {
         Assert.assertFalse(new DefaultGenericTypesystemContext().isItemAccessible(null, null));
     }
+
+    @Test
+    public void typeAccessRules() {
+        Assert.assertEquals(AccessRules.VISIBILITY, new DefaultGenericTypesystemContext(1l).typeAccessRules());
+        Assert.assertEquals(AccessRules.CUSTOM, new DefaultGenericTypesystemContext() {
+
+            @Override
+            public boolean isTypeAccessible(GenericType type) {
+                return false;
+            }
+        }.typeAccessRules());
+    }
+
+    @Test
+    public void itemAccessRules() {
+        Assert.assertEquals(AccessRules.VISIBILITY, new DefaultGenericTypesystemContext(1l).itemAccessRules());
+        Assert.assertEquals(AccessRules.VISIBILITY, new DefaultGenericTypesystemContext() {
+
+            @Override
+            public Long currentUser() {
+                return 2l;
+            }
+        }.itemAccessRules());
+        Assert.assertEquals(AccessRules.CUSTOM, new DefaultGenericTypesystemContext() {
+
+            @Override
+            public boolean isItemAccessible(GenericType type, GenericItem item) {
+                return false;
+            }
+        }.itemAccessRules());
+    }
 }
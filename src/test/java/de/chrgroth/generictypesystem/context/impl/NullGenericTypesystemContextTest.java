@@ -3,6 +3,8 @@ package de.chrgroth.generictypesystem.context.impl;
 import org.junit.Assert;
 import org.junit.Test;
 
+import de.chrgroth.generictypesystem.context.AccessRules;
+
 public class NullGenericTypesystemContextTest {
 
     @Test
@@ -19,4 +21,14 @@ public class NullGenericTypesystemContextTest {
     public void itemAccessible() {
         Assert.assertTrue(new NullGenericTypesystemContext().isItemAccessible(null, null));
     }
+
+    @Test
+    public void typeAccessRules() {
+        Assert.assertEquals(AccessRules.ALL, new NullGenericTypesystemContext().typeAccessRules());
+    }
+
+    @Test
+    public void itemAccessRules() {
+        Assert.assertEquals(AccessRules.ALL, new NullGenericTypesystemContext().itemAccessRules());
+    }
 }
@@ -0,0 +1,65 @@
+package de.chrgroth.generictypesystem.model;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GenericAttributePathTest {
+
+    private GenericItem item;
+
+    @Before
+    public void init() {
+        item = new GenericItem();
+        item.set("foo", " bar ");
+        item.set("nested.foo", "baz");
+        item.set("nested.deep.foo", 1l);
+        item.set("nested..foo", "dot");
+    }
+
+    @Test
+    public void resolvesLikeItem() {
+        for (String path : Arrays.asList(null, "", " ", "foo", "unknown", "nested", "nested.foo", "nested.deep.foo", "nested.unknown.foo", "nested.", ".foo",
+                "nested..foo", " .foo")) {
+            Assert.assertEquals(path, item.get(path), new GenericAttributePath(path).get(item));
+        }
+        Assert.assertNull(new GenericAttributePath("foo").get(null));
+    }
+
+    @Test
+    public void set() {
+        GenericAttributePath path = new GenericAttributePath("other.deep.value");
+        Assert.assertNull(path.set(item, "first"));
+        Assert.assertEquals("first", item.get("other.deep.value"));
+        Assert.assertEquals("first", path.set(item, "second"));
+        Assert.assertEquals("second", path.get(item));
+
+        // invalid paths are ignored
+        Assert.assertNull(new GenericAttributePath(null).set(item, "value"));
+        Assert.assertNull(new GenericAttributePath("other.").set(item, "value"));
+    }
+
+    @Test
+    public void remove() {
+        Assert.assertEquals(1l, new GenericAttributePath("nested.deep.foo").remove(item));
+        Assert.assertNull(item.get("nested.deep.foo"));
+        Assert.assertNull(new GenericAttributePath("nested.deep.foo").remove(item));
+        Assert.assertNull(new GenericAttributePath("unknown.foo").remove(item));
+        Assert.assertNull(item.get("unknown"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void corruptNestedValue() {
+        new GenericAttributePath("foo.bar").get(item);
+    }
+
+    @Test
+    public void equality() {
+        Assert.assertEquals(new GenericAttributePath("nested.foo"), new GenericAttributePath("nested.foo"));
+        Assert.assertEquals(new GenericAttributePath("nested.foo").hashCode(), new GenericAttributePath("nested.foo").hashCode());
+        Assert.assertNotEquals(new GenericAttributePath("nested.foo"), new GenericAttributePath("foo"));
+        Assert.assertEquals(new GenericAttributePath(null), new GenericAttributePath(null));
+    }
+}
@@ -0,0 +1,125 @@
+package de.chrgroth.generictypesystem.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class GenericTypeSchemaTest {
+
+    private GenericType type;
+    private GenericAttribute nested;
+
+    @Before
+    public void init() {
+        type = new GenericType();
+        attribute(type, 1l, "foo", DefaultGenericAttributeType.STRING).setUnique(true);
+        attribute(type, 2l, "count", DefaultGenericAttributeType.LONG);
+        nested = attribute(type, 3l, "nested", DefaultGenericAttributeType.STRUCTURE);
+        nested.setStructure(new GenericStructure());
+        attribute(nested.getStructure(), 4l, "bar", DefaultGenericAttributeType.STRING);
+        attribute(nested.getStructure(), 5l, "baz", DefaultGenericAttributeType.LONG);
+    }
+
+    @Test
+    public void emptyStructure() {
+        GenericTypeSchema schema = new GenericType().schema();
+        Assert.assertTrue(schema.attributes().isEmpty());
+        Assert.assertNull(schema.attribute("foo"));
+        Assert.assertNull(schema.attributePath(1l));
+        Assert.assertFalse(schema.hasUniqueKey());
+        Assert.assertNull(schema.computeUniqueKey(new GenericItem()));
+        Assert.assertFalse(schema.containsLists());
+        Assert.assertFalse(schema.containsStructures());
+    }
+
+    @Test
+    public void normalizeUniqueKey() {
+        Assert.assertNull(GenericTypeSchema.normalizeUniqueKey(null));
+        Assert.assertEquals(ImmutableMap.<String, Object> builder().put("a", 1l).put("b", 1.5d).put("c", "x").put("d", 2l).build(),
+                GenericTypeSchema.normalizeUniqueKey(ImmutableMap.<String, Object> builder().put("a", 1).put("b", 1.5f).put("c", "x").put("d", 2l).build()));
+    }
+
+    @Test
+    public void matchesStructure() {
+        GenericTypeSchema schema = type.schema();
+
+        // attributes
+        Assert.assertEquals(type.attributes(), schema.attributes());
+        for (String path : Arrays.asList(null, "", "foo", "count", "nested", "nested.bar", "nested.baz", "nested.unknown", "unknown", "nested..bar")) {
+            Assert.assertEquals(path, type.attribute(path), schema.attribute(path));
+        }
+
+        // paths
+        for (Long id : Arrays.asList(null, 1l, 2l, 3l, 4l, 5l, 6l)) {
+            Assert.assertEquals(String.valueOf(id), type.attributePath(id), schema.attributePath(id));
+        }
+
+        // unique key
+        GenericItem item = new GenericItem();
+        item.set("foo", "value");
+        item.set("count", 1l);
+        Assert.assertTrue(schema.hasUniqueKey());
+        Assert.assertEquals(type.computeUniqueKey(item), schema.computeUniqueKey(item));
+        Assert.assertEquals(ImmutableMap.<String, Object> builder().put("foo", "value").build(), schema.computeUniqueKey(item));
+
+        // flags
+        Assert.assertEquals(new HashSet<>(Arrays.asList("foo", "nested.bar")), schema.valueProposalPaths());
+        Assert.assertFalse(schema.containsLists());
+        Assert.assertTrue(schema.containsStructures());
+    }
+
+    @Test
+    public void attributePaths() {
+        GenericTypeSchema schema = type.schema();
+
+        // bound and parsed once
+        GenericAttributePath path = schema.path("nested.bar");
+        Assert.assertSame(path, schema.path("nested.bar"));
+        Assert.assertSame(type.attribute("nested.bar"), path.getAttribute());
+        Assert.assertEquals("nested.bar", path.getPath());
+
+        // unknown paths
+        Assert.assertNull(schema.path("nested.unknown").getAttribute());
+        Assert.assertEquals(schema.path("nested.unknown"), schema.path("nested.unknown"));
+        Assert.assertNull(schema.path(null).getAttribute());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void immutable() {
+        type.schema().attributes().clear();
+    }
+
+    @Test
+    public void cached() {
+        Assert.assertSame(type.schema(), type.schema());
+    }
+
+    @Test
+    public void invalidation() {
+        GenericTypeSchema schema = type.schema();
+
+        // in place modifications are visible after invalidation only
+        attribute(nested.getStructure(), 6l, "list", DefaultGenericAttributeType.LIST);
+        Assert.assertNull(type.schema().attribute("nested.list"));
+        type.invalidateSchema();
+        Assert.assertNotSame(schema, type.schema());
+        Assert.assertNotNull(type.schema().attribute("nested.list"));
+        Assert.assertTrue(type.schema().containsLists());
+
+        // setting attributes invalidates
+        type.setAttributes(new ArrayList<>());
+        Assert.assertTrue(type.schema().attributes().isEmpty());
+    }
+
+    private GenericAttribute attribute(GenericStructure structure, Long id, String name, GenericAttributeType attributeType) {
+        GenericAttribute attribute = new GenericAttribute(id, name, attributeType, null, false, false, null, null, null, null, null, null, null, null, null, null);
+        structure.getAttributes().add(attribute);
+        return attribute;
+    }
+}
@@ -0,0 +1,64 @@
+package de.chrgroth.generictypesystem.persistence;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.google.common.collect.ImmutableMap;
+
+import de.chrgroth.generictypesystem.context.GenericTypesystemContext;
+import de.chrgroth.generictypesystem.context.impl.NullGenericTypesystemContext;
+import de.chrgroth.generictypesystem.model.DefaultGenericAttributeType;
+import de.chrgroth.generictypesystem.model.GenericAttribute;
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericType;
+
+public class PersistenceServiceTest {
+
+    private GenericTypesystemContext context;
+    private PersistenceService service;
+    private GenericItem first;
+    private GenericItem second;
+
+    @Before
+    public void setup() {
+        context = new NullGenericTypesystemContext();
+        service = Mockito.mock(PersistenceService.class);
+        Mockito.when(service.findByUniqueKey(Mockito.any(), Mockito.anyLong(), Mockito.any())).thenCallRealMethod();
+
+        // type with unique attribute and items
+        GenericType type = new GenericType(1l, "name", "group", null, null, null, null);
+        type.getAttributes().add(new GenericAttribute(1l, "key", DefaultGenericAttributeType.STRING, null, true, true, null, null, null, null, null, null, null, null, null, null));
+        first = new GenericItem(1l, 1l, ImmutableMap.of("key", "one"), null, null);
+        second = new GenericItem(2l, 1l, ImmutableMap.of("key", "two"), null, null);
+        Mockito.when(service.type(context, 1l)).thenReturn(type);
+        Mockito.when(service.items(context, 1l)).thenReturn(new HashSet<>(Arrays.asList(first, second)));
+    }
+
+    @Test
+    public void findByUniqueKey() {
+        Assert.assertEquals(second, service.findByUniqueKey(context, 1l, ImmutableMap.of("key", "two")));
+        Assert.assertEquals(first, service.findByUniqueKey(context, 1l, ImmutableMap.of("key", "one")));
+        Assert.assertNull(service.findByUniqueKey(context, 1l, ImmutableMap.of("key", "three")));
+        Assert.assertNull(service.findByUniqueKey(context, 1l, null));
+        Assert.assertNull(service.findByUniqueKey(context, 2l, ImmutableMap.of("key", "one")));
+    }
+
+    @Test
+    public void findByNormalizedUniqueKey() {
+        GenericType type = new GenericType(3l, "name", "group", null, null, null, null);
+        type.getAttributes().add(new GenericAttribute(1l, "code", DefaultGenericAttributeType.LONG, null, true, true, null, null, null, null, null, null, null, null, null, null));
+        GenericItem item = new GenericItem(3l, 3l, ImmutableMap.of("code", 1l), null, null);
+        Mockito.when(service.type(context, 3l)).thenReturn(type);
+        Mockito.when(service.items(context, 3l)).thenReturn(new HashSet<>(Arrays.asList(item)));
+
+        // number types don't matter
+        Assert.assertEquals(item, service.findByUniqueKey(context, 3l, ImmutableMap.of("code", 1)));
+        Assert.assertEquals(item, service.findByUniqueKey(context, 3l, ImmutableMap.of("code", 1l)));
+        Assert.assertNull(service.findByUniqueKey(context, 3l, ImmutableMap.of("code", 2)));
+    }
+}
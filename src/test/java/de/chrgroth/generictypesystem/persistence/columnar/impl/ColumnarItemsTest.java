@@ -0,0 +1,179 @@
+package de.chrgroth.generictypesystem.persistence.columnar.impl;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.chrgroth.generictypesystem.model.DefaultGenericAttributeType;
+import de.chrgroth.generictypesystem.model.GenericAttribute;
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericStructure;
+import de.chrgroth.generictypesystem.model.GenericType;
+import de.chrgroth.generictypesystem.model.GenericValue;
+import de.chrgroth.generictypesystem.model.UnitValue;
+import de.chrgroth.generictypesystem.model.Visibility;
+import de.chrgroth.generictypesystem.persistence.query.ItemSortData;
+import de.chrgroth.generictypesystem.persistence.query.impl.CascadingAttributeComparator;
+
+public class ColumnarItemsTest {
+
+    private GenericType type;
+    private ColumnarItems items;
+
+    @Before
+    public void setup() {
+        type = new GenericType(0l, "type", "group", null, null, null, null);
+        type.getAttributes().add(attribute("name", DefaultGenericAttributeType.STRING, null, null));
+        type.getAttributes().add(attribute("count", DefaultGenericAttributeType.LONG, null, null));
+        type.getAttributes().add(attribute("price", DefaultGenericAttributeType.DOUBLE, null, null));
+        type.getAttributes().add(attribute("active", DefaultGenericAttributeType.BOOLEAN, null, null));
+        type.getAttributes().add(attribute("date", DefaultGenericAttributeType.DATE, null, null));
+        type.getAttributes().add(attribute("weight", DefaultGenericAttributeType.DOUBLE, null, 1l));
+        GenericStructure nested = new GenericStructure(Arrays.asList(attribute("value", DefaultGenericAttributeType.LONG, null, null)));
+        type.getAttributes().add(attribute("nested", DefaultGenericAttributeType.STRUCTURE, nested, null));
+        items = new ColumnarItems(type.schema());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingSchema() {
+        new ColumnarItems(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingId() {
+        items.put(new GenericItem(null, 0l, null, null, null));
+    }
+
+    @Test
+    public void roundtrip() {
+        GenericItem item = new GenericItem(1l, 0l, null, 2l, Visibility.PRIVATE);
+        item.set("name", "name");
+        item.set("count", 3l);
+        item.set("price", 4.5d);
+        item.set("active", true);
+        item.set("date", LocalDate.of(2017, 1, 2));
+        item.set("weight", new UnitValue(1l, 0l, new GenericValue<>(Double.class, 6.0d)));
+        item.set("nested.value", 7l);
+        item.set("undefined", Arrays.asList(8l));
+        item.set("null", null);
+        items.put(item);
+
+        // typed columns
+        Assert.assertTrue(items.column("name") instanceof StringColumn);
+        Assert.assertTrue(items.column("count") instanceof LongColumn);
+        Assert.assertTrue(items.column("price") instanceof DoubleColumn);
+        Assert.assertTrue(items.column("active") instanceof BooleanColumn);
+        Assert.assertTrue(items.column("date") instanceof ObjectColumn);
+        Assert.assertTrue(items.column("weight") instanceof ObjectColumn);
+        Assert.assertTrue(items.column("nested.value") instanceof LongColumn);
+        Assert.assertTrue(items.column("undefined") instanceof ObjectColumn);
+
+        // materialized copy
+        GenericItem read = items.get(1l);
+        Assert.assertNotSame(item, read);
+        Assert.assertEquals(item, read);
+        Assert.assertEquals(item.getValues(), read.getValues());
+        Assert.assertEquals(2l, read.getOwner().longValue());
+        Assert.assertEquals(Visibility.PRIVATE, read.getVisibility());
+        Assert.assertTrue(read.getValues().containsKey("null"));
+        Assert.assertNull(items.get(2l));
+
+        // values not matching the column type
+        item.set("count", 9);
+        item.remove("name");
+        items.put(item);
+        Assert.assertEquals(9, items.get(1l).get("count"));
+        Assert.assertFalse(items.get(1l).getValues().containsKey("name"));
+        Assert.assertFalse(items.paths().contains("name"));
+        Assert.assertEquals(1, items.size());
+    }
+
+    @Test
+    public void dictionary() {
+        items.put(item(1l, "a", null));
+        items.put(item(2l, "a", null));
+        items.put(item(3l, "b", null));
+        Assert.assertEquals(2, ((StringColumn) items.column("name")).distinct());
+
+        // unreferenced values are dropped, codes reused
+        items.put(item(3l, "a", null));
+        Assert.assertEquals(1, ((StringColumn) items.column("name")).distinct());
+        items.put(item(4l, "c", null));
+        Assert.assertEquals(2, ((StringColumn) items.column("name")).distinct());
+        Assert.assertEquals("c", items.get(4l).get("name"));
+        Assert.assertEquals("a", items.get(3l).get("name"));
+    }
+
+    @Test
+    public void removal() {
+        items.put(item(1l, "a", 1l));
+        items.put(item(2l, "b", null));
+        Assert.assertTrue(items.remove(1l));
+        Assert.assertFalse(items.remove(1l));
+        Assert.assertEquals(1, items.size());
+        Assert.assertFalse(items.paths().contains("count"));
+
+        // rows are reused
+        items.put(item(3l, "c", 3l));
+        Assert.assertEquals(Arrays.asList(3l, 2l), items.items().stream().map(GenericItem::getId).collect(Collectors.toList()));
+        Assert.assertEquals(3l, items.get(3l).get("count"));
+        Assert.assertNull(items.get(2l).get("count"));
+    }
+
+    @Test
+    public void sort() {
+        List<GenericItem> all = new ArrayList<>();
+        all.add(item(1l, "b", 3l));
+        all.add(item(2l, " a", 1l));
+        all.add(item(3l, null, 2l));
+        all.add(item(4l, "a ", null));
+        all.add(item(5l, "c", 2l));
+        all.add(new GenericItem(6l, 0l, null, null, null));
+        GenericItem mismatch = item(7l, "b", null);
+        mismatch.set("count", 2);
+        all.add(mismatch);
+        all.forEach(items::put);
+
+        // same order as comparing materialized items
+        List<List<ItemSortData>> allSorts = new ArrayList<>();
+        allSorts.add(Arrays.asList(sort("name", true)));
+        allSorts.add(Arrays.asList(sort("name", false)));
+        allSorts.add(Arrays.asList(sort("count", true), sort("name", false)));
+        allSorts.add(Arrays.asList(sort("count", false), sort("name", true)));
+        allSorts.add(Arrays.asList(sort("unknown", true)));
+        allSorts.add(new ArrayList<>());
+        for (List<ItemSortData> sorts : allSorts) {
+            List<GenericItem> expected = new ArrayList<>(all);
+            expected.sort(new CascadingAttributeComparator(sorts));
+            List<Long> sorted = Arrays.stream(items.sort(sorts)).boxed().collect(Collectors.toList());
+            Assert.assertEquals(expected.stream().map(GenericItem::getId).collect(Collectors.toList()), sorted);
+        }
+    }
+
+    private GenericAttribute attribute(String name, DefaultGenericAttributeType attributeType, GenericStructure structure, Long unitsId) {
+        return new GenericAttribute(null, name, attributeType, null, false, false, structure, null, null, null, null, null, null, new HashSet<>(), unitsId, null);
+    }
+
+    private GenericItem item(Long id, String name, Long count) {
+        GenericItem item = new GenericItem(id, 0l, null, null, null);
+        item.set("name", name);
+        if (count != null) {
+            item.set("count", count);
+        }
+        return item;
+    }
+
+    private ItemSortData sort(String path, boolean ascending) {
+        ItemSortData sort = new ItemSortData();
+        sort.setPath(path);
+        sort.setAscending(ascending);
+        return sort;
+    }
+}
@@ -0,0 +1,226 @@
+package de.chrgroth.generictypesystem.persistence.file.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.chrgroth.generictypesystem.model.DefaultGenericAttributeType;
+import de.chrgroth.generictypesystem.model.GenericAttribute;
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericStructure;
+import de.chrgroth.generictypesystem.model.GenericType;
+import de.chrgroth.generictypesystem.model.GenericUnit;
+import de.chrgroth.generictypesystem.model.GenericUnits;
+import de.chrgroth.generictypesystem.model.GenericValue;
+import de.chrgroth.generictypesystem.model.UnitValue;
+import de.chrgroth.generictypesystem.model.Visibility;
+
+public class BinaryCodecTest {
+
+    @Test
+    public void units() throws IOException {
+        GenericUnits units = new GenericUnits(1l, "time", null);
+        units.getUnits().add(new GenericUnit(0l, "seconds", "s", GenericUnits.FACTOR_BASE));
+        units.getUnits().add(new GenericUnit(1l, "minutes", null, 60));
+
+        GenericUnits read = roundtrip(units);
+        Assert.assertEquals(units.getId(), read.getId());
+        Assert.assertEquals("time", read.getName());
+        Assert.assertNull(read.getDescription());
+        Assert.assertEquals(units.getUnits(), read.getUnits());
+        Assert.assertEquals(60, read.unit(1l).getFactor(), 0.0d);
+        Assert.assertNull(read.unit(1l).getSymbol());
+    }
+
+    @Test
+    public void type() throws IOException {
+        GenericType type = new GenericType(1l, "name", "group", null, 2l, Visibility.PRIVATE, 10l);
+        type.getCustomProperties().put("color", new GenericValue<>(String.class, "red"));
+        GenericAttribute nested = new GenericAttribute(1l, "nested", DefaultGenericAttributeType.LONG, null, false, false, null, 0.0d, 10.0d, 1.0d, null, null, null,
+                null, 3l, null);
+        GenericAttribute structure = new GenericAttribute(0l, "structure", DefaultGenericAttributeType.STRUCTURE, null, true, true,
+                new GenericStructure(Arrays.asList(nested)), null, null, null, null, null, null, null, null, null);
+        GenericAttribute list = new GenericAttribute(2l, "list", DefaultGenericAttributeType.LIST, DefaultGenericAttributeType.ENUM, false, false, null, null, null, null,
+                "[a-z]+", new GenericValue<>(Long.class, 5l), "callback", new HashSet<>(Arrays.asList(0l, 1l)), null, new HashSet<>(Arrays.asList("a", "b")));
+        type.getAttributes().addAll(Arrays.asList(structure, list));
+
+        GenericType read = roundtrip(type);
+        Assert.assertEquals("name", read.getName());
+        Assert.assertEquals("group", read.getGroup());
+        Assert.assertEquals(2l, read.getOwner().longValue());
+        Assert.assertEquals(Visibility.PRIVATE, read.getVisibility());
+        Assert.assertEquals(10l, read.getPageSize().longValue());
+        Assert.assertEquals("red", read.getCustomProperties().get("color").getValue());
+        Assert.assertEquals(String.class, read.getCustomProperties().get("color").getType());
+
+        // attributes
+        Assert.assertEquals(Arrays.asList("structure", "list"), Arrays.asList(read.getAttributes().get(0).getName(), read.getAttributes().get(1).getName()));
+        GenericAttribute readStructure = read.getAttributes().get(0);
+        Assert.assertTrue(readStructure.isUnique());
+        Assert.assertTrue(readStructure.isMandatory());
+        GenericAttribute readNested = readStructure.getStructure().getAttributes().get(0);
+        Assert.assertEquals(DefaultGenericAttributeType.LONG, readNested.getType());
+        Assert.assertEquals(10.0d, readNested.getMax(), 0.0d);
+        Assert.assertEquals(3l, readNested.getUnitsId().longValue());
+        GenericAttribute readList = read.getAttributes().get(1);
+        Assert.assertEquals(DefaultGenericAttributeType.ENUM, readList.getValueType());
+        Assert.assertEquals("[a-z]+", readList.getPattern());
+        Assert.assertEquals(5l, readList.getDefaultValue().getValue());
+        Assert.assertEquals("callback", readList.getDefaultValueCallback());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(0l, 1l)), readList.getValueProposalDependencies());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("a", "b")), readList.getEnumValues());
+        Assert.assertEquals("structure.nested", read.schema().attributePath(1l));
+    }
+
+    @Test
+    public void item() throws IOException {
+        GenericItem item = new GenericItem(1l, 2l, null, 3l, Visibility.PUBLIC);
+        item.set("string", "text");
+        item.set("long", 1l);
+        item.set("integer", 2);
+        item.set("double", 3.0d);
+        item.set("float", 4.0f);
+        item.set("boolean", true);
+        item.set("date", LocalDate.of(2017, 1, 2));
+        item.set("time", LocalTime.of(1, 2, 3));
+        item.set("datetime", LocalDateTime.of(2017, 1, 2, 3, 4, 5));
+        item.set("nested.value", "nested");
+        item.set("list", Arrays.asList(1l, null, "a"));
+        item.set("unit", new UnitValue(1l, 2l, new GenericValue<>(Double.class, 1.5d)));
+        item.set("null", null);
+
+        GenericItem read = roundtrip(item);
+        Assert.assertEquals(item, read);
+        Assert.assertEquals(3l, read.getOwner().longValue());
+        Assert.assertEquals(Visibility.PUBLIC, read.getVisibility());
+        Assert.assertEquals(item.getValues().keySet(), read.getValues().keySet());
+        for (String key : Arrays.asList("string", "long", "integer", "double", "float", "boolean", "date", "time", "datetime", "nested.value", "list", "null")) {
+            Assert.assertEquals(key, item.get(key), read.get(key));
+        }
+        UnitValue unit = (UnitValue) read.get("unit");
+        Assert.assertEquals(1l, unit.getUnitsId().longValue());
+        Assert.assertEquals(2l, unit.getUnitId().longValue());
+        Assert.assertEquals(1.5d, unit.getValue().getValue());
+    }
+
+    @Test
+    public void schemaItem() throws IOException {
+        GenericType type = new GenericType(1l, "name", "group", null, null, null, null);
+        GenericAttribute nested = attribute("value", DefaultGenericAttributeType.LONG, null);
+        type.getAttributes().addAll(Arrays.asList(attribute("string", DefaultGenericAttributeType.STRING, null), attribute("enum", DefaultGenericAttributeType.ENUM,
+                null), attribute("long", DefaultGenericAttributeType.LONG, null), attribute("double", DefaultGenericAttributeType.DOUBLE, null),
+                attribute("boolean", DefaultGenericAttributeType.BOOLEAN, null), attribute("date", DefaultGenericAttributeType.DATE, null),
+                attribute("time", DefaultGenericAttributeType.TIME, null), attribute("datetime", DefaultGenericAttributeType.DATETIME, null),
+                attribute("nested", DefaultGenericAttributeType.STRUCTURE, new GenericStructure(Arrays.asList(nested))),
+                attribute("list", DefaultGenericAttributeType.LIST, null), attribute("unit", DefaultGenericAttributeType.DOUBLE, null),
+                attribute("mismatch", DefaultGenericAttributeType.LONG, null), attribute("null", DefaultGenericAttributeType.STRING, null),
+                attribute("absent", DefaultGenericAttributeType.STRING, null)));
+
+        GenericItem item = new GenericItem(1l, 1l, null, 3l, Visibility.PRIVATE);
+        item.set("string", "text");
+        item.set("enum", "A");
+        item.set("long", 1l);
+        item.set("double", 3.0d);
+        item.set("boolean", false);
+        item.set("date", LocalDate.of(2017, 1, 2));
+        item.set("time", LocalTime.of(1, 2, 3, 4));
+        item.set("datetime", LocalDateTime.of(2017, 1, 2, 3, 4, 5));
+        item.set("nested.value", 5l);
+        item.set("list", Arrays.asList("a", "b"));
+        item.set("unit", new UnitValue(1l, 2l, new GenericValue<>(Double.class, 1.5d)));
+        item.set("mismatch", "no long");
+        item.set("null", null);
+        item.set("undefined", 6);
+
+        // values without names are smaller than tagged values
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            BinaryCodec.writeItem(out, type, item);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        GenericItem read = BinaryCodec.readItem(in, type);
+        Assert.assertEquals(0, in.available());
+        Assert.assertTrue(bytes.size() < size(item));
+
+        Assert.assertEquals(item, read);
+        Assert.assertEquals(3l, read.getOwner().longValue());
+        Assert.assertEquals(Visibility.PRIVATE, read.getVisibility());
+        Assert.assertEquals(item.getValues().keySet(), read.getValues().keySet());
+        for (String key : Arrays.asList("string", "enum", "long", "double", "boolean", "date", "time", "datetime", "nested.value", "list", "mismatch", "null",
+                "undefined")) {
+            Assert.assertEquals(key, item.get(key), read.get(key));
+        }
+        Assert.assertEquals(1.5d, ((UnitValue) read.get("unit")).getValue().getValue());
+        Assert.assertFalse(read.getValues().containsKey("absent"));
+    }
+
+    @Test
+    public void schemaItemWithoutValues() throws IOException {
+        GenericType type = new GenericType(1l, "name", "group", null, null, null, null);
+        type.setAttributes(null);
+        GenericItem item = new GenericItem(1l, null, null, null, null);
+        item.setValues(null);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            BinaryCodec.writeItem(out, type, item);
+        }
+        GenericItem read = BinaryCodec.readItem(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), type);
+        Assert.assertEquals(1l, read.getId().longValue());
+        Assert.assertNull(read.getTypeId());
+        Assert.assertNull(read.getValues());
+    }
+
+    @Test(expected = IOException.class)
+    public void unsupportedValue() throws IOException {
+        GenericItem item = new GenericItem(1l, 2l, null, null, null);
+        item.set("map", Collections.emptyMap());
+        roundtrip(item);
+    }
+
+    @Test(expected = IOException.class)
+    public void unknownValueType() throws IOException {
+        BinaryCodec.readValue(new DataInputStream(new ByteArrayInputStream(new byte[] { 99 })));
+    }
+
+    private GenericAttribute attribute(String name, DefaultGenericAttributeType type, GenericStructure structure) {
+        return new GenericAttribute(null, name, type, null, false, false, structure, null, null, null, null, null, null, null, null, null);
+    }
+
+    private int size(GenericItem item) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            BinaryCodec.writeItem(out, item);
+        }
+        return bytes.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T roundtrip(T value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            if (value instanceof GenericUnits) {
+                BinaryCodec.writeUnits(out, (GenericUnits) value);
+            } else if (value instanceof GenericType) {
+                BinaryCodec.writeType(out, (GenericType) value);
+            } else {
+                BinaryCodec.writeItem(out, (GenericItem) value);
+            }
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        T read = (T) (value instanceof GenericUnits ? BinaryCodec.readUnits(in) : value instanceof GenericType ? BinaryCodec.readType(in) : BinaryCodec.readItem(in));
+        Assert.assertEquals(0, in.available());
+        return read;
+    }
+}
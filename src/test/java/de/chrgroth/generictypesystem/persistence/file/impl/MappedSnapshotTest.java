@@ -0,0 +1,127 @@
+package de.chrgroth.generictypesystem.persistence.file.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.ImmutableMap;
+
+import de.chrgroth.generictypesystem.model.DefaultGenericAttributeType;
+import de.chrgroth.generictypesystem.model.GenericAttribute;
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericType;
+import de.chrgroth.generictypesystem.model.GenericUnit;
+import de.chrgroth.generictypesystem.model.GenericUnits;
+
+public class MappedSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+    private GenericType type;
+    private GenericType emptyType;
+
+    @Before
+    public void setup() {
+        file = folder.getRoot().toPath().resolve("snapshot.bin");
+        type = new GenericType(1l, "type", "group", null, null, null, null);
+        type.getAttributes().add(new GenericAttribute(0l, "name", DefaultGenericAttributeType.STRING, null, false, false, null, null, null, null, null, null, null,
+                null, null, null));
+        emptyType = new GenericType(2l, "empty", "group", null, null, null, null);
+    }
+
+    @Test
+    public void roundtrip() throws IOException {
+        GenericUnits units = new GenericUnits(1l, "time", null);
+        units.getUnits().add(new GenericUnit(0l, "seconds", "s", GenericUnits.FACTOR_BASE));
+        Map<GenericType, List<GenericItem>> items = new LinkedHashMap<>();
+        items.put(type, Arrays.asList(item(3l, "c"), item(1l, "a"), item(2l, "b")));
+        items.put(emptyType, Collections.emptyList());
+        MappedSnapshot.write(file, ImmutableMap.of("types", 2l), Arrays.asList(units), items);
+
+        MappedSnapshot snapshot = MappedSnapshot.read(file);
+        Assert.assertEquals(ImmutableMap.of("types", 2l), snapshot.getIds());
+        Assert.assertEquals(1, snapshot.getUnits().size());
+        Assert.assertEquals("time", snapshot.getUnits().get(0).getName());
+        Assert.assertEquals(units.getUnits(), snapshot.getUnits().get(0).getUnits());
+        Assert.assertEquals(2, snapshot.getItems().size());
+
+        // items sorted by id, decoded on access
+        MappedItems typeItems = snapshot.getItems().get(0);
+        Assert.assertEquals("type", typeItems.getType().getName());
+        Assert.assertEquals(3, typeItems.size());
+        Assert.assertEquals(Arrays.asList(1l, 2l, 3l), Arrays.asList(typeItems.id(0), typeItems.id(1), typeItems.id(2)));
+        Assert.assertEquals(1, typeItems.indexOf(2l));
+        Assert.assertTrue(typeItems.indexOf(4l) < 0);
+        Assert.assertEquals("c", typeItems.get(typeItems.indexOf(3l)).get("name"));
+        Assert.assertNotSame(typeItems.get(0), typeItems.get(0));
+        Assert.assertEquals(0, snapshot.getItems().get(1).size());
+
+        // mapping survives deletion
+        Files.delete(file);
+        Assert.assertEquals("a", typeItems.get(0).get("name"));
+    }
+
+    @Test(expected = IOException.class)
+    public void itemWithoutId() throws IOException {
+        MappedSnapshot.write(file, Collections.emptyMap(), Collections.emptyList(), ImmutableMap.of(type, Arrays.asList(item(null, "a"))));
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidFile() throws IOException {
+        Files.write(file, new byte[] { 1, 2, 3 });
+        MappedSnapshot.read(file);
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void corruptItem() throws IOException {
+        MappedSnapshot.write(file, Collections.emptyMap(), Collections.emptyList(), ImmutableMap.of(type, Arrays.asList(item(1l, "a"))));
+
+        // overwrite value marker of the item, following header, id, type id, owner, visibility and values flag
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 9 }), 13 + 9 + 9 + 1 + 1 + 1);
+        }
+        MappedSnapshot.read(file).getItems().get(0).get(0);
+    }
+
+    @Test
+    public void windows() throws IOException {
+        byte[] data = new byte[100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+
+        // write crossing several windows
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedOutputStream out = new MappedOutputStream(channel, 7);
+            out.write(data[0]);
+            out.write(data, 1, data.length - 1);
+            out.flush();
+            Assert.assertEquals(data.length, out.position());
+            channel.truncate(out.position());
+        }
+        Assert.assertArrayEquals(data, Files.readAllBytes(file));
+    }
+
+    private GenericItem item(Long id, String name) {
+        GenericItem item = new GenericItem(id, 1l, null, null, null);
+        item.set("name", name);
+        return item;
+    }
+}
@@ -0,0 +1,262 @@
+package de.chrgroth.generictypesystem.persistence.file.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WriteAheadLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+
+    @Before
+    public void setup() throws IOException {
+        file = folder.getRoot().toPath().resolve("test.wal");
+    }
+
+    @Test
+    public void appendSyncRead() throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            Assert.assertEquals(1, log.append(record("first")));
+            Assert.assertEquals(2, log.append(record("second")));
+            Assert.assertEquals(0, Files.size(file));
+            log.sync(2);
+            Assert.assertEquals(log.size(), Files.size(file));
+            log.append(record("third"));
+        }
+        Assert.assertEquals(Arrays.asList("first", "second", "third"), read(file));
+
+        // reopened log appends
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            log.sync(log.append(record("fourth")));
+        }
+        Assert.assertEquals(Arrays.asList("first", "second", "third", "fourth"), read(file));
+    }
+
+    @Test
+    public void incompleteTail() throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            log.append(record("first"));
+            log.append(record("second"));
+        }
+        long size = Files.size(file);
+
+        // torn write
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 2);
+        }
+        Assert.assertEquals(Arrays.asList("first"), read(file));
+
+        // corrupt record
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 0 }), size - 3);
+        }
+        Assert.assertEquals(Arrays.asList("first"), read(file));
+    }
+
+    @Test
+    public void rotate() throws IOException {
+        Path next = folder.getRoot().toPath().resolve("next.wal");
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            log.append(record("first"));
+            log.rotate(next);
+            Assert.assertEquals(0, log.size());
+            Assert.assertEquals(2, log.append(record("second")));
+        }
+        Assert.assertEquals(Arrays.asList("first"), read(file));
+        Assert.assertEquals(Arrays.asList("second"), read(next));
+    }
+
+    @Test
+    public void groupCommit() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String value = String.valueOf(i);
+                futures.add(executor.submit(() -> {
+                    log.sync(log.append(record(value)));
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            Assert.assertEquals(log.size(), Files.size(file));
+        } finally {
+            executor.shutdown();
+        }
+
+        // all records written exactly once
+        List<String> values = read(file);
+        Collections.sort(values, (a, b) -> Integer.compare(Integer.parseInt(a), Integer.parseInt(b)));
+        Assert.assertEquals(200, values.size());
+        for (int i = 0; i < 200; i++) {
+            Assert.assertEquals(String.valueOf(i), values.get(i));
+        }
+    }
+
+    @Test
+    public void writeFailure() throws IOException {
+        FailingChannel[] channel = new FailingChannel[1];
+        try (WriteAheadLog log = new WriteAheadLog(file, f -> channel[0] = new FailingChannel(FileChannel.open(f, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)))) {
+            log.sync(log.append(record("first")));
+            long durableSize = Files.size(file);
+
+            // torn write is truncated, records stay pending
+            log.append(record("second"));
+            channel[0].failing = true;
+            try {
+                log.sync(log.append(record("third")));
+                Assert.fail("sync must fail");
+            } catch (IOException e) {
+                Assert.assertEquals(durableSize, Files.size(file));
+            }
+
+            // written again by next sync
+            channel[0].failing = false;
+            log.sync(log.append(record("fourth")));
+            Assert.assertEquals(log.size(), Files.size(file));
+        }
+        Assert.assertEquals(Arrays.asList("first", "second", "third", "fourth"), read(file));
+    }
+
+    private static byte[] record(String value) throws IOException {
+        return WriteAheadLog.record(out -> BinaryCodec.writeString(out, value));
+    }
+
+    private static List<String> read(Path file) throws IOException {
+        List<String> values = new ArrayList<>();
+        WriteAheadLog.read(file, in -> values.add(BinaryCodec.readString(in)));
+        return values;
+    }
+
+    /**
+     * Channel writing only half of the data and failing afterwards, if enabled.
+     */
+    private static final class FailingChannel extends FileChannel {
+
+        private final FileChannel delegate;
+        private boolean failing;
+
+        private FailingChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (!failing) {
+                return delegate.write(src);
+            }
+            ByteBuffer half = src.duplicate();
+            half.limit(half.position() + half.remaining() / 2);
+            delegate.write(half);
+            throw new IOException("disk full");
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            delegate.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package de.chrgroth.generictypesystem.persistence.impl;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.chrgroth.generictypesystem.context.GenericTypesystemContext;
+import de.chrgroth.generictypesystem.context.impl.NullGenericTypesystemContext;
+import de.chrgroth.generictypesystem.model.DefaultGenericAttributeType;
+import de.chrgroth.generictypesystem.model.GenericAttribute;
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericType;
+import de.chrgroth.generictypesystem.model.GenericUnits;
+import de.chrgroth.generictypesystem.persistence.query.impl.InMemoryItemsQueryService;
+import de.chrgroth.generictypesystem.persistence.values.impl.InMemoryValueProposalService;
+
+public class AbstractPersistenceServiceTest {
+
+    private static final String FAIL = "fail";
+
+    private GenericTypesystemContext context;
+
+    @Before
+    public void setup() {
+        context = new NullGenericTypesystemContext();
+    }
+
+    @Test
+    public void itemsWithoutIdReservation() {
+        MaxIdPersistenceService service = new MaxIdPersistenceService();
+        GenericType type = type(service);
+
+        // ids derived from stored items are distinct for all items of a batch
+        List<GenericItem> items = Arrays.asList(item(type, 1l, "a"), item(type, 2l, "b"), item(type, 3l, "c"));
+        Assert.assertEquals(Arrays.asList(true, true, true), service.items(context, type.getId(), items));
+        Assert.assertEquals(3, service.items(context, type.getId()).size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(1l, 2l, 3l)), new HashSet<>(Arrays.asList(items.get(0).getId(), items.get(1).getId(), items.get(2).getId())));
+    }
+
+    @Test
+    public void itemFailureReleasesUniqueKey() {
+        MaxIdPersistenceService service = new MaxIdPersistenceService();
+        GenericType type = type(service);
+
+        // failing item is not stored, previous items are
+        GenericItem stored = item(type, 1l, "a");
+        GenericItem failing = item(type, 2l, FAIL);
+        try {
+            service.items(context, type.getId(), Arrays.asList(stored, failing));
+            Assert.fail("failure expected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        Assert.assertNotNull(stored.getId());
+        Assert.assertNull(failing.getId());
+        Assert.assertEquals(1, service.items(context, type.getId()).size());
+
+        // unique key still available
+        Assert.assertTrue(service.item(context, type.getId(), item(type, 2l, "b")));
+    }
+
+    @Test
+    public void bulkFailureReleasesUniqueKeys() {
+        InMemoryPersistenceService service = new InMemoryPersistenceService(new InMemoryItemsQueryService(10), new InMemoryValueProposalService()) {
+            @Override
+            protected void addItems(long typeId, List<GenericItem> items) {
+                if (items.stream().anyMatch(i -> FAIL.equals(i.get("name")))) {
+                    throw new IllegalStateException(FAIL);
+                }
+                super.addItems(typeId, items);
+            }
+        };
+        GenericType type = type(service);
+
+        // nothing stored
+        List<GenericItem> items = Arrays.asList(item(type, 1l, "a"), item(type, 2l, FAIL));
+        try {
+            service.items(context, type.getId(), items);
+            Assert.fail("failure expected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        Assert.assertNull(items.get(0).getId());
+        Assert.assertNull(items.get(1).getId());
+        Assert.assertTrue(service.items(context, type.getId()).isEmpty());
+
+        // unique keys still available
+        Assert.assertEquals(Arrays.asList(true, true), service.items(context, type.getId(), Arrays.asList(item(type, 1l, "a"), item(type, 2l, "b"))));
+    }
+
+    private GenericType type(AbstractPersistenceService service) {
+        GenericType type = new GenericType(null, "name", "group", null, null, null, null);
+        type.getAttributes().add(new GenericAttribute(1l, "key", DefaultGenericAttributeType.LONG, null, true, true, null, null, null, null, null, null, null, null, null, null));
+        type.getAttributes().add(new GenericAttribute(2l, "name", DefaultGenericAttributeType.STRING, null, false, false, null, null, null, null, null, null, null, null, null, null));
+        Assert.assertTrue(service.type(context, type));
+        return type;
+    }
+
+    private GenericItem item(GenericType type, long key, String name) {
+        GenericItem item = new GenericItem(null, type.getId(), null, null, null);
+        item.set("key", key);
+        item.set("name", name);
+        return item;
+    }
+
+    /**
+     * Minimal persistence service deriving new item ids from the stored items, without reserving ids in blocks.
+     */
+    private static final class MaxIdPersistenceService extends AbstractPersistenceService {
+
+        private final Map<Long, GenericType> types = new HashMap<>();
+        private final Map<Long, Map<Long, GenericItem>> items = new HashMap<>();
+
+        private MaxIdPersistenceService() {
+            super(new InMemoryItemsQueryService(10), new InMemoryValueProposalService());
+        }
+
+        @Override
+        protected Set<GenericUnits> units() {
+            return new HashSet<>();
+        }
+
+        @Override
+        protected GenericUnits units(long id) {
+            return null;
+        }
+
+        @Override
+        protected long nextUnitsId() {
+            return 1;
+        }
+
+        @Override
+        protected void addUnits(GenericUnits units) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void updateUnits(GenericUnits units) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected boolean removeUnits(long id) {
+            return false;
+        }
+
+        @Override
+        protected Collection<GenericType> types() {
+            return types.values();
+        }
+
+        @Override
+        protected GenericType type(long id) {
+            return types.get(id);
+        }
+
+        @Override
+        protected long nextTypeId() {
+            return types.keySet().stream().mapToLong(Long::longValue).max().orElse(0) + 1;
+        }
+
+        @Override
+        protected void addType(GenericType type) {
+            types.put(type.getId(), type);
+        }
+
+        @Override
+        protected void updateType(GenericType type) {
+            types.put(type.getId(), type);
+        }
+
+        @Override
+        protected boolean removeType(long id) {
+            return types.remove(id) != null;
+        }
+
+        @Override
+        protected Collection<GenericItem> items(long typeId) {
+            return typeItems(typeId).values();
+        }
+
+        @Override
+        protected GenericItem item(long typeId, long id) {
+            return typeItems(typeId).get(id);
+        }
+
+        @Override
+        protected long nextItemId(long typeId) {
+            return typeItems(typeId).keySet().stream().mapToLong(Long::longValue).max().orElse(0) + 1;
+        }
+
+        @Override
+        protected void addItem(long typeId, GenericItem item) {
+            if (FAIL.equals(item.get("name"))) {
+                throw new IllegalStateException(FAIL);
+            }
+            typeItems(typeId).put(item.getId(), item);
+        }
+
+        @Override
+        protected void updateItem(long typeId, GenericItem item) {
+            typeItems(typeId).put(item.getId(), item);
+        }
+
+        @Override
+        protected boolean removeItem(long typeId, long id) {
+            return typeItems(typeId).remove(id) != null;
+        }
+
+        @Override
+        protected void removeAllItems(long typeId) {
+            items.remove(typeId);
+        }
+
+        private Map<Long, GenericItem> typeItems(long typeId) {
+            return items.computeIfAbsent(typeId, id -> new HashMap<>());
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package de.chrgroth.generictypesystem.persistence.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.chrgroth.generictypesystem.context.GenericTypesystemContext;
+import de.chrgroth.generictypesystem.context.impl.NullGenericTypesystemContext;
+import de.chrgroth.generictypesystem.model.DefaultGenericAttributeType;
+import de.chrgroth.generictypesystem.model.GenericAttribute;
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericType;
+import de.chrgroth.generictypesystem.persistence.query.ItemPagingData;
+import de.chrgroth.generictypesystem.persistence.query.ItemQueryResult;
+import de.chrgroth.generictypesystem.persistence.query.ItemSortData;
+import de.chrgroth.generictypesystem.persistence.query.ItemsQueryData;
+import de.chrgroth.generictypesystem.persistence.query.impl.InMemoryItemsQueryService;
+import de.chrgroth.generictypesystem.persistence.values.impl.InMemoryValueProposalService;
+
+public class ColumnarPersistenceServiceTest {
+
+    private GenericTypesystemContext context;
+    private ColumnarPersistenceService service;
+    private InMemoryPersistenceService reference;
+    private GenericType type;
+
+    @Before
+    public void setup() {
+        context = new NullGenericTypesystemContext();
+        service = new ColumnarPersistenceService(new InMemoryItemsQueryService(10), new InMemoryValueProposalService());
+        reference = new InMemoryPersistenceService(new InMemoryItemsQueryService(10), new InMemoryValueProposalService());
+
+        // same type and items in both services
+        type = new GenericType(null, "name", "group", null, null, null, null);
+        type.getAttributes().add(attribute("name", DefaultGenericAttributeType.STRING));
+        type.getAttributes().add(attribute("count", DefaultGenericAttributeType.LONG));
+        Assert.assertTrue(service.type(context, type));
+        Assert.assertTrue(reference.type(context, type));
+        for (long i = 0; i < 50; i++) {
+            GenericItem item = new GenericItem(null, type.getId(), null, null, null);
+            item.set("name", "item" + i % 7);
+            item.set("count", i % 5 == 0 ? null : i % 11);
+            Assert.assertTrue(service.item(context, type.getId(), item));
+            item.setId(null);
+            Assert.assertTrue(reference.item(context, type.getId(), item));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingQueryService() {
+        new ColumnarPersistenceService(null, new InMemoryValueProposalService());
+    }
+
+    @Test
+    public void itemLifecycle() {
+        GenericItem item = service.item(context, type.getId(), 1l);
+        Assert.assertEquals("item0", item.get("name"));
+
+        // changes are stored on save only
+        item.set("name", "changed");
+        Assert.assertEquals("item0", service.item(context, type.getId(), 1l).get("name"));
+        Assert.assertTrue(service.item(context, type.getId(), item));
+        Assert.assertEquals("changed", service.item(context, type.getId(), 1l).get("name"));
+        Assert.assertEquals(50, service.items(context, type.getId()).size());
+
+        // removal
+        Assert.assertTrue(service.removeItem(context, type.getId(), 1l));
+        Assert.assertNull(service.item(context, type.getId(), 1l));
+        Assert.assertEquals(49, service.items(context, type.getId()).size());
+        Assert.assertTrue(service.removeType(context, type.getId()));
+        Assert.assertTrue(service.items(context, type.getId()).isEmpty());
+    }
+
+    @Test
+    public void sortedQueries() {
+        for (List<ItemSortData> sorts : Arrays.asList(Arrays.asList(sort("name", true)), Arrays.asList(sort("count", false), sort("name", true)))) {
+            ItemsQueryData data = new ItemsQueryData();
+            data.setSorts(sorts);
+            Assert.assertEquals(ids(reference.query(context, type.getId(), data)), ids(service.query(context, type.getId(), data)));
+
+            // follow continuation tokens
+            ItemPagingData paging = new ItemPagingData();
+            paging.setPageSize(7l);
+            data.setPaging(paging);
+            List<Long> collected = new ArrayList<>();
+            ItemQueryResult result;
+            do {
+                result = service.query(context, type.getId(), data);
+                collected.addAll(ids(result));
+                paging.setContinuation(result.getContinuation());
+            } while (result.isMoreAvailable());
+            data.setPaging(null);
+            Assert.assertEquals(ids(reference.query(context, type.getId(), data)), collected);
+        }
+
+        // sorted index takes precedence
+        service.addIndex(type.getId(), "count");
+        ItemsQueryData data = new ItemsQueryData();
+        data.setSorts(Arrays.asList(sort("count", true)));
+        Assert.assertEquals(ids(reference.query(context, type.getId(), data)), ids(service.query(context, type.getId(), data)));
+    }
+
+    private GenericAttribute attribute(String name, DefaultGenericAttributeType attributeType) {
+        return new GenericAttribute(null, name, attributeType, null, false, false, null, null, null, null, null, null, null, null, null, null);
+    }
+
+    private ItemSortData sort(String path, boolean ascending) {
+        ItemSortData sort = new ItemSortData();
+        sort.setPath(path);
+        sort.setAscending(ascending);
+        return sort;
+    }
+
+    private List<Long> ids(ItemQueryResult result) {
+        return result.getItems().stream().map(GenericItem::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,241 @@
+package de.chrgroth.generictypesystem.persistence.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.chrgroth.generictypesystem.context.GenericTypesystemContext;
+import de.chrgroth.generictypesystem.context.impl.NullGenericTypesystemContext;
+import de.chrgroth.generictypesystem.model.DefaultGenericAttributeType;
+import de.chrgroth.generictypesystem.model.GenericAttribute;
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericType;
+import de.chrgroth.generictypesystem.model.GenericUnits;
+import de.chrgroth.generictypesystem.persistence.query.ItemQueryResult;
+import de.chrgroth.generictypesystem.persistence.query.ItemSortData;
+import de.chrgroth.generictypesystem.persistence.query.ItemsQueryData;
+import de.chrgroth.generictypesystem.persistence.query.impl.InMemoryItemsQueryService;
+import de.chrgroth.generictypesystem.persistence.values.impl.InMemoryValueProposalService;
+
+public class ConcurrentInMemoryPersistenceServiceTest {
+
+    private static final int THREADS = 8;
+    private static final int ITEMS_PER_THREAD = 500;
+
+    private GenericTypesystemContext context;
+    private ConcurrentInMemoryPersistenceService service;
+    private ExecutorService executor;
+
+    @Before
+    public void setup() {
+
+        // create context & service
+        context = new NullGenericTypesystemContext();
+        service = new ConcurrentInMemoryPersistenceService(new InMemoryItemsQueryService(10), new InMemoryValueProposalService());
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void teardown() {
+        executor.shutdownNow();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingQueryService() {
+        new ConcurrentInMemoryPersistenceService(null, new InMemoryValueProposalService());
+    }
+
+    @Test
+    public void lifecycle() {
+
+        // units
+        GenericUnits units = new GenericUnits(null, "time", "time units");
+        Assert.assertTrue(service.units(context, units));
+        Assert.assertEquals(1l, units.getId().longValue());
+        Assert.assertEquals(units, service.units(context, 1l));
+
+        // explicit ids advance sequence
+        Assert.assertTrue(service.units(context, new GenericUnits(5l, "length", "length units")));
+        GenericUnits nextUnits = new GenericUnits(null, "weight", "weight units");
+        Assert.assertTrue(service.units(context, nextUnits));
+        Assert.assertEquals(6l, nextUnits.getId().longValue());
+        Assert.assertEquals(3, service.units(context).size());
+        Assert.assertTrue(service.removeUnits(context, 5l));
+        Assert.assertNull(service.units(context, 5l));
+
+        // type
+        GenericType type = new GenericType(null, "name", "group", null, null, null, null);
+        Assert.assertTrue(service.type(context, type));
+        Assert.assertEquals(1l, type.getId().longValue());
+        Assert.assertEquals(type, service.type(context, type.getId()));
+
+        // items
+        GenericItem item = new GenericItem(null, type.getId(), null, null, null);
+        Assert.assertTrue(service.item(context, type.getId(), item));
+        Assert.assertEquals(1l, item.getId().longValue());
+        Assert.assertTrue(service.item(context, type.getId(), new GenericItem(10l, type.getId(), null, null, null)));
+        GenericItem nextItem = new GenericItem(null, type.getId(), null, null, null);
+        Assert.assertTrue(service.item(context, type.getId(), nextItem));
+        Assert.assertEquals(11l, nextItem.getId().longValue());
+        Assert.assertEquals(3, service.items(context, type.getId()).size());
+        Assert.assertEquals(item, service.item(context, type.getId(), 1l));
+
+        // remove item
+        Assert.assertTrue(service.removeItem(context, type.getId(), 1l));
+        Assert.assertNull(service.item(context, type.getId(), 1l));
+        Assert.assertEquals(2, service.items(context, type.getId()).size());
+
+        // remove type
+        Assert.assertTrue(service.removeType(context, type.getId()));
+        Assert.assertNull(service.type(context, type.getId()));
+        Assert.assertTrue(service.items(context, type.getId()).isEmpty());
+    }
+
+    @Test
+    public void concurrentItemInserts() throws Exception {
+
+        // add types
+        GenericType first = new GenericType(null, "first", "group", null, null, null, null);
+        Assert.assertTrue(service.type(context, first));
+        GenericType second = new GenericType(null, "second", "group", null, null, null, null);
+        Assert.assertTrue(service.type(context, second));
+
+        // insert items concurrently, reading snapshots in between
+        List<Future<Set<Long>>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            final long typeId = i % 2 == 0 ? first.getId() : second.getId();
+            futures.add(executor.submit((Callable<Set<Long>>) () -> {
+                Set<Long> ids = new HashSet<>();
+                for (int j = 0; j < ITEMS_PER_THREAD; j++) {
+                    GenericItem item = new GenericItem(null, typeId, null, null, null);
+                    Assert.assertTrue(service.item(context, typeId, item));
+                    ids.add(item.getId());
+                    service.items(context, typeId).size();
+                }
+                return ids;
+            }));
+        }
+
+        // ensure all ids are unique per type
+        Set<Long> firstIds = new HashSet<>();
+        Set<Long> secondIds = new HashSet<>();
+        for (int i = 0; i < THREADS; i++) {
+            Set<Long> ids = futures.get(i).get();
+            Assert.assertTrue(i % 2 == 0 ? firstIds.addAll(ids) : secondIds.addAll(ids));
+        }
+        int expected = THREADS / 2 * ITEMS_PER_THREAD;
+        Assert.assertEquals(expected, firstIds.size());
+        Assert.assertEquals(expected, secondIds.size());
+        Assert.assertEquals(expected, service.items(context, first.getId()).size());
+        Assert.assertEquals(expected, service.items(context, second.getId()).size());
+    }
+
+    @Test
+    public void valueProposalsWhileBuilding() throws Exception {
+        AtomicBoolean building = new AtomicBoolean();
+        AtomicReference<Thread> readerThread = new AtomicReference<>();
+        AtomicReference<Future<List<String>>> reader = new AtomicReference<>();
+        service = new ConcurrentInMemoryPersistenceService(new InMemoryItemsQueryService(10), new InMemoryValueProposalService()) {
+            @Override
+            protected Collection<GenericItem> items(long typeId) {
+
+                // read value proposals concurrently while the index is populated
+                if (building.compareAndSet(true, false)) {
+                    reader.set(executor.submit(() -> {
+                        readerThread.set(Thread.currentThread());
+                        return values(context, typeId, "name", null, null, 10);
+                    }));
+                    awaitBlocked(readerThread, reader.get());
+                }
+                return super.items(typeId);
+            }
+        };
+
+        // type with items
+        GenericType type = new GenericType(null, "type", "group", null, null, null, null);
+        type.getAttributes().add(new GenericAttribute(1l, "name", DefaultGenericAttributeType.STRING, null, false, false, null, null, null, null, null, null, null, null, null,
+                null));
+        Assert.assertTrue(service.type(context, type));
+        for (String name : Arrays.asList("a", "b", "c")) {
+            GenericItem item = new GenericItem(null, type.getId(), null, null, null);
+            item.set("name", name);
+            Assert.assertTrue(service.item(context, type.getId(), item));
+        }
+
+        // reader waits until the index is populated
+        building.set(true);
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), service.values(context, type.getId(), "name", null, null, 10));
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), reader.get().get());
+    }
+
+    @Test
+    public void queryWhileIndexing() throws Exception {
+        AtomicBoolean building = new AtomicBoolean();
+        AtomicReference<Thread> readerThread = new AtomicReference<>();
+        AtomicReference<Future<ItemQueryResult>> reader = new AtomicReference<>();
+        ItemSortData sort = new ItemSortData();
+        sort.setPath("value");
+        sort.setAscending(true);
+        ItemsQueryData data = new ItemsQueryData();
+        data.setSorts(Arrays.asList(sort));
+        service = new ConcurrentInMemoryPersistenceService(new InMemoryItemsQueryService(10), new InMemoryValueProposalService()) {
+            @Override
+            protected Collection<GenericItem> items(long typeId) {
+
+                // query concurrently while the index is populated
+                if (building.compareAndSet(true, false)) {
+                    reader.set(executor.submit(() -> {
+                        readerThread.set(Thread.currentThread());
+                        return query(context, typeId, data);
+                    }));
+                    awaitBlocked(readerThread, reader.get());
+                }
+                return super.items(typeId);
+            }
+        };
+
+        // type with items and index
+        GenericType type = new GenericType(null, "type", "group", null, null, null, null);
+        Assert.assertTrue(service.type(context, type));
+        for (long value = 0; value < 3; value++) {
+            GenericItem item = new GenericItem(null, type.getId(), null, null, null);
+            item.set("value", value);
+            Assert.assertTrue(service.item(context, type.getId(), item));
+        }
+        service.addIndex(type.getId(), "value");
+
+        // replacing the index, reader waits until populated
+        building.set(true);
+        service.addIndex(type.getId(), "value");
+        Assert.assertEquals(3, reader.get().get().getItems().size());
+    }
+
+    private static void awaitBlocked(AtomicReference<Thread> thread, Future<?> future) {
+        for (int i = 0; i < 1000 && !future.isDone(); i++) {
+            Thread current = thread.get();
+            if (current != null && current.getState() == Thread.State.WAITING) {
+                return;
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
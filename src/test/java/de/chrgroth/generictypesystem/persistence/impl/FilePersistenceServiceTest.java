@@ -0,0 +1,230 @@
+package de.chrgroth.generictypesystem.persistence.impl;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.chrgroth.generictypesystem.context.GenericTypesystemContext;
+import de.chrgroth.generictypesystem.context.impl.NullGenericTypesystemContext;
+import de.chrgroth.generictypesystem.model.DefaultGenericAttributeType;
+import de.chrgroth.generictypesystem.model.GenericAttribute;
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericType;
+import de.chrgroth.generictypesystem.model.GenericUnit;
+import de.chrgroth.generictypesystem.model.GenericUnits;
+import de.chrgroth.generictypesystem.persistence.query.impl.InMemoryItemsQueryService;
+import de.chrgroth.generictypesystem.persistence.sequence.impl.AtomicIdSequence;
+import de.chrgroth.generictypesystem.persistence.values.impl.InMemoryValueProposalService;
+
+public class FilePersistenceServiceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private GenericTypesystemContext context;
+    private Path directory;
+    private FilePersistenceService service;
+
+    @Before
+    public void setup() throws IOException {
+        context = new NullGenericTypesystemContext();
+        directory = folder.getRoot().toPath().resolve("data");
+        service = open(FilePersistenceService.DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    @After
+    public void shutdown() throws IOException {
+        service.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingDirectory() throws IOException {
+        new FilePersistenceService(new InMemoryItemsQueryService(10), new InMemoryValueProposalService(), null).close();
+    }
+
+    @Test
+    public void recovery() throws IOException {
+        GenericType type = populate();
+
+        // update and remove
+        GenericItem first = service.item(context, type.getId(), 1l);
+        first.set("name", "updated");
+        Assert.assertTrue(service.item(context, type.getId(), first));
+        Assert.assertTrue(service.removeItem(context, type.getId(), 3l));
+
+        // all mutations recovered from log
+        reopen(FilePersistenceService.DEFAULT_COMPACTION_THRESHOLD);
+        assertPopulated(type);
+        Assert.assertEquals("updated", service.item(context, type.getId(), 1l).get("name"));
+        Assert.assertNull(service.item(context, type.getId(), 3l));
+        Assert.assertEquals(2, service.items(context, type.getId()).size());
+        Assert.assertEquals(Arrays.asList("b", "updated"), service.values(context, type.getId(), null).get("name"));
+
+        // sequences continue
+        GenericItem next = item(type, "next");
+        Assert.assertEquals(4l, next.getId().longValue());
+    }
+
+    @Test
+    public void removals() throws IOException {
+        GenericType type = populate();
+        Assert.assertTrue(service.removeUnits(context, 1l));
+        Assert.assertTrue(service.removeType(context, type.getId()));
+
+        reopen(FilePersistenceService.DEFAULT_COMPACTION_THRESHOLD);
+        Assert.assertTrue(service.units(context).isEmpty());
+        Assert.assertTrue(service.types(context).isEmpty());
+        Assert.assertTrue(service.items(context, type.getId()).isEmpty());
+    }
+
+    @Test
+    public void compaction() throws IOException {
+        GenericType type = populate();
+        Assert.assertTrue(service.removeItem(context, type.getId(), 3l));
+        service.compact();
+        Assert.assertEquals(Arrays.asList("log-2.wal", "snapshot-2.bin"), files());
+
+        // later mutations are logged
+        item(type, "d");
+        reopen(FilePersistenceService.DEFAULT_COMPACTION_THRESHOLD);
+        assertPopulated(type);
+        Assert.assertEquals(3, service.items(context, type.getId()).size());
+        Assert.assertEquals("d", service.item(context, type.getId(), 4l).get("name"));
+
+        // ids of removed items are not reused
+        service.compact();
+        Assert.assertTrue(service.removeItem(context, type.getId(), 4l));
+        service.compact();
+        reopen(FilePersistenceService.DEFAULT_COMPACTION_THRESHOLD);
+        Assert.assertEquals(5l, item(type, "e").getId().longValue());
+    }
+
+    @Test
+    public void lazySnapshotItems() throws IOException {
+        GenericType type = populate();
+        service.compact();
+        reopen(FilePersistenceService.DEFAULT_COMPACTION_THRESHOLD);
+
+        // mutate items not materialized yet
+        GenericItem updated = newItem(type, "updated");
+        updated.setId(2l);
+        Assert.assertTrue(service.item(context, type.getId(), updated));
+        Assert.assertTrue(service.removeItem(context, type.getId(), 1l));
+        Assert.assertEquals("c", service.item(context, type.getId(), 3l).get("name"));
+
+        // replayed on top of snapshot
+        reopen(FilePersistenceService.DEFAULT_COMPACTION_THRESHOLD);
+        Assert.assertNull(service.item(context, type.getId(), 1l));
+        Assert.assertEquals(Arrays.asList("c", "updated"), service.values(context, type.getId(), null).get("name"));
+        Assert.assertEquals(2, service.items(context, type.getId()).size());
+
+        // removing all items discards snapshot items
+        service.compact();
+        reopen(FilePersistenceService.DEFAULT_COMPACTION_THRESHOLD);
+        Assert.assertTrue(service.removeType(context, type.getId()));
+        Assert.assertTrue(service.items(context, type.getId()).isEmpty());
+        Assert.assertNull(service.item(context, type.getId(), 3l));
+    }
+
+    @Test
+    public void backgroundCompaction() throws IOException {
+        reopen(1024);
+        GenericType type = populate();
+        List<GenericItem> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            GenericItem item = new GenericItem(null, type.getId(), null, null, null);
+            item.set("name", "item" + i);
+            items.add(item);
+        }
+        service.items(context, type.getId(), items);
+
+        // wait for compaction
+        service.close();
+        Assert.assertTrue(files().stream().anyMatch(f -> f.startsWith("snapshot-")));
+        service = open(1024);
+        Assert.assertEquals(103, service.items(context, type.getId()).size());
+        assertPopulated(type);
+    }
+
+    @Test
+    public void incompleteLog() throws IOException {
+        GenericType type = populate();
+        service.close();
+
+        // torn write of the last record
+        Path log = directory.resolve("log-1.wal");
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+        service = open(FilePersistenceService.DEFAULT_COMPACTION_THRESHOLD);
+        Assert.assertEquals(2, service.items(context, type.getId()).size());
+        assertPopulated(type);
+    }
+
+    private GenericType populate() {
+
+        // units
+        GenericUnits units = new GenericUnits(null, "time", "time units");
+        units.getUnits().add(new GenericUnit(0l, "seconds", "s", GenericUnits.FACTOR_BASE));
+        Assert.assertTrue(service.units(context, units));
+
+        // type and items
+        GenericType type = new GenericType(null, "name", "group", null, null, null, null);
+        type.getAttributes().add(new GenericAttribute(null, "name", DefaultGenericAttributeType.STRING, null, false, false, null, null, null, null, null, null, null, null,
+                null, null));
+        Assert.assertTrue(service.type(context, type));
+        Assert.assertEquals(Arrays.asList(true, true), service.items(context, type.getId(), Arrays.asList(newItem(type, "a"), newItem(type, "b"))));
+        item(type, "c");
+        return type;
+    }
+
+    private void assertPopulated(GenericType type) {
+        Assert.assertEquals("time units", service.units(context, 1l).getDescription());
+        Assert.assertEquals(1, service.units(context, 1l).getUnits().size());
+        GenericType recovered = service.type(context, type.getId());
+        Assert.assertEquals("name", recovered.getName());
+        Assert.assertEquals("name", recovered.getAttributes().get(0).getName());
+    }
+
+    private GenericItem newItem(GenericType type, String name) {
+        GenericItem item = new GenericItem(null, type.getId(), null, null, null);
+        item.set("name", name);
+        return item;
+    }
+
+    private GenericItem item(GenericType type, String name) {
+        GenericItem item = newItem(type, name);
+        Assert.assertTrue(service.item(context, type.getId(), item));
+        return item;
+    }
+
+    private List<String> files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(f -> String.valueOf(f.getFileName())).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private void reopen(long compactionThreshold) throws IOException {
+        service.close();
+        service = open(compactionThreshold);
+    }
+
+    private FilePersistenceService open(long compactionThreshold) throws IOException {
+        return new FilePersistenceService(new InMemoryItemsQueryService(10), new InMemoryValueProposalService(), name -> new AtomicIdSequence(), directory,
+                compactionThreshold);
+    }
+}
@@ -0,0 +1,255 @@
+package de.chrgroth.generictypesystem.persistence.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import de.chrgroth.generictypesystem.context.GenericTypesystemContext;
+import de.chrgroth.generictypesystem.context.impl.DefaultGenericTypesystemContext;
+import de.chrgroth.generictypesystem.context.impl.NullGenericTypesystemContext;
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericType;
+import de.chrgroth.generictypesystem.model.Visibility;
+import de.chrgroth.generictypesystem.persistence.query.ItemFilterData;
+import de.chrgroth.generictypesystem.persistence.query.ItemPagingData;
+import de.chrgroth.generictypesystem.persistence.query.ItemQueryResult;
+import de.chrgroth.generictypesystem.persistence.query.ItemSortData;
+import de.chrgroth.generictypesystem.persistence.query.ItemsQueryData;
+import de.chrgroth.generictypesystem.persistence.query.impl.InMemoryItemsQueryService;
+import de.chrgroth.generictypesystem.persistence.query.impl.SortedItems;
+import de.chrgroth.generictypesystem.persistence.values.impl.InMemoryValueProposalService;
+
+public class InMemoryPersistenceServiceIndexTest {
+
+    private static final String S = "stringAttribute";
+    private static final String L = "longAttribute";
+    private static final String N = "nested.value";
+
+    private GenericTypesystemContext context;
+    private InMemoryItemsQueryService indexedQuery;
+    private InMemoryPersistenceService indexed;
+    private InMemoryPersistenceService plain;
+    private GenericType type;
+
+    @Before
+    public void setup() {
+
+        // create context & services
+        context = new NullGenericTypesystemContext();
+        indexedQuery = Mockito.spy(new InMemoryItemsQueryService(10));
+        indexed = new InMemoryPersistenceService(indexedQuery, new InMemoryValueProposalService());
+        plain = new InMemoryPersistenceService(new InMemoryItemsQueryService(10), new InMemoryValueProposalService());
+
+        // add type and items to both services, with duplicate, null and mixed integral values
+        type = new GenericType(null, "name", "group", null, null, null, null);
+        Assert.assertTrue(indexed.type(context, type));
+        Assert.assertTrue(plain.type(context, type));
+        for (long i = 0; i < 50; i++) {
+            GenericItem item = new GenericItem(null, type.getId(), null, i % 2, i % 5 == 0 ? Visibility.PRIVATE : Visibility.PUBLIC);
+            item.set(S, i % 7 == 0 ? null : "value-" + i % 4);
+            item.set(L, i % 2 == 0 ? Long.valueOf(i % 6) : Integer.valueOf((int) (i % 6)));
+            item.set(N, i % 3 == 0 ? null : Long.valueOf(i % 3));
+            Assert.assertTrue(indexed.item(context, type.getId(), item));
+            Assert.assertTrue(plain.item(context, type.getId(), item));
+        }
+
+        // register indexes after items exist
+        indexed.addIndex(type.getId(), S);
+        indexed.addIndex(type.getId(), L);
+        indexed.addIndex(type.getId(), N);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPath() {
+        indexed.addIndex(type.getId(), " ");
+    }
+
+    @Test
+    public void registration() {
+        Assert.assertEquals(3, indexed.indexes(type.getId()).size());
+        Assert.assertTrue(indexed.removeIndex(type.getId(), N));
+        Assert.assertFalse(indexed.removeIndex(type.getId(), N));
+        Assert.assertEquals(2, indexed.indexes(type.getId()).size());
+        Assert.assertTrue(indexed.indexes(Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    public void singleSort() {
+        for (String path : Arrays.asList(S, L, N)) {
+            assertSameResults(context, null, paging(0, 100), sort(path, true));
+            assertSameResults(context, null, paging(0, 100), sort(path, false));
+            assertSameResults(context, null, null, sort(path, true));
+        }
+
+        // ensure index was used
+        Mockito.verify(indexedQuery, Mockito.times(9)).query(Mockito.any(SortedItems.class), Mockito.any(), Mockito.any());
+        Mockito.verify(indexedQuery, Mockito.never()).query(Mockito.anySet(), Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void multiSort() {
+        assertSameResults(context, null, paging(0, 100), sort(L, true), sort(S, false));
+        assertSameResults(context, null, paging(0, 100), sort(N, false), sort(L, true), sort(S, true));
+    }
+
+    @Test
+    public void paging() {
+        for (long page = 1; page <= 6; page++) {
+            assertSameResults(context, null, paging(page, 9), sort(S, true));
+            assertSameResults(context, null, paging(page, 9), sort(L, false), sort(S, true));
+        }
+    }
+
+    @Test
+    public void filter() {
+        assertSameResults(context, ItemFilterData.notNull(S), paging(1, 5), sort(L, true));
+        assertSameResults(context, ItemFilterData.range(L, 2, 4), paging(2, 5), sort(S, false));
+    }
+
+    @Test
+    public void visibility() {
+        assertSameResults(new DefaultGenericTypesystemContext(1l), null, paging(0, 100), sort(S, true));
+        assertSameResults(new DefaultGenericTypesystemContext(2l), null, paging(1, 10), sort(L, false));
+    }
+
+    @Test
+    public void maintenance() {
+
+        // update item in place
+        GenericItem item = indexed.item(context, type.getId(), 10l);
+        item.set(S, "aaa");
+        Assert.assertTrue(indexed.item(context, type.getId(), item));
+        Assert.assertEquals(Long.valueOf(10l), query(indexed, context, null, paging(1, 1), sort(S, true)).get(0));
+
+        // remove item
+        Assert.assertTrue(indexed.removeItem(context, type.getId(), 10l));
+        Assert.assertFalse(query(indexed, context, null, null, sort(S, true)).contains(10l));
+
+        // add new item
+        GenericItem newItem = new GenericItem(null, type.getId(), null, null, null);
+        newItem.set(L, 100l);
+        Assert.assertTrue(indexed.item(context, type.getId(), newItem));
+        Assert.assertEquals(newItem.getId(), query(indexed, context, null, paging(1, 1), sort(L, false)).get(0));
+
+        // remove type drops indexes
+        Assert.assertTrue(indexed.removeType(context, type.getId()));
+        Assert.assertTrue(indexed.indexes(type.getId()).isEmpty());
+    }
+
+    @Test
+    public void continuation() {
+        assertSameContinuationResults(context, null, sort(S, true));
+        assertSameContinuationResults(context, null, sort(N, false), sort(L, true));
+        assertSameContinuationResults(context, ItemFilterData.range(L, 2, 4), sort(L, false), sort(S, true));
+        assertSameContinuationResults(new DefaultGenericTypesystemContext(2l), null, sort(N, true));
+    }
+
+    @Test
+    public void stream() {
+
+        // same order as unpaged queries, with and without index
+        for (String path : Arrays.asList(S, L, N)) {
+            assertSameStreamResults(context, null, sort(path, true));
+            assertSameStreamResults(context, null, sort(path, false));
+        }
+        assertSameStreamResults(context, null, sort(L, true), sort(S, false));
+        assertSameStreamResults(context, ItemFilterData.range(L, 2, 4), sort(S, false));
+        assertSameStreamResults(new DefaultGenericTypesystemContext(1l), null, sort(N, false), sort(L, true));
+
+        // unsorted streams contain all matching items
+        Assert.assertEquals(50, stream(indexed, context, null).size());
+        Assert.assertEquals(query(plain, context, ItemFilterData.notNull(S), null).stream().sorted().collect(Collectors.toList()),
+                stream(indexed, context, ItemFilterData.notNull(S)).stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void streamWhileModifying() {
+        ItemsQueryData data = new ItemsQueryData();
+        data.setSorts(Arrays.asList(sort(L, true)));
+        List<Long> ids = new ArrayList<>();
+        indexed.stream(context, type.getId(), data).forEach(i -> {
+
+            // removing visited items while streaming is safe
+            ids.add(i.getId());
+            Assert.assertTrue(indexed.removeItem(context, type.getId(), i.getId()));
+        });
+        Assert.assertEquals(50, ids.size());
+        Assert.assertTrue(indexed.items(context, type.getId()).isEmpty());
+    }
+
+    private void assertSameContinuationResults(GenericTypesystemContext context, ItemFilterData filter, ItemSortData... sorts) {
+        List<Long> expected = query(plain, context, filter, null, sorts);
+        Assert.assertEquals(expected, continuation(plain, context, filter, sorts));
+        Assert.assertEquals(expected, continuation(indexed, context, filter, sorts));
+    }
+
+    private List<Long> continuation(InMemoryPersistenceService service, GenericTypesystemContext context, ItemFilterData filter, ItemSortData... sorts) {
+        ItemsQueryData data = new ItemsQueryData();
+        data.setFilter(filter);
+        data.setSorts(new ArrayList<>(Arrays.asList(sorts)));
+        data.setPaging(paging(0, 4));
+
+        // follow continuation tokens
+        List<Long> ids = new ArrayList<>();
+        ItemQueryResult result;
+        do {
+            result = service.query(context, type.getId(), data);
+            result.getItems().forEach(i -> ids.add(i.getId()));
+            data.getPaging().setContinuation(result.getContinuation());
+        } while (result.isMoreAvailable());
+        return ids;
+    }
+
+    private void assertSameStreamResults(GenericTypesystemContext context, ItemFilterData filter, ItemSortData... sorts) {
+        List<Long> expected = query(plain, context, filter, null, sorts);
+        Assert.assertEquals(expected, stream(plain, context, filter, sorts));
+        Assert.assertEquals(expected, stream(indexed, context, filter, sorts));
+    }
+
+    private List<Long> stream(InMemoryPersistenceService service, GenericTypesystemContext context, ItemFilterData filter, ItemSortData... sorts) {
+        ItemsQueryData data = new ItemsQueryData();
+        data.setFilter(filter);
+        data.setSorts(new ArrayList<>(Arrays.asList(sorts)));
+        try (Stream<GenericItem> stream = service.stream(context, type.getId(), data)) {
+            return stream.map(i -> i.getId()).collect(Collectors.toList());
+        }
+    }
+
+    private void assertSameResults(GenericTypesystemContext context, ItemFilterData filter, ItemPagingData paging, ItemSortData... sorts) {
+        Assert.assertEquals(query(plain, context, filter, paging, sorts), query(indexed, context, filter, paging, sorts));
+    }
+
+    private List<Long> query(InMemoryPersistenceService service, GenericTypesystemContext context, ItemFilterData filter, ItemPagingData paging, ItemSortData... sorts) {
+        ItemsQueryData data = new ItemsQueryData();
+        data.setFilter(filter);
+        data.setSorts(new ArrayList<>(Arrays.asList(sorts)));
+        if (paging != null) {
+            ItemPagingData pagingCopy = new ItemPagingData();
+            pagingCopy.setPage(paging.getPage());
+            pagingCopy.setPageSize(paging.getPageSize());
+            data.setPaging(pagingCopy);
+        }
+        return service.query(context, type.getId(), data).getItems().stream().map(i -> i.getId()).collect(Collectors.toList());
+    }
+
+    private ItemPagingData paging(long page, long pageSize) {
+        ItemPagingData paging = new ItemPagingData();
+        paging.setPage(page);
+        paging.setPageSize(pageSize);
+        return paging;
+    }
+
+    private ItemSortData sort(String path, boolean ascending) {
+        ItemSortData sort = new ItemSortData();
+        sort.setPath(path);
+        sort.setAscending(ascending);
+        return sort;
+    }
+}
@@ -1,6 +1,10 @@
 package de.chrgroth.generictypesystem.persistence.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.Assert;
@@ -8,12 +12,18 @@ import org.junit.Before;
 import org.junit.Test;
 
 import de.chrgroth.generictypesystem.context.GenericTypesystemContext;
+import de.chrgroth.generictypesystem.context.impl.DefaultGenericTypesystemContext;
 import de.chrgroth.generictypesystem.context.impl.NullGenericTypesystemContext;
+import de.chrgroth.generictypesystem.model.DefaultGenericAttributeType;
+import de.chrgroth.generictypesystem.model.GenericAttribute;
 import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericStructure;
 import de.chrgroth.generictypesystem.model.GenericType;
 import de.chrgroth.generictypesystem.model.GenericUnit;
 import de.chrgroth.generictypesystem.model.GenericUnits;
+import de.chrgroth.generictypesystem.model.Visibility;
 import de.chrgroth.generictypesystem.persistence.query.impl.InMemoryItemsQueryService;
+import de.chrgroth.generictypesystem.persistence.sequence.impl.AtomicIdSequence;
 import de.chrgroth.generictypesystem.persistence.values.impl.InMemoryValueProposalService;
 
 public class InMemoryPersistenceServiceTest {
@@ -181,4 +191,326 @@ public class InMemoryPersistenceServiceTest {
         Assert.assertNull(service.type(context, type.getId()));
         Assert.assertEquals(0, service.items(context, type.getId()).size());
     }
+
+    @Test
+    public void directLookups() {
+
+        // unknown ids
+        Assert.assertNull(service.units(context, 1l));
+        Assert.assertNull(service.type(context, 1l));
+        Assert.assertNull(service.item(context, 1l, 1l));
+
+        // add private type and items of user one
+        GenericType type = new GenericType(null, "name", "group", null, 1l, Visibility.PRIVATE, null);
+        Assert.assertTrue(service.type(context, type));
+        GenericItem publicItem = new GenericItem(null, type.getId(), null, 1l, Visibility.PUBLIC);
+        Assert.assertTrue(service.item(context, type.getId(), publicItem));
+        GenericItem privateItem = new GenericItem(null, type.getId(), null, 1l, Visibility.PRIVATE);
+        Assert.assertTrue(service.item(context, type.getId(), privateItem));
+
+        // owner has access to all
+        GenericTypesystemContext ownerContext = new DefaultGenericTypesystemContext(1l);
+        Assert.assertEquals(type, service.type(ownerContext, type.getId()));
+        Assert.assertEquals(publicItem, service.item(ownerContext, type.getId(), publicItem.getId()));
+        Assert.assertEquals(privateItem, service.item(ownerContext, type.getId(), privateItem.getId()));
+        Assert.assertNull(service.item(ownerContext, type.getId(), Long.MAX_VALUE));
+
+        // other users can't access type and items
+        GenericTypesystemContext otherContext = new DefaultGenericTypesystemContext(2l);
+        Assert.assertNull(service.type(otherContext, type.getId()));
+        Assert.assertNull(service.item(otherContext, type.getId(), publicItem.getId()));
+        Assert.assertNull(service.item(otherContext, type.getId(), privateItem.getId()));
+
+        // other users can access public items only after type was made public
+        type.setVisibility(Visibility.PUBLIC);
+        Assert.assertEquals(type, service.type(otherContext, type.getId()));
+        Assert.assertEquals(publicItem, service.item(otherContext, type.getId(), publicItem.getId()));
+        Assert.assertNull(service.item(otherContext, type.getId(), privateItem.getId()));
+    }
+
+    @Test
+    public void valueProposals() {
+
+        // public type with string attribute
+        GenericType type = new GenericType(null, "name", "group", null, 1l, Visibility.PUBLIC, null);
+        type.getAttributes().add(new GenericAttribute(null, "name", DefaultGenericAttributeType.STRING, null, false, false, null, null, null, null, null, null, null, null,
+                null, null));
+        Assert.assertTrue(service.type(context, type));
+        GenericItem first = item(type, "b", Visibility.PUBLIC);
+        GenericItem second = item(type, "a", Visibility.PUBLIC);
+        GenericItem privateItem = item(type, "c", Visibility.PRIVATE);
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), service.values(context, type.getId(), null).get("name"));
+
+        // private values are hidden from other users
+        GenericTypesystemContext otherContext = new DefaultGenericTypesystemContext(2l);
+        Assert.assertEquals(Arrays.asList("a", "b"), service.values(otherContext, type.getId(), null).get("name"));
+
+        // typeahead
+        Assert.assertEquals(Arrays.asList("b"), service.values(context, type.getId(), "name", null, "B", 10));
+        Assert.assertEquals(Arrays.asList("a", "b"), service.values(context, type.getId(), "name", null, null, 2));
+        Assert.assertEquals(Arrays.asList("a", "b"), service.values(otherContext, type.getId(), "name", null, "", 10));
+        Assert.assertTrue(service.values(context, type.getId(), "unknown", null, null, 10).isEmpty());
+
+        // updates and removals are reflected, shared values are kept
+        first.set("name", "a");
+        Assert.assertTrue(service.item(context, type.getId(), first));
+        Assert.assertEquals(Arrays.asList("a", "c"), service.values(context, type.getId(), null).get("name"));
+        Assert.assertTrue(service.removeItem(context, type.getId(), second.getId()));
+        Assert.assertTrue(service.removeItem(context, type.getId(), privateItem.getId()));
+        Assert.assertEquals(Arrays.asList("a"), service.values(context, type.getId(), null).get("name"));
+        Assert.assertTrue(service.removeItem(context, type.getId(), first.getId()));
+        Assert.assertTrue(service.values(context, type.getId(), null).isEmpty());
+    }
+
+    @Test
+    public void accessibleTypes() {
+
+        // public type of user one, private types of user one and two
+        GenericType publicType = new GenericType(null, "public", "group", null, 1l, Visibility.PUBLIC, null);
+        Assert.assertTrue(service.type(context, publicType));
+        GenericType privateType = new GenericType(null, "private", "group", null, 1l, Visibility.PRIVATE, null);
+        Assert.assertTrue(service.type(context, privateType));
+        GenericType otherPrivateType = new GenericType(null, "other", "other", null, 2l, Visibility.PRIVATE, null);
+        Assert.assertTrue(service.type(context, otherPrivateType));
+
+        // cached per user
+        GenericTypesystemContext userContext = new DefaultGenericTypesystemContext(1l);
+        Assert.assertEquals(3, service.types(context).size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(publicType, privateType)), service.types(userContext));
+        Assert.assertSame(service.types(userContext), service.types(new DefaultGenericTypesystemContext(1l)));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(publicType, otherPrivateType)), service.types(new DefaultGenericTypesystemContext(2l)));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(publicType)), service.types(new DefaultGenericTypesystemContext()));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("group")), service.typeGroups(userContext));
+
+        // saved changes and removals are reflected
+        otherPrivateType.setVisibility(Visibility.PUBLIC);
+        Assert.assertEquals(2, service.types(userContext).size());
+        Assert.assertTrue(service.type(context, otherPrivateType));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(publicType, privateType, otherPrivateType)), service.types(userContext));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("group", "other")), service.typeGroups(userContext));
+        Assert.assertTrue(service.removeType(context, publicType.getId()));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(otherPrivateType)), service.types(new DefaultGenericTypesystemContext()));
+
+        // custom contexts are not cached
+        Assert.assertEquals(new HashSet<>(Arrays.asList(privateType)), service.types(new DefaultGenericTypesystemContext(1l) {
+
+            @Override
+            public boolean isTypeAccessible(GenericType type) {
+                return type.getVisibility() == Visibility.PRIVATE;
+            }
+        }));
+    }
+
+    @Test
+    public void itemVisibility() {
+
+        // public type of user one, items of several users
+        GenericType type = new GenericType(null, "name", "group", null, 1l, Visibility.PUBLIC, null);
+        Assert.assertTrue(service.type(context, type));
+        GenericItem publicItem = item(type, 2l, Visibility.PUBLIC);
+        GenericItem noVisibilityItem = item(type, 2l, null);
+        GenericItem privateItem = item(type, 2l, Visibility.PRIVATE);
+        GenericItem otherPrivateItem = item(type, 3l, Visibility.PRIVATE);
+
+        // type owner and null context access all, other users public and own private items
+        Assert.assertEquals(4, service.items(context, type.getId()).size());
+        Assert.assertEquals(4, service.items(new DefaultGenericTypesystemContext(1l), type.getId()).size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(publicItem, noVisibilityItem, privateItem)), service.items(new DefaultGenericTypesystemContext(2l), type.getId()));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(publicItem, noVisibilityItem)), service.items(new DefaultGenericTypesystemContext(), type.getId()));
+        Assert.assertEquals(2, service.stream(new DefaultGenericTypesystemContext(4l), type.getId(), null).count());
+
+        // custom contexts are checked per item
+        GenericTypesystemContext customContext = new DefaultGenericTypesystemContext(3l) {
+
+            @Override
+            public boolean isItemAccessible(GenericType type, GenericItem item) {
+                return item.getVisibility() == Visibility.PRIVATE;
+            }
+        };
+        Assert.assertEquals(new HashSet<>(Arrays.asList(privateItem, otherPrivateItem)), service.items(customContext, type.getId()));
+
+        // updates and removals are reflected
+        privateItem.setVisibility(Visibility.PUBLIC);
+        Assert.assertTrue(service.item(context, type.getId(), privateItem));
+        Assert.assertTrue(service.removeItem(context, type.getId(), publicItem.getId()));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(noVisibilityItem, privateItem)), service.items(new DefaultGenericTypesystemContext(), type.getId()));
+        Assert.assertEquals(3, service.items(new DefaultGenericTypesystemContext(3l), type.getId()).size());
+
+        // stored changes not indexed yet never expose private items
+        noVisibilityItem.setVisibility(Visibility.PRIVATE);
+        Assert.assertEquals(new HashSet<>(Arrays.asList(privateItem)), service.items(new DefaultGenericTypesystemContext(), type.getId()));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(privateItem)), service.items(new DefaultGenericTypesystemContext(4l), type.getId()));
+    }
+
+    private GenericItem item(GenericType type, Long owner, Visibility visibility) {
+        GenericItem item = new GenericItem(null, type.getId(), null, owner, visibility);
+        Assert.assertTrue(service.item(context, type.getId(), item));
+        return item;
+    }
+
+    private GenericItem item(GenericType type, String name, Visibility visibility) {
+        GenericItem item = new GenericItem(null, type.getId(), null, 1l, visibility);
+        item.set("name", name);
+        Assert.assertTrue(service.item(context, type.getId(), item));
+        return item;
+    }
+
+    @Test
+    public void customSequences() {
+
+        // create service with sequences starting at 100
+        List<String> names = new ArrayList<>();
+        service = new InMemoryPersistenceService(new InMemoryItemsQueryService(10), new InMemoryValueProposalService(), name -> {
+            names.add(name);
+            return new AtomicIdSequence(100l);
+        });
+
+        // add type and item
+        GenericType type = new GenericType(null, "name", "group", null, null, null, null);
+        Assert.assertTrue(service.type(context, type));
+        Assert.assertEquals(101l, type.getId().longValue());
+        GenericItem item = new GenericItem(null, type.getId(), null, null, null);
+        Assert.assertTrue(service.item(context, type.getId(), item));
+        Assert.assertEquals(101l, item.getId().longValue());
+
+        // ensure sequence names
+        Assert.assertEquals(Arrays.asList("units", "types", "items-101"), names);
+    }
+
+    @Test
+    public void uniqueKey() {
+
+        // type with unique attribute
+        GenericType type = new GenericType(null, "name", "group", null, null, null, null);
+        type.getAttributes().add(new GenericAttribute(1l, "key", DefaultGenericAttributeType.LONG, null, true, true, null, null, null, null, null, null, null, null, null, null));
+        Assert.assertTrue(service.type(context, type));
+
+        // add item
+        GenericItem item = new GenericItem(null, type.getId(), null, null, null);
+        item.set("key", 1);
+        Assert.assertTrue(service.item(context, type.getId(), item));
+        Map<String, Object> uniqueKey = new HashMap<>();
+        uniqueKey.put("key", 1l);
+        Assert.assertEquals(item, service.findByUniqueKey(context, type.getId(), uniqueKey));
+
+        // duplicate is rejected
+        GenericItem duplicate = new GenericItem(null, type.getId(), null, null, null);
+        duplicate.set("key", 1l);
+        Assert.assertFalse(service.item(context, type.getId(), duplicate));
+        Assert.assertEquals(1, service.items(context, type.getId()).size());
+
+        // update key in place
+        item.set("key", 2l);
+        Assert.assertTrue(service.item(context, type.getId(), item));
+        Assert.assertNull(service.findByUniqueKey(context, type.getId(), uniqueKey));
+        Assert.assertTrue(service.item(context, type.getId(), duplicate));
+        Assert.assertEquals(duplicate, service.findByUniqueKey(context, type.getId(), uniqueKey));
+
+        // remove item frees key
+        Assert.assertTrue(service.removeItem(context, type.getId(), duplicate.getId()));
+        Assert.assertNull(service.findByUniqueKey(context, type.getId(), uniqueKey));
+
+        // unknown type
+        Assert.assertNull(service.findByUniqueKey(context, Long.MAX_VALUE, uniqueKey));
+
+        // type update with modified attributes drops unique key
+        type.getAttributes().get(0).setUnique(false);
+        Assert.assertTrue(service.type(context, type));
+        Assert.assertFalse(type.schema().hasUniqueKey());
+        Assert.assertTrue(service.item(context, type.getId(), duplicate));
+    }
+
+    @Test
+    public void itemsBatch() {
+
+        // type with unique attribute and an existing item
+        GenericType type = new GenericType(null, "name", "group", null, null, null, null);
+        type.getAttributes().add(new GenericAttribute(1l, "key", DefaultGenericAttributeType.LONG, null, true, true, null, null, null, null, null, null, null, null, null, null));
+        Assert.assertTrue(service.type(context, type));
+        GenericItem existing = new GenericItem(null, type.getId(), null, null, null);
+        existing.set("key", 1l);
+        Assert.assertTrue(service.item(context, type.getId(), existing));
+
+        // batch with new items, update, duplicate key and null item
+        GenericItem first = new GenericItem(null, type.getId(), null, null, null);
+        first.set("key", 2l);
+        GenericItem duplicate = new GenericItem(null, type.getId(), null, null, null);
+        duplicate.set("key", 2);
+        GenericItem second = new GenericItem(null, type.getId(), null, null, null);
+        second.set("key", 3l);
+        existing.set("key", 4l);
+        List<Boolean> results = service.items(context, type.getId(), Arrays.asList(first, duplicate, null, existing, second));
+
+        // check results
+        Assert.assertEquals(Arrays.asList(true, false, false, true, true), results);
+        Assert.assertEquals(3, service.items(context, type.getId()).size());
+        Assert.assertEquals(Long.valueOf(existing.getId() + 1), first.getId());
+        Assert.assertEquals(Long.valueOf(existing.getId() + 2), second.getId());
+        Assert.assertNull(duplicate.getId());
+        Map<String, Object> uniqueKey = new HashMap<>();
+        uniqueKey.put("key", 4l);
+        Assert.assertEquals(existing, service.findByUniqueKey(context, type.getId(), uniqueKey));
+        uniqueKey.put("key", 3l);
+        Assert.assertEquals(second, service.findByUniqueKey(context, type.getId(), uniqueKey));
+
+        // unknown type
+        Assert.assertEquals(Arrays.asList(false), service.items(context, Long.MAX_VALUE, Arrays.asList(new GenericItem())));
+    }
+
+    @Test
+    public void canonicalStrings() {
+
+        // type with string, enum, nested string and long attribute
+        GenericType type = new GenericType(null, "name", "group", null, null, null, null);
+        type.getAttributes().add(new GenericAttribute(1l, "name", DefaultGenericAttributeType.STRING, null, false, false, null, null, null, null, null, null, null, null, null, null));
+        type.getAttributes().add(new GenericAttribute(2l, "state", DefaultGenericAttributeType.ENUM, null, false, false, null, null, null, null, null, null, null, null, null, null));
+        GenericStructure address = new GenericStructure();
+        address.getAttributes().add(new GenericAttribute(4l, "city", DefaultGenericAttributeType.STRING, null, false, false, null, null, null, null, null, null, null, null, null, null));
+        type.getAttributes().add(new GenericAttribute(3l, "address", DefaultGenericAttributeType.STRUCTURE, null, false, false, address, null, null, null, null, null, null, null, null, null));
+        Assert.assertTrue(service.type(context, type));
+
+        // equal values in different items
+        GenericItem first = new GenericItem(null, type.getId(), null, null, null);
+        first.set("name", new String("  a "));
+        first.set("state", new String("open"));
+        first.set("address.city", new String("Munich "));
+        first.set("unknown", " x ");
+        GenericItem second = new GenericItem(null, type.getId(), null, null, null);
+        second.set("name", new String("a"));
+        second.set("state", new String(" open"));
+        second.set("address.city", new String("Munich"));
+        Assert.assertEquals(Arrays.asList(true, true), service.items(context, type.getId(), Arrays.asList(first, second)));
+
+        // stored trimmed and once, values not in schema untouched
+        Assert.assertEquals("a", first.getValues().get("name"));
+        Assert.assertSame(first.getValues().get("name"), second.getValues().get("name"));
+        Assert.assertSame(first.getValues().get("state"), second.getValues().get("state"));
+        Assert.assertEquals("Munich", ((GenericItem) first.getValues().get("address")).getValues().get("city"));
+        Assert.assertSame(((GenericItem) first.getValues().get("address")).getValues().get("city"), ((GenericItem) second.getValues().get("address")).getValues().get("city"));
+        Assert.assertEquals(" x ", first.getValues().get("unknown"));
+    }
+
+    @Test
+    public void canonicalStringsRejected() {
+
+        // type with unique string attribute
+        GenericType type = new GenericType(null, "name", "group", null, null, null, null);
+        type.getAttributes().add(new GenericAttribute(1l, "key", DefaultGenericAttributeType.STRING, null, true, false, null, null, null, null, null, null, null, null, null, null));
+        type.getAttributes().add(new GenericAttribute(2l, "name", DefaultGenericAttributeType.STRING, null, false, false, null, null, null, null, null, null, null, null, null, null));
+        Assert.assertTrue(service.type(context, type));
+        GenericItem item = new GenericItem(null, type.getId(), null, null, null);
+        item.set("key", "a");
+        item.set("name", "b");
+        Assert.assertTrue(service.item(context, type.getId(), item));
+
+        // duplicate is rejected and left untouched
+        GenericItem duplicate = new GenericItem(null, type.getId(), null, null, null);
+        duplicate.set("key", " a ");
+        String name = new String("b ");
+        duplicate.set("name", name);
+        Assert.assertFalse(service.item(context, type.getId(), duplicate));
+        Assert.assertEquals(" a ", duplicate.getValues().get("key"));
+        Assert.assertSame(name, duplicate.getValues().get("name"));
+        Assert.assertNull(duplicate.getId());
+    }
 }
@@ -47,7 +47,7 @@ public class InMemoryPersistenceServiceValuesTest {
         Map<String, List<?>> result = service.values(context, type.getId() + 1, null);
         Assert.assertNotNull(result);
         Assert.assertTrue(result.isEmpty());
-        Mockito.verify(values, Mockito.times(0)).values(Mockito.any(), Mockito.any(), Mockito.any());
+        Mockito.verify(values, Mockito.times(0)).values(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
     }
 
     @Test
@@ -55,7 +55,7 @@ public class InMemoryPersistenceServiceValuesTest {
         Map<String, List<?>> result = service.values(context, type.getId(), null);
         Assert.assertNotNull(result);
         Assert.assertTrue(result.isEmpty());
-        Mockito.verify(values, Mockito.times(0)).values(Mockito.any(), Mockito.any(), Mockito.any());
+        Mockito.verify(values, Mockito.times(0)).values(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
     }
 
     @Test
@@ -64,6 +64,6 @@ public class InMemoryPersistenceServiceValuesTest {
         Map<String, List<?>> result = service.values(context, type.getId(), null);
         Assert.assertNotNull(result);
         Assert.assertTrue(result.isEmpty());
-        Mockito.verify(values, Mockito.times(1)).values(Mockito.any(), Mockito.any(), Mockito.any());
+        Mockito.verify(values, Mockito.times(1)).values(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
     }
 }
@@ -0,0 +1,66 @@
+package de.chrgroth.generictypesystem.persistence.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StringDictionaryTest {
+
+    @Test
+    public void codes() {
+        StringDictionary dictionary = new StringDictionary();
+
+        // dense codes, equal values share code
+        Assert.assertEquals(0, dictionary.code("a"));
+        Assert.assertEquals(1, dictionary.code("b"));
+        Assert.assertEquals(0, dictionary.code(new String("a")));
+        Assert.assertEquals(-1, dictionary.code(null));
+        Assert.assertEquals(2, dictionary.size());
+
+        // values
+        Assert.assertEquals("a", dictionary.value(0));
+        Assert.assertEquals("b", dictionary.value(1));
+        Assert.assertNull(dictionary.value(2));
+        Assert.assertNull(dictionary.value(-1));
+    }
+
+    @Test
+    public void growing() {
+        StringDictionary dictionary = new StringDictionary();
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(i, dictionary.code("value" + i));
+        }
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals("value" + i, dictionary.value(i));
+        }
+        Assert.assertEquals(100, dictionary.size());
+    }
+
+    @Test
+    public void canonical() {
+        StringDictionary dictionary = new StringDictionary();
+        String value = dictionary.canonical(" a ");
+        Assert.assertEquals("a", value);
+        Assert.assertSame(value, dictionary.canonical(new String("a")));
+        Assert.assertSame(value, dictionary.canonical("a  "));
+        Assert.assertNull(dictionary.canonical(null));
+        Assert.assertEquals(1, dictionary.size());
+    }
+
+    @Test
+    public void capacity() {
+        StringDictionary dictionary = new StringDictionary(2);
+        Assert.assertEquals(0, dictionary.code("a"));
+        Assert.assertEquals(1, dictionary.code("b"));
+
+        // exhausted, known values still resolved
+        Assert.assertEquals(-1, dictionary.code("c"));
+        Assert.assertEquals(1, dictionary.code("b"));
+        Assert.assertEquals("c", dictionary.canonical(" c "));
+        Assert.assertEquals(2, dictionary.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidCapacity() {
+        new StringDictionary(0);
+    }
+}
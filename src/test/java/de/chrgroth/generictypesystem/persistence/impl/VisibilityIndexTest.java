@@ -0,0 +1,77 @@
+package de.chrgroth.generictypesystem.persistence.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.Visibility;
+
+public class VisibilityIndexTest {
+
+    private VisibilityIndex index;
+
+    @Before
+    public void setup() {
+        index = new VisibilityIndex();
+        index.update(new GenericItem(0l, 0l, null, 1l, null));
+        index.update(new GenericItem(1l, 0l, null, 1l, Visibility.PUBLIC));
+        index.update(new GenericItem(2l, 0l, null, 1l, Visibility.PRIVATE));
+        index.update(new GenericItem(3l, 0l, null, 2l, Visibility.PRIVATE));
+        index.update(new GenericItem(4l, 0l, null, null, Visibility.PRIVATE));
+    }
+
+    @Test
+    public void accessible() {
+        Assert.assertEquals(5, index.size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(0l, 1l, 2l)), new HashSet<>(index.accessible(1l)));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(0l, 1l, 3l)), new HashSet<>(index.accessible(2l)));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(0l, 1l, 4l)), new HashSet<>(index.accessible(null)));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(0l, 1l)), new HashSet<>(index.accessible(3l)));
+    }
+
+    @Test
+    public void building() throws InterruptedException {
+
+        // readers wait until the index is populated
+        VisibilityIndex building = new VisibilityIndex();
+        building.beginBuild();
+        List<Long> accessible = new ArrayList<>();
+        Thread reader = new Thread(() -> accessible.addAll(building.accessible(1l)));
+        reader.start();
+        building.update(new GenericItem(0l, 0l, null, 1l, null));
+        building.update(new GenericItem(1l, 0l, null, 2l, Visibility.PRIVATE));
+        building.endBuild();
+        reader.join();
+        Assert.assertEquals(Arrays.asList(0l), accessible);
+    }
+
+    @Test
+    public void maintenance() {
+
+        // change visibility
+        index.update(new GenericItem(2l, 0l, null, 1l, Visibility.PUBLIC));
+        index.update(new GenericItem(1l, 0l, null, 2l, Visibility.PRIVATE));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(0l, 2l)), new HashSet<>(index.accessible(3l)));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(0l, 1l, 2l, 3l)), new HashSet<>(index.accessible(2l)));
+
+        // removed ordinals are reused
+        index.remove(0l);
+        index.remove(4l);
+        index.update(new GenericItem(5l, 0l, null, 3l, Visibility.PRIVATE));
+        Assert.assertEquals(4, index.size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(2l, 5l)), new HashSet<>(index.accessible(3l)));
+        Assert.assertEquals(Arrays.asList(2l), index.accessible(null));
+
+        // all accessible, still resolved explicitly
+        index.remove(1l);
+        index.remove(3l);
+        Assert.assertEquals(new HashSet<>(Arrays.asList(2l, 5l)), new HashSet<>(index.accessible(3l)));
+        Assert.assertEquals(Arrays.asList(2l), index.accessible(1l));
+    }
+}
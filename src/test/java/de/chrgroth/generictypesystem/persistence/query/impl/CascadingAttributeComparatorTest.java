@@ -5,6 +5,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -71,6 +72,52 @@ public class CascadingAttributeComparatorTest {
         expect(itemThree, itemOne);
     }
 
+    @Test
+    public void sortKeysMatchComparator() {
+
+        // mixed numbers, strings, nulls and ids
+        Random random = new Random(42);
+        Object[] numbers = { null, 1, 2l, -3, Long.MIN_VALUE + 1, Long.MAX_VALUE - 1 };
+        Object[] decimals = { null, 1.5f, -0.0d, 0.0d, Double.NaN, Double.NEGATIVE_INFINITY, 2.25d };
+        Object[] strings = { null, "a", " a ", "b", "B", "" };
+        for (int i = 0; i < 500; i++) {
+            GenericItem item = new GenericItem(random.nextInt(10) == 0 ? null : Long.valueOf(random.nextInt(100)), 0l, null, null, null);
+            item.set("number", numbers[random.nextInt(numbers.length)]);
+            item.set("nested.decimal", decimals[random.nextInt(decimals.length)]);
+            item.set("string", strings[random.nextInt(strings.length)]);
+            items.add(item);
+        }
+
+        // all combinations of directions
+        for (boolean ascending : Arrays.asList(true, false)) {
+            assertSortKeys(Arrays.asList(sort("number", ascending), sort("string", !ascending)));
+            assertSortKeys(Arrays.asList(sort("nested.decimal", ascending), sort("number", ascending)));
+            assertSortKeys(Arrays.asList(sort("string", ascending), sort("nested.decimal", !ascending), sort("unknown", ascending)));
+        }
+        assertSortKeys(null);
+    }
+
+    @Test
+    public void sortKeysFallback() {
+        comparator = new CascadingAttributeComparator(Arrays.asList(sort(ATTRIBUTE_ONE, true)));
+        items(new GenericItem(0l, 0l, ImmutableMap.of(ATTRIBUTE_ONE, Long.MAX_VALUE), null, null), new GenericItem(1l, 0l, null, null, null),
+                new GenericItem(2l, 0l, ImmutableMap.of(ATTRIBUTE_ONE, 1), null, null));
+        comparator.sort(items);
+        Assert.assertEquals(Arrays.asList(2l, 0l, 1l), Arrays.asList(items.get(0).getId(), items.get(1).getId(), items.get(2).getId()));
+    }
+
+    private void assertSortKeys(List<ItemSortData> sorts) {
+        comparator = new CascadingAttributeComparator(sorts);
+        List<GenericItem> expected = new ArrayList<>(items);
+        Collections.shuffle(expected, new Random(7));
+        List<GenericItem> actual = new ArrayList<>(expected);
+        Collections.sort(expected, comparator);
+        comparator.sort(actual);
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertSame(String.valueOf(i), expected.get(i), actual.get(i));
+        }
+    }
+
     private void items(GenericItem... items) {
         for (GenericItem item : items) {
             this.items.add(item);
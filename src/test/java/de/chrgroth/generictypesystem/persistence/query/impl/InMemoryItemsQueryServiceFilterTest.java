@@ -0,0 +1,202 @@
+package de.chrgroth.generictypesystem.persistence.query.impl;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericUnit;
+import de.chrgroth.generictypesystem.model.GenericUnits;
+import de.chrgroth.generictypesystem.model.GenericValue;
+import de.chrgroth.generictypesystem.model.UnitValue;
+import de.chrgroth.generictypesystem.persistence.query.ItemFilterData;
+import de.chrgroth.generictypesystem.persistence.query.ItemFilterOperator;
+import de.chrgroth.generictypesystem.persistence.query.ItemPagingData;
+import de.chrgroth.generictypesystem.persistence.query.ItemQueryResult;
+
+public class InMemoryItemsQueryServiceFilterTest {
+
+    private static final String S = "stringAttribute";
+    private static final String L = "longAttribute";
+    private static final String D = "doubleAttribute";
+    private static final String U = "unitAttribute";
+    private static final String N = "nested.value";
+
+    private static final long UNITS_ID = 1l;
+    private static final long GRAM = 1l;
+    private static final long KILOGRAM = 2l;
+
+    private Set<GenericItem> items;
+    private InMemoryItemsQueryService service;
+
+    @Before
+    public void setup() {
+
+        // init query service with units lookup
+        GenericUnits units = new GenericUnits(UNITS_ID, "weight", "weight units");
+        units.getUnits().add(new GenericUnit(GRAM, "gram", "g", GenericUnits.FACTOR_BASE));
+        units.getUnits().add(new GenericUnit(KILOGRAM, "kilogram", "kg", 0.001d));
+        service = new InMemoryItemsQueryService(10, id -> id == UNITS_ID ? units : null);
+
+        // add items
+        items = new HashSet<>();
+        items.add(item(0l, "foo", 0, 0.0d, weight(GRAM, 500d), "a"));
+        items.add(item(1l, "Foobar", 1, 1.5d, weight(KILOGRAM, 1d), "b"));
+        items.add(item(2l, "bar", 2, 2.0d, weight(GRAM, 1500d), "a"));
+        items.add(item(3l, " baz ", 3, 3.5d, weight(KILOGRAM, 2d), null));
+        items.add(new GenericItem(4l, 0l, null, null, null));
+    }
+
+    private GenericItem item(long id, String s, long l, double d, UnitValue u, String n) {
+        GenericItem item = new GenericItem(id, 0l, ImmutableMap.<String, Object> builder().put(S, s).put(L, l).put(D, d).put(U, u).build(), null, null);
+        if (n != null) {
+            item.set(N, n);
+        }
+        return item;
+    }
+
+    private UnitValue weight(long unitId, double value) {
+        return new UnitValue(UNITS_ID, unitId, new GenericValue<>(Double.class, value));
+    }
+
+    @Test
+    public void nullFilter() {
+        filter(null, 0, 1, 2, 3, 4);
+    }
+
+    @Test
+    public void emptyFilter() {
+        filter(new ItemFilterData(), 0, 1, 2, 3, 4);
+    }
+
+    @Test
+    public void equalTo() {
+        filter(ItemFilterData.equalTo(S, "foo"), 0);
+        filter(ItemFilterData.equalTo(S, "baz"), 3);
+        filter(ItemFilterData.equalTo(S, null), 4);
+        filter(ItemFilterData.equalTo(S, "unknown"));
+    }
+
+    @Test
+    public void equalToIgnoreCase() {
+        ItemFilterData filter = ItemFilterData.equalTo(S, "FOOBAR");
+        filter.setIgnoreCase(true);
+        filter(filter, 1);
+    }
+
+    @Test
+    public void equalToNumbers() {
+        filter(ItemFilterData.equalTo(L, 2), 2);
+        filter(ItemFilterData.equalTo(L, 2.0d), 2);
+        filter(ItemFilterData.equalTo(D, 2), 2);
+        filter(ItemFilterData.equalTo(D, 1.5f), 1);
+    }
+
+    @Test
+    public void range() {
+        filter(ItemFilterData.range(L, 1, 2), 1, 2);
+        filter(ItemFilterData.range(L, 2, null), 2, 3);
+        filter(ItemFilterData.range(L, null, 0), 0);
+        filter(ItemFilterData.range(D, 1.5d, 3), 1, 2);
+        filter(ItemFilterData.range(S, "bar", "foo"), 0, 2, 3);
+    }
+
+    @Test
+    public void rangeIncomparable() {
+        filter(ItemFilterData.range(S, 1, null));
+        filter(ItemFilterData.range(L, null, "foo"));
+        filter(ItemFilterData.range(U, "a", "z"));
+    }
+
+    @Test
+    public void in() {
+        filter(ItemFilterData.in(L, 0, 3l, 5), 0, 3);
+        filter(ItemFilterData.in(S, "bar", "baz"), 2, 3);
+    }
+
+    @Test
+    public void text() {
+        filter(ItemFilterData.prefix(S, "foo", false), 0);
+        filter(ItemFilterData.prefix(S, "foo", true), 0, 1);
+        filter(ItemFilterData.contains(S, "ba", false), 1, 2, 3);
+        filter(ItemFilterData.contains(S, "OB", true), 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void textNonStringValue() {
+        filter(ItemFilterData.prefix(S, null, false));
+    }
+
+    @Test
+    public void nullChecks() {
+        filter(ItemFilterData.isNull(S), 4);
+        filter(ItemFilterData.notNull(N), 0, 1, 2);
+        filter(ItemFilterData.isNull(N), 3, 4);
+    }
+
+    @Test
+    public void nestedPath() {
+        filter(ItemFilterData.equalTo(N, "a"), 0, 2);
+    }
+
+    @Test
+    public void logical() {
+        filter(ItemFilterData.and(ItemFilterData.equalTo(N, "a"), ItemFilterData.range(L, 1, null)), 2);
+        filter(ItemFilterData.or(ItemFilterData.equalTo(N, "b"), ItemFilterData.equalTo(L, 3)), 1, 3);
+        filter(ItemFilterData.not(ItemFilterData.notNull(S)), 4);
+        filter(ItemFilterData.and(), 0, 1, 2, 3, 4);
+        filter(ItemFilterData.or());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void notWithoutFilter() {
+        filter(new ItemFilterData(ItemFilterOperator.NOT, null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingPath() {
+        filter(ItemFilterData.equalTo(null, "foo"));
+    }
+
+    @Test
+    public void unitValuesInBaseUnit() {
+        filter(ItemFilterData.range(U, 1000, 1500), 1, 2);
+        filter(ItemFilterData.equalTo(U, 2000), 3);
+    }
+
+    @Test
+    public void unitValuesInFilterUnit() {
+        ItemFilterData filter = ItemFilterData.range(U, 1, 1.5);
+        filter.setUnitId(KILOGRAM);
+        filter(filter, 1, 2);
+    }
+
+    @Test
+    public void unitValuesWithoutLookup() {
+        service = new InMemoryItemsQueryService(10);
+        filter(ItemFilterData.range(U, 1, 2), 1, 3);
+    }
+
+    @Test
+    public void filterBeforePaging() {
+        ItemPagingData paging = new ItemPagingData();
+        paging.setPage(1);
+        paging.setPageSize(2l);
+        ItemQueryResult result = service.query(items, ItemFilterData.notNull(S), null, paging);
+        Assert.assertEquals(Arrays.asList(3l, 2l), result.getItems().stream().map(i -> i.getId()).collect(Collectors.toList()));
+        Assert.assertTrue(result.isMoreAvailable());
+    }
+
+    private void filter(ItemFilterData filter, long... expectedIds) {
+        ItemQueryResult result = service.query(items, filter, null, null);
+        Set<Long> expected = Arrays.stream(expectedIds).boxed().collect(Collectors.toSet());
+        Assert.assertEquals(expected, result.getItems().stream().map(i -> i.getId()).collect(Collectors.toSet()));
+    }
+}
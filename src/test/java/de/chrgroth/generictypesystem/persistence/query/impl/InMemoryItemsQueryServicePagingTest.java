@@ -1,8 +1,15 @@
 package de.chrgroth.generictypesystem.persistence.query.impl;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -13,6 +20,7 @@ import com.google.common.collect.ImmutableMap;
 import de.chrgroth.generictypesystem.model.GenericItem;
 import de.chrgroth.generictypesystem.persistence.query.ItemPagingData;
 import de.chrgroth.generictypesystem.persistence.query.ItemQueryResult;
+import de.chrgroth.generictypesystem.persistence.query.ItemSortData;
 
 public class InMemoryItemsQueryServicePagingTest {
 
@@ -104,6 +112,119 @@ public class InMemoryItemsQueryServicePagingTest {
         paging(6, 2, 0, false);
     }
 
+    @Test
+    public void pagesMatchFullSort() {
+
+        // prepare items with many equal sort values
+        Set<GenericItem> manyItems = new HashSet<>();
+        for (long i = 0; i < 100; i++) {
+            manyItems.add(new GenericItem(i, 0l, ImmutableMap.<String, Object> builder().put(DOUBLE_ATTRIBUTE, (i * 7) % 13 * 1.0d).build(), null, null));
+        }
+        ItemSortData sort = new ItemSortData();
+        sort.setPath(DOUBLE_ATTRIBUTE);
+        sort.setAscending(true);
+        List<ItemSortData> sorts = Arrays.asList(sort);
+        List<GenericItem> sorted = service.query(manyItems, null, sorts, null).getItems();
+
+        // compare all pages
+        for (long page = 1; page <= 10; page++) {
+            ItemPagingData paging = new ItemPagingData();
+            paging.setPage(page);
+            paging.setPageSize(10l);
+            ItemQueryResult result = service.query(manyItems, null, sorts, paging);
+            Assert.assertEquals(sorted.subList((int) (page - 1) * 10, (int) page * 10), result.getItems());
+            Assert.assertEquals(page < 10, result.isMoreAvailable());
+        }
+    }
+
+    @Test
+    public void continuationMatchesFullSort() {
+
+        // prepare items with many equal sort values
+        Set<GenericItem> manyItems = new HashSet<>();
+        for (long i = 0; i < 100; i++) {
+            manyItems.add(new GenericItem(i, 0l, ImmutableMap.<String, Object> builder().put(DOUBLE_ATTRIBUTE, (i * 7) % 13 * 1.0d).build(), null, null));
+        }
+        List<ItemSortData> sorts = Arrays.asList(sort(DOUBLE_ATTRIBUTE, false));
+        List<GenericItem> sorted = service.query(manyItems, null, sorts, null).getItems();
+
+        // follow continuation tokens, starting with first page
+        ItemPagingData paging = new ItemPagingData();
+        paging.setPage(1);
+        paging.setPageSize(7l);
+        List<GenericItem> collected = new ArrayList<>();
+        ItemQueryResult result;
+        do {
+            result = service.query(manyItems, null, sorts, paging);
+            collected.addAll(result.getItems());
+            Assert.assertEquals(result.isMoreAvailable(), result.getContinuation() != null);
+            paging.setContinuation(result.getContinuation());
+        } while (result.isMoreAvailable());
+        Assert.assertEquals(sorted, collected);
+    }
+
+    @Test
+    public void continuationFromRemovedItem() {
+        List<ItemSortData> sorts = Arrays.asList(sort(DOUBLE_ATTRIBUTE, true));
+        ItemPagingData paging = new ItemPagingData();
+        paging.setPageSize(3l);
+        ItemQueryResult result = service.query(items, null, sorts, paging);
+        Assert.assertEquals(Arrays.asList(0l, 1l, 2l), ids(result));
+
+        // next page starts after the position, even if the item is gone
+        items.removeIf(i -> i.getId() == 2l);
+        paging.setContinuation(result.getContinuation());
+        Assert.assertEquals(Arrays.asList(3l, 4l, 5l), ids(service.query(items, null, sorts, paging)));
+    }
+
+    @Test
+    public void invalidContinuation() {
+        List<ItemSortData> sorts = Arrays.asList(sort(DOUBLE_ATTRIBUTE, true));
+        ItemPagingData paging = new ItemPagingData();
+        paging.setPageSize(3l);
+        String continuation = service.query(items, null, sorts, paging).getContinuation();
+        Assert.assertNotNull(continuation);
+
+        // garbage
+        paging.setContinuation("garbage");
+        paging(paging, 0, false);
+
+        // other sorts
+        paging.setContinuation(continuation);
+        Assert.assertTrue(service.query(items, null, Arrays.asList(sort(DOUBLE_ATTRIBUTE, false)), paging).getItems().isEmpty());
+        Assert.assertTrue(service.query(items, null, null, paging).getItems().isEmpty());
+    }
+
+    @Test
+    public void continuationValueTypes() {
+        List<Object> values = Arrays.asList(null, "text", 1l, 2, 3.0d, 4.0f, true, LocalDate.of(2017, 1, 2), LocalTime.of(3, 4), LocalDateTime.of(2017, 1, 2, 3, 4));
+        for (Object value : values) {
+            GenericItem item = new GenericItem(42l, 0l, null, null, null);
+            item.set("nested.value", value);
+            List<ItemSortData> sorts = Arrays.asList(sort("nested.value", true), sort("other", false));
+            GenericItem position = ContinuationToken.decode(ContinuationToken.encode(item, sorts), sorts);
+            Assert.assertEquals(value, position.get("nested.value"));
+            Assert.assertNull(position.get("other"));
+            Assert.assertEquals(Long.valueOf(42l), position.getId());
+        }
+
+        // unsupported values
+        GenericItem item = new GenericItem(42l, 0l, null, null, null);
+        item.set("value", Arrays.asList(1, 2));
+        Assert.assertNull(ContinuationToken.encode(item, Arrays.asList(sort("value", true))));
+    }
+
+    private List<Long> ids(ItemQueryResult result) {
+        return result.getItems().stream().map(GenericItem::getId).collect(Collectors.toList());
+    }
+
+    private ItemSortData sort(String path, boolean ascending) {
+        ItemSortData sort = new ItemSortData();
+        sort.setPath(path);
+        sort.setAscending(ascending);
+        return sort;
+    }
+
     private void paging(long page, long size, int results, boolean moreAvailable) {
 
         // create paging data
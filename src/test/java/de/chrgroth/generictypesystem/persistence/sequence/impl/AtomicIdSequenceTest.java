@@ -0,0 +1,44 @@
+package de.chrgroth.generictypesystem.persistence.sequence.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AtomicIdSequenceTest {
+
+    @Test
+    public void next() {
+        AtomicIdSequence sequence = new AtomicIdSequence();
+        Assert.assertEquals(1l, sequence.next());
+        Assert.assertEquals(2l, sequence.next());
+    }
+
+    @Test
+    public void continueAfterLastId() {
+        AtomicIdSequence sequence = new AtomicIdSequence(41l);
+        Assert.assertEquals(42l, sequence.next());
+    }
+
+    @Test
+    public void update() {
+        AtomicIdSequence sequence = new AtomicIdSequence();
+        sequence.update(10l);
+        Assert.assertEquals(11l, sequence.next());
+
+        // lower ids are ignored
+        sequence.update(5l);
+        Assert.assertEquals(12l, sequence.next());
+    }
+
+    @Test
+    public void nextBlock() {
+        AtomicIdSequence sequence = new AtomicIdSequence();
+        Assert.assertArrayEquals(new long[] { 1l, 2l, 3l }, sequence.next(3));
+        Assert.assertArrayEquals(new long[0], sequence.next(0));
+        Assert.assertEquals(4l, sequence.next());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nextNegativeCount() {
+        new AtomicIdSequence().next(-1);
+    }
+}
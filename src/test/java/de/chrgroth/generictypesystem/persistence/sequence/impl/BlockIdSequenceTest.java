@@ -0,0 +1,71 @@
+package de.chrgroth.generictypesystem.persistence.sequence.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BlockIdSequenceTest {
+
+    private List<Long> allocations;
+    private long high;
+    private BlockIdSequence sequence;
+
+    @Before
+    public void setup() {
+        allocations = new ArrayList<>();
+        high = 1;
+        sequence = new BlockIdSequence((lowerBound, size) -> {
+            long start = Math.max(high, lowerBound);
+            high = start + size;
+            allocations.add(start);
+            return start;
+        }, 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingAllocator() {
+        new BlockIdSequence(null, 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidBlockSize() {
+        new BlockIdSequence((lowerBound, size) -> lowerBound, 0);
+    }
+
+    @Test
+    public void nextAllocatesOncePerBlock() {
+        for (long id = 1; id <= 25; id++) {
+            Assert.assertEquals(id, sequence.next());
+        }
+        Assert.assertEquals(3, allocations.size());
+        Assert.assertEquals(21l, allocations.get(2).longValue());
+    }
+
+    @Test
+    public void updateWithinBlock() {
+        Assert.assertEquals(1l, sequence.next());
+        sequence.update(5l);
+        Assert.assertEquals(6l, sequence.next());
+        Assert.assertEquals(1, allocations.size());
+
+        // lower ids are ignored
+        sequence.update(2l);
+        Assert.assertEquals(7l, sequence.next());
+    }
+
+    @Test
+    public void updateBeyondBlock() {
+        Assert.assertEquals(1l, sequence.next());
+        sequence.update(100l);
+        Assert.assertEquals(101l, sequence.next());
+        Assert.assertEquals(2, allocations.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void invalidAllocation() {
+        new BlockIdSequence((lowerBound, size) -> lowerBound - 1, 10).next();
+    }
+}
@@ -109,13 +109,27 @@ public class InMemoryValueProposalServiceTest {
         Map<String, List<?>> result = service.values(type, items, template);
         Assert.assertNotNull(result);
 
+        // indexed computation yields the same values
+        Map<String, List<?>> indexedResult = result;
+        if (type != null && items != null) {
+            ValueProposalIndex index = new ValueProposalIndex(type.schema());
+            Map<Long, GenericItem> itemsById = new HashMap<>();
+            items.forEach(i -> {
+                index.update(i);
+                itemsById.put(i.getId(), i);
+            });
+            indexedResult = service.values(type, index, itemsById::get, template);
+        }
+
         // check for invalid testcases
         if (expectedValues == null) {
             Assert.assertTrue(result.isEmpty());
+            Assert.assertTrue(indexedResult.isEmpty());
             return;
         }
 
         // check expected data
         Assert.assertEquals(expectedValues, result);
+        Assert.assertEquals(expectedValues, indexedResult);
     }
 }
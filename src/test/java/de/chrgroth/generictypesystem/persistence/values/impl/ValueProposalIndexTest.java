@@ -0,0 +1,140 @@
+package de.chrgroth.generictypesystem.persistence.values.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+import de.chrgroth.generictypesystem.model.DefaultGenericAttributeType;
+import de.chrgroth.generictypesystem.model.GenericAttribute;
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericType;
+
+public class ValueProposalIndexTest {
+
+    private static final String COUNTRY = "country";
+    private static final String STATE = "state";
+    private static final String CITY = "city";
+
+    private ValueProposalIndex index;
+
+    @Before
+    public void setup() {
+
+        // city depends on country and state, state depends on country
+        GenericType type = new GenericType(0l, "testType", "testGroup", null, null, null, null);
+        type.getAttributes().add(attribute(0l, COUNTRY, null));
+        type.getAttributes().add(attribute(1l, STATE, new HashSet<>(Arrays.asList(0l))));
+        type.getAttributes().add(attribute(2l, CITY, new HashSet<>(Arrays.asList(0l, 1l))));
+        index = new ValueProposalIndex(type.schema());
+
+        // items
+        index.update(item(0l, "DE", "Bavaria", "Munich"));
+        index.update(item(1l, "DE", "Bavaria", "Nuremberg"));
+        index.update(item(2l, "DE", "Hesse", "Frankfurt"));
+        index.update(item(3l, "US", "Texas", "Austin"));
+        index.update(item(4l, "US", "Hesse", "Hesse"));
+    }
+
+    @Test
+    public void paths() {
+        Assert.assertEquals(new HashSet<>(Arrays.asList(COUNTRY, STATE, CITY)), index.getPaths());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(COUNTRY, STATE)), index.getDependencyPaths());
+        Assert.assertFalse(index.isEmpty());
+    }
+
+    @Test
+    public void building() throws InterruptedException {
+
+        // readers wait until the index is populated
+        GenericType type = new GenericType(0l, "testType", "testGroup", null, null, null, null);
+        type.getAttributes().add(attribute(0l, COUNTRY, null));
+        ValueProposalIndex building = new ValueProposalIndex(type.schema());
+        building.beginBuild();
+        List<String> values = new ArrayList<>();
+        Thread reader = new Thread(() -> values.addAll(building.values(COUNTRY, id -> true)));
+        reader.start();
+        building.update(item(0l, "DE", "Bavaria", "Munich"));
+        building.update(item(1l, "US", "Texas", "Austin"));
+        building.endBuild();
+        reader.join();
+        Assert.assertEquals(Arrays.asList("DE", "US"), values);
+    }
+
+    @Test
+    public void withoutDependencies() {
+        Assert.assertEquals(Arrays.asList("Austin", "Frankfurt", "Hesse", "Munich", "Nuremberg"), index.values(CITY, id -> true));
+        Assert.assertEquals(Arrays.asList("Austin", "Munich", "Nuremberg"), index.values(CITY, id -> id != 2l && id != 4l));
+        Assert.assertTrue(index.values("unknown", id -> true).isEmpty());
+    }
+
+    @Test
+    public void intersection() {
+        Assert.assertEquals(Arrays.asList("Bavaria", "Hesse"), index.values(STATE, ImmutableMap.of(COUNTRY, "DE"), id -> true));
+        Assert.assertEquals(Arrays.asList("Munich", "Nuremberg"), index.values(CITY, ImmutableMap.of(COUNTRY, "DE", STATE, "Bavaria"), id -> true));
+        Assert.assertEquals(Arrays.asList("Hesse"), index.values(CITY, ImmutableMap.of(COUNTRY, "US", STATE, "Hesse"), id -> true));
+        Assert.assertEquals(Arrays.asList("Nuremberg"), index.values(CITY, ImmutableMap.of(STATE, "Bavaria"), id -> id != 0l));
+
+        // unknown values and not indexed paths
+        Assert.assertTrue(index.values(CITY, ImmutableMap.of(COUNTRY, "FR"), id -> true).isEmpty());
+        Assert.assertTrue(index.values(CITY, ImmutableMap.of(COUNTRY, "DE", STATE, "Texas"), id -> true).isEmpty());
+        Assert.assertEquals(Arrays.asList("Austin", "Hesse"), index.values(CITY, ImmutableMap.of(COUNTRY, "US", CITY, "ignored"), id -> true));
+    }
+
+    @Test
+    public void prefix() {
+        index.update(item(5l, "de", "Berlin", "berlin"));
+        index.update(item(6l, "De", "Berlin", "Bergen"));
+
+        // ignoring case, lower case first
+        Assert.assertEquals(Arrays.asList("de", "De", "DE"), index.values(COUNTRY, Collections.emptyMap(), "DE", 10, id -> true));
+        Assert.assertEquals(Arrays.asList("Bavaria", "Berlin"), index.values(STATE, Collections.emptyMap(), "b", 10, id -> true));
+        Assert.assertEquals(Arrays.asList("Bergen", "berlin"), index.values(CITY, Collections.emptyMap(), "bEr", 10, id -> true));
+        Assert.assertTrue(index.values(CITY, Collections.emptyMap(), "x", 10, id -> true).isEmpty());
+
+        // limit, matcher and dependencies
+        Assert.assertEquals(Arrays.asList("Austin", "Bergen"), index.values(CITY, Collections.emptyMap(), null, 2, id -> true));
+        Assert.assertEquals(Arrays.asList("berlin"), index.values(CITY, Collections.emptyMap(), "ber", 1, id -> id != 6l));
+        Assert.assertEquals(Arrays.asList("Munich"), index.values(CITY, ImmutableMap.of(STATE, "Bavaria"), "m", 10, id -> true));
+        Assert.assertTrue(index.values(CITY, ImmutableMap.of(STATE, "Texas"), "m", 10, id -> true).isEmpty());
+        Assert.assertTrue(index.values(CITY, Collections.emptyMap(), null, 0, id -> true).isEmpty());
+    }
+
+    @Test
+    public void maintenance() {
+
+        // move item to other state
+        index.update(item(1l, "DE", "Hesse", "Nuremberg"));
+        Assert.assertEquals(Arrays.asList("Munich"), index.values(CITY, ImmutableMap.of(STATE, "Bavaria"), id -> true));
+        Assert.assertEquals(Arrays.asList("Frankfurt", "Hesse", "Nuremberg"), index.values(CITY, ImmutableMap.of(STATE, "Hesse"), id -> true));
+
+        // removed ordinals are reused
+        index.remove(0l);
+        index.remove(3l);
+        Assert.assertTrue(index.values(CITY, ImmutableMap.of(STATE, "Bavaria"), id -> true).isEmpty());
+        index.update(item(5l, "DE", "Bavaria", "Augsburg"));
+        index.update(item(6l, "US", "Texas", "Dallas"));
+        Assert.assertEquals(Arrays.asList("Augsburg"), index.values(CITY, ImmutableMap.of(STATE, "Bavaria"), id -> id == 5l));
+        Assert.assertEquals(Arrays.asList("Dallas", "Hesse"), index.values(CITY, ImmutableMap.of(COUNTRY, "US"), id -> true));
+
+        // remove all
+        Arrays.asList(1l, 2l, 4l, 5l, 6l).forEach(index::remove);
+        Assert.assertTrue(index.isEmpty());
+        Assert.assertTrue(index.values(COUNTRY, Collections.emptyMap(), id -> true).isEmpty());
+    }
+
+    private GenericAttribute attribute(Long id, String name, HashSet<Long> dependencies) {
+        return new GenericAttribute(id, name, DefaultGenericAttributeType.STRING, null, false, false, null, null, null, null, null, null, null, dependencies, null, null);
+    }
+
+    private GenericItem item(Long id, String country, String state, String city) {
+        return new GenericItem(id, 0l, ImmutableMap.<String, Object> builder().put(COUNTRY, country).put(STATE, state).put(CITY, city).build(), null, null);
+    }
+}
@@ -0,0 +1,93 @@
+package de.chrgroth.generictypesystem.validation.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import de.chrgroth.generictypesystem.model.DefaultGenericAttributeType;
+import de.chrgroth.generictypesystem.model.GenericAttribute;
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericType;
+import de.chrgroth.generictypesystem.model.GenericUnit;
+import de.chrgroth.generictypesystem.model.GenericUnits;
+import de.chrgroth.generictypesystem.model.GenericValue;
+import de.chrgroth.generictypesystem.model.UnitValue;
+import de.chrgroth.generictypesystem.validation.BaseValidationServiceTypeAndItemTest;
+import de.chrgroth.generictypesystem.validation.ValidationError;
+
+public class DefaultValidationServicePlanTest extends BaseValidationServiceTypeAndItemTest {
+
+    @Mock
+    private DefaultValidationServiceHooks hooks;
+
+    private UnitsLookupTestHelper unitsLookupTestHelper;
+    private GenericUnits units;
+
+    @Before
+    public void setup() {
+
+        // hooks and service
+        unitsLookupTestHelper = new UnitsLookupTestHelper();
+        MockitoAnnotations.initMocks(this);
+        service = new DefaultValidationService(unitsLookupTestHelper, hooks);
+
+        // units
+        units = new GenericUnits(0l, "units", "desc");
+        units.getUnits().add(new GenericUnit(0l, "base", null, GenericUnits.FACTOR_BASE));
+        units.getUnits().add(new GenericUnit(1l, "other", null, 2.0d));
+        unitsLookupTestHelper.register(units);
+
+        // type
+        type = new GenericType(0l, "testType", "testGroup", null, null, null, null);
+        attribute = new GenericAttribute(0l, "text", DefaultGenericAttributeType.STRING, null, false, false, null, null, null, null, "\\d+", null, null, null, null, null);
+        type.getAttributes().add(attribute);
+        type.getAttributes()
+                .add(new GenericAttribute(1l, "units", DefaultGenericAttributeType.DOUBLE, null, false, false, null, null, null, null, null, null, null, null, units.getId(), null));
+
+        // item
+        item = new GenericItem(0l, type.getId(), null, null, null);
+        item.set("text", "123");
+        item.set("units", new UnitValue(units.getId(), 1l, new GenericValue<>(Double.class, 1.0d)));
+    }
+
+    @Test
+    public void typeValidatedOnce() {
+        validateItem();
+        validateItem();
+        item.set("text", "abc");
+        validateItem(new ValidationError("text", DefaultValidationServiceMessageKey.ITEM_VALUE_PATTERN_VIOLATED, "\\d+"));
+        Mockito.verify(hooks, Mockito.times(1)).typeValidation(Mockito.any(), Mockito.any());
+        Mockito.verify(hooks, Mockito.times(3)).itemValidation(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void schemaInvalidation() {
+        validateItem();
+
+        // in place modification applies after invalidation
+        attribute.setPattern("[a-z]+");
+        validateItem();
+        type.invalidateSchema();
+        validateItem(new ValidationError("text", DefaultValidationServiceMessageKey.ITEM_VALUE_PATTERN_VIOLATED, "[a-z]+"));
+        Mockito.verify(hooks, Mockito.times(2)).typeValidation(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void unitsChanged() {
+        validateItem();
+
+        // removed unit applies after notification
+        units.getUnits().removeIf(u -> u.getId() == 1l);
+        validateItem();
+        service.unitsChanged(units.getId());
+        validateItem(new ValidationError("units", DefaultValidationServiceMessageKey.ITEM_VALUE_UNIT_INVALID));
+
+        // invalid units
+        units.setName(null);
+        service.unitsChanged(units.getId());
+        validateItem(new ValidationError("", DefaultValidationServiceMessageKey.ITEM_TYPE_INVALID));
+        Mockito.verify(hooks, Mockito.times(3)).typeValidation(Mockito.any(), Mockito.any());
+    }
+}
@@ -0,0 +1,122 @@
+package de.chrgroth.generictypesystem.validation.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.chrgroth.generictypesystem.model.DefaultGenericAttributeType;
+import de.chrgroth.generictypesystem.model.GenericAttribute;
+import de.chrgroth.generictypesystem.model.GenericItem;
+import de.chrgroth.generictypesystem.model.GenericType;
+import de.chrgroth.generictypesystem.validation.ValidationResult;
+
+public class DefaultValidationServiceValidateAllTest {
+
+    private static final int ITEMS = 2000;
+
+    private ForkJoinPool pool;
+    private GenericType type;
+    private List<GenericItem> items;
+
+    @Before
+    public void setup() {
+        pool = new ForkJoinPool(4);
+
+        // type with pattern
+        type = new GenericType(0l, "testType", "testGroup", null, null, null, null);
+        type.getAttributes().add(new GenericAttribute(0l, "text", DefaultGenericAttributeType.STRING, null, false, true, null, null, null, null, "\\d+", null, null, null, null,
+                null));
+
+        // every third item is invalid
+        items = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            GenericItem item = new GenericItem((long) i, type.getId(), null, null, null);
+            item.set("text", i % 3 == 0 ? "invalid" : String.valueOf(i));
+            items.add(item);
+        }
+    }
+
+    @After
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void parallel() {
+        RecordingHooks hooks = new RecordingHooks(true);
+        assertResults(new DefaultValidationService(id -> null, hooks, pool).validateAll(type, items));
+        Assert.assertEquals(ITEMS, hooks.validatedItems.size());
+    }
+
+    @Test
+    public void sequentialForThreadUnsafeHooks() {
+        RecordingHooks hooks = new RecordingHooks(false);
+        assertResults(new DefaultValidationService(id -> null, hooks, pool).validateAll(type, items));
+        Assert.assertEquals(Collections.singleton(Thread.currentThread().getName()), hooks.threads);
+    }
+
+    @Test
+    public void sequentialForEmptyHooksSubclass() {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        DefaultValidationServiceHooks hooks = new DefaultValidationServiceEmptyHooks() {
+            @Override
+            public void itemValidation(ValidationResult<GenericItem> result, GenericType type, GenericItem item) {
+                threads.add(Thread.currentThread().getName());
+            }
+        };
+        Assert.assertFalse(hooks.isThreadSafe());
+        Assert.assertTrue(new DefaultValidationServiceEmptyHooks().isThreadSafe());
+        assertResults(new DefaultValidationService(id -> null, hooks, pool).validateAll(type, items));
+        Assert.assertEquals(Collections.singleton(Thread.currentThread().getName()), threads);
+    }
+
+    @Test
+    public void sequentialWithoutPool() {
+        RecordingHooks hooks = new RecordingHooks(true);
+        assertResults(new DefaultValidationService(id -> null, hooks, null).validateAll(type, items));
+        Assert.assertEquals(Collections.singleton(Thread.currentThread().getName()), hooks.threads);
+    }
+
+    @Test
+    public void empty() {
+        Assert.assertTrue(new DefaultValidationService(id -> null, null, pool).validateAll(type, Collections.emptyList()).isEmpty());
+    }
+
+    private void assertResults(List<ValidationResult<GenericItem>> results) {
+        Assert.assertEquals(ITEMS, results.size());
+        for (int i = 0; i < ITEMS; i++) {
+            Assert.assertSame(items.get(i), results.get(i).getItem());
+            Assert.assertEquals(i % 3 != 0, results.get(i).isValid());
+        }
+    }
+
+    private static final class RecordingHooks extends DefaultValidationServiceEmptyHooks {
+
+        private final boolean threadSafe;
+        private final Set<String> threads = ConcurrentHashMap.newKeySet();
+        private final Set<GenericItem> validatedItems = ConcurrentHashMap.newKeySet();
+
+        private RecordingHooks(boolean threadSafe) {
+            this.threadSafe = threadSafe;
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            return threadSafe;
+        }
+
+        @Override
+        public void itemValidation(ValidationResult<GenericItem> result, GenericType type, GenericItem item) {
+            threads.add(Thread.currentThread().getName());
+            validatedItems.add(item);
+        }
+    }
+}